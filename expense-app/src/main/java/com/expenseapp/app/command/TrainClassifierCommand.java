@@ -0,0 +1,58 @@
+package com.expenseapp.app.command;
+
+import com.infrastructure.email.classifier.ClassifierTrainingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Trains the transaction classifier from raw_emails and exits:
+ * <pre>
+ *   java -jar snapbill.jar --spring.main.web-application-type=none \
+ *       --snapbill.classifier.train.output=/var/lib/snapbill/classifier.bin
+ * </pre>
+ * Point snapbill.classifier.model-path at the written file to use it.
+ */
+@Component
+@ConditionalOnProperty("snapbill.classifier.train.output")
+@RequiredArgsConstructor
+@Slf4j
+public class TrainClassifierCommand implements ApplicationRunner {
+
+    private final ClassifierTrainingService trainingService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${snapbill.classifier.train.output}")
+    private String output;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        int exitCode = 0;
+        try {
+            ClassifierTrainingService.Report report = trainingService.train(Path.of(output));
+            log.info("Trained on {} transactions and {} other emails, evaluated on {} held out",
+                    report.trainingTransactions(), report.trainingNonTransactions(), report.heldOut());
+            for (ClassifierTrainingService.GateEvaluation evaluation : report.evaluations()) {
+                log.info("threshold {}: skips {}, precision {}, recall {}, transactions lost {}",
+                        evaluation.threshold(),
+                        evaluation.skipped(),
+                        "%.3f".formatted(evaluation.precision()),
+                        "%.3f".formatted(evaluation.recall()),
+                        evaluation.missedTransactions());
+            }
+        } catch (Exception e) {
+            log.error("Classifier training failed: {}", e.getMessage(), e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
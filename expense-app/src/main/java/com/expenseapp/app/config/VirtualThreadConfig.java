@@ -7,7 +7,6 @@ import org.springframework.context.annotation.Primary;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 
 @Configuration
 public class VirtualThreadConfig {
@@ -17,10 +16,4 @@ public class VirtualThreadConfig {
     public ExecutorService pipelineExecutor(){
         return Executors.newVirtualThreadPerTaskExecutor();
     }
-
-    @Bean
-    @Qualifier("scheduledExecutor")
-    public ScheduledExecutorService retryExecutor() {
-        return Executors.newScheduledThreadPool(2);
-    }
 }
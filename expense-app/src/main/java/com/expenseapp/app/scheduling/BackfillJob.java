@@ -0,0 +1,83 @@
+package com.expenseapp.app.scheduling;
+
+import com.domain.entities.EmailAccount;
+import com.domain.enums.ConnectionStatus;
+import com.domain.enums.SyncStatus;
+import com.domain.repositories.EmailAccountRepository;
+import com.infrastructure.email.service.BackfillService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Low priority companion of ExpenseSyncJob - works through pending backfills a few slices at a time,
+ * with only a couple of accounts at once so interactive syncs keep most of the provider quota.
+ */
+@Component
+@Slf4j
+public class BackfillJob {
+
+    private final EmailAccountRepository emailAccountRepository;
+    private final BackfillService backfillService;
+    private final ExecutorService pipelineExecutor;
+    private final Semaphore accountSemaphore;
+
+    public BackfillJob(EmailAccountRepository emailAccountRepository,
+                       BackfillService backfillService,
+                       @Qualifier("pipelineExecutor") ExecutorService pipelineExecutor,
+                       @Value("${snapbill.backfill.max-concurrent-accounts:2}") int maxConcurrentAccounts) {
+        this.emailAccountRepository = emailAccountRepository;
+        this.backfillService = backfillService;
+        this.pipelineExecutor = pipelineExecutor;
+        this.accountSemaphore = new Semaphore(maxConcurrentAccounts);
+    }
+
+    @Scheduled(fixedDelayString = "${snapbill.backfill.interval-ms:300000}", initialDelayString = "${snapbill.backfill.initial-delay-ms:60000}")
+    public void run() {
+        log.info("Starting BackfillJob at {}", Instant.now());
+
+        try {
+            List<EmailAccount> accounts = emailAccountRepository.findBackfillPending(ConnectionStatus.ACTIVE).stream()
+                    .filter(account -> account.getSyncStatus() != SyncStatus.SYNCING) // live sync goes first
+                    .toList();
+
+            if (accounts.isEmpty()) {
+                log.info("No accounts waiting on backfill.");
+                return;
+            }
+
+            List<CompletableFuture<Void>> futures = accounts.stream()
+                    .map(account -> CompletableFuture.runAsync(() -> backfill(account), pipelineExecutor))
+                    .toList();
+
+            // fixed delay only starts counting once every account's run is done - runs never overlap
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        } catch (Exception e) {
+            log.error("BackfillJob failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void backfill(EmailAccount account) {
+        try {
+            accountSemaphore.acquire();
+            try {
+                backfillService.backfill(account);
+            } finally {
+                accountSemaphore.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Backfill failed for {}: {}", account.getProviderEmail(), e.getMessage(), e);
+        }
+    }
+}
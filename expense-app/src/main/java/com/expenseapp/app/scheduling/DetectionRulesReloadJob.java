@@ -0,0 +1,27 @@
+package com.expenseapp.app.scheduling;
+
+import com.infrastructure.email.Components.FinancialEmailDetector;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks up edits to the detection_rule table without a restart.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DetectionRulesReloadJob {
+
+    private final FinancialEmailDetector financialEmailDetector;
+
+    @Scheduled(fixedDelayString = "${snapbill.detector.reload-interval-ms:60000}", initialDelayString = "${snapbill.detector.reload-interval-ms:60000}")
+    public void run() {
+        try {
+            financialEmailDetector.reload();
+        } catch (Exception e) {
+            log.error("Detection rule reload failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.domain.entities;
+
+import com.domain.enums.DetectionTarget;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Weighted pattern for the financial email detector. When any rule is enabled, the enabled rules
+ * replace the built-in set; the detector picks up changes on its next reload.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetectionRule {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(nullable = false)
+    private String pattern;           // matched case-insensitively
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DetectionTarget target;
+
+    @Column(nullable = false)
+    private double weight;
+
+    // only match where the pattern is not part of a longer word (e.g. "pos" but not "post")
+    @Column(nullable = false)
+    private boolean wholeWord;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private boolean enabled = true;
+
+    @Column
+    private Instant updatedAt;
+}
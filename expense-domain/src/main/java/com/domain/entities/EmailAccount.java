@@ -9,6 +9,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.math.BigInteger;
 import java.time.Instant;
 import java.util.UUID;
 
@@ -53,6 +54,22 @@ public class EmailAccount {
     @Column
     private Instant lastEmailReceivedAt;
 
+    // Gmail history cursor for incremental sync - null until a full search has set the baseline
+    @Column(name = "history_id")
+    private BigInteger historyId;
+
+    // Microsoft Graph delta link for incremental sync - absolute URL handed out at the end of a delta round
+    @Column(name = "delta_link", length = 2048)
+    private String deltaLink;
+
+    // Backfill checkpoint - history before connectedAt is fetched in slices walking back from the cursor
+    // to the target. Only written through targeted updates, so a live sync saving the account never rolls it back.
+    @Column(name = "backfill_cursor", insertable = false, updatable = false)
+    private Instant backfillCursor;
+
+    @Column(name = "backfill_target", insertable = false, updatable = false)
+    private Instant backfillTarget;
+
     @Column
     private Instant expiresAt;
 
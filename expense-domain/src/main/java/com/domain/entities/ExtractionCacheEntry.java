@@ -0,0 +1,54 @@
+package com.domain.entities;
+
+import com.domain.valueObjects.CurrencyCode;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Persisted LLM extraction, keyed by the hash of the normalized email text together with the prompt
+ * version and model that produced it. Rows written for another prompt or model are never read again
+ * and are purged on startup.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "extraction_cache", indexes = {
+        @Index(name = "idx_extraction_cache_version", columnList = "prompt_version, model_id")
+})
+public class ExtractionCacheEntry {
+
+    // SHA-256 hex
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    @Column(name = "prompt_version", nullable = false, length = 64)
+    private String promptVersion;
+
+    @Column(name = "model_id", nullable = false)
+    private String modelId;
+
+    private String merchant;
+
+    @Column(precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    private CurrencyCode currency;
+
+    private String category;
+
+    private String transactionDate;
+
+    @Column(nullable = false)
+    private boolean transaction;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
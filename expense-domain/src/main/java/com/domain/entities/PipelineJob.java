@@ -0,0 +1,60 @@
+package com.domain.entities;
+
+import com.domain.enums.PipelineJobStatus;
+import com.domain.enums.PipelineJobType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One unit of durable pipeline work for an account (a sync, or a processing run).
+ *
+ * Rows are written in the same transaction as the state change that makes the work necessary and
+ * leased by workers with FOR UPDATE SKIP LOCKED, so work survives restarts and is shared across nodes.
+ * A finished job is deleted; one that keeps failing ends up DEAD.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "pipeline_jobs", indexes = {
+        @Index(name = "idx_pipeline_jobs_due", columnList = "status, available_at"),
+        @Index(name = "idx_pipeline_jobs_account", columnList = "type, account_id")
+})
+public class PipelineJob {
+
+    @Id
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private PipelineJobType type;
+
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private PipelineJobStatus status;
+
+    // runs started so far, including the current one; also the lease token of a RUNNING job
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "available_at", nullable = false)
+    private Instant availableAt;
+
+    // end of the current lease - a RUNNING job past it is handed to another worker
+    @Column(name = "locked_until")
+    private Instant lockedUntil;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
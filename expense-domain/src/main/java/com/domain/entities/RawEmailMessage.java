@@ -96,4 +96,15 @@ public class RawEmailMessage {
     @Column
     private String failureReason;
 
+    // estimated prompt size before and after PromptTextReducer, null until extraction ran
+    @Column(name = "prompt_tokens_original")
+    private Integer promptTokensOriginal;
+
+    @Column(name = "prompt_tokens_reduced")
+    private Integer promptTokensReduced;
+
+    // TransactionClassifier's probability of a transaction, null when no model was loaded
+    @Column(name = "classifier_score")
+    private Double classifierScore;
+
 }
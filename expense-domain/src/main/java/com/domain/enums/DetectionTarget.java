@@ -0,0 +1,9 @@
+package com.domain.enums;
+
+/**
+ * Which part of a message header a detection rule is matched against.
+ */
+public enum DetectionTarget {
+    CONTENT,    // subject and snippet
+    SENDER      // From header
+}
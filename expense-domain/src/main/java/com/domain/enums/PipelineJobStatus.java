@@ -0,0 +1,7 @@
+package com.domain.enums;
+
+public enum PipelineJobStatus {
+    READY,      // waiting for a worker, from available_at on
+    RUNNING,    // leased by a worker until locked_until
+    DEAD        // gave up after max attempts - kept for inspection
+}
@@ -0,0 +1,19 @@
+package com.domain.enums;
+
+/**
+ * Kinds of durable pipeline work, together with the stage their failures are recorded under.
+ */
+public enum PipelineJobType {
+    EMAIL_SYNC("SYNCING"),
+    EMAIL_PROCESSING("PROCESSING");
+
+    private final String pipelineStage;
+
+    PipelineJobType(String pipelineStage) {
+        this.pipelineStage = pipelineStage;
+    }
+
+    public String pipelineStage() {
+        return pipelineStage;
+    }
+}
@@ -0,0 +1,6 @@
+package com.domain.events;
+
+import java.util.UUID;
+
+public record EmailAccountDisconnected(UUID accountId) {
+}
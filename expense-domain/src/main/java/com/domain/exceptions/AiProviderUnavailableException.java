@@ -0,0 +1,31 @@
+package com.domain.exceptions;
+
+import java.time.Duration;
+
+/**
+ * The AI provider could not answer (rate limited, 5xx, timeout, circuit open, queue full).
+ *
+ * Deliberately not a DomainValidationException: it says nothing about the email, which should be
+ * extracted again once the provider recovers rather than marked failed.
+ */
+public class AiProviderUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public AiProviderUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public AiProviderUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = null;
+    }
+
+    /**
+     * @return how long the provider asked us to stay away, or null when it did not say
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
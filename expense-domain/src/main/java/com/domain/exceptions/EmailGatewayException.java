@@ -4,4 +4,8 @@ public class EmailGatewayException extends DomainValidationException{
     public EmailGatewayException(String message) {
         super(message);
     }
+
+    public EmailGatewayException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -2,9 +2,11 @@ package com.domain.gateways;
 
 
 import com.domain.exceptions.AiGatewayException;
+import com.domain.exceptions.AiProviderUnavailableException;
 import com.domain.model.EmailMessage;
 import com.domain.model.ExtractionResult;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Gateway interface (port) for AI-based transaction/expense extraction.
@@ -21,10 +23,39 @@ public interface AiGateway  {
      * Extract expenses from a single email message.
      *
      * @param prompt prompt for llm for extraction result
-     * @return ExtractionResult containing parsed expenses + confidence + metadata
-     * @throws AiGatewayException if the AI call fails (rate limit, timeout, invalid response, etc.)
+     * @return ExtractionResult containing parsed expenses + confidence + metadata; transaction=false only when
+     * the model read the email and found no transaction
+     * @throws AiProviderUnavailableException if the provider could not answer (rate limit, 5xx, timeout)
      */
     ExtractionResult extractExpenses(String prompt);
 
+    /**
+     * Extract several emails with a single model call.
+     *
+     * @param prompt batch prompt listing every email under an id
+     * @return results keyed by the ids in the prompt; ids the model skipped are absent
+     * @throws AiGatewayException if the response is not a readable batch
+     * @throws AiProviderUnavailableException if the provider could not answer
+     */
+    Map<String, ExtractionResult> extractExpensesBatch(String prompt);
+
+    /**
+     * Non-blocking {@link #extractExpenses}; no thread waits on the model while the call is in flight.
+     *
+     * @return completes with the result, or exceptionally with AiProviderUnavailableException when the call
+     * is rejected or the provider fails
+     */
+    CompletableFuture<ExtractionResult> extractExpensesAsync(String prompt);
+
+    /**
+     * Non-blocking {@link #extractExpensesBatch}.
+     */
+    CompletableFuture<Map<String, ExtractionResult>> extractExpensesBatchAsync(String prompt);
+
+    /**
+     * Model (and version) behind this gateway - results are only reused for the same model.
+     */
+    String modelId();
+
 
 }
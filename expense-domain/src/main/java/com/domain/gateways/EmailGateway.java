@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Gateway interface (port) for interacting with external email providers.
@@ -33,6 +34,38 @@ public interface EmailGateway {
      */
     List<RawEmailMessage> fetchNewMessages(EmailAccount account, Instant since);
 
+    /**
+     * Streaming variant of {@link #fetchNewMessages(EmailAccount, Instant)}.
+     *
+     * Messages are handed to the sink a page at a time as they are fetched, so callers can
+     * persist and process them without holding the whole sync window in memory.
+     * Provider cursors on the account (e.g. Gmail history id) only move after the last page
+     * was accepted - if the sink throws, the fetch stops and the cursor stays put.
+     *
+     * The default fetches everything and emits it as a single page.
+     *
+     * @param pageSink receives each non-empty page, in order, on the calling thread
+     * @throws EmailGatewayException if the fetch fails part way
+     */
+    default void fetchNewMessages(EmailAccount account, Instant since, Consumer<List<RawEmailMessage>> pageSink) {
+        List<RawEmailMessage> messages = fetchNewMessages(account, since);
+        if (!messages.isEmpty()) {
+            pageSink.accept(messages);
+        }
+    }
+
+
+    /**
+     * Fetches the messages received in [from, to) - used by backfill to walk history in slices.
+     * Unlike fetchNewMessages this never touches the account's sync cursors.
+     *
+     * @param pageSink receives each non-empty page, in order, on the calling thread
+     * @throws EmailGatewayException if the fetch fails or the provider has no windowed fetch
+     */
+    default void fetchMessagesBetween(EmailAccount account, Instant from, Instant to, Consumer<List<RawEmailMessage>> pageSink) {
+        throw new EmailGatewayException("Backfill is not supported for " + account.getProvider());
+    }
+
 
     /**
      * Optional: Mark a batch of emails as processed (e.g. mark as read, archive, add label).
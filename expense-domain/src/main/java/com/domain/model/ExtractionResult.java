@@ -3,7 +3,6 @@ package com.domain.model;
 import com.domain.valueObjects.CurrencyCode;
 
 import java.math.BigDecimal;
-import java.time.Instant;
 
 public record ExtractionResult(
         String merchant,
@@ -11,6 +10,13 @@ public record ExtractionResult(
         CurrencyCode currency,
         String category,
         String transactionDate,
-        boolean transaction
+        boolean transaction,
+        // null when the extractor does not score itself (LLM)
+        BigDecimal confidence
 
-) { }
+) {
+
+    public static ExtractionResult none() {
+        return new ExtractionResult(null, null, null, null, null, false, null);
+    }
+}
@@ -0,0 +1,10 @@
+package com.domain.repositories;
+
+import com.domain.entities.DetectionRule;
+
+import java.util.List;
+
+public interface DetectionRuleRepository {
+
+    List<DetectionRule> findByEnabledTrue();
+}
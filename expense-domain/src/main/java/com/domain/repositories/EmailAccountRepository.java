@@ -66,4 +66,19 @@ public interface EmailAccountRepository {
     void releaseSyncLock(UUID id);
 
     List<EmailAccount> findByUserAndStatus(User user, ConnectionStatus connectionStatus);
+
+    /**
+     * Sets the backfill window once - no-op when the account already has one.
+     */
+    int initBackfill(UUID id, Instant cursor, Instant target);
+
+    /**
+     * Moves the backfill checkpoint after a slice has been stored.
+     */
+    void updateBackfillCursor(UUID id, Instant cursor);
+
+    /**
+     * Accounts whose backfill has not reached its target yet.
+     */
+    List<EmailAccount> findBackfillPending(ConnectionStatus status);
 }
@@ -0,0 +1,18 @@
+package com.domain.repositories;
+
+import com.domain.entities.ExtractionCacheEntry;
+
+import java.util.Optional;
+
+public interface ExtractionCacheRepository {
+
+    Optional<ExtractionCacheEntry> findById(String cacheKey);
+
+    ExtractionCacheEntry save(ExtractionCacheEntry entry);
+
+    /**
+     * Drops entries written for any other prompt version or model.
+     * @return number of rows removed
+     */
+    int deleteStale(String promptVersion, String modelId);
+}
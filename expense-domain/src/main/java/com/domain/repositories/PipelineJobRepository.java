@@ -0,0 +1,46 @@
+package com.domain.repositories;
+
+import com.domain.entities.PipelineJob;
+import com.domain.enums.PipelineJobType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Durable queue of pipeline work.
+ *
+ * enqueue joins the caller's transaction, so a job exists exactly when the state change that asked for it
+ * was committed. complete, retry and deadLetter only apply while the caller still holds the lease it got
+ * from dequeue - a job that timed out and was leased again is left to its new worker.
+ */
+public interface PipelineJobRepository {
+
+    /**
+     * Adds a job unless one of the same type is already waiting for the account - due or in backoff -
+     * and wakes the workers once the surrounding transaction commits.
+     *
+     * @return true when a job was added
+     */
+    boolean enqueue(PipelineJobType type, UUID accountId);
+
+    /**
+     * Leases up to limit due jobs - ready ones, and running ones whose lease ran out - until now + visibility.
+     * Each lease counts as an attempt.
+     */
+    List<PipelineJob> dequeue(int limit, Instant now, Duration visibility);
+
+    void complete(PipelineJob job);
+
+    /**
+     * Pushes the lease of a job that is still running out to lockedUntil.
+     *
+     * @return false when the lease was lost - the job timed out and went to another worker, or is gone
+     */
+    boolean extend(PipelineJob job, Instant lockedUntil);
+
+    void retry(PipelineJob job, String error, Instant availableAt);
+
+    void deadLetter(PipelineJob job, String error);
+}
@@ -4,9 +4,12 @@ import com.domain.entities.EmailAccount;
 import com.domain.entities.RawEmailMessage;
 import com.domain.enums.ProcessingStatus;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -25,6 +28,23 @@ public interface RawEmailRepository {
 
     List<RawEmailMessage> saveAllMessages(Iterable<RawEmailMessage> messages);
 
+    /**
+     * Bulk insert that skips messages already stored for the account (insert-ignore).
+     * @return the messages actually inserted
+     */
+    List<RawEmailMessage> insertIgnoringDuplicates(List<RawEmailMessage> messages);
+
+    /**
+     * Which of the given provider message ids are already stored for the account - one query per call.
+     */
+    Set<String> findExistingProviderMessageIds(UUID accountId, Collection<String> providerMessageIds);
+
+    /**
+     * Bulk write of what processing changed on the emails - status, failure reason, retry schedule, prompt
+     * token counts and classifier score - one statement batch per call.
+     */
+    void updateProcessingStates(List<RawEmailMessage> messages);
+
     Optional<RawEmailMessage> findByUid(UUID id);
 
     List<RawEmailMessage> findByEmailAccount(EmailAccount emailAccount);
@@ -34,18 +54,37 @@ public interface RawEmailRepository {
     void deleteByEmailAccount(EmailAccount emailAccount);
 
 
-    int claimByIds(List<UUID> id, Instant now, UUID token);
+    /**
+     * Atomically claims up to limit emails of the account for one worker: Pending ones, and Processing ones
+     * whose worker started before timeout, oldest first. Rows locked by a concurrent claim are skipped.
+     * @return the claimed emails, marked Processing with the token, with account and user loaded
+     */
+    List<RawEmailMessage> claim(UUID accountId, Instant timeout, Instant now, int maxRetry, int limit, UUID token);
 
-    List<RawEmailMessage> findByClaimToken(UUID token);
+    /**
+     * How many emails claim could still hand out for the account.
+     */
+    long countClaimable(UUID accountId, Instant timeout, Instant now, int maxRetry);
 
-    List<UUID> findIdsForClaim(
-            UUID accountId,
-            Instant timeout,
-            Instant now,
-            int maxRetry,
-            int limit
+    /**
+     * When claim will next hand out one of the account's unfinished emails: the earliest retry time of its
+     * Pending ones, or claim timeout of its Processing ones.
+     * @return the earliest such time, now or earlier when one is claimable already, empty when none are left
+     */
+    Optional<Instant> nextClaimableAt(UUID accountId, Duration claimTimeout, Instant now, int maxRetry);
 
-    );
+    /**
+     * Accounts with Pending or Processing emails that still have retries left.
+     */
+    List<UUID> findAccountIdsWithUnfinishedEmails(int maxRetry);
 
     boolean existsByAccountIdAndStatus(EmailAccount account, ProcessingStatus processingStatus);
+
+    /**
+     * Emails with a known extraction outcome - PROCESSED, or FAILED with VALIDATION_FAILED - in id order,
+     * for training the transaction classifier page by page.
+     *
+     * @param afterId last id of the previous page, the zero UUID for the first
+     */
+    List<RawEmailMessage> findLabelledForTraining(UUID afterId, int limit);
 }
@@ -24,6 +24,12 @@ public interface TransactionRepository {
      */
     TransactionEntity save(TransactionEntity expense);
 
+    /**
+     * Bulk insert that skips transactions already stored for the same provider message.
+     * @return the transactions actually inserted
+     */
+    List<TransactionEntity> insertIgnoringDuplicates(List<TransactionEntity> transactions);
+
     /**
      * Find by internal ID.
      */
@@ -0,0 +1,107 @@
+package com.infrastructure.Ai;
+
+import com.domain.gateways.AiGateway;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infrastructure.Ai.groq.GroqAiGateway;
+import com.infrastructure.Ai.groq.GrogConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class AiGatewayConfig {
+
+    @Value("${snapbill.llm.api-key}")
+    private String apiKey;
+
+    @Value("${snapbill.llm.initial-concurrency:8}")
+    private int initialConcurrency;
+
+    @Value("${snapbill.llm.max-in-flight:16}")
+    private int maxInFlight;
+
+    @Value("${snapbill.llm.max-queued:256}")
+    private int maxQueued;
+
+    @Value("${snapbill.llm.latency-threshold-ms:8000}")
+    private long latencyThresholdMillis;
+
+    @Value("${snapbill.llm.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${snapbill.llm.circuit.open-seconds:30}")
+    private long openSeconds;
+
+    /**
+     * Small model for short, easy emails.
+     */
+    @Bean
+    public RoutingAiGateway.Backend fastLlmBackend(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${snapbill.llm.fast.base-url:" + GrogConfig.GROQ_BASE_URL + "}") String baseUrl,
+            @Value("${snapbill.llm.fast.model:llama-3.1-8b-instant}") String model) {
+        return backend("fast", baseUrl, model, objectMapper, meterRegistry);
+    }
+
+    /**
+     * Large model for long emails and batches.
+     */
+    @Bean
+    public RoutingAiGateway.Backend accurateLlmBackend(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${snapbill.llm.accurate.base-url:" + GrogConfig.GROQ_BASE_URL + "}") String baseUrl,
+            @Value("${snapbill.llm.accurate.model:llama-3.3-70b-versatile}") String model) {
+        return backend("accurate", baseUrl, model, objectMapper, meterRegistry);
+    }
+
+    /**
+     * The gateway the pipeline uses: the backends above, cheapest first, with hedging between them.
+     */
+    @Bean
+    @Primary
+    public AiGateway aiGateway(
+            @Qualifier("fastLlmBackend") RoutingAiGateway.Backend fast,
+            @Qualifier("accurateLlmBackend") RoutingAiGateway.Backend accurate,
+            MeterRegistry meterRegistry,
+            @Value("${snapbill.llm.routing.easy-max-tokens:700}") int easyMaxTokens,
+            @Value("${snapbill.llm.hedge.default-after-ms:3000}") long defaultHedgeAfterMillis,
+            @Value("${snapbill.llm.hedge.min-after-ms:300}") long minHedgeAfterMillis,
+            @Value("${snapbill.llm.routing.max-error-rate:0.5}") double maxErrorRate) {
+
+        return new RoutingAiGateway(
+                List.of(fast, accurate),
+                easyMaxTokens,
+                Duration.ofMillis(defaultHedgeAfterMillis),
+                Duration.ofMillis(minHedgeAfterMillis),
+                maxErrorRate,
+                meterRegistry);
+    }
+
+    /**
+     * One OpenAI-compatible backend behind its own adaptive in-flight limit and circuit breaker.
+     * The limit starts at the initial concurrency and moves between 1 and max-in-flight.
+     */
+    private RoutingAiGateway.Backend backend(String name, String baseUrl, String model,
+                                             ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        GroqAiGateway gateway = new GroqAiGateway(GrogConfig.groqWebClient(baseUrl, apiKey), objectMapper, model);
+        InFlightLimiter limiter = new InFlightLimiter(
+                name,
+                initialConcurrency,
+                1,
+                Math.max(1, maxInFlight),
+                maxQueued,
+                Duration.ofMillis(latencyThresholdMillis),
+                Duration.ofSeconds(1),
+                System::nanoTime);
+        CircuitBreaker breaker = new CircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds));
+        return new RoutingAiGateway.Backend(name, new ResilientAiGateway(name, gateway, limiter, breaker, meterRegistry));
+    }
+}
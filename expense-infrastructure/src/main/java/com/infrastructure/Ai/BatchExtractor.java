@@ -0,0 +1,172 @@
+package com.infrastructure.Ai;
+
+import com.domain.exceptions.AiProviderUnavailableException;
+import com.domain.gateways.AiGateway;
+import com.domain.model.ExtractionResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Packs prompt texts into multi-email LLM calls.
+ *
+ * Batches are filled in order until the next text would push the prompt past the token budget or the
+ * current batch limit is reached. The limit adapts: a malformed or incomplete response halves it, a clean
+ * one raises it by one up to the configured maximum. A failed batch is split in two and each half retried,
+ * down to single emails, which go through the one-email prompt; emails the model skipped are retried the
+ * same way. A batch the provider could not answer at all is not split. Calls are composed on the gateway's async API, so no thread waits while a batch is in flight.
+ */
+@Component
+@Slf4j
+public class BatchExtractor {
+
+    /**
+     * @param key caller's handle for the result
+     * @param tokens estimated tokens of text
+     */
+    public record Item<K>(K key, String text, int tokens) {}
+
+    private final AiGateway aiGateway;
+    private final ExpensePromptBuilder promptBuilder;
+    private final int tokenBudget;
+    private final int maxEmails;
+    private final AtomicInteger batchLimit;
+
+    public BatchExtractor(AiGateway aiGateway,
+                          ExpensePromptBuilder promptBuilder,
+                          @Value("${snapbill.llm.batch.token-budget:6000}") int tokenBudget,
+                          @Value("${snapbill.llm.batch.max-emails:10}") int maxEmails) {
+        this.aiGateway = aiGateway;
+        this.promptBuilder = promptBuilder;
+        this.tokenBudget = tokenBudget;
+        this.maxEmails = Math.max(1, maxEmails);
+        this.batchLimit = new AtomicInteger(this.maxEmails);
+    }
+
+    /**
+     * @return results by item key; an item is absent when its single-email call threw or the provider was
+     * unavailable
+     */
+    public <K> Map<K, ExtractionResult> extract(List<Item<K>> items) {
+        return extractAsync(items).join();
+    }
+
+    /**
+     * Starts every batch at once; the gateway's in-flight limit decides how many actually run.
+     */
+    public <K> CompletableFuture<Map<K, ExtractionResult>> extractAsync(List<Item<K>> items) {
+        Map<K, ExtractionResult> results = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] calls = pack(items).stream()
+                .map(batch -> run(batch, results))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(calls).thenApply(done -> results);
+    }
+
+    public int batchLimit() {
+        return batchLimit.get();
+    }
+
+    <K> List<List<Item<K>>> pack(List<Item<K>> items) {
+        int limit = batchLimit.get();
+        List<List<Item<K>>> batches = new ArrayList<>();
+        List<Item<K>> current = new ArrayList<>();
+        int tokens = ExpensePromptBuilder.BATCH_OVERHEAD_TOKENS;
+        for (Item<K> item : items) {
+            int cost = item.tokens() + ExpensePromptBuilder.BATCH_ITEM_OVERHEAD_TOKENS;
+            if (!current.isEmpty() && (current.size() >= limit || tokens + cost > tokenBudget)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                tokens = ExpensePromptBuilder.BATCH_OVERHEAD_TOKENS;
+            }
+            current.add(item);
+            tokens += cost;
+        }
+        if (!current.isEmpty()) batches.add(current);
+        return batches;
+    }
+
+    private <K> CompletableFuture<Void> run(List<Item<K>> batch, Map<K, ExtractionResult> results) {
+        if (batch.size() == 1) {
+            Item<K> item = batch.getFirst();
+            return aiGateway.extractExpensesAsync(promptBuilder.build(item.text()))
+                    .handle((result, error) -> {
+                        if (error != null) log.warn("Single extraction failed for {}: {}", item.key(), error.getMessage());
+                        else results.put(item.key(), result);
+                        return null;
+                    });
+        }
+
+        // ids are positions in this batch - short, and cheap for the model to echo
+        Map<String, String> texts = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            texts.put(String.valueOf(i + 1), batch.get(i).text());
+        }
+
+        CompletableFuture<Map<String, ExtractionResult>> call;
+        try {
+            call = aiGateway.extractExpensesBatchAsync(promptBuilder.buildBatch(texts));
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+
+        return call.handle((byId, error) -> {
+            if (unwrap(error) instanceof AiProviderUnavailableException) {
+                // splitting would only multiply calls to a provider that is down; the emails are rescheduled
+                log.warn("Batch of {} not extracted, provider unavailable: {}", batch.size(), unwrap(error).getMessage());
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (error != null) { // AiGatewayException for a bad response, anything else for a bad call
+                log.warn("Batch of {} failed, splitting: {}", batch.size(), error.getMessage());
+                shrink();
+                return split(batch, results);
+            }
+
+            List<Item<K>> missing = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                ExtractionResult result = byId.get(String.valueOf(i + 1));
+                if (result == null) missing.add(batch.get(i));
+                else results.put(batch.get(i).key(), result);
+            }
+
+            if (missing.isEmpty()) {
+                grow();
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            shrink();
+            if (missing.size() == batch.size()) {
+                log.warn("Batch of {} answered none of its emails, splitting", batch.size());
+                return split(batch, results);
+            }
+            log.debug("Batch of {} skipped {} emails, retrying them", batch.size(), missing.size());
+            return run(missing, results);
+        }).thenCompose(next -> next);
+    }
+
+    private <K> CompletableFuture<Void> split(List<Item<K>> batch, Map<K, ExtractionResult> results) {
+        int half = batch.size() / 2;
+        return CompletableFuture.allOf(
+                run(batch.subList(0, half), results),
+                run(batch.subList(half, batch.size()), results));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private void grow() {
+        batchLimit.updateAndGet(limit -> Math.min(maxEmails, limit + 1));
+    }
+
+    private void shrink() {
+        batchLimit.updateAndGet(limit -> Math.max(1, limit / 2));
+    }
+}
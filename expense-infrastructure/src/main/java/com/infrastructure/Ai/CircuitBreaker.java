@@ -0,0 +1,87 @@
+package com.infrastructure.Ai;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a provider that keeps failing.
+ *
+ * CLOSED lets everything through and counts consecutive provider failures; at the threshold the breaker
+ * OPENs for the open duration, or for the provider's Retry-After when that is longer. Once it has elapsed
+ * the breaker is HALF_OPEN and lets a single probe through: success closes it, failure opens it again.
+ * A probe that never reports back is replaced after another open duration.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private long probeStartedAt;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return whether a call may go out now; a caller that gets true must report its outcome
+     */
+    public synchronized boolean allow() {
+        long now = nanoClock.getAsLong();
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (now - openUntil < 0) yield false;
+                state = State.HALF_OPEN;
+                probeStartedAt = now;
+                yield true;
+            }
+            case HALF_OPEN -> {
+                if (now - probeStartedAt < openNanos) yield false;
+                probeStartedAt = now;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * @param retryAfter the provider's Retry-After, or null
+     */
+    public synchronized void onFailure(Duration retryAfter) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            long wait = retryAfter != null ? Math.max(openNanos, retryAfter.toNanos()) : openNanos;
+            openUntil = nanoClock.getAsLong() + wait;
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * @return time left until the breaker lets a probe through, zero unless open
+     */
+    public synchronized Duration retryAfter() {
+        if (state != State.OPEN) return Duration.ZERO;
+        return Duration.ofNanos(Math.max(0, openUntil - nanoClock.getAsLong()));
+    }
+}
@@ -1,12 +1,18 @@
 package com.infrastructure.Ai;
 
+import com.infrastructure.email.text.PromptTextReducer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+
 @Component
 public class ExpensePromptBuilder {
 
-    public String build(String cleanedText) {
-        return """
+    private static final String TEMPLATE = """
         You are a financial transaction extraction system.
     
         Extract structured transaction data from the email text below.
@@ -36,7 +42,76 @@ public class ExpensePromptBuilder {
         ---
         %s
         ---
-        """.formatted(cleanedText);
+        """;
 
+    private static final String BATCH_TEMPLATE = """
+        You are a financial transaction extraction system.
+    
+        Extract structured transaction data from each email below. Every email starts with a line
+        "=== EMAIL <id> ===" and is extracted on its own - never mix values between emails.
+    
+        Return ONLY valid JSON. Do not include explanations.
+    
+        Schema:
+        {
+          "results": [
+            {
+              "id": string (the email id, copied exactly),
+              "transaction": boolean,
+              "merchant": string,
+              "amount": number,
+              "currency": string,
+              "category": string,
+              "transactionDate": string (ISO-8601)
+            }
+          ]
+        }
+    
+        Rules:
+        - Exactly one result per email
+        - If no financial transaction exists → transaction = false
+        - Do NOT guess missing values
+        - Amount must be a positive number (no currency symbols)
+        - Currency must be a 3-letter code (e.g., NGN, USD, EUR)
+        - Merchant should be the business name (e.g., Netflix, Amazon)
+        - Category should be a simple word (e.g., food, transport, shopping, subscription)
+        - transactionDate must be ISO-8601 format (e.g., 2026-03-25T10:15:30Z)
+    
+        Emails:
+        %s
+        """;
+
+    // changes whenever a template does, so cached extractions from an older prompt are not reused
+    private static final String VERSION = HexFormat.of().formatHex(sha256(TEMPLATE + BATCH_TEMPLATE), 0, 8);
+
+    // instructions plus per-email delimiters, for packing batches against a token budget
+    public static final int BATCH_OVERHEAD_TOKENS = PromptTextReducer.estimateTokens(BATCH_TEMPLATE);
+    public static final int BATCH_ITEM_OVERHEAD_TOKENS = 12;
+
+    public String build(String cleanedText) {
+        return TEMPLATE.formatted(cleanedText);
+
+    }
+
+    /**
+     * @param textsById cleaned email text under the id the model has to echo back
+     */
+    public String buildBatch(Map<String, String> textsById) {
+        StringBuilder emails = new StringBuilder();
+        textsById.forEach((id, text) -> emails.append("=== EMAIL ").append(id).append(" ===\n")
+                .append(text).append("\n\n"));
+        return BATCH_TEMPLATE.formatted(emails.toString().strip());
+    }
+
+    public String version() {
+        return VERSION;
+    }
+
+    private static byte[] sha256(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
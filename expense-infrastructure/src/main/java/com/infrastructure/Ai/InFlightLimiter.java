@@ -0,0 +1,135 @@
+package com.infrastructure.Ai;
+
+import com.domain.exceptions.AiProviderUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of asynchronous calls in flight without parking a thread per waiting call.
+ *
+ * Calls over the limit wait in a bounded FIFO queue and are started by whichever call completes next.
+ * Once the queue is full, new calls fail fast with AiProviderUnavailableException - callers treat that like
+ * any other failed call, which is the backpressure.
+ *
+ * The limit adapts like AimdConcurrencyLimit: a call that completes in time grows it by 1/limit, a call the
+ * provider failed (AiProviderUnavailableException) or that took longer than the latency threshold cuts it by
+ * half, at most once per cooldown.
+ */
+public class InFlightLimiter {
+
+    private static final double BACKOFF_RATIO = 0.5;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued;
+    private final long latencyThresholdNanos;
+    private final long cooldownNanos;
+    private final LongSupplier nanoClock;
+
+    // guarded by this
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    private int inFlight;
+    private double limit;
+    private long lastDecrease;
+
+    /**
+     * Fixed limit.
+     */
+    public InFlightLimiter(String name, int maxInFlight, int maxQueued) {
+        this(name, maxInFlight, maxInFlight, maxInFlight, maxQueued, Duration.ofDays(1), Duration.ofSeconds(1), System::nanoTime);
+    }
+
+    public InFlightLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueued,
+                           Duration latencyThreshold, Duration cooldown, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= min <= max");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = Math.max(0, maxQueued);
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.cooldownNanos = cooldown.toNanos();
+        this.nanoClock = nanoClock;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.lastDecrease = nanoClock.getAsLong() - cooldownNanos;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            long started = nanoClock.getAsLong();
+            CompletableFuture<T> running;
+            try {
+                running = call.get();
+            } catch (RuntimeException e) {
+                running = CompletableFuture.failedFuture(e);
+            }
+            running.whenComplete((value, error) -> {
+                release(overloaded(error, nanoClock.getAsLong() - started));
+                if (error != null) result.completeExceptionally(error);
+                else result.complete(value);
+            });
+        };
+
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                if (queue.size() >= maxQueued) {
+                    return CompletableFuture.failedFuture(new AiProviderUnavailableException(
+                            name + " queue full (" + inFlight + " in flight, " + maxQueued + " queued)", (Duration) null));
+                }
+                queue.add(start);
+                return result;
+            }
+            inFlight++;
+        }
+        start.run();
+        return result;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    private boolean overloaded(Throwable error, long latencyNanos) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof AiProviderUnavailableException || latencyNanos > latencyThresholdNanos;
+    }
+
+    private void release(boolean overloaded) {
+        Runnable next;
+        synchronized (this) {
+            if (overloaded) {
+                long now = nanoClock.getAsLong();
+                if (now - lastDecrease >= cooldownNanos) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                    lastDecrease = now;
+                }
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+
+            // the permit passes straight to the next waiter, unless the limit just shrank below what is running
+            next = inFlight <= (int) limit ? queue.poll() : null;
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        next.run();
+    }
+}
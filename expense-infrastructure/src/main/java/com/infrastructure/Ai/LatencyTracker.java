@@ -0,0 +1,57 @@
+package com.infrastructure.Ai;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Recent latencies and error rate of one backend for one kind of call.
+ *
+ * Latencies are kept in a ring of the last window successful calls; percentiles are read off a sorted copy,
+ * which for a few hundred samples is cheaper than keeping a histogram in step. The error rate is an
+ * exponentially weighted average over roughly the same window.
+ */
+public class LatencyTracker {
+
+    private final int minSamples;
+
+    // guarded by this
+    private final long[] samples;
+    private int next;
+    private int count;
+    private double errorRate;
+
+    public LatencyTracker(int window, int minSamples) {
+        this.samples = new long[Math.max(1, window)];
+        this.minSamples = Math.max(1, minSamples);
+    }
+
+    public synchronized void recordSuccess(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        errorRate -= errorRate / samples.length;
+    }
+
+    public synchronized void recordError() {
+        errorRate += (1 - errorRate) / samples.length;
+    }
+
+    /**
+     * @return the latency below which the given share of recent calls finished, empty until enough calls
+     */
+    public Optional<Duration> percentile(double quantile) {
+        long[] copy;
+        synchronized (this) {
+            if (count < minSamples) return Optional.empty();
+            copy = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(quantile * copy.length) - 1;
+        return Optional.of(Duration.ofNanos(copy[Math.clamp(index, 0, copy.length - 1)]));
+    }
+
+    public synchronized double errorRate() {
+        return errorRate;
+    }
+}
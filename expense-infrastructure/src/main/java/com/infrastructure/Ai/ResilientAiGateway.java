@@ -0,0 +1,135 @@
+package com.infrastructure.Ai;
+
+import com.domain.exceptions.AiProviderUnavailableException;
+import com.domain.gateways.AiGateway;
+import com.domain.model.ExtractionResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Wraps one provider's gateway with an adaptive in-flight limit and a circuit breaker.
+ *
+ * Calls rejected by either fail with AiProviderUnavailableException, like calls the provider itself failed,
+ * so callers reschedule the email instead of marking it failed. Only provider failures count against the
+ * breaker - an unreadable answer means the provider is up.
+ */
+@Slf4j
+public class ResilientAiGateway implements AiGateway {
+
+    private final String provider;
+    private final AiGateway delegate;
+    private final InFlightLimiter limiter;
+    private final CircuitBreaker breaker;
+
+    private final Counter circuitRejections;
+    private final Counter queueRejections;
+
+    public ResilientAiGateway(String provider, AiGateway delegate, InFlightLimiter limiter,
+                              CircuitBreaker breaker, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.breaker = breaker;
+
+        Gauge.builder("snapbill.llm.concurrency.limit", limiter, InFlightLimiter::limit)
+                .tag("provider", provider)
+                .register(meterRegistry);
+        Gauge.builder("snapbill.llm.in.flight", limiter, InFlightLimiter::inFlight)
+                .tag("provider", provider)
+                .register(meterRegistry);
+        Gauge.builder("snapbill.llm.queued", limiter, InFlightLimiter::queued)
+                .tag("provider", provider)
+                .register(meterRegistry);
+        Gauge.builder("snapbill.llm.circuit.open", breaker, b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .tag("provider", provider)
+                .register(meterRegistry);
+        this.circuitRejections = Counter.builder("snapbill.llm.rejected")
+                .tag("provider", provider).tag("reason", "circuit_open")
+                .register(meterRegistry);
+        this.queueRejections = Counter.builder("snapbill.llm.rejected")
+                .tag("provider", provider).tag("reason", "queue_full")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ExtractionResult extractExpenses(String prompt) {
+        return join(extractExpensesAsync(prompt));
+    }
+
+    @Override
+    public Map<String, ExtractionResult> extractExpensesBatch(String prompt) {
+        return join(extractExpensesBatchAsync(prompt));
+    }
+
+    @Override
+    public CompletableFuture<ExtractionResult> extractExpensesAsync(String prompt) {
+        return call(gateway -> gateway.extractExpensesAsync(prompt));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ExtractionResult>> extractExpensesBatchAsync(String prompt) {
+        return call(gateway -> gateway.extractExpensesBatchAsync(prompt));
+    }
+
+    @Override
+    public String modelId() {
+        return delegate.modelId();
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return breaker.state();
+    }
+
+    private <T> CompletableFuture<T> call(Function<AiGateway, CompletableFuture<T>> call) {
+        if (!breaker.allow()) {
+            circuitRejections.increment();
+            return CompletableFuture.failedFuture(new AiProviderUnavailableException(
+                    provider + " circuit open", breaker.retryAfter()));
+        }
+
+        // the breaker hears only from calls that reached the provider
+        AtomicBoolean started = new AtomicBoolean();
+        CompletableFuture<T> result = limiter.submit(() -> {
+            started.set(true);
+            return call.apply(delegate);
+        }).whenComplete((value, error) -> {
+            if (!started.get()) return;
+            Throwable cause = unwrap(error);
+            if (cause instanceof AiProviderUnavailableException unavailable) {
+                breaker.onFailure(unavailable.getRetryAfter());
+                if (breaker.state() == CircuitBreaker.State.OPEN) {
+                    log.warn("{} circuit open for {}: {}", provider, breaker.retryAfter(), cause.getMessage());
+                }
+            } else {
+                breaker.onSuccess();
+            }
+        });
+
+        if (result.isDone() && !started.get()) {
+            // rejected by the limiter before reaching the provider; a half-open probe is given up
+            queueRejections.increment();
+        }
+        return result;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -0,0 +1,229 @@
+package com.infrastructure.Ai;
+
+import com.domain.gateways.AiGateway;
+import com.domain.model.ExtractionResult;
+import com.infrastructure.email.text.PromptTextReducer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads extraction over several model backends, ordered cheapest first.
+ *
+ * Short prompts go to the cheapest backend first, longer ones (and batches) to the most accurate. If the
+ * first backend has not answered by its recent p95 latency, the same prompt is sent to the next one and
+ * whichever answers first wins; the late answer is dropped. A failed call falls over to the next backend
+ * at once. Backends with a high recent error rate move to the back of the order.
+ */
+@Slf4j
+public class RoutingAiGateway implements AiGateway {
+
+    private static final double HEDGE_QUANTILE = 0.95;
+    private static final int LATENCY_WINDOW = 200;
+    private static final int MIN_SAMPLES = 20;
+
+    public record Backend(String name, AiGateway gateway) {}
+
+    private enum Kind { SINGLE, BATCH }
+
+    private record Route(Backend backend, LatencyTracker tracker, Timer latency, Counter errors) {
+
+        void record(long latencyNanos, Throwable error) {
+            if (error != null) {
+                tracker.recordError();
+                errors.increment();
+            } else {
+                tracker.recordSuccess(latencyNanos);
+                latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private final List<Backend> backends;
+    private final Map<Kind, List<Route>> routes;
+    private final int easyMaxTokens;
+    private final Duration defaultHedgeAfter;
+    private final Duration minHedgeAfter;
+    private final double maxErrorRate;
+    private final Counter hedges;
+
+    /**
+     * @param backends cheapest first
+     * @param easyMaxTokens prompts up to this many estimated tokens start on the cheapest backend
+     * @param defaultHedgeAfter hedge delay until a backend has enough latency samples
+     * @param minHedgeAfter floor for the hedge delay, so a fast p95 does not double every call
+     * @param maxErrorRate backends failing more often than this are tried last
+     */
+    public RoutingAiGateway(List<Backend> backends, int easyMaxTokens, Duration defaultHedgeAfter,
+                            Duration minHedgeAfter, double maxErrorRate, MeterRegistry meterRegistry) {
+        if (backends.isEmpty()) throw new IllegalArgumentException("at least one backend is required");
+        this.backends = List.copyOf(backends);
+        this.easyMaxTokens = easyMaxTokens;
+        this.defaultHedgeAfter = defaultHedgeAfter;
+        this.minHedgeAfter = minHedgeAfter;
+        this.maxErrorRate = maxErrorRate;
+        this.hedges = Counter.builder("snapbill.llm.hedged").register(meterRegistry);
+
+        this.routes = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            String kindTag = kind.name().toLowerCase();
+            routes.put(kind, this.backends.stream().map(backend -> {
+                LatencyTracker tracker = new LatencyTracker(LATENCY_WINDOW, MIN_SAMPLES);
+                Gauge.builder("snapbill.llm.error.rate", tracker, LatencyTracker::errorRate)
+                        .tag("backend", backend.name()).tag("kind", kindTag)
+                        .register(meterRegistry);
+                return new Route(backend, tracker,
+                        Timer.builder("snapbill.llm.latency")
+                                .tag("backend", backend.name()).tag("kind", kindTag)
+                                .publishPercentileHistogram()
+                                .register(meterRegistry),
+                        Counter.builder("snapbill.llm.errors")
+                                .tag("backend", backend.name()).tag("kind", kindTag)
+                                .register(meterRegistry));
+            }).toList());
+        }
+    }
+
+    @Override
+    public ExtractionResult extractExpenses(String prompt) {
+        return join(extractExpensesAsync(prompt));
+    }
+
+    @Override
+    public Map<String, ExtractionResult> extractExpensesBatch(String prompt) {
+        return join(extractExpensesBatchAsync(prompt));
+    }
+
+    @Override
+    public CompletableFuture<ExtractionResult> extractExpensesAsync(String prompt) {
+        return new Hedged<>(order(prompt, Kind.SINGLE), gateway -> gateway.extractExpensesAsync(prompt)).start();
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ExtractionResult>> extractExpensesBatchAsync(String prompt) {
+        return new Hedged<>(order(prompt, Kind.BATCH), gateway -> gateway.extractExpensesBatchAsync(prompt)).start();
+    }
+
+    /**
+     * Any backend may answer, so cached results are tied to the whole set.
+     */
+    @Override
+    public String modelId() {
+        return backends.stream().map(backend -> backend.gateway().modelId()).collect(Collectors.joining("+"));
+    }
+
+    private List<Route> order(String prompt, Kind kind) {
+        boolean easy = kind == Kind.SINGLE && PromptTextReducer.estimateTokens(prompt) <= easyMaxTokens;
+        List<Route> order = new ArrayList<>(easy ? routes.get(kind) : routes.get(kind).reversed());
+        // stable, so the cost order holds among healthy backends
+        order.sort(Comparator.comparing(route -> route.tracker().errorRate() > maxErrorRate));
+        return order;
+    }
+
+    private Duration hedgeAfter(Route route) {
+        Duration p95 = route.tracker().percentile(HEDGE_QUANTILE).orElse(defaultHedgeAfter);
+        return p95.compareTo(minHedgeAfter) < 0 ? minHedgeAfter : p95;
+    }
+
+    /**
+     * One prompt tried on the backends in order: the next starts when the current ones are late or have
+     * all failed.
+     */
+    private final class Hedged<T> {
+
+        private final List<Route> order;
+        private final Function<AiGateway, CompletableFuture<T>> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        // guarded by this
+        private int started;
+        private int failed;
+
+        Hedged(List<Route> order, Function<AiGateway, CompletableFuture<T>> call) {
+            this.order = order;
+            this.call = call;
+        }
+
+        CompletableFuture<T> start() {
+            Route first = order.getFirst();
+            launch();
+            if (order.size() > 1) {
+                CompletableFuture.delayedExecutor(hedgeAfter(first).toNanos(), TimeUnit.NANOSECONDS)
+                        .execute(this::hedge);
+            }
+            return result;
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (result.isDone() || started != 1) return;
+            }
+            hedges.increment();
+            log.debug("{} is late, hedging to {}", order.getFirst().backend().name(), order.get(1).backend().name());
+            launch();
+        }
+
+        private void launch() {
+            Route route;
+            synchronized (this) {
+                if (started >= order.size()) return;
+                route = order.get(started++);
+            }
+
+            long begin = System.nanoTime();
+            CompletableFuture<T> attempt;
+            try {
+                attempt = call.apply(route.backend().gateway());
+            } catch (RuntimeException e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+            attempt.whenComplete((value, error) -> {
+                route.record(System.nanoTime() - begin, error);
+                if (error == null) result.complete(value);
+                else onFailure(route, unwrap(error));
+            });
+        }
+
+        private void onFailure(Route route, Throwable error) {
+            boolean failOver;
+            synchronized (this) {
+                failed++;
+                if (result.isDone() || failed < started) return; // another attempt is still running
+                failOver = started < order.size();
+            }
+            if (failOver) {
+                log.debug("{} failed, falling over: {}", route.backend().name(), error.getMessage());
+                launch();
+            } else {
+                result.completeExceptionally(error);
+            }
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -1,9 +1,6 @@
 package com.infrastructure.Ai.groq;
 
 import io.netty.channel.ChannelOption;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
@@ -12,22 +9,23 @@ import reactor.netty.http.client.HttpClient;
 
 import java.time.Duration;
 
-@Configuration
-public class GrogConfig {
+/**
+ * Clients for OpenAI-compatible chat completion endpoints - Groq, or any other backend speaking the same API.
+ * One client per backend; the backends themselves are wired in AiGatewayConfig.
+ */
+public final class GrogConfig {
 
-    @Value("${snapbill.llm.api-key}")
-    private String apiKey;
+    public static final String GROQ_BASE_URL = "https://api.groq.com/openai/v1";
 
+    private GrogConfig() { }
 
-
-    @Bean
-    public WebClient groqWebClient() {
+    public static WebClient groqWebClient(String baseUrl, String apiKey) {
         HttpClient httpClient = HttpClient.create()
                 .responseTimeout(Duration.ofSeconds(10))
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,5000);
 
         return WebClient.builder()
-                .baseUrl("https://api.groq.com/openai/v1")
+                .baseUrl(baseUrl)
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
@@ -1,24 +1,43 @@
 package com.infrastructure.Ai.groq;
 
+import com.domain.exceptions.AiGatewayException;
+import com.domain.exceptions.AiProviderUnavailableException;
 import com.domain.gateways.AiGateway;
 import com.domain.model.ExtractionResult;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import com.infrastructure.email.ratelimit.Backoff;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
-import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-@Component
-@RequiredArgsConstructor
+/**
+ * Chat completions against Groq or any OpenAI-compatible endpoint, for one model. Non-blocking end to end -
+ * the sync methods only join the async ones.
+ *
+ * 429, 5xx and transport failures surface as AiProviderUnavailableException, with Groq's Retry-After when
+ * it sent one; other error statuses as AiGatewayException. Concurrency limiting and the circuit breaker are
+ * layered on top by ResilientAiGateway.
+ */
 @Slf4j
 public class GroqAiGateway implements AiGateway {
 
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final String model;
+
+    public GroqAiGateway(WebClient webClient, ObjectMapper objectMapper, String model) {
+        this.webClient = webClient;
+        this.objectMapper = objectMapper;
+        this.model = model;
+    }
 
     /**
      * @param prompt prompt for llm for extraction result
@@ -26,39 +45,78 @@ public class GroqAiGateway implements AiGateway {
      */
     @Override
     public ExtractionResult extractExpenses(String prompt) {
+        try {
+            return extractExpensesAsync(prompt).join();
+        } catch (CompletionException e) {
+            // a failed call is not an email without a transaction - let the caller retry it
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new AiGatewayException("Groq call failed: " + e.getCause());
+        }
+    }
+
+    @Override
+    public Map<String, ExtractionResult> extractExpensesBatch(String prompt) {
+        try {
+            return extractExpensesBatchAsync(prompt).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new AiGatewayException("Groq batch call failed: " + e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<ExtractionResult> extractExpensesAsync(String prompt) {
+        return complete(prompt).thenApply(this::parse);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ExtractionResult>> extractExpensesBatchAsync(String prompt) {
+        return complete(prompt).thenApply(this::parseBatch);
+    }
+
+    @Override
+    public String modelId() {
+        return model;
+    }
+
+    private CompletableFuture<String> complete(String prompt) {
         GroqRequest request = new GroqRequest(
-                "llama-3.3-70b-versatile",
+                model,
                 List.of(new GroqMessage("user", prompt)),
                 0.0,
                 Map.of("type", "json_object")
 
         );
 
-        try {
-            GroqResponse response = webClient.post()
-                    .uri("/chat/completions")
-                    .bodyValue(request)
-                    .retrieve()
-                    .onStatus(
-                            HttpStatusCode::isError,
-                            clientResponse -> clientResponse.bodyToMono(String.class)
-                                    .map(error -> new RuntimeException("Groq API error " + error))
-                    ).bodyToMono(GroqResponse.class)
-                    .block();
-
-            if(response == null || response.choices().isEmpty()) {
-                throw new RuntimeException("Groq response is empty");
-            }
-            String content = response.choices().get(0).message().content();
-            return parse(content);
-        } catch (Exception e) {
-            log.error("LLM extraction failed ", e);
-            return new ExtractionResult(null, null, null, null, null, false);
-
-        }
+        return webClient.post()
+                .uri("/chat/completions")
+                .bodyValue(request)
+                .retrieve()
+                .onStatus(
+                        status -> status.value() == 429 || status.is5xxServerError(),
+                        clientResponse -> clientResponse.bodyToMono(String.class)
+                                .defaultIfEmpty("")
+                                .map(error -> new AiProviderUnavailableException(
+                                        model + " unavailable " + clientResponse.statusCode().value() + " " + error,
+                                        Backoff.parseRetryAfter(clientResponse.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER))))
+                )
+                .onStatus(
+                        HttpStatusCode::isError,
+                        clientResponse -> clientResponse.bodyToMono(String.class)
+                                .map(error -> new AiGatewayException("Groq API error " + error))
+                ).bodyToMono(GroqResponse.class)
+                // timeouts and connection failures
+                .onErrorMap(WebClientRequestException.class,
+                        e -> new AiProviderUnavailableException(model + " request failed: " + e.getMessage(), e))
+                .toFuture()
+                .thenApply(response -> {
+                    if (response == null || response.choices() == null || response.choices().isEmpty()) {
+                        throw new AiGatewayException("Groq response is empty");
+                    }
+                    return response.choices().get(0).message().content();
+                });
     }
 
-
     private ExtractionResult parse(String content) {
 
         try {
@@ -66,7 +124,27 @@ public class GroqAiGateway implements AiGateway {
         } catch (Exception e) {
             log.warn("Failed to parse LLM JSON: {}",  e.getMessage());
 
-            return new ExtractionResult(null, null, null, null, null, false);
+            return ExtractionResult.none();
+        }
+    }
+
+    private Map<String, ExtractionResult> parseBatch(String content) {
+        GroqBatchResponse batch;
+        try {
+            batch = objectMapper.readValue(content, GroqBatchResponse.class);
+        } catch (Exception e) {
+            throw new AiGatewayException("Malformed batch response: " + e.getMessage());
+        }
+        if (batch.results() == null) {
+            throw new AiGatewayException("Batch response has no results");
+        }
+
+        Map<String, ExtractionResult> results = new HashMap<>();
+        for (GroqBatchResponse.Item item : batch.results()) {
+            if (item != null && item.id() != null) {
+                results.putIfAbsent(item.id().strip(), item.toResult());
+            }
         }
+        return results;
     }
 }
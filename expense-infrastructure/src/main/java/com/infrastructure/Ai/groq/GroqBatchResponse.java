@@ -0,0 +1,35 @@
+package com.infrastructure.Ai.groq;
+
+import com.domain.model.ExtractionResult;
+import com.domain.valueObjects.CurrencyCode;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * JSON content of a batch completion - {"results": [...]}, since json_object mode needs an object at the top.
+ */
+public record GroqBatchResponse(
+        List<Item> results
+) {
+    public record Item(
+            String id,
+            String merchant,
+            BigDecimal amount,
+            // read as text, so one unknown code spoils only its own item
+            String currency,
+            String category,
+            String transactionDate,
+            boolean transaction
+    ) {
+        public ExtractionResult toResult() {
+            CurrencyCode currencyCode;
+            try {
+                currencyCode = currency == null ? null : CurrencyCode.fromCode(currency.strip());
+            } catch (IllegalArgumentException e) {
+                return ExtractionResult.none();
+            }
+            return new ExtractionResult(merchant, amount, currencyCode, category, transactionDate, transaction, null);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.infrastructure.Ai.template;
+
+import com.domain.model.ExtractionResult;
+import com.domain.valueObjects.CurrencyCode;
+import lombok.Builder;
+import lombok.Singular;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalQuery;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Template driven by one regex per field, each anchored on the label or phrase the sender always uses.
+ *
+ * Named groups: amount (required) and currency in the amount pattern, merchant, date and time. Amount and
+ * merchant must be found, everything else has a fallback that lowers the confidence - the default currency,
+ * the received date. A match of the credit pattern marks the result as a credit for TransactionTypeResolver.
+ */
+@Builder
+public record FieldAnchoredTemplate(
+        String name,
+        @Singular List<String> senderDomains,
+        Pattern amount,
+        Pattern merchant,
+        String fixedMerchant,
+        Pattern date,
+        Pattern time,
+        Pattern credit,
+        String category,
+        CurrencyCode defaultCurrency,
+        ZoneId zone
+) implements SenderTemplate {
+
+    static final BigDecimal FULL_CONFIDENCE = new BigDecimal("0.99");
+    static final BigDecimal DEFAULTED_CURRENCY_PENALTY = new BigDecimal("0.05");
+    static final BigDecimal RECEIVED_DATE_PENALTY = new BigDecimal("0.10");
+
+    // day first - the senders we template are Nigerian and British
+    private static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+            formatter("d-MMM-uuuu"),
+            formatter("d MMM uuuu"),
+            formatter("dd/MM/uuuu"),
+            formatter("uuuu-MM-dd"),
+            formatter("MMMM d, uuuu"),
+            formatter("MMM d, uuuu"));
+    private static final List<DateTimeFormatter> TIME_FORMATS = List.of(
+            formatter("h:mm:ss a"),
+            formatter("h:mm a"),
+            formatter("H:mm:ss"),
+            formatter("H:mm"));
+
+    @Override
+    public Optional<ExtractionResult> extract(String text, Instant receivedDate) {
+        if (text == null) return Optional.empty();
+
+        Matcher amountMatch = amount.matcher(text);
+        if (!amountMatch.find()) return Optional.empty();
+        BigDecimal value;
+        try {
+            value = new BigDecimal(amountMatch.group("amount").replace(",", ""));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+
+        String merchantName = fixedMerchant;
+        if (merchantName == null) {
+            merchantName = group(merchant, text, "merchant");
+            if (merchantName == null || merchantName.isBlank()) return Optional.empty();
+        }
+
+        BigDecimal confidence = FULL_CONFIDENCE;
+
+        CurrencyCode currency = currency(groupOrNull(amountMatch, "currency"));
+        if (currency == null) {
+            if (defaultCurrency == null) return Optional.empty();
+            currency = defaultCurrency;
+            confidence = confidence.subtract(DEFAULTED_CURRENCY_PENALTY);
+        }
+
+        Instant occurredAt = occurredAt(text);
+        if (occurredAt == null) {
+            if (receivedDate == null) return Optional.empty();
+            occurredAt = receivedDate;
+            confidence = confidence.subtract(RECEIVED_DATE_PENALTY);
+        }
+
+        boolean isCredit = credit != null && credit.matcher(text).find();
+        return Optional.of(new ExtractionResult(
+                merchantName.strip(),
+                value,
+                currency,
+                isCredit ? "credit" : category,
+                occurredAt.toString(),
+                true,
+                confidence));
+    }
+
+    private Instant occurredAt(String text) {
+        LocalDate day = parse(group(date, text, "date"), DATE_FORMATS, LocalDate::from);
+        if (day == null) return null;
+        LocalTime at = parse(group(time, text, "time"), TIME_FORMATS, LocalTime::from);
+        return day.atTime(at != null ? at : LocalTime.MIDNIGHT).atZone(zone).toInstant();
+    }
+
+    private static CurrencyCode currency(String raw) {
+        if (raw == null) return null;
+        return switch (raw) {
+            case "₦", "N" -> CurrencyCode.NGN;
+            case "$" -> CurrencyCode.USD;
+            case "€" -> CurrencyCode.EUR;
+            case "£" -> CurrencyCode.GBP;
+            default -> {
+                try {
+                    yield CurrencyCode.fromCode(raw);
+                } catch (IllegalArgumentException e) {
+                    yield null;
+                }
+            }
+        };
+    }
+
+    private static String group(Pattern pattern, String text, String group) {
+        if (pattern == null) return null;
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(group) : null;
+    }
+
+    private static String groupOrNull(Matcher matcher, String group) {
+        try {
+            return matcher.group(group);
+        } catch (IllegalArgumentException e) {
+            return null; // pattern has no such group
+        }
+    }
+
+    private static <T> T parse(String raw, List<DateTimeFormatter> formats, TemporalQuery<T> query) {
+        if (raw == null) return null;
+        for (DateTimeFormatter format : formats) {
+            try {
+                return format.parse(raw.strip(), query);
+            } catch (DateTimeParseException ignored) {
+                // next format
+            }
+        }
+        return null;
+    }
+
+    private static DateTimeFormatter formatter(String pattern) {
+        return new DateTimeFormatterBuilder()
+                .parseCaseInsensitive()
+                .appendPattern(pattern)
+                .toFormatter(Locale.ENGLISH);
+    }
+}
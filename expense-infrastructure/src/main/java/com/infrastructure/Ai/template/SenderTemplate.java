@@ -0,0 +1,27 @@
+package com.infrastructure.Ai.template;
+
+import com.domain.model.ExtractionResult;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Deterministic parser for the alerts of one sender - no LLM involved.
+ */
+public interface SenderTemplate {
+
+    String name();
+
+    /**
+     * Registrable domains the template answers for; subdomains (alerts.example.com) match too.
+     */
+    List<String> senderDomains();
+
+    /**
+     * @param text cleaned email text
+     * @param receivedDate fallback when the text carries no transaction date
+     * @return empty when the text does not have the expected shape
+     */
+    Optional<ExtractionResult> extract(String text, Instant receivedDate);
+}
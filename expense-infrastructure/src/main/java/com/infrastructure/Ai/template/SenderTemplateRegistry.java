@@ -0,0 +1,103 @@
+package com.infrastructure.Ai.template;
+
+import com.domain.entities.RawEmailMessage;
+import com.domain.model.ExtractionResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Template tier in front of the AI gateway, keyed by sender domain.
+ *
+ * A sender is looked up by its full domain and then by each parent domain, so alerts.gtbank.com finds the
+ * gtbank.com template. A hit returns the template's result and the LLM is skipped; a miss (known sender,
+ * unexpected shape) or an unknown sender falls through to the LLM.
+ */
+@Component
+@Slf4j
+public class SenderTemplateRegistry {
+
+    private final Map<String, SenderTemplate> byDomain = new HashMap<>();
+    private final Map<String, Counter> hits = new HashMap<>();
+    private final Map<String, Counter> misses = new HashMap<>();
+    private final Counter unknownSender;
+
+    @Autowired
+    public SenderTemplateRegistry(MeterRegistry meterRegistry) {
+        this(SenderTemplates.DEFAULTS, meterRegistry);
+    }
+
+    public SenderTemplateRegistry(List<SenderTemplate> templates, MeterRegistry meterRegistry) {
+        for (SenderTemplate template : templates) {
+            for (String domain : template.senderDomains()) {
+                SenderTemplate previous = byDomain.put(domain.toLowerCase(Locale.ROOT), template);
+                if (previous != null) {
+                    throw new IllegalStateException("Domain " + domain + " claimed by both "
+                            + previous.name() + " and " + template.name());
+                }
+            }
+            hits.put(template.name(), counter(meterRegistry, template.name(), "hit"));
+            misses.put(template.name(), counter(meterRegistry, template.name(), "miss"));
+        }
+        this.unknownSender = counter(meterRegistry, "none", "none");
+    }
+
+    /**
+     * @param cleanedText TextCleaner output for the email
+     * @return the template's result, or empty when the LLM has to take this email
+     */
+    public Optional<ExtractionResult> extract(RawEmailMessage email, String cleanedText) {
+        SenderTemplate template = templateFor(email.getSender());
+        if (template == null) {
+            unknownSender.increment();
+            return Optional.empty();
+        }
+
+        Optional<ExtractionResult> result = template.extract(cleanedText, email.getReceivedDate());
+        if (result.isPresent()) {
+            hits.get(template.name()).increment();
+        } else {
+            misses.get(template.name()).increment();
+            log.debug("Template {} did not match email {}", template.name(), email.getId());
+        }
+        return result;
+    }
+
+    SenderTemplate templateFor(String sender) {
+        String domain = domainOf(sender);
+        while (domain != null) {
+            SenderTemplate template = byDomain.get(domain);
+            if (template != null) return template;
+            int dot = domain.indexOf('.');
+            domain = dot < 0 ? null : domain.substring(dot + 1);
+        }
+        return null;
+    }
+
+    /**
+     * "GTBank &lt;alerts@gtbank.com&gt;" or a bare address to "gtbank.com".
+     */
+    static String domainOf(String sender) {
+        if (sender == null) return null;
+        int at = sender.lastIndexOf('@');
+        if (at < 0) return null;
+        int end = sender.indexOf('>', at);
+        String domain = sender.substring(at + 1, end < 0 ? sender.length() : end).strip();
+        return domain.isEmpty() ? null : domain.toLowerCase(Locale.ROOT);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String template, String outcome) {
+        return Counter.builder("snapbill.extraction.template")
+                .tag("template", template)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
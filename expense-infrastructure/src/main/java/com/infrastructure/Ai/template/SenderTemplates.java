@@ -0,0 +1,74 @@
+package com.infrastructure.Ai.template;
+
+import com.domain.valueObjects.CurrencyCode;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Built-in templates for the senders that make up most of the alert volume.
+ *
+ * Patterns run over TextCleaner output, so table alerts read "Label | value" and plain alerts keep their
+ * sentences. Keep them anchored on labels - a template that guesses is worse than the LLM fallback.
+ */
+public final class SenderTemplates {
+
+    private static final ZoneId LAGOS = ZoneId.of("Africa/Lagos");
+
+    private static final String MONEY = "(?<currency>NGN|USD|GBP|EUR|₦|\\$|£|€|N)\\s?(?<amount>\\d[\\d,]*(?:\\.\\d{1,2})?)";
+
+    /**
+     * Nigerian bank debit/credit alerts - both the table layout (Amount | NGN 5,000.00, Description | ...,
+     * Value Date | 18-Oct-2026) and the one-paragraph layout (credited with NGN ... on 09/10/2026 at 14:05.
+     * Narration: ...). The merchant is the description after "@" on card payments, the counterparty on transfers.
+     */
+    public static final SenderTemplate NG_BANK_ALERT = FieldAnchoredTemplate.builder()
+            .name("ng-bank-alert")
+            .senderDomain("gtbank.com")
+            .senderDomain("accessbankplc.com")
+            .senderDomain("zenithbank.com")
+            .senderDomain("firstbanknigeria.com")
+            .senderDomain("ubagroup.com")
+            .senderDomain("kudabank.com")
+            .amount(Pattern.compile(
+                    "(?:\\b(?:Transaction )?Amount\\s*[|:]\\s*|\\b(?:credited|debited) with\\s+)" + MONEY,
+                    Pattern.CASE_INSENSITIVE))
+            .merchant(Pattern.compile(
+                    "\\b(?:Description|Narration|Remarks)\\s*[|:]\\s*(?:[^\\n|@]*@\\s*|TRF (?:FROM|TO)\\s+)?"
+                            + "(?<merchant>[^\\n|/]+?)\\s*(?:[/|\\n]|\\.\\s|\\.?$)",
+                    Pattern.CASE_INSENSITIVE))
+            .date(Pattern.compile(
+                    "(?:\\b(?:Value |Transaction )?Date\\s*[|:]\\s*|\\bon\\s+)"
+                            + "(?<date>\\d{1,2}-[A-Za-z]{3}-\\d{4}|\\d{2}/\\d{2}/\\d{4}|\\d{4}-\\d{2}-\\d{2})",
+                    Pattern.CASE_INSENSITIVE))
+            .time(Pattern.compile(
+                    "(?:\\bTime(?: of Transaction)?\\s*[|:]\\s*|\\bat\\s+)(?<time>\\d{1,2}:\\d{2}(?::\\d{2})?(?:\\s?[AP]M)?)",
+                    Pattern.CASE_INSENSITIVE))
+            .credit(Pattern.compile(
+                    "\\b(?:credit transaction|been credited|(?:transaction|txn) type\\s*[|:]\\s*(?:credit|cr)\\b)",
+                    Pattern.CASE_INSENSITIVE))
+            .defaultCurrency(CurrencyCode.NGN)
+            .zone(LAGOS)
+            .build();
+
+    /**
+     * Uber trip receipts - "Total ₦4,350.00" followed by the trip date on its own line.
+     */
+    public static final SenderTemplate UBER_RECEIPT = FieldAnchoredTemplate.builder()
+            .name("uber-receipt")
+            .senderDomain("uber.com")
+            .amount(Pattern.compile("(?m)^Total\\s*\\|?\\s*" + MONEY))
+            .fixedMerchant("Uber")
+            .date(Pattern.compile(
+                    "(?m)^(?<date>(?:January|February|March|April|May|June|July|August|September|October|November|December)"
+                            + " \\d{1,2}, \\d{4})\\s*$"))
+            .category("transport")
+            .zone(LAGOS)
+            .build();
+
+    public static final List<SenderTemplate> DEFAULTS = List.of(NG_BANK_ALERT, UBER_RECEIPT);
+
+    private SenderTemplates() {
+    }
+}
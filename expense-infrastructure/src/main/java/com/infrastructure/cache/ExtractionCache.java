@@ -0,0 +1,206 @@
+package com.infrastructure.cache;
+
+import com.domain.entities.ExtractionCacheEntry;
+import com.domain.model.ExtractionResult;
+import com.domain.repositories.ExtractionCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Two-tier cache of LLM extractions, so resends, forwards and the same alert landing in two connected
+ * inboxes cost one model call.
+ *
+ * The key is the SHA-256 of the normalized cleaned text, the prompt version and the model id. Normalizing
+ * lower-cases, collapses whitespace, strips quote markers and drops the header block of a forwarded message;
+ * digits are kept as they are, so two alerts that differ only in amount or date never share an entry.
+ * Lookups go to the bounded in-memory LRU first and then to the extraction_cache table; table hits are
+ * promoted. Entries for an older prompt or model are unreachable by key and purged by {@link #evictStale}.
+ */
+@Component
+@Slf4j
+public class ExtractionCache {
+
+    public record Key(String hash, String promptVersion, String modelId) {}
+
+    private static final Pattern FORWARD_MARKER = Pattern.compile(
+            "^(?:-+\\s*forwarded message\\s*-+|begin forwarded message:?|-+\\s*original message\\s*-+)$");
+    private static final Pattern FORWARD_HEADER = Pattern.compile("^(?:from|sent|date|subject|to|cc):.*");
+
+    private final LruCache<String, ExtractionResult> memory;
+    private final ExtractionCacheRepository repository;
+
+    private final Counter memoryHits;
+    private final Counter tableHits;
+    private final Counter misses;
+
+    public ExtractionCache(ExtractionCacheRepository repository,
+                           MeterRegistry meterRegistry,
+                           @Value("${snapbill.extraction-cache.max-entries:10000}") int maxEntries) {
+        this.repository = repository;
+        this.memory = new LruCache<>(maxEntries);
+
+        this.memoryHits = counter(meterRegistry, "memory");
+        this.tableHits = counter(meterRegistry, "table");
+        this.misses = counter(meterRegistry, "miss");
+        Gauge.builder("snapbill.extraction.cache.hit.ratio", this, ExtractionCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    public Key keyFor(String cleanedText, String promptVersion, String modelId) {
+        MessageDigest digest = sha256();
+        digest.update(normalize(cleanedText).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(promptVersion.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+        return new Key(HexFormat.of().formatHex(digest.digest()), promptVersion, modelId);
+    }
+
+    public Optional<ExtractionResult> get(Key key) {
+        ExtractionResult cached = memory.get(key.hash());
+        if (cached != null) {
+            memoryHits.increment();
+            return Optional.of(cached);
+        }
+
+        Optional<ExtractionResult> stored;
+        try {
+            stored = repository.findById(key.hash()).map(ExtractionCache::toResult);
+        } catch (Exception e) {
+            log.warn("Extraction cache lookup failed, calling the model: {}", e.getMessage());
+            stored = Optional.empty();
+        }
+
+        if (stored.isPresent()) {
+            tableHits.increment();
+            memory.put(key.hash(), stored.get());
+        } else {
+            misses.increment();
+        }
+        return stored;
+    }
+
+    /**
+     * Only pass results that validated - the gateway turns failed calls into "no transaction", and those
+     * must not be remembered.
+     */
+    public void put(Key key, ExtractionResult result) {
+        memory.put(key.hash(), result);
+        try {
+            repository.save(ExtractionCacheEntry.builder()
+                    .cacheKey(key.hash())
+                    .promptVersion(key.promptVersion())
+                    .modelId(key.modelId())
+                    .merchant(result.merchant())
+                    .amount(result.amount())
+                    .currency(result.currency())
+                    .category(result.category())
+                    .transactionDate(result.transactionDate())
+                    .transaction(result.transaction())
+                    .createdAt(Instant.now())
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Extraction {} already cached by a concurrent copy", key.hash());
+        } catch (Exception e) {
+            log.warn("Could not persist extraction {}: {}", key.hash(), e.getMessage());
+        }
+    }
+
+    /**
+     * Drops everything not produced by the current prompt and model - memory entirely, the table by version.
+     *
+     * @return rows removed from the table
+     */
+    public int evictStale(String promptVersion, String modelId) {
+        memory.clear();
+        int removed = repository.deleteStale(promptVersion, modelId);
+        if (removed > 0) {
+            log.info("Evicted {} cached extractions from older prompts or models", removed);
+        }
+        return removed;
+    }
+
+    public double hitRatio() {
+        double hits = memoryHits.count() + tableHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    static String normalize(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean inForwardHeader = false;
+        for (String rawLine : text.split("\n")) {
+            String line = stripQuotes(rawLine).toLowerCase(Locale.ROOT);
+            if (FORWARD_MARKER.matcher(line).matches()) {
+                inForwardHeader = true;
+                continue;
+            }
+            if (inForwardHeader) {
+                if (line.isEmpty() || FORWARD_HEADER.matcher(line).matches()) continue;
+                inForwardHeader = false;
+            }
+            appendCollapsed(sb, line);
+        }
+        return sb.toString();
+    }
+
+    private static String stripQuotes(String line) {
+        int i = 0;
+        while (i < line.length() && (line.charAt(i) == '>' || Character.isWhitespace(line.charAt(i)))) i++;
+        return line.substring(i).strip();
+    }
+
+    private static void appendCollapsed(StringBuilder sb, String line) {
+        boolean space = !sb.isEmpty();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+            } else {
+                if (space && !sb.isEmpty()) sb.append(' ');
+                sb.append(c);
+                space = false;
+            }
+        }
+    }
+
+    private static ExtractionResult toResult(ExtractionCacheEntry entry) {
+        return new ExtractionResult(
+                entry.getMerchant(),
+                entry.getAmount(),
+                entry.getCurrency(),
+                entry.getCategory(),
+                entry.getTransactionDate(),
+                entry.isTransaction(),
+                null);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("snapbill.extraction.cache")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,19 @@
+package com.infrastructure.email.Components;
+
+/**
+ * How much of each message a gateway asks the provider for.
+ */
+public enum FetchProfile {
+
+    /**
+     * Everything the provider returns by default - all headers, every MIME part.
+     */
+    COMPLETE,
+
+    /**
+     * Only what the pipeline reads: the headers we map, text parts and attachment names,
+     * requested through partial-response field masks. Attachments are never downloaded, except text
+     * bodies Gmail stores as one.
+     */
+    TRIMMED
+}
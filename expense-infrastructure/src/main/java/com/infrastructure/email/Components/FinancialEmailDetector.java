@@ -1,62 +1,98 @@
 package com.infrastructure.email.Components;
 
+import com.domain.entities.DetectionRule;
+import com.domain.enums.DetectionTarget;
 import com.domain.model.EmailMessageDto;
+import com.domain.repositories.DetectionRuleRepository;
+import com.infrastructure.email.detection.FinancialRuleSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+
 import java.util.List;
 
+/**
+ * First stage filter on message headers - weighted rules compiled into one automaton per field.
+ *
+ * Rules come from the detection_rule table when it holds enabled rows, the built-in set otherwise.
+ * reload() swaps in a freshly compiled set whenever the table changed; readers never block.
+ */
 @Component
+@Slf4j
 public class FinancialEmailDetector {
-    private static final List<String> FINANCIAL_KEYWORDS = List.of(
-            "debited",
-            "credited",
-            "transaction",
-            "payment",
-            "transfer",
-            "withdrawal",
-            "deposit",
-            "spent",
-            "received",
-            "purchase",
-            "POS",
-            "ATM",
-            "alert"
-    );
-
-    private static final List<String> FINANCIAL_SENDERS = List.of(
-            "alert",
-            "bank",
-            "transaction",
-            "payment",
-            "noreply",
-            "no-reply",
-            "no_reply",
-            "receipt"
-    );
 
-    public List<EmailMessageDto> filterFinancialCandidate (List<EmailMessageDto> messages) {
-        return messages.stream()
-                .filter(this::looksFinancial)
-                .toList();
+    private final DetectionRuleRepository ruleRepository;
+    private final double threshold;
+    private volatile FinancialRuleSet ruleSet;
+
+    @Autowired
+    public FinancialEmailDetector(DetectionRuleRepository ruleRepository,
+                                  @Value("${snapbill.detector.threshold:1.0}") double threshold) {
+        this.ruleRepository = ruleRepository;
+        this.threshold = threshold;
+        this.ruleSet = new FinancialRuleSet(FinancialRuleSet.DEFAULT_RULES, threshold);
     }
 
-    private boolean looksFinancial(EmailMessageDto emailMessageDto) {
+    /**
+     * Built-in rules only, never reloaded.
+     */
+    public FinancialEmailDetector() {
+        this(null, FinancialRuleSet.DEFAULT_THRESHOLD);
+    }
 
-        String subject = safe(emailMessageDto.getSubject());
-        String snippet = safe(emailMessageDto.getSnippet());
-        String from = safe(emailMessageDto.getSender());
+    public List<FinancialRuleSet.Rule> rules() {
+        return ruleSet.rules();
+    }
 
-        String combined = (subject + " " + snippet).toLowerCase();
+    public List<String> keywords() {
+        return ruleSet.patterns(DetectionTarget.CONTENT);
+    }
 
-        boolean keywordMatch = FINANCIAL_KEYWORDS.stream()
-                .anyMatch(combined::contains);
+    public List<String> senders() {
+        return ruleSet.patterns(DetectionTarget.SENDER);
+    }
 
-        boolean senderMatch = FINANCIAL_SENDERS.stream()
-                .anyMatch(from.toLowerCase()::contains);
+    public List<EmailMessageDto> filterFinancialCandidate (List<EmailMessageDto> messages) {
+        FinancialRuleSet rules = ruleSet; // one rule set for the whole page, even if a reload lands mid-way
+        return messages.stream()
+                .filter(message -> rules.matches(message.getSubject(), message.getSnippet(), message.getSender()))
+                .toList();
+    }
 
-        return keywordMatch || senderMatch;
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        reload();
     }
 
-    private String safe(String s) {
-        return s == null ? "" : s;
+    /**
+     * Re-reads the rule table and recompiles when it changed. A failed read keeps the current rules.
+     *
+     * @return true when a new rule set was swapped in
+     */
+    public boolean reload() {
+        if (ruleRepository == null) return false;
+
+        List<FinancialRuleSet.Rule> rules;
+        try {
+            List<DetectionRule> rows = ruleRepository.findByEnabledTrue();
+            rules = rows.isEmpty()
+                    ? FinancialRuleSet.DEFAULT_RULES
+                    : rows.stream()
+                    .filter(row -> row.getPattern() != null && !row.getPattern().isBlank())
+                    .map(row -> new FinancialRuleSet.Rule(row.getPattern().trim(), row.getTarget(), row.getWeight(), row.isWholeWord()))
+                    .toList();
+        } catch (Exception e) {
+            log.warn("Could not load detection rules, keeping the current {}: {}", ruleSet.rules().size(), e.getMessage());
+            return false;
+        }
+
+        if (rules.equals(ruleSet.rules())) return false;
+
+        ruleSet = new FinancialRuleSet(rules, threshold);
+        log.info("Loaded {} financial detection rules (threshold {})", rules.size(), threshold);
+        return true;
     }
 }
@@ -5,7 +5,7 @@ import com.domain.interfaces.TokenRefresher;
 import com.domain.model.TokenRefreshResult;
 import com.google.api.client.googleapis.auth.oauth2.GoogleRefreshTokenRequest;
 import com.google.api.client.googleapis.auth.oauth2.GoogleTokenResponse;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,8 +15,10 @@ import org.springframework.stereotype.Repository;
 import java.time.Instant;
 
 @Component
+@RequiredArgsConstructor
 public class GoogleTokenRefresher implements TokenRefresher {
 
+    private final HttpTransport googleHttpTransport;
 
     @Value("${snapbill.google.client.id}")
     private  String clientId;
@@ -33,7 +35,7 @@ public class GoogleTokenRefresher implements TokenRefresher {
 
         try{
             GoogleTokenResponse response = new GoogleRefreshTokenRequest(
-                    GoogleNetHttpTransport.newTrustedTransport(),
+                    googleHttpTransport,
                     GsonFactory.getDefaultInstance(),
                     refreshToken,
                     clientId,
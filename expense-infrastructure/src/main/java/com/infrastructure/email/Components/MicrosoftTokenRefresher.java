@@ -3,24 +3,87 @@ package com.infrastructure.email.Components;
 import com.domain.enums.EmailProvider;
 import com.domain.interfaces.TokenRefresher;
 import com.domain.model.TokenRefreshResult;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Instant;
 
 @Component
 public class MicrosoftTokenRefresher implements TokenRefresher {
+
+    private static final String SCOPE = "offline_access https://graph.microsoft.com/Mail.Read";
+
+    private final WebClient graphWebClient;
+
+    @Value("${snapbill.microsoft.token-url:https://login.microsoftonline.com/common/oauth2/v2.0/token}")
+    private String tokenUrl;
+
+    @Value("${snapbill.microsoft.client.id}")
+    private String clientId;
+
+    @Value("${snapbill.microsoft.client.secret}")
+    private String clientSecret;
+
+    public MicrosoftTokenRefresher(@Qualifier("graphWebClient") WebClient graphWebClient) {
+        this.graphWebClient = graphWebClient;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record TokenResponse(
+            @JsonProperty("access_token") String accessToken,
+            @JsonProperty("refresh_token") String refreshToken,
+            @JsonProperty("expires_in") long expiresIn
+    ) { }
+
     /**
      * @param refreshToken
-     * @return
+     * @return TokenRefreshResult
      */
     @Override
     public TokenRefreshResult refresh(String refreshToken) {
-        return null;
+
+        try {
+            TokenResponse response = graphWebClient.post()
+                    .uri(tokenUrl)
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                    .body(BodyInserters.fromFormData("grant_type", "refresh_token")
+                            .with("refresh_token", refreshToken)
+                            .with("client_id", clientId)
+                            .with("client_secret", clientSecret)
+                            .with("scope", SCOPE))
+                    .retrieve()
+                    .bodyToMono(TokenResponse.class)
+                    .block();
+
+            // Microsoft rotates refresh tokens - keep the old one only if none came back
+            return TokenRefreshResult.builder()
+                    .accessToken(response.accessToken())
+                    .refreshToken(
+                            response.refreshToken() != null
+                                    ? response.refreshToken()
+                                    : refreshToken
+                    )
+                    .expiresAt(
+                            Instant.now().plusSeconds(response.expiresIn())
+                    )
+                    .build();
+
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to refresh microsoft token " + e);
+        }
     }
 
     /**
-     * @return
+     * @return EmailProvider
      */
     @Override
     public EmailProvider provider() {
-        return null;
+        return EmailProvider.MICROSOFT;
     }
 }
@@ -18,6 +18,9 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class TransactionFactory {
 
+    // LLM results carry no confidence of their own
+    private static final BigDecimal DEFAULT_CONFIDENCE = BigDecimal.valueOf(0.9);
+
     private final CategoryTypeResolver categoryTypeResolver;
     private final TransactionTypeResolver transactionTypeResolver;
 
@@ -39,7 +42,7 @@ public class TransactionFactory {
                 null,
                 Description.of("This is a Ai extracted"),
                 TransactionSource.EMAIL_GMAIL, // TODO: might be extended in the future
-                BigDecimal.valueOf(0.9)
+                result.confidence() != null ? result.confidence() : DEFAULT_CONFIDENCE
 
         );
     }
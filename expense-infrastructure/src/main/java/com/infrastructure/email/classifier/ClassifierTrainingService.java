@@ -0,0 +1,123 @@
+package com.infrastructure.email.classifier;
+
+import com.domain.entities.RawEmailMessage;
+import com.domain.enums.ProcessingStatus;
+import com.domain.repositories.RawEmailRepository;
+import com.infrastructure.email.service.TextCleaner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Trains the transaction classifier from raw_emails history.
+ *
+ * PROCESSED emails are transactions, emails failed with VALIDATION_FAILED (the LLM found none) are not;
+ * anything else is ignored. One email in five, picked by id, is held out and used only to report
+ * precision and recall of the gate - the written model is exactly the one that was evaluated.
+ */
+@Service
+@Slf4j
+public class ClassifierTrainingService {
+
+    private static final int PAGE_SIZE = 500;
+    private static final int HOLD_OUT_EVERY = 5;
+    private static final double[] REPORTED_THRESHOLDS = {0.01, 0.05, 0.1, 0.2, 0.5};
+
+    private final RawEmailRepository rawEmailRepository;
+    private final TextCleaner textCleaner;
+    private final int buckets;
+    private final int maxChars;
+
+    public ClassifierTrainingService(RawEmailRepository rawEmailRepository,
+                                     TextCleaner textCleaner,
+                                     @Value("${snapbill.classifier.buckets:262144}") int buckets,
+                                     @Value("${snapbill.classifier.max-chars:4000}") int maxChars) {
+        this.rawEmailRepository = rawEmailRepository;
+        this.textCleaner = textCleaner;
+        this.buckets = buckets;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * How the gate would have done on the held-out emails at one threshold. The positive class is "skip":
+     * precision is the share of skipped emails that really held no transaction, recall the share of
+     * non-transactions skipped; missedTransactions are real transactions the gate would have dropped.
+     */
+    public record GateEvaluation(double threshold, long skipped, long skippedCorrectly, long nonTransactions,
+                                 long missedTransactions) {
+
+        public double precision() {
+            return skipped == 0 ? 1.0 : (double) skippedCorrectly / skipped;
+        }
+
+        public double recall() {
+            return nonTransactions == 0 ? 0.0 : (double) skippedCorrectly / nonTransactions;
+        }
+    }
+
+    public record Report(long trainingTransactions, long trainingNonTransactions, long heldOut,
+                         List<GateEvaluation> evaluations) {}
+
+    public Report train(Path output) throws IOException {
+        FeatureHasher hasher = new FeatureHasher(buckets, maxChars);
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(hasher);
+        forEachLabelled(false, email -> trainer.add(email.getSubject(), email.getSender(), textCleaner.clean(email), isTransaction(email)));
+        NaiveBayesModel model = trainer.build();
+
+        List<double[]> scored = new ArrayList<>(); // probability, label
+        forEachLabelled(true, email -> scored.add(new double[]{
+                model.probability(email.getSubject(), email.getSender(), textCleaner.clean(email)),
+                isTransaction(email) ? 1 : 0}));
+
+        model.write(output);
+        log.info("Wrote transaction classifier to {}", output);
+
+        List<GateEvaluation> evaluations = new ArrayList<>();
+        for (double threshold : REPORTED_THRESHOLDS) {
+            evaluations.add(evaluate(scored, threshold));
+        }
+        return new Report(trainer.documents(true), trainer.documents(false), scored.size(), evaluations);
+    }
+
+    public static GateEvaluation evaluate(List<double[]> scored, double threshold) {
+        long skipped = 0, skippedCorrectly = 0, nonTransactions = 0, missed = 0;
+        for (double[] sample : scored) {
+            boolean transaction = sample[1] == 1;
+            boolean skip = sample[0] < threshold;
+            if (!transaction) nonTransactions++;
+            if (skip) {
+                skipped++;
+                if (transaction) missed++;
+                else skippedCorrectly++;
+            }
+        }
+        return new GateEvaluation(threshold, skipped, skippedCorrectly, nonTransactions, missed);
+    }
+
+    private void forEachLabelled(boolean heldOut, Consumer<RawEmailMessage> action) {
+        UUID after = new UUID(0, 0);
+        while (true) {
+            List<RawEmailMessage> page = rawEmailRepository.findLabelledForTraining(after, PAGE_SIZE);
+            for (RawEmailMessage email : page) {
+                if (isHeldOut(email.getId()) == heldOut) action.accept(email);
+            }
+            if (page.size() < PAGE_SIZE) return;
+            after = page.getLast().getId();
+        }
+    }
+
+    private static boolean isHeldOut(UUID id) {
+        return Math.floorMod(id.hashCode(), HOLD_OUT_EVERY) == 0;
+    }
+
+    private static boolean isTransaction(RawEmailMessage email) {
+        return email.getProcessed() == ProcessingStatus.PROCESSED;
+    }
+}
@@ -0,0 +1,90 @@
+package com.infrastructure.email.classifier;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Hashes the words and word pairs of an email into a fixed number of buckets, without allocating.
+ *
+ * Tokens are runs of letters and digits, lowercased, with every digit folded to 0 so that amounts, dates and
+ * OTP codes hash by shape rather than value. Subject and sender tokens hash into their own namespaces, so
+ * "alert" in a subject and in a body are different features.
+ */
+public class FeatureHasher {
+
+    private static final int SUBJECT_SEED = 0x5bd1e995;
+    private static final int SENDER_SEED = 0x27d4eb2f;
+    private static final int BODY_SEED = 0x165667b1;
+
+    private final int buckets;
+    private final int maxChars;
+
+    /**
+     * @param buckets feature space size
+     * @param maxChars body characters looked at - the top of an email decides what it is
+     */
+    public FeatureHasher(int buckets, int maxChars) {
+        this.buckets = buckets;
+        this.maxChars = maxChars;
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+
+    public int maxChars() {
+        return maxChars;
+    }
+
+    public void features(String subject, String sender, String body, IntConsumer bucket) {
+        hash(subject, SUBJECT_SEED, Integer.MAX_VALUE, bucket);
+        hash(senderDomain(sender), SENDER_SEED, Integer.MAX_VALUE, bucket);
+        hash(body, BODY_SEED, maxChars, bucket);
+    }
+
+    private void hash(String text, int seed, int limit, IntConsumer bucket) {
+        if (text == null) return;
+        int end = Math.min(text.length(), limit);
+        int previous = 0;
+        boolean hasPrevious = false;
+        int token = seed;
+        boolean inToken = false;
+
+        for (int i = 0; i <= end; i++) {
+            char c = i < end ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                char folded = Character.isDigit(c) ? '0' : Character.toLowerCase(c);
+                token = 31 * token + folded;
+                inToken = true;
+            } else if (inToken) {
+                bucket.accept(bucket(mix(token)));
+                if (hasPrevious) bucket.accept(bucket(mix(previous * 0x9e3779b1 + token)));
+                previous = token;
+                hasPrevious = true;
+                token = seed;
+                inToken = false;
+            }
+        }
+    }
+
+    private int bucket(int hash) {
+        return Math.floorMod(hash, buckets);
+    }
+
+    // murmur3 finalizer, so nearby string hashes spread over the buckets
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static String senderDomain(String sender) {
+        if (sender == null) return null;
+        int at = sender.lastIndexOf('@');
+        if (at < 0) return sender;
+        int end = sender.indexOf('>', at);
+        return sender.substring(at + 1, end < 0 ? sender.length() : end);
+    }
+}
@@ -0,0 +1,89 @@
+package com.infrastructure.email.classifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Multinomial naive Bayes over hashed features, reduced to what scoring needs: the log prior odds of a
+ * transaction and, per bucket, the log likelihood ratio of transaction over not.
+ *
+ * File format (big-endian, as written by DataOutputStream):
+ * <pre>
+ *   int    magic "SBNB"
+ *   int    format version (1)
+ *   int    buckets
+ *   int    max body chars hashed
+ *   double bias
+ *   float  weight x buckets
+ * </pre>
+ */
+public class NaiveBayesModel {
+
+    private static final int MAGIC = 0x53424e42;
+    private static final int VERSION = 1;
+
+    private final FeatureHasher hasher;
+    private final double bias;
+    private final float[] weights;
+
+    public NaiveBayesModel(FeatureHasher hasher, double bias, float[] weights) {
+        if (weights.length != hasher.buckets()) {
+            throw new IllegalArgumentException("expected " + hasher.buckets() + " weights, got " + weights.length);
+        }
+        this.hasher = hasher;
+        this.bias = bias;
+        this.weights = weights;
+    }
+
+    /**
+     * @return probability that the email holds a transaction
+     */
+    public double probability(String subject, String sender, String body) {
+        double[] logOdds = {bias};
+        hasher.features(subject, sender, body, bucket -> logOdds[0] += weights[bucket]);
+        return 1 / (1 + Math.exp(-logOdds[0]));
+    }
+
+    public void write(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(out);
+        }
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(hasher.buckets());
+        out.writeInt(hasher.maxChars());
+        out.writeDouble(bias);
+        for (float weight : weights) out.writeFloat(weight);
+        out.flush();
+    }
+
+    public static NaiveBayesModel read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    public static NaiveBayesModel read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) throw new IOException("not a classifier model");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("unsupported classifier model version " + version);
+
+        FeatureHasher hasher = new FeatureHasher(in.readInt(), in.readInt());
+        double bias = in.readDouble();
+        float[] weights = new float[hasher.buckets()];
+        for (int i = 0; i < weights.length; i++) weights[i] = in.readFloat();
+        return new NaiveBayesModel(hasher, bias, weights);
+    }
+}
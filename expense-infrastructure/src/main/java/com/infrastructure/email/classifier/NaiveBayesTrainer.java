@@ -0,0 +1,51 @@
+package com.infrastructure.email.classifier;
+
+/**
+ * Counts features per class and turns them into a NaiveBayesModel with add-alpha smoothing.
+ * Not thread-safe; one trainer per training run.
+ */
+public class NaiveBayesTrainer {
+
+    private static final double ALPHA = 1.0;
+
+    private final FeatureHasher hasher;
+    private final long[][] counts;
+    private final long[] totals = new long[2];
+    private final long[] documents = new long[2];
+
+    public NaiveBayesTrainer(FeatureHasher hasher) {
+        this.hasher = hasher;
+        this.counts = new long[2][hasher.buckets()];
+    }
+
+    public void add(String subject, String sender, String body, boolean transaction) {
+        int label = transaction ? 1 : 0;
+        documents[label]++;
+        hasher.features(subject, sender, body, bucket -> {
+            counts[label][bucket]++;
+            totals[label]++;
+        });
+    }
+
+    public long documents(boolean transaction) {
+        return documents[transaction ? 1 : 0];
+    }
+
+    public NaiveBayesModel build() {
+        if (documents[0] == 0 || documents[1] == 0) {
+            throw new IllegalStateException("training needs examples of both classes");
+        }
+        int buckets = hasher.buckets();
+        double bias = Math.log((double) documents[1] / documents[0]);
+        double positiveDenominator = Math.log(totals[1] + ALPHA * buckets);
+        double negativeDenominator = Math.log(totals[0] + ALPHA * buckets);
+
+        float[] weights = new float[buckets];
+        for (int b = 0; b < buckets; b++) {
+            double positive = Math.log(counts[1][b] + ALPHA) - positiveDenominator;
+            double negative = Math.log(counts[0][b] + ALPHA) - negativeDenominator;
+            weights[b] = (float) (positive - negative);
+        }
+        return new NaiveBayesModel(hasher, bias, weights);
+    }
+}
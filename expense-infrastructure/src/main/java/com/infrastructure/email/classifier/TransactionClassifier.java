@@ -0,0 +1,74 @@
+package com.infrastructure.email.classifier;
+
+import com.domain.entities.RawEmailMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Gate in front of the LLM: emails the local model scores below the threshold are not sent for extraction.
+ *
+ * The model is trained offline by ClassifierTrainingService and loaded from snapbill.classifier.model-path.
+ * Without a model every email passes. Rejected emails are failed with SKIPPED_REASON rather than
+ * VALIDATION_FAILED, so they never become training data for the next model.
+ */
+@Component
+@Slf4j
+public class TransactionClassifier {
+
+    public static final String SKIPPED_REASON = "CLASSIFIER_SKIPPED";
+
+    private final NaiveBayesModel model;
+    private final double threshold;
+    private final Counter passed;
+    private final Counter skipped;
+
+    public TransactionClassifier(MeterRegistry meterRegistry,
+                                 @Value("${snapbill.classifier.model-path:}") String modelPath,
+                                 @Value("${snapbill.classifier.threshold:0.05}") double threshold) {
+        this(load(modelPath), threshold, meterRegistry);
+    }
+
+    public TransactionClassifier(NaiveBayesModel model, double threshold, MeterRegistry meterRegistry) {
+        this.model = model;
+        this.threshold = threshold;
+        this.passed = Counter.builder("snapbill.classifier").tag("outcome", "pass").register(meterRegistry);
+        this.skipped = Counter.builder("snapbill.classifier").tag("outcome", "skip").register(meterRegistry);
+    }
+
+    /**
+     * Scores the email and records the score on it.
+     *
+     * @param cleanedText body as the LLM would see it
+     * @return true when the email should not go to the LLM
+     */
+    public boolean rejects(RawEmailMessage email, String cleanedText) {
+        if (model == null) return false;
+
+        double probability = model.probability(email.getSubject(), email.getSender(), cleanedText);
+        email.setClassifierScore(probability);
+        if (probability < threshold) {
+            skipped.increment();
+            log.debug("Classifier skipped email {} (p={})", email.getId(), probability);
+            return true;
+        }
+        passed.increment();
+        return false;
+    }
+
+    private static NaiveBayesModel load(String modelPath) {
+        if (modelPath == null || modelPath.isBlank()) return null;
+        try {
+            NaiveBayesModel model = NaiveBayesModel.read(Path.of(modelPath));
+            log.info("Loaded transaction classifier from {}", modelPath);
+            return model;
+        } catch (Exception e) {
+            log.warn("Could not load transaction classifier from {}, every email goes to the LLM: {}", modelPath, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.infrastructure.email.detection;
+
+import java.util.*;
+
+/**
+ * Case-insensitive multi-pattern matcher - finds every occurrence of every pattern in one pass over the text.
+ *
+ * The trie and its failure links are flattened into a full transition table at compile time, so scanning
+ * is one array lookup per character with no backtracking. Characters that appear in no pattern share a
+ * single symbol that always leads back to the root.
+ */
+public final class AhoCorasick {
+
+    /**
+     * Receives each match, end exclusive. Called in order of end position.
+     */
+    @FunctionalInterface
+    public interface MatchHandler {
+        void onMatch(int pattern, int start, int end);
+    }
+
+    public static final int ROOT = 0;
+
+    private static final int[] NO_MATCHES = new int[0];
+
+    private final int[] asciiSymbols;                // char < 128 -> symbol, both cases
+    private final Map<Character, Integer> otherSymbols;
+    private final int symbolCount;
+    private final int[] transitions;                 // state * symbolCount + symbol -> state
+    private final int[][] matches;                   // state -> patterns ending there
+    private final int[] lengths;
+
+    private AhoCorasick(int[] asciiSymbols, Map<Character, Integer> otherSymbols, int symbolCount,
+                        int[] transitions, int[][] matches, int[] lengths) {
+        this.asciiSymbols = asciiSymbols;
+        this.otherSymbols = otherSymbols;
+        this.symbolCount = symbolCount;
+        this.transitions = transitions;
+        this.matches = matches;
+        this.lengths = lengths;
+    }
+
+    /**
+     * @param patterns non-empty patterns, reported back by their index in this list
+     */
+    public static AhoCorasick compile(List<String> patterns) {
+        int[] asciiSymbols = new int[128];
+        Map<Character, Integer> otherSymbols = new HashMap<>();
+        int symbolCount = 1; // 0 = any char outside the patterns
+
+        int[] lengths = new int[patterns.size()];
+        List<int[]> encoded = new ArrayList<>(patterns.size());
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Empty pattern at index " + p);
+            }
+            int[] symbols = new int[pattern.length()];
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = Character.toLowerCase(pattern.charAt(i));
+                if (c < 128) {
+                    if (asciiSymbols[c] == 0) {
+                        asciiSymbols[c] = symbolCount++;
+                        asciiSymbols[Character.toUpperCase(c)] = asciiSymbols[c]; // fold case into the table
+                    }
+                    symbols[i] = asciiSymbols[c];
+                } else {
+                    Integer symbol = otherSymbols.get(c);
+                    if (symbol == null) {
+                        symbol = symbolCount++;
+                        otherSymbols.put(c, symbol);
+                    }
+                    symbols[i] = symbol;
+                }
+            }
+            encoded.add(symbols);
+            lengths[p] = pattern.length();
+        }
+
+        // Trie - children as a growing table, -1 = no edge
+        List<int[]> children = new ArrayList<>();
+        List<List<Integer>> terminal = new ArrayList<>();
+        children.add(newRow(symbolCount));
+        terminal.add(new ArrayList<>());
+        for (int p = 0; p < encoded.size(); p++) {
+            int state = 0;
+            for (int symbol : encoded.get(p)) {
+                if (children.get(state)[symbol] < 0) {
+                    children.get(state)[symbol] = children.size();
+                    children.add(newRow(symbolCount));
+                    terminal.add(new ArrayList<>());
+                }
+                state = children.get(state)[symbol];
+            }
+            terminal.get(state).add(p);
+        }
+
+        // Breadth first - a state's failure target is always shallower, so it is complete by the time it is read
+        int states = children.size();
+        int[] transitions = new int[states * symbolCount];
+        int[] failure = new int[states];
+        int[][] matches = new int[states][];
+        matches[0] = terminal.get(0).isEmpty() ? NO_MATCHES : toArray(terminal.get(0));
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            int child = children.get(0)[symbol];
+            if (child > 0) {
+                failure[child] = 0;
+                transitions[symbol] = child;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+
+            List<Integer> own = terminal.get(state);
+            int[] inherited = matches[failure[state]];
+            if (own.isEmpty()) {
+                matches[state] = inherited;
+            } else {
+                int[] merged = Arrays.copyOf(toArray(own), own.size() + inherited.length);
+                System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+                matches[state] = merged;
+            }
+
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int child = children.get(state)[symbol];
+                int fallback = transitions[failure[state] * symbolCount + symbol];
+                if (child > 0) {
+                    failure[child] = fallback;
+                    transitions[state * symbolCount + symbol] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state * symbolCount + symbol] = fallback;
+                }
+            }
+        }
+
+        return new AhoCorasick(asciiSymbols, otherSymbols, symbolCount, transitions, matches, lengths);
+    }
+
+    public void scan(CharSequence text, MatchHandler handler) {
+        if (text == null) return;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            for (int pattern : matches[state]) {
+                handler.onMatch(pattern, i + 1 - lengths[pattern], i + 1);
+            }
+        }
+    }
+
+    /**
+     * Single step, for callers that drive the scan themselves (e.g. to stop early).
+     */
+    public int next(int state, char c) {
+        return transitions[state * symbolCount + symbolOf(c)];
+    }
+
+    private int symbolOf(char c) {
+        if (c < 128) return asciiSymbols[c];
+        char lower = Character.toLowerCase(c);
+        if (lower < 128) return asciiSymbols[lower];
+        return otherSymbols.isEmpty() ? 0 : otherSymbols.getOrDefault(lower, 0);
+    }
+
+    /**
+     * Patterns ending in this state - shared array, do not modify.
+     */
+    public int[] matchesAt(int state) {
+        return matches[state];
+    }
+
+    public int length(int pattern) {
+        return lengths[pattern];
+    }
+
+    private static int[] newRow(int size) {
+        int[] row = new int[size];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,152 @@
+package com.infrastructure.email.detection;
+
+import com.domain.enums.DetectionTarget;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled, immutable set of weighted detection rules.
+ *
+ * Content rules run over subject and snippet, sender rules over the From header - each field is scanned
+ * once by its automaton. A message scores the sum of the weights of the distinct rules that matched and
+ * counts as financial once the score reaches the threshold.
+ */
+public final class FinancialRuleSet {
+
+    public record Rule(String pattern, DetectionTarget target, double weight, boolean wholeWord) {
+
+        static Rule content(String pattern, double weight) {
+            return new Rule(pattern, DetectionTarget.CONTENT, weight, false);
+        }
+
+        static Rule word(String pattern, double weight) {
+            return new Rule(pattern, DetectionTarget.CONTENT, weight, true);
+        }
+
+        static Rule sender(String pattern, double weight) {
+            return new Rule(pattern, DetectionTarget.SENDER, weight, false);
+        }
+    }
+
+    /**
+     * Built-in rules, used while the database holds none. Weak signals ("received", "noreply", ...)
+     * need a second match to reach the default threshold of 1.
+     */
+    public static final List<Rule> DEFAULT_RULES = List.of(
+            Rule.content("debited", 1.0),
+            Rule.content("credited", 1.0),
+            Rule.content("transaction", 1.0),
+            Rule.content("payment", 1.0),
+            Rule.content("transfer", 1.0),
+            Rule.content("withdrawal", 1.0),
+            Rule.content("deposit", 1.0),
+            Rule.content("spent", 1.0),
+            Rule.content("received", 0.5),
+            Rule.content("purchase", 1.0),
+            Rule.word("pos", 1.0),
+            Rule.word("atm", 1.0),
+            Rule.content("alert", 0.5),
+            Rule.sender("alert", 1.0),
+            Rule.sender("bank", 1.0),
+            Rule.sender("transaction", 1.0),
+            Rule.sender("payment", 1.0),
+            Rule.sender("noreply", 0.5),
+            Rule.sender("no-reply", 0.5),
+            Rule.sender("no_reply", 0.5),
+            Rule.sender("receipt", 1.0)
+    );
+
+    public static final double DEFAULT_THRESHOLD = 1.0;
+
+    private final List<Rule> rules;
+    private final double threshold;
+    private final Target content;
+    private final Target sender;
+
+    /**
+     * One automaton, plus the rule behind each of its patterns.
+     */
+    private record Target(AhoCorasick matcher, int[] ruleIndex) { }
+
+    public FinancialRuleSet(List<Rule> rules, double threshold) {
+        this.rules = List.copyOf(rules);
+        this.threshold = threshold;
+        this.content = compile(DetectionTarget.CONTENT);
+        this.sender = compile(DetectionTarget.SENDER);
+    }
+
+    public static FinancialRuleSet defaults() {
+        return new FinancialRuleSet(DEFAULT_RULES, DEFAULT_THRESHOLD);
+    }
+
+    public List<Rule> rules() {
+        return rules;
+    }
+
+    public double threshold() {
+        return threshold;
+    }
+
+    public List<String> patterns(DetectionTarget target) {
+        return rules.stream()
+                .filter(rule -> rule.target() == target)
+                .map(Rule::pattern)
+                .toList();
+    }
+
+    public boolean matches(String subject, String snippet, String from) {
+        return score(subject, snippet, from, threshold) >= threshold;
+    }
+
+    public double score(String subject, String snippet, String from) {
+        return score(subject, snippet, from, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Sums the weights of the distinct rules hit, stopping as soon as the score reaches stopAt.
+     */
+    private double score(String subject, String snippet, String from, double stopAt) {
+        boolean[] hit = new boolean[rules.size()];
+        double score = scan(content, subject, hit, 0, stopAt);
+        if (score < stopAt) score = scan(sender, from, hit, score, stopAt);
+        if (score < stopAt) score = scan(content, snippet, hit, score, stopAt);
+        return score;
+    }
+
+    private double scan(Target target, String text, boolean[] hit, double score, double stopAt) {
+        if (text == null || text.isEmpty()) return score;
+        AhoCorasick matcher = target.matcher();
+        int state = AhoCorasick.ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = matcher.next(state, text.charAt(i));
+            for (int pattern : matcher.matchesAt(state)) {
+                int rule = target.ruleIndex()[pattern];
+                if (hit[rule]) continue;
+                Rule r = rules.get(rule);
+                if (r.wholeWord() && !isWord(text, i + 1 - matcher.length(pattern), i + 1)) continue;
+                hit[rule] = true;
+                score += r.weight();
+                if (score >= stopAt) return score;
+            }
+        }
+        return score;
+    }
+
+    private Target compile(DetectionTarget target) {
+        List<String> patterns = new ArrayList<>();
+        List<Integer> index = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i).target() == target) {
+                patterns.add(rules.get(i).pattern());
+                index.add(i);
+            }
+        }
+        return new Target(AhoCorasick.compile(patterns), index.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static boolean isWord(String text, int start, int end) {
+        return (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+                && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
+    }
+}
@@ -0,0 +1,55 @@
+package com.infrastructure.email.gmail;
+
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.gson.GsonFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.function.LongConsumer;
+
+/**
+ * Gson factory that reports how many response bytes it parses.
+ * Every Gmail response (batch sub-responses included) goes through here, so the count is
+ * the payload size Gmail sent us, after gzip decoding.
+ */
+class CountingJsonFactory extends GsonFactory {
+
+    private final LongConsumer bytesRead;
+
+    CountingJsonFactory(LongConsumer bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    @Override
+    public JsonParser createJsonParser(InputStream in) {
+        return super.createJsonParser(new CountingStream(in));
+    }
+
+    @Override
+    public JsonParser createJsonParser(InputStream in, Charset charset) {
+        return super.createJsonParser(new CountingStream(in), charset);
+    }
+
+    private final class CountingStream extends FilterInputStream {
+
+        private CountingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) bytesRead.accept(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) bytesRead.accept(n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.infrastructure.email.gmail;
+
+import com.domain.entities.EmailAccount;
+import com.domain.events.EmailAccountDisconnected;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.gmail.Gmail;
+import com.infrastructure.cache.LruCache;
+import com.infrastructure.security.TokenService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out per-account Gmail clients built on the shared transport.
+ *
+ * Clients are cached (bounded, LRU) and read the bearer token from TokenService
+ * on every request, so a cached client never carries a stale token and
+ * a refresh needs no eviction and the account's byte counter survives it.
+ * Entries are evicted when the account is disconnected.
+ */
+@Component
+@Slf4j
+public class GmailClientProvider {
+
+    private static final String APPLICATION_NAME = "SnapBill Gmail Sync";
+
+    private final HttpTransport httpTransport;
+    private final TokenService tokenService;
+    private final LruCache<UUID, CachedClient> clients;
+    private final Counter responseBytes;
+
+    public GmailClientProvider(HttpTransport httpTransport,
+                               TokenService tokenService,
+                               MeterRegistry meterRegistry,
+                               @Value("${snapbill.google.client-cache-size:500}") int cacheSize) {
+        this.httpTransport = httpTransport;
+        this.tokenService = tokenService;
+        this.clients = new LruCache<>(cacheSize);
+        this.responseBytes = Counter.builder("snapbill.provider.response.bytes")
+                .tag("provider", "gmail")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Client for the account. The cached credential is pointed at the given instance,
+     * which is the freshest copy the caller has loaded.
+     */
+    public Gmail clientFor(EmailAccount account) {
+        CachedClient cached = clients.computeIfAbsent(account.getId(), id -> newClient(account));
+        cached.credential().useAccount(account);
+        return cached.gmail();
+    }
+
+    /**
+     * Response bytes parsed by the account's cached client so far - callers diff two readings.
+     */
+    public long responseBytes(UUID accountId) {
+        CachedClient cached = clients.get(accountId);
+        return cached == null ? 0 : cached.bytesRead().get();
+    }
+
+    public void evict(UUID accountId) {
+        if (clients.remove(accountId) != null) {
+            log.debug("Evicted cached Gmail client for account {}", accountId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnected(EmailAccountDisconnected event) {
+        evict(event.accountId());
+    }
+
+
+    private CachedClient newClient(EmailAccount account) {
+        AccountCredential credential = new AccountCredential(account);
+        AtomicLong bytesRead = new AtomicLong();
+        JsonFactory jsonFactory = new CountingJsonFactory(n -> {
+            bytesRead.addAndGet(n);
+            responseBytes.increment(n);
+        });
+        Gmail gmail = new Gmail.Builder(httpTransport, jsonFactory, credential)
+                .setApplicationName(APPLICATION_NAME)
+                .build();
+        return new CachedClient(gmail, credential, bytesRead);
+    }
+
+    private record CachedClient(Gmail gmail, AccountCredential credential, AtomicLong bytesRead) { }
+
+    /**
+     * Sets the Authorization header at request time.
+     * A lock (not synchronized - virtual threads) keeps concurrent batches
+     * from triggering several refreshes of the same expired token.
+     */
+    private final class AccountCredential implements HttpRequestInitializer {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile EmailAccount account;
+
+        private AccountCredential(EmailAccount account) {
+            this.account = account;
+        }
+
+        private void useAccount(EmailAccount account) {
+            this.account = account;
+        }
+
+        @Override
+        public void initialize(HttpRequest request) {
+            String accessToken;
+            lock.lock();
+            try {
+                accessToken = tokenService.getValidAccessToken(account);
+            } finally {
+                lock.unlock();
+            }
+            request.getHeaders().setAuthorization("Bearer " + accessToken);
+        }
+    }
+}
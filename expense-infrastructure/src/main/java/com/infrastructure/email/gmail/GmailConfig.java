@@ -0,0 +1,50 @@
+package com.infrastructure.email.gmail;
+
+import com.google.api.client.googleapis.GoogleUtils;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.util.SslUtils;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class GmailConfig {
+
+    @Value("${snapbill.google.http.max-connections:16}")
+    private int maxConnections;
+
+    /**
+     * One transport for every Google call (Gmail + token refresh).
+     * The trust store is loaded once and connections are reused through the transport's own pool,
+     * sized here so concurrent Gmail batches don't fall back to fresh TLS handshakes.
+     * Every Google call goes to the same host, so the per-route limit is the total.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public HttpTransport googleHttpTransport() throws GeneralSecurityException, IOException {
+        SSLContext sslContext = SslUtils.initSslContext(SslUtils.getTlsSslContext(),
+                GoogleUtils.getCertificateTrustStore(), SslUtils.getPkixTrustManagerFactory());
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", new SSLConnectionSocketFactory(sslContext))
+                        .build());
+        connections.setMaxTotal(maxConnections);
+        connections.setDefaultMaxPerRoute(maxConnections);
+
+        return new ApacheHttpTransport(ApacheHttpTransport.newDefaultHttpClientBuilder()
+                .setConnectionManager(connections)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build());
+    }
+}
@@ -2,39 +2,51 @@ package com.infrastructure.email.gmail;
 
 import com.domain.entities.EmailAccount;
 import com.domain.entities.RawEmailMessage;
+import com.domain.exceptions.EmailGatewayException;
 import com.domain.gateways.EmailGateway;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.HttpRequestInitializer;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.gson.GsonFactory;
+import com.domain.repositories.RawEmailRepository;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
 import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.ListHistoryResponse;
 import com.google.api.services.gmail.model.ListMessagesResponse;
 import com.google.api.services.gmail.model.Message;
 import com.google.api.services.gmail.model.MessagePart;
 import com.google.api.services.gmail.model.MessagePartHeader;
 import com.domain.model.EmailMessageDto;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
+import com.infrastructure.email.Components.FetchProfile;
 import com.infrastructure.email.Components.FinancialEmailDetector;
+import com.infrastructure.email.ratelimit.ProviderRateLimiter;
+import com.infrastructure.email.ratelimit.ProviderThrottledException;
+import com.infrastructure.email.ratelimit.QuotaCost;
+import com.infrastructure.email.ratelimit.Backoff;
 import com.infrastructure.interfaces.EmailBodyExtractor;
 
-import com.infrastructure.interfaces.RetrySupplier;
-import com.infrastructure.security.TokenService;
 import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.security.GeneralSecurityException;
+import java.math.BigInteger;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Component("googleEmailGateway")
 @Slf4j
@@ -42,126 +54,335 @@ import java.util.function.Supplier;
 public class GmailEmailGatewayImpl  implements EmailGateway {
 
     private final FinancialEmailDetector financialEmailDetector;
-    private final EmailBodyExtractor emailBodyExtractor;
-    private final TokenService tokenService;
+    private final EmailBodyExtractor<Message> emailBodyExtractor;
+    private final GmailClientProvider gmailClientProvider;
+    private final RawEmailRepository rawEmailRepository;
+    private final GmailQueryBuilder gmailQueryBuilder;
+    private final MeterRegistry meterRegistry;
+    private final FetchProfile fetchProfile;
+    private final GetRequest metadataRequest;
+    private final GetRequest fullRequest;
     private final ExecutorService pipelineExecutor;
-    private static final String APPLICATION_NAME = "SnapBill Gmail Sync";
-    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    private final ProviderRateLimiter rateLimiter;
     private static final String USER = "me";// "me" = authenticated user
+    private static final String PRIMARY_LABEL = "CATEGORY_PERSONAL"; // label behind category:primary
 
-    private static final int MAX_CONCURRENT_CALL = 12;
     private static final int BATCH_SIZE = 20;
-    private static final int RETRY_ATTEMPTS = 3;
+    private static final int PAGE_SIZE = 100; // ids per streamed page, bounds bodies held in memory
+
+    // Partial responses - only the fields buildMetaDataDTO / convertToRawEmail read
+    private static final List<String> METADATA_HEADERS = List.of("Subject", "From", "To");
+    private static final String METADATA_FIELDS = "id,threadId,internalDate,snippet,payload/headers";
+    // Trimmed full fetch: format=full already leaves attachment payloads behind attachmentId, so body/data
+    // is inline text in practice. Part headers are dropped, parts below the fourth level are not returned
+    private static final String PART_FIELDS = "partId,mimeType,filename,body(size,attachmentId,data)";
+    private static final String FULL_FIELDS = "id,threadId,internalDate,snippet,"
+            + "payload(headers," + PART_FIELDS
+            + ",parts(" + PART_FIELDS + ",parts(" + PART_FIELDS + ",parts(" + PART_FIELDS + "))))";
+
+    /**
+     * Format and partial-response mask for a messages.get.
+     */
+    private record GetRequest(String format, List<String> metadataHeaders, String fields) {
+
+        Gmail.Users.Messages.Get apply(Gmail.Users.Messages.Get get) {
+            get.setFormat(format);
+            if (metadataHeaders != null) get.setMetadataHeaders(metadataHeaders);
+            if (fields != null) get.setFields(fields);
+            return get;
+        }
+    }
 
     public GmailEmailGatewayImpl(FinancialEmailDetector financialEmailDetector,
-                                 EmailBodyExtractor emailBodyExtractor,
-                                 TokenService tokenService,
-                                 @Qualifier("pipelineExecutor")ExecutorService pipelineExecutor) {
+                                 EmailBodyExtractor<Message> emailBodyExtractor,
+                                 GmailClientProvider gmailClientProvider,
+                                 RawEmailRepository rawEmailRepository,
+                                 GmailQueryBuilder gmailQueryBuilder,
+                                 @Qualifier("pipelineExecutor")ExecutorService pipelineExecutor,
+                                 @Qualifier("gmailRateLimiter") ProviderRateLimiter rateLimiter,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${snapbill.gmail.fetch-profile:TRIMMED}") FetchProfile fetchProfile) {
         this.financialEmailDetector = financialEmailDetector;
         this.emailBodyExtractor = emailBodyExtractor;
-        this.tokenService = tokenService;
+        this.gmailClientProvider = gmailClientProvider;
+        this.rawEmailRepository = rawEmailRepository;
+        this.gmailQueryBuilder = gmailQueryBuilder;
         this.pipelineExecutor = pipelineExecutor;
+        this.rateLimiter = rateLimiter;
+        this.meterRegistry = meterRegistry;
+        this.fetchProfile = fetchProfile;
+        this.metadataRequest = fetchProfile == FetchProfile.TRIMMED
+                ? new GetRequest("metadata", METADATA_HEADERS, METADATA_FIELDS)
+                : new GetRequest("metadata", null, null);
+        this.fullRequest = fetchProfile == FetchProfile.TRIMMED
+                ? new GetRequest("full", null, FULL_FIELDS)
+                : new GetRequest("full", null, null);
     }
 
 
     @Override
     public List<RawEmailMessage> fetchNewMessages(EmailAccount account, Instant since) {
+        List<RawEmailMessage> messages = new ArrayList<>();
+        try {
+            fetchNewMessages(account, since, messages::addAll);
+            return messages;
+        } catch (Exception e) {
+            log.error("Gmail fetch failed for {}: {}", account.getProviderEmail(), e.getMessage(), e);
+            return List.of();
+        }
+    }
 
-        try{
-
-            Gmail gmail = createGmailService(account);
+    /**
+     * Lists the new message ids, then works through them PAGE_SIZE at a time:
+     * metadata -> financial filter -> full fetch -> sink. Only one page of bodies is held at once.
+     * The history cursor moves on the account only after the last page was accepted.
+     */
+    @Override
+    public void fetchNewMessages(EmailAccount account, Instant since, Consumer<List<RawEmailMessage>> pageSink) {
+        long bytesBefore = gmailClientProvider.responseBytes(account.getId());
+        try {
+            Gmail gmail = gmailClientProvider.clientFor(account);
             Instant fetchSince = since != null
                     ? since
                     : Optional.ofNullable(account.getLastEmailReceivedAt())
                     .orElse(Instant.now().minus(30, ChronoUnit.DAYS));
 
-            List<String> messageIds = fetchMessageIds(gmail, fetchSince);
-            if(messageIds.isEmpty()) {
+            // Incremental listing from the history cursor, full search when there is none or it expired
+            MessageIdListing listing = account.getHistoryId() != null
+                    ? fetchMessageIdsFromHistory(gmail, account, account.getHistoryId())
+                    : null;
+            if (listing == null) {
+                listing = fetchMessageIdsBySearch(gmail, account, fetchSince);
+            }
+
+            List<String> messageIds = listing.ids();
+            if (messageIds.isEmpty()) {
                 log.info("No new Gmail message  for account {} is empty", account.getProviderEmail());
-                return List.of();
             }
 
-            // Fetch email meta-data concurrently
-            // TODO : Go for check on method
-            List<EmailMessageDto> metaData = fetchMetadataInBatches(gmail, account, messageIds);
+            streamPages(gmail, account, messageIds, pageSink);
 
+            // Cursor only moves once the listing has been fully fetched - persisted by the caller
+            account.setHistoryId(listing.historyId());
 
-            // Filter financial candidates
-            List< EmailMessageDto> candidates = financialEmailDetector.filterFinancialCandidate(metaData);
+        } catch (IOException e) {
+            throw new EmailGatewayException("Gmail fetch failed for " + account.getProviderEmail(), e);
+        } finally {
+            recordTraffic(account, bytesBefore, "sync");
+        }
+    }
 
-            return fetchFullMessagesInBatches(gmail,candidates,account);
 
-        }catch (Exception e) {
-            log.error("Gmail fetch failed for {}: {}", account.getProviderEmail(), e.getMessage(), e);
-            return List.of();
+
+    /**
+     * Backfill slice - a plain search over [from, to), the history cursor is left alone.
+     */
+    @Override
+    public void fetchMessagesBetween(EmailAccount account, Instant from, Instant to, Consumer<List<RawEmailMessage>> pageSink) {
+        long bytesBefore = gmailClientProvider.responseBytes(account.getId());
+        try {
+            Gmail gmail = gmailClientProvider.clientFor(account);
+            String query = gmailQueryBuilder.between(from, to);
+
+            List<String> messageIds = fetchMessageIds(gmail, account, query);
+            streamPages(gmail, account, messageIds, pageSink);
+
+        } catch (IOException e) {
+            throw new EmailGatewayException("Gmail backfill failed for " + account.getProviderEmail(), e);
+        } finally {
+            recordTraffic(account, bytesBefore, "backfill");
         }
+    }
+
+
+    //===========Helper Functions==================//
 
+    /**
+     * Response bytes of one sync / backfill slice - for comparing fetch profiles.
+     */
+    private void recordTraffic(EmailAccount account, long bytesBefore, String kind) {
+        long bytes = gmailClientProvider.responseBytes(account.getId()) - bytesBefore;
+        if (bytes <= 0) return; // nothing fetched, or the client was evicted mid-way
+        DistributionSummary.builder("snapbill.sync.response.bytes")
+                .tag("provider", "gmail")
+                .tag("kind", kind)
+                .tag("profile", fetchProfile.name().toLowerCase())
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(bytes);
+        log.info("Gmail {} for {} transferred {} KB ({} profile)", kind, account.getProviderEmail(), bytes / 1024, fetchProfile);
     }
 
+    /**
+     * Works through the ids PAGE_SIZE at a time: ingested check -> metadata -> financial filter -> full fetch -> sink.
+     */
+    private void streamPages(Gmail gmail, EmailAccount account, List<String> messageIds, Consumer<List<RawEmailMessage>> pageSink) {
+        for (List<String> ids : partition(messageIds, PAGE_SIZE)) {
+            // Sync windows overlap earlier runs - skip what is already stored before paying for any fetch
+            Set<String> stored = rawEmailRepository.findExistingProviderMessageIds(account.getId(), ids);
+            List<String> page = stored.isEmpty()
+                    ? ids
+                    : ids.stream().filter(id -> !stored.contains(id)).toList();
+            if (page.isEmpty()) continue;
 
+            List<EmailMessageDto> metaData = fetchMetadataInBatches(gmail, account, page);
 
-    //===========Helper Functions==================//
+            // Filter financial candidates
+            List<EmailMessageDto> candidates = financialEmailDetector.filterFinancialCandidate(metaData);
+
+            List<RawEmailMessage> messages = fetchFullMessagesInBatches(gmail, candidates, account);
+            if (!messages.isEmpty()) {
+                pageSink.accept(messages);
+            }
+        }
+    }
 
     /**
      *  GMAIL  METADATA
      *
      */
 
-    private List<EmailMessageDto> fetchMetadataInBatches(Gmail gmail, EmailAccount account, List<String> messageIds) throws GeneralSecurityException, IOException {
+    private List<EmailMessageDto> fetchMetadataInBatches(Gmail gmail, EmailAccount account, List<String> messageIds) {
         if (messageIds == null || messageIds.isEmpty()) return List.of();
 
-        List<EmailMessageDto> results = Collections.synchronizedList(new ArrayList<>());
-        Semaphore semaphore = new Semaphore(MAX_CONCURRENT_CALL);
-        AtomicInteger i = new AtomicInteger(0);
-        List<CompletableFuture<Void>> futures = messageIds.stream()
-                .distinct()
-                .map(id -> CompletableFuture.runAsync(() -> {
-                        try {
-                            semaphore.acquire();
-                            Message msg = retry(()->
-                                    gmail.users().messages()
-                                            .get(USER, id)
-                                            .setFormat("metadata")
-                                            .execute()
-                            );
-                            if(msg != null) {
-                                results.add(buildMetaDataDTO(msg,account));
-                            }
-
-
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                        catch (Exception e) {
-                            log.error("Metadata fetch failed for id {}", id, e);
-                        } finally {
-                            semaphore.release();
-                        }
-
-                    }, pipelineExecutor))
-                    .toList();
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        Map<String, Message> messages = fetchMessagesInBatches(gmail, account, messageIds, metadataRequest);
 
-        return results;
+        return messages.values().stream()
+                .map(msg -> buildMetaDataDTO(msg, account))
+                .toList();
 
     }
 
 
-    // ================== RETRY ==================
+    // ================== BATCH ==================
 
+    /**
+     * One Gmail call per key, queued into a batch.
+     */
+    @FunctionalInterface
+    private interface BatchCall<K, T> {
+        AbstractGoogleJsonClientRequest<T> request(K key) throws IOException;
+    }
 
-    private <T> T retry(RetrySupplier<T> supplier) {
-        for (int i = 0; i < RETRY_ATTEMPTS; i++) {
+    /**
+     * Fetches messages through the Gmail batch endpoint - up to BATCH_SIZE messages.get
+     * calls share one HTTP round trip. How many batches run at once, and how fast,
+     * is decided by the gmail rate limiter.
+     *
+     * @param request format and partial-response mask for each messages.get
+     * @return messages keyed by id, missing entries are ids Gmail refused for good (e.g. deleted)
+     * @throws ProviderThrottledException when Gmail kept throttling a chunk past the retry budget
+     */
+    private Map<String, Message> fetchMessagesInBatches(Gmail gmail, EmailAccount account, List<String> messageIds, GetRequest request) {
+        return fetchInBatches(gmail, account, messageIds, request.format(), QuotaCost.MESSAGES_GET,
+                id -> request.apply(gmail.users().messages().get(USER, id)));
+    }
+
+    /**
+     * Runs one call per key through the batch endpoint, BATCH_SIZE calls per round trip.
+     *
+     * @return responses keyed by their key, missing entries are calls Gmail refused for good
+     */
+    private <K, T> Map<K, T> fetchInBatches(Gmail gmail, EmailAccount account, List<K> keys, String what,
+                                            QuotaCost cost, BatchCall<K, T> call) {
+        Map<K, T> results = new ConcurrentHashMap<>();
+
+        List<CompletableFuture<Void>> futures = partition(keys.stream().distinct().toList(), BATCH_SIZE).stream()
+                .map(chunk -> CompletableFuture.runAsync(
+                        () -> executeBatch(gmail, account, chunk, what, cost, call, results), pipelineExecutor))
+                .toList();
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Runs one batch and handles partial failure per sub-response:
+     * throttled sub-requests (rate limit / server errors) are re-queued into the next round
+     * after a backoff, everything else is dropped and logged. A transport failure re-queues
+     * whatever is still unresolved.
+     */
+    private <K, T> void executeBatch(Gmail gmail, EmailAccount account, List<K> keys, String what, QuotaCost cost,
+                                     BatchCall<K, T> call, Map<K, T> results) {
+        List<K> pending = keys;
+
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt >= rateLimiter.maxAttempts()) {
+                throw new ProviderThrottledException(
+                        "Gmail " + what + " fetch gave up on " + pending.size() + " messages after " + attempt + " attempts", null);
+            }
+
+            List<K> retryable = Collections.synchronizedList(new ArrayList<>());
+            AtomicReference<Duration> retryAfter = new AtomicReference<>();
+            ProviderRateLimiter.Permit permit = rateLimiter.acquire(account.getId(), cost.units(pending.size()));
             try {
-                return supplier.get();
-            } catch (Exception e) {
-                if (i == RETRY_ATTEMPTS - 1) {
-                    log.error("Retry failed after {} attempts", RETRY_ATTEMPTS, e);
-                    return null;
+                BatchRequest batch = gmail.batch();
+                for (K id : pending) {
+                    call.request(id)
+                            .queue(batch, new JsonBatchCallback<>() {
+                                @Override
+                                public void onSuccess(T response, HttpHeaders responseHeaders) {
+                                    results.put(id, response);
+                                }
+
+                                @Override
+                                public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                                    if (isRetryable(error.getCode(), error)) {
+                                        retryable.add(id);
+                                        Duration wait = Backoff.parseRetryAfter(responseHeaders.getFirstHeaderStringValue("Retry-After"));
+                                        if (wait != null) {
+                                            retryAfter.accumulateAndGet(wait, (a, b) -> a == null || b.compareTo(a) > 0 ? b : a);
+                                        }
+                                    } else {
+                                        log.warn("Gmail {} fetch failed for {}: {} {}", what, id, error.getCode(), error.getMessage());
+                                    }
+                                }
+                            });
                 }
+                batch.execute();
+            } catch (IOException e) {
+                log.warn("Gmail batch of {} failed on attempt {}: {}", pending.size(), attempt + 1, e.getMessage());
+                retryable.clear();
+                pending.stream().filter(id -> !results.containsKey(id)).forEach(retryable::add);
+            } finally {
+                permit.release(!retryable.isEmpty());
+            }
+
+            pending = List.copyOf(retryable);
+            if (!pending.isEmpty()) {
+                rateLimiter.pause(attempt, retryAfter.get());
             }
         }
-        return null;
+    }
+
+    private boolean isRetryable(int code, GoogleJsonError error) {
+        if (code == 429 || code >= 500) return true;
+        return code == 403 && error != null && error.getErrors() != null && error.getErrors().stream()
+                .anyMatch(info -> "rateLimitExceeded".equals(info.getReason())
+                        || "userRateLimitExceeded".equals(info.getReason()));
+    }
+
+    /**
+     * Executes a single Gmail request through the rate limiter.
+     * Throttling responses are turned into ProviderThrottledException so the limiter backs off and retries.
+     */
+    private <T> T execute(EmailAccount account, QuotaCost cost, AbstractGoogleClientRequest<T> request) throws IOException {
+        return rateLimiter.execute(account.getId(), cost.units(), () -> {
+            try {
+                return request.execute();
+            } catch (GoogleJsonResponseException e) {
+                if (isRetryable(e.getStatusCode(), e.getDetails())) {
+                    throw new ProviderThrottledException("Gmail throttled: " + e.getStatusCode(),
+                            Backoff.parseRetryAfter(e.getHeaders().getFirstHeaderStringValue("Retry-After")));
+                }
+                throw e;
+            }
+        });
     }
 
 
@@ -184,8 +405,8 @@ public class GmailEmailGatewayImpl  implements EmailGateway {
     @Override
     public boolean isConnectionValid(EmailAccount account) {
         try {
-            Gmail service = createGmailService(account);
-            service.users().labels().list(USER).execute(); // lightweight test call
+            Gmail service = gmailClientProvider.clientFor(account);
+            execute(account, QuotaCost.LABELS_LIST, service.users().labels().list(USER)); // lightweight test call
             return true;
         } catch (Exception e) {
             log.warn("Gmail connection invalid for {}: {}", account.getProviderEmail(), e.getMessage());
@@ -214,26 +435,22 @@ public class GmailEmailGatewayImpl  implements EmailGateway {
      * Fetch Per Account email Ids first
      *
      * @param gmail executor candidate
-     * @param fetchSince last sync param
+     * @param query gmail search query (e.g. after:... category:primary)
      * @return List of gmail message ids
      */
-    private List<String> fetchMessageIds(Gmail gmail, Instant fetchSince) throws IOException {
+    private List<String> fetchMessageIds(Gmail gmail, EmailAccount account, String query) throws IOException {
         List<String> ids =  new ArrayList<>();
-        long sinceInSeconds = fetchSince.getEpochSecond();
-
-        String query = "after:" + sinceInSeconds + " category:primary";
         String pageToken =  null;
 
 
         do {
 
-            ListMessagesResponse response = gmail.users()
+            ListMessagesResponse response = execute(account, QuotaCost.MESSAGES_LIST, gmail.users()
                     .messages()
                     .list(USER)
                     .setQ(query)
                     .setMaxResults(500L)
-                    .setPageToken(pageToken)
-                    .execute();
+                    .setPageToken(pageToken));
 
             if(response.getMessages() != null) {
                 response.getMessages().forEach(m -> ids.add(m.getId()));
@@ -241,57 +458,115 @@ public class GmailEmailGatewayImpl  implements EmailGateway {
             pageToken = response.getNextPageToken();
         }while (pageToken != null);
 
-        log.info("Gmail returned {} message ids since {}", ids.size(), fetchSince);
+        log.info("Gmail returned {} message ids for {}", ids.size(), query);
         return  ids;
 
     }
 
 
+    // ================== HISTORY ==================
+
     /**
-     * Fetches full Gmail messages concurrently, throttled by MAX_CONCURRENT_CALL permits.
-     * Each candidate maps to exactly one dedicated future — no shared work queue,
-     * so no two threads can ever process the same candidate (duplication can only
-     * happen if `candidates` itself contains the same id twice upstream).
+     * Message ids found by one listing pass, plus the history id to resume from next time.
      */
-    private List<RawEmailMessage> fetchFullMessagesInBatches(Gmail gmail, List<EmailMessageDto> candidates, EmailAccount account) {
-        if(candidates.isEmpty()) return List.of();
-        Semaphore semaphore = new Semaphore(MAX_CONCURRENT_CALL);
+    private record MessageIdListing(List<String> ids, BigInteger historyId) { }
+
+    /**
+     * Full search listing, narrowed by the financial query pushdown. The mailbox history id is read before searching, so anything
+     * arriving while the search pages through shows up in the next incremental sync.
+     */
+    private MessageIdListing fetchMessageIdsBySearch(Gmail gmail, EmailAccount account, Instant fetchSince) throws IOException {
+        BigInteger historyId = execute(account, QuotaCost.GET_PROFILE, gmail.users().getProfile(USER)).getHistoryId();
+        String query = gmailQueryBuilder.since(fetchSince);
+        return new MessageIdListing(fetchMessageIds(gmail, account, query), historyId);
+    }
+
+    /**
+     * Incremental listing via users.history.list - only messages added to the primary
+     * category since the stored cursor. history.list takes no search query, so the financial
+     * pushdown does not apply here - the increment is small and the detector filters it.
+     *
+     * @return listing, or null when Gmail no longer holds history that old (404)
+     */
+    private MessageIdListing fetchMessageIdsFromHistory(Gmail gmail, EmailAccount account, BigInteger startHistoryId) throws IOException {
+        Set<String> ids = new LinkedHashSet<>();
+        BigInteger latestHistoryId = startHistoryId;
+        String pageToken = null;
+
+        try {
+            do {
+                ListHistoryResponse response = execute(account, QuotaCost.HISTORY_LIST, gmail.users()
+                        .history()
+                        .list(USER)
+                        .setStartHistoryId(startHistoryId)
+                        .setHistoryTypes(List.of("messageAdded"))
+                        .setLabelId(PRIMARY_LABEL)
+                        .setMaxResults(500L)
+                        .setPageToken(pageToken));
+
+                if (response.getHistory() != null) {
+                    response.getHistory().stream()
+                            .filter(h -> h.getMessagesAdded() != null)
+                            .flatMap(h -> h.getMessagesAdded().stream())
+                            .forEach(added -> ids.add(added.getMessage().getId()));
+                }
+                if (response.getHistoryId() != null) {
+                    latestHistoryId = response.getHistoryId();
+                }
+                pageToken = response.getNextPageToken();
+            } while (pageToken != null);
 
-        List<CompletableFuture<RawEmailMessage>> futures = candidates.stream()
-                     .map(candidate -> CompletableFuture.supplyAsync(() -> {
-                         try {
-                             semaphore.acquire();
-                             Message fullMessage = retry(()->
-                                     gmail.users()
-                                             .messages()
-                                             .get(USER, candidate.getId())
-                                             .setFormat("full")
-                                             .execute()
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() == 404) {
+                log.info("Gmail history cursor {} expired, falling back to full search", startHistoryId);
+                return null;
+            }
+            throw e;
+        }
 
-                             );
+        log.info("Gmail history returned {} new message ids since history {}", ids.size(), startHistoryId);
+        return new MessageIdListing(new ArrayList<>(ids), latestHistoryId);
+    }
+
+
+    /**
+     * Fetches full Gmail messages through the batch endpoint.
+     * Candidates are de-duplicated by id before batching, so each message is fetched
+     * and converted exactly once.
+     */
+    private List<RawEmailMessage> fetchFullMessagesInBatches(Gmail gmail, List<EmailMessageDto> candidates, EmailAccount account) {
+        if(candidates.isEmpty()) return List.of();
 
-                            return convertToRawEmail(account,fullMessage);
+        List<String> ids = candidates.stream()
+                .map(EmailMessageDto::getId)
+                .toList();
 
-                         }catch (InterruptedException e) {
-                             Thread.currentThread().interrupt();
-                             return null;
-                         }catch (Exception e) {
-                             log.error("Full message fetch failed for {}", candidate.getId(), e);
-                             return null;
-                         }finally {
-                             semaphore.release();
-                         }
+        Map<String, Message> messages = fetchMessagesInBatches(gmail, account, ids, fullRequest);
+        fetchTextAttachments(gmail, account, messages.values());
 
-                     }, pipelineExecutor))
-                     .toList();
+        return messages.values().stream()
+                .map(message -> convertToRawEmail(account, message))
+                .toList();
 
-              return futures.stream()
-                     .map(CompletableFuture::join)
-                      .filter(Objects::nonNull)
-                     .toList();
+    }
 
+    private record TextAttachment(String messageId, String attachmentId) { }
 
+    /**
+     * Gmail keeps large text bodies behind an attachment id, like real attachments. Those text bodies - and
+     * only those - are fetched through the batch endpoint and filled into their parts.
+     */
+    private void fetchTextAttachments(Gmail gmail, EmailAccount account, Collection<Message> messages) {
+        Map<TextAttachment, MessagePart> parts = new HashMap<>();
+        for (Message message : messages) {
+            GmailTextParts.textAttachments(message).forEach(part ->
+                    parts.put(new TextAttachment(message.getId(), part.getBody().getAttachmentId()), part));
+        }
+        if (parts.isEmpty()) return;
 
+        fetchInBatches(gmail, account, List.copyOf(parts.keySet()), "text attachment", QuotaCost.ATTACHMENTS_GET,
+                key -> gmail.users().messages().attachments().get(USER, key.messageId(), key.attachmentId()).setFields("data"))
+                .forEach((key, body) -> parts.get(key).getBody().setData(body.getData()));
     }
 
     private RawEmailMessage convertToRawEmail(EmailAccount account, Message message) {
@@ -326,24 +601,6 @@ public class GmailEmailGatewayImpl  implements EmailGateway {
     }
 
 
-    private Gmail createGmailService(EmailAccount account) throws GeneralSecurityException, IOException {
-
-        String accessToken = tokenService.getValidAccessToken(account);
-
-        HttpRequestInitializer initializer = request ->
-                request.getHeaders().setAuthorization("Bearer " + accessToken);
-
-        NetHttpTransport httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-        return new Gmail.Builder(httpTransport,JSON_FACTORY, initializer)
-                .setApplicationName(APPLICATION_NAME)
-                .build();
-
-    }
-
-
-
-
-
     private List<String> extractAttachmentNames(Message message) {
         List<String> names = new ArrayList<>();
         if (message.getPayload() != null && message.getPayload().getParts() != null) {
@@ -0,0 +1,87 @@
+package com.infrastructure.email.gmail;
+
+import com.domain.enums.DetectionTarget;
+import com.infrastructure.email.Components.FinancialEmailDetector;
+import com.infrastructure.email.detection.FinancialRuleSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds Gmail search queries, with the financial detector's rules pushed down to Gmail.
+ *
+ * Every rule becomes one term of an OR group inside {...}: sender rules as from: terms, keywords as plain
+ * terms, which Gmail matches against subject and body - wider than the detector's subject + snippet check.
+ * Gmail only matches whole tokens, so a substring rule is searched as the token it names: "payment" still
+ * finds "Payment received" but not "repayments", and sender "bank" finds bank.com but not gtbank.com.
+ * The group is therefore a superset of the detector for whole-word rules and its near-superset for
+ * substring ones; snapbill.gmail.query-pushdown=false lists unfiltered where that difference matters.
+ * Gmail narrows the listing, the in-memory detector stays as the precise second stage.
+ * The filter is rebuilt per query so reloaded detector rules apply to the next sync.
+ */
+@Component
+@Slf4j
+public class GmailQueryBuilder {
+
+    private static final String PRIMARY = "category:primary";
+
+    private final FinancialEmailDetector financialEmailDetector;
+    private final boolean pushdown;
+
+    public GmailQueryBuilder(FinancialEmailDetector financialEmailDetector,
+                             @Value("${snapbill.gmail.query-pushdown:true}") boolean pushdown) {
+        this.financialEmailDetector = financialEmailDetector;
+        this.pushdown = pushdown;
+    }
+
+    public String since(Instant since) {
+        return withFilter("after:" + since.getEpochSecond() + " " + PRIMARY);
+    }
+
+    public String between(Instant from, Instant to) {
+        return withFilter("after:" + from.getEpochSecond() + " before:" + to.getEpochSecond() + " " + PRIMARY);
+    }
+
+    private String withFilter(String query) {
+        if (!pushdown) return query;
+        String filter = financialFilter(financialEmailDetector.rules());
+        if (filter == null) {
+            log.debug("No detection rules, listing Gmail without a financial filter");
+            return query;
+        }
+        return query + " " + filter;
+    }
+
+    /**
+     * @return the OR group, or null when there are no rules to push down
+     */
+    static String financialFilter(List<FinancialRuleSet.Rule> rules) {
+        if (rules.isEmpty()) return null;
+
+        List<String> senders = patterns(rules, DetectionTarget.SENDER);
+        List<String> keywords = patterns(rules, DetectionTarget.CONTENT);
+        Stream<String> from = senders.isEmpty()
+                ? Stream.empty()
+                : Stream.of(String.join(" OR ", senders)).map(terms -> "from:(" + terms + ")");
+        return Stream.concat(from, keywords.stream()).collect(Collectors.joining(" ", "{", "}"));
+    }
+
+    private static List<String> patterns(List<FinancialRuleSet.Rule> rules, DetectionTarget target) {
+        return rules.stream()
+                .filter(rule -> rule.target() == target)
+                .map(rule -> term(rule.pattern()))
+                .distinct()
+                .toList();
+    }
+
+    // Gmail splits on punctuation, so anything beyond letters and digits is searched as a phrase
+    private static String term(String value) {
+        String lower = value.toLowerCase();
+        return lower.matches("[a-z0-9]+") ? lower : "\"" + lower + "\"";
+    }
+}
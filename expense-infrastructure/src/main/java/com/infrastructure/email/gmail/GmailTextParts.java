@@ -0,0 +1,49 @@
+package com.infrastructure.email.gmail;
+
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Part-tree helpers for the full fetch: text bodies come inline with the message, except large ones that
+ * Gmail keeps behind an attachment id - those are fetched separately, real attachments never are.
+ */
+public final class GmailTextParts {
+
+    private GmailTextParts() {
+    }
+
+    public static boolean isText(MessagePart part) {
+        return "text/plain".equalsIgnoreCase(part.getMimeType()) || "text/html".equalsIgnoreCase(part.getMimeType());
+    }
+
+    /**
+     * Text parts that carry a body, depth first.
+     */
+    public static List<MessagePart> textParts(Message message) {
+        List<MessagePart> parts = new ArrayList<>();
+        collect(message.getPayload(), parts);
+        return parts.stream()
+                .filter(GmailTextParts::isText)
+                .filter(part -> part.getBody() != null
+                        && (part.getBody().getSize() == null || part.getBody().getSize() > 0))
+                .toList();
+    }
+
+    /**
+     * Text parts whose body Gmail left behind an attachment id instead of returning it inline.
+     */
+    public static List<MessagePart> textAttachments(Message message) {
+        return textParts(message).stream()
+                .filter(part -> part.getBody().getAttachmentId() != null && part.getBody().getData() == null)
+                .toList();
+    }
+
+    private static void collect(MessagePart part, List<MessagePart> parts) {
+        if (part == null) return;
+        parts.add(part);
+        if (part.getParts() != null) part.getParts().forEach(child -> collect(child, parts));
+    }
+}
@@ -1,76 +1,47 @@
 package com.infrastructure.email.listeners;
 
-import com.domain.entities.PipelineFailure;
+import com.domain.enums.PipelineJobType;
 import com.domain.events.EmailProcessingRequested;
-import com.domain.events.EmailSyncRequested;
-import com.domain.repositories.PipelineFailureRepository;
-import com.infrastructure.email.service.EmailProcessingService;
+import com.domain.repositories.PipelineJobRepository;
+import com.infrastructure.email.service.ExtractionScheduler;
+import com.infrastructure.jobs.PipelineJobHandler;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.UUID;
 
 
+/**
+ * Turns a processing request into a durable EMAIL_PROCESSING job, in the publisher's transaction.
+ * Running the job hands the account to the ExtractionScheduler, which keeps claiming its emails until none
+ * are left. Claim and processing failures are recorded and retried there. The job can complete as soon as
+ * the account is handed over: the emails themselves are the durable record, and the scheduler picks up every
+ * account with unfinished ones when it starts.
+ */
 @Component
+@RequiredArgsConstructor
 @Slf4j
-public class EmailProcessingListener {
-    private final ExecutorService pipelineExecutor;
-    private final EmailProcessingService emailProcessingService;
-    private final PipelineFailureRepository pipelineFailureRepository;
-    private final ScheduledExecutorService retryExecutor;
-    private final ApplicationEventPublisher publisher;
+public class EmailProcessingListener implements PipelineJobHandler {
 
-    public EmailProcessingListener(@Qualifier("pipelineExecutor")ExecutorService pipelineExecutor,
-                                   EmailProcessingService emailProcessingService,
-                                   PipelineFailureRepository pipelineFailureRepository,
-                                   @Qualifier("scheduledExecutor")ScheduledExecutorService retryExecutor,
-                                   ApplicationEventPublisher publisher) {
-        this.pipelineExecutor = pipelineExecutor;
-        this.emailProcessingService = emailProcessingService;
-        this.pipelineFailureRepository = pipelineFailureRepository;
-        this.retryExecutor = retryExecutor;
-        this.publisher = publisher;
-    }
+    private final ExtractionScheduler extractionScheduler;
+    private final PipelineJobRepository pipelineJobRepository;
 
 
     @EventListener
     public void handle(EmailProcessingRequested event) {
-        pipelineExecutor.execute(() -> {
-            try {
-
-                log.info("Received EmailSyncCompleted for account {}. Starting LLM processing...", event.accountId());
-                emailProcessingService.processPendingEmailsForAccounts(event.accountId());
-                log.info("LLM processing completed for account {}", event.accountId());
-            }catch (Exception e) {
-                log.error("LLM processing failed for account {}", event.accountId(), e);
-
-                pipelineFailureRepository.save(
-                        PipelineFailure.builder()
-                                .accountId(event.accountId())
-                                .pipelineStage("PROCESSING")
-                                .message(e.getMessage())
-                                .time(Instant.now())
-                                .build()
-
-                );
-                 //retry after delay
-
-                retryExecutor.schedule(() -> {
-                    pipelineExecutor.execute(() -> {
-                        publisher.publishEvent(
-                                new EmailProcessingRequested(event.accountId())
-                        );
-                    });
-                }, 30, TimeUnit.SECONDS);
-            }
+        pipelineJobRepository.enqueue(PipelineJobType.EMAIL_PROCESSING, event.accountId());
+    }
 
-        });
+    @Override
+    public PipelineJobType type() {
+        return PipelineJobType.EMAIL_PROCESSING;
+    }
 
+    @Override
+    public void handle(UUID accountId) {
+        log.info("Received EmailProcessingRequested for account {}. Scheduling LLM processing...", accountId);
+        extractionScheduler.request(accountId);
     }
 }
@@ -7,26 +7,20 @@ import com.domain.events.EmailSyncCompleted;
 import com.domain.repositories.RawEmailRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ExecutorService;
-
 @Component
 @Slf4j
 public class EmailSyncCompletedListener {
     private final ApplicationEventPublisher publisher;
-    private final ExecutorService pipelineExecutor;
     private final RawEmailRepository rawEmailRepository;
 
     public EmailSyncCompletedListener(ApplicationEventPublisher publisher,
-                                      @Qualifier("pipelineExecutor")ExecutorService pipelineExecutor,
                                       RawEmailRepository rawEmailRepository
                                       ) {
         this.publisher = publisher;
-        this.pipelineExecutor = pipelineExecutor;
         this.rawEmailRepository = rawEmailRepository;
     }
 
@@ -43,14 +37,12 @@ public class EmailSyncCompletedListener {
         boolean hasPendingWork =  rawEmailRepository.existsByAccountIdAndStatus(event.account(), ProcessingStatus.PENDING);
         if(hasPendingWork) {
             log.info("proceeding to LLM processing ........");
-            pipelineExecutor.execute(()-> {
-                try {
-                    publisher.publishEvent(new EmailProcessingRequested(event.account().getId()));
-                }catch (Exception e) {
-                    log.error("Publishing completed failed", e);
-                }
-
-            });
+            // enqueues the processing job - must not fail the sync job once its emails are stored
+            try {
+                publisher.publishEvent(new EmailProcessingRequested(event.account().getId()));
+            }catch (Exception e) {
+                log.error("Publishing completed failed", e);
+            }
 
         }
 
@@ -1,98 +1,62 @@
 package com.infrastructure.email.listeners;
 
 import com.domain.entities.EmailAccount;
-import com.domain.entities.PipelineFailure;
+import com.domain.enums.PipelineJobType;
 import com.domain.events.EmailSyncCompleted;
 import com.domain.events.EmailSyncRequested;
 import com.domain.repositories.EmailAccountRepository;
-import com.domain.repositories.PipelineFailureRepository;
+import com.domain.repositories.PipelineJobRepository;
 import com.infrastructure.email.service.EmailSyncService;
+import com.infrastructure.jobs.PipelineJobHandler;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.Optional;
+import java.util.UUID;
 
+/**
+ * Turns a sync request into a durable EMAIL_SYNC job, in the publisher's transaction, and runs those jobs.
+ * Concurrent syncs, retries and backoff are left to the PipelineJobWorker.
+ */
 @Component
-
-public class EmailSyncListener {
+@RequiredArgsConstructor
+public class EmailSyncListener implements PipelineJobHandler {
 
     private static final Log log = LogFactory.getLog(EmailSyncListener.class);
     private final EmailSyncService emailSyncService;
     private final ApplicationEventPublisher publisher;
     private final EmailAccountRepository emailAccountRepository;
-    private final ExecutorService pipelineExecutor;
-    private final ScheduledExecutorService retryExecutor;
-    private final PipelineFailureRepository pipelineFailureRepository;
-
-    private static final int ACCOUNT_LIMIT = 5;
-
-    private final Semaphore accountSemaphore = new Semaphore(ACCOUNT_LIMIT);
-
-    public EmailSyncListener(EmailSyncService emailSyncService,
-                             ApplicationEventPublisher publisher,
-                             EmailAccountRepository emailAccountRepository,
-                             @Qualifier("pipelineExecutor")ExecutorService pipelineExecutor,
-                             @Qualifier("scheduledExecutor") ScheduledExecutorService retryExecutor,
-                             PipelineFailureRepository pipelineFailureRepository) {
-        this.emailSyncService = emailSyncService;
-        this.publisher = publisher;
-        this.emailAccountRepository = emailAccountRepository;
-        this.pipelineExecutor = pipelineExecutor;
-        this.retryExecutor = retryExecutor;
-        this.pipelineFailureRepository = pipelineFailureRepository;
-    }
+    private final PipelineJobRepository pipelineJobRepository;
 
 
     @EventListener
     public void handle(EmailSyncRequested event) {
-        pipelineExecutor.execute(() -> {
-            try {
-                accountSemaphore.acquire();   // <-- Layer 1: throttles ACCOUNTS syncing concurrently
-                log.info("Email sync request event publish received ......");
-                log.info("Starting now...............................");
-               EmailAccount account = emailAccountRepository.findById(event.accountId())
-                       .orElseThrow();
-
-               int newEmails = emailSyncService.syncAccount(account);
-
-                //publish to email sync complete
-               publisher.publishEvent(new EmailSyncCompleted(account, newEmails));
-
-            }catch (Exception e) {
-                log.error("Sync failed for  account {}", e);
+        log.info("Email sync request event publish received ......");
+        pipelineJobRepository.enqueue(PipelineJobType.EMAIL_SYNC, event.accountId());
+    }
 
-                // persist failure
-                pipelineFailureRepository.save(
-                        PipelineFailure.builder()
-                                .accountId(event.accountId())
-                                .pipelineStage("SYNCING")
-                                .message(e.getMessage())
-                                .time(Instant.now())
-                                .build()
-                );
+    @Override
+    public PipelineJobType type() {
+        return PipelineJobType.EMAIL_SYNC;
+    }
 
-                // retry after delay
-                retryExecutor.schedule(() -> {
-                    pipelineExecutor.execute(() -> {
-                        publisher.publishEvent(
-                                new EmailSyncRequested(event.accountId())
-                        );
-                    });
-                }, 30, TimeUnit.SECONDS);
+    @Override
+    public void handle(UUID accountId) {
+        Optional<EmailAccount> found = emailAccountRepository.findById(accountId);
+        if (found.isEmpty()) {
+            log.info("Account " + accountId + " no longer exists, dropping its sync");
+            return;
+        }
+        EmailAccount account = found.get();
+        log.info("Starting now...............................");
 
-            }finally {
-                accountSemaphore.release();
-            }
-        });
+        int newEmails = emailSyncService.syncAccount(account);
 
+        //publish to email sync complete
+        publisher.publishEvent(new EmailSyncCompleted(account, newEmails));
     }
 }
@@ -0,0 +1,29 @@
+package com.infrastructure.email.outlook;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON batching payloads (POST /$batch, at most 20 requests each).
+ */
+public final class GraphBatch {
+
+    public static final int MAX_REQUESTS = 20;
+
+    private GraphBatch() { }
+
+    public record Request(List<Item> requests) { }
+
+    public record Item(String id, String method, String url) { }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Response(List<Result> responses) { }
+
+    /**
+     * One sub-response. Error bodies deserialize into an empty message and are told apart by status.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Result(String id, int status, Map<String, String> headers, GraphMessage body) { }
+}
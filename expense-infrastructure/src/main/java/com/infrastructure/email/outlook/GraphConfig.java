@@ -0,0 +1,41 @@
+package com.infrastructure.email.outlook;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+
+@Configuration
+public class GraphConfig {
+
+    @Value("${snapbill.microsoft.graph.base-url:https://graph.microsoft.com/v1.0}")
+    private String baseUrl;
+
+    @Bean
+    public WebClient graphWebClient() {
+        return graphWebClient(baseUrl);
+    }
+
+    /**
+     * Graph bodies can be large - the default 256 KB codec buffer is raised to 16 MB.
+     */
+    public static WebClient graphWebClient(String baseUrl) {
+        HttpClient httpClient = HttpClient.create()
+                .responseTimeout(Duration.ofSeconds(30))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000);
+
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.infrastructure.email.outlook;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Microsoft Graph message - only the fields we $select.
+ * receivedDateTime is kept as the ISO string Graph sends and parsed where used.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GraphMessage(
+        String id,
+        String conversationId,
+        String subject,
+        Recipient from,
+        List<Recipient> toRecipients,
+        String receivedDateTime,
+        String bodyPreview,
+        Boolean hasAttachments,
+        Body body,
+        List<Attachment> attachments,
+        @JsonProperty("@removed") Map<String, Object> removed
+) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Recipient(EmailAddress emailAddress) { }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record EmailAddress(String name, String address) { }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Body(String contentType, String content) { }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Attachment(String name) { }
+
+    /**
+     * One page of a collection or delta response.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Page(
+            List<GraphMessage> value,
+            @JsonProperty("@odata.nextLink") String nextLink,
+            @JsonProperty("@odata.deltaLink") String deltaLink
+    ) { }
+}
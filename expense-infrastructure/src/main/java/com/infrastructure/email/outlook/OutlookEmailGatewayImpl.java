@@ -2,53 +2,459 @@ package com.infrastructure.email.outlook;
 
 import com.domain.entities.EmailAccount;
 import com.domain.entities.RawEmailMessage;
+import com.domain.exceptions.EmailGatewayException;
 import com.domain.gateways.EmailGateway;
-import com.domain.model.EmailMessage;
 import com.domain.model.EmailMessageDto;
-import com.microsoft.graph.serviceclient.GraphServiceClient;
-import lombok.RequiredArgsConstructor;
+import com.domain.repositories.RawEmailRepository;
+import com.infrastructure.email.Components.FinancialEmailDetector;
+import com.infrastructure.email.ratelimit.Backoff;
+import com.infrastructure.email.ratelimit.ProviderRateLimiter;
+import com.infrastructure.email.ratelimit.ProviderThrottledException;
+import com.infrastructure.interfaces.EmailBodyExtractor;
+import com.infrastructure.security.TokenService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Mono;
 
-import java.io.IOException;
-import java.security.GeneralSecurityException;
+import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.List;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Microsoft Graph gateway over plain REST.
+ *
+ * Incremental sync walks /messages/delta on the inbox and keeps the returned deltaLink on the account,
+ * the same way Gmail keeps its history id. Listings only $select the fields the financial filter reads;
+ * bodies of the candidates are then fetched through $batch, up to 20 messages per round trip.
+ */
 @Component("microsoftEmailGateway")
-@RequiredArgsConstructor
 @Slf4j
 public class OutlookEmailGatewayImpl implements EmailGateway {
-    /**
-     * @param account The connected email account with provider details and tokens
-     * @param since   The timestamp of the last successful sync
-     * @return list of email message object
-     */
+
+    private final WebClient graphWebClient;
+    private final TokenService tokenService;
+    private final FinancialEmailDetector financialEmailDetector;
+    private final EmailBodyExtractor<GraphMessage> emailBodyExtractor;
+    private final RawEmailRepository rawEmailRepository;
+    private final ExecutorService pipelineExecutor;
+    private final ProviderRateLimiter rateLimiter;
+
+    private static final String INBOX = "/me/mailFolders/inbox";
+
+    // A page of 50 splits into at most three batches, under Graph's four concurrent requests per mailbox
+    private static final int PAGE_SIZE = 50;
+
+    // Listing fields - what buildMetaDataDTO and the financial filter read
+    private static final String LIST_SELECT = "id,conversationId,subject,from,toRecipients,receivedDateTime,bodyPreview,hasAttachments";
+    private static final String BODY_SELECT = "id,body";
+
+    public OutlookEmailGatewayImpl(@Qualifier("graphWebClient") WebClient graphWebClient,
+                                   TokenService tokenService,
+                                   FinancialEmailDetector financialEmailDetector,
+                                   EmailBodyExtractor<GraphMessage> emailBodyExtractor,
+                                   RawEmailRepository rawEmailRepository,
+                                   @Qualifier("pipelineExecutor") ExecutorService pipelineExecutor,
+                                   @Qualifier("graphRateLimiter") ProviderRateLimiter rateLimiter) {
+        this.graphWebClient = graphWebClient;
+        this.tokenService = tokenService;
+        this.financialEmailDetector = financialEmailDetector;
+        this.emailBodyExtractor = emailBodyExtractor;
+        this.rawEmailRepository = rawEmailRepository;
+        this.pipelineExecutor = pipelineExecutor;
+        this.rateLimiter = rateLimiter;
+    }
+
+
     @Override
     public List<RawEmailMessage> fetchNewMessages(EmailAccount account, Instant since) {
-        return List.of();
+        List<RawEmailMessage> messages = new ArrayList<>();
+        try {
+            fetchNewMessages(account, since, messages::addAll);
+            return messages;
+        } catch (Exception e) {
+            log.error("Graph fetch failed for {}: {}", account.getProviderEmail(), e.getMessage(), e);
+            return List.of();
+        }
     }
 
+    /**
+     * Follows the stored delta link, or starts a new delta round filtered to messages received since
+     * the last sync. Each page goes through the ingested check, the financial filter and a body batch
+     * before reaching the sink. The new delta link is set on the account only after the last page was
+     * accepted - persisted by the caller.
+     */
+    @Override
+    public void fetchNewMessages(EmailAccount account, Instant since, Consumer<List<RawEmailMessage>> pageSink) {
+        String token = tokenService.getValidAccessToken(account);
+        Instant fetchSince = since != null
+                ? since
+                : Optional.ofNullable(account.getLastEmailReceivedAt())
+                .orElse(Instant.now().minus(30, ChronoUnit.DAYS));
+
+        String deltaLink;
+        try {
+            deltaLink = account.getDeltaLink() != null
+                    ? streamDelta(account, token, absolute(account.getDeltaLink()), pageSink)
+                    : streamDelta(account, token, initialDelta(fetchSince), pageSink);
+        } catch (WebClientResponseException e) {
+            if (e.getStatusCode().value() != 410 || account.getDeltaLink() == null) {
+                throw new EmailGatewayException("Graph fetch failed for " + account.getProviderEmail(), e);
+            }
+            // Delta token expired or the folder was reset - start a fresh round
+            log.info("Graph delta link expired for {}, starting a new delta round", account.getProviderEmail());
+            deltaLink = streamDelta(account, token, initialDelta(fetchSince), pageSink);
+        }
+
+        account.setDeltaLink(deltaLink);
+    }
 
     /**
-     * @param account
-     * @return boolean
+     * Backfill slice - a filtered listing over [from, to), the delta link is left alone.
      */
+    @Override
+    public void fetchMessagesBetween(EmailAccount account, Instant from, Instant to, Consumer<List<RawEmailMessage>> pageSink) {
+        String token = tokenService.getValidAccessToken(account);
+        Function<UriBuilder, URI> uri = b -> b.path(INBOX + "/messages")
+                .queryParam("$select", LIST_SELECT)
+                .queryParam("$filter", "receivedDateTime ge " + from + " and receivedDateTime lt " + to)
+                .queryParam("$top", PAGE_SIZE)
+                .build();
+        try {
+            while (uri != null) {
+                GraphMessage.Page page = get(account, token, uri, GraphMessage.Page.class);
+                if (page == null) break;
+                streamPage(account, token, page.value(), pageSink);
+                uri = page.nextLink() != null ? absolute(page.nextLink()) : null;
+            }
+        } catch (WebClientException e) {
+            throw new EmailGatewayException("Graph backfill failed for " + account.getProviderEmail(), e);
+        }
+    }
+
+
     @Override
     public boolean isConnectionValid(EmailAccount account) {
-        return false;
+        try {
+            String token = tokenService.getValidAccessToken(account);
+            get(account, token, b -> b.path(INBOX).queryParam("$select", "id").build(), GraphMessage.class);
+            return true;
+        } catch (Exception e) {
+            log.warn("Graph connection invalid for {}: {}", account.getProviderEmail(), e.getMessage());
+            return false;
+        }
+    }
+
+
+    //===========Helper Functions==================//
+
+    // ================== DELTA ==================
+
+    private Function<UriBuilder, URI> initialDelta(Instant since) {
+        return b -> b.path(INBOX + "/messages/delta")
+                .queryParam("$select", LIST_SELECT)
+                .queryParam("$filter", "receivedDateTime ge " + since.truncatedTo(ChronoUnit.SECONDS))
+                .build();
+    }
+
+    /**
+     * nextLink / deltaLink are absolute URLs, used as Graph handed them out.
+     */
+    private Function<UriBuilder, URI> absolute(String link) {
+        return b -> URI.create(link);
+    }
+
+    /**
+     * Pages through one delta round.
+     *
+     * @return the delta link to resume from next time
+     */
+    private String streamDelta(EmailAccount account, String token, Function<UriBuilder, URI> first, Consumer<List<RawEmailMessage>> pageSink) {
+        Function<UriBuilder, URI> uri = first;
+        int pages = 0;
+        while (true) {
+            GraphMessage.Page page = get(account, token, uri, GraphMessage.Page.class);
+            if (page == null) {
+                throw new EmailGatewayException("Graph returned an empty delta page for " + account.getProviderEmail());
+            }
+            pages++;
+            streamPage(account, token, page.value(), pageSink);
+
+            if (page.nextLink() != null) {
+                uri = absolute(page.nextLink());
+            } else {
+                log.info("Graph delta for {} finished after {} pages", account.getProviderEmail(), pages);
+                return page.deltaLink();
+            }
+        }
+    }
+
+    /**
+     * One listed page: drop removals and stored ids -> financial filter -> body batch -> sink.
+     */
+    private void streamPage(EmailAccount account, String token, List<GraphMessage> listed, Consumer<List<RawEmailMessage>> pageSink) {
+        if (listed == null || listed.isEmpty()) return;
+
+        // Delta also reports deletions and flag changes of messages we already have
+        List<GraphMessage> live = listed.stream()
+                .filter(m -> m.removed() == null && m.id() != null && m.receivedDateTime() != null)
+                .toList();
+        if (live.isEmpty()) return;
+
+        Set<String> stored = rawEmailRepository.findExistingProviderMessageIds(
+                account.getId(), live.stream().map(GraphMessage::id).toList());
+        Map<String, GraphMessage> page = new LinkedHashMap<>();
+        live.stream().filter(m -> !stored.contains(m.id())).forEach(m -> page.put(m.id(), m));
+        if (page.isEmpty()) return;
+
+        List<EmailMessageDto> candidates = financialEmailDetector.filterFinancialCandidate(
+                page.values().stream().map(m -> buildMetaDataDTO(m, account)).toList());
+        if (candidates.isEmpty()) return;
+
+        List<GraphMessage> toFetch = candidates.stream().map(c -> page.get(c.getId())).toList();
+        Map<String, GraphMessage> bodies = fetchBodiesInBatches(account, token, toFetch);
+
+        List<RawEmailMessage> messages = toFetch.stream()
+                .filter(m -> bodies.containsKey(m.id()))
+                .map(m -> convertToRawEmail(account, m, bodies.get(m.id())))
+                .toList();
+        if (!messages.isEmpty()) {
+            pageSink.accept(messages);
+        }
+    }
+
+
+    // ================== BATCH ==================
+
+    /**
+     * Fetches bodies (and attachment names) through $batch, GraphBatch.MAX_REQUESTS messages per round trip.
+     *
+     * @return full messages keyed by id, missing entries are ids Graph refused for good (e.g. deleted)
+     * @throws ProviderThrottledException when Graph kept throttling a chunk past the retry budget
+     */
+    private Map<String, GraphMessage> fetchBodiesInBatches(EmailAccount account, String token, List<GraphMessage> messages) {
+        Map<String, GraphMessage> results = new ConcurrentHashMap<>();
+
+        List<CompletableFuture<Void>> futures = partition(messages, GraphBatch.MAX_REQUESTS).stream()
+                .map(chunk -> CompletableFuture.runAsync(
+                        () -> executeBatch(account, token, chunk, results), pipelineExecutor))
+                .toList();
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Runs one $batch and handles partial failure per sub-response: throttled sub-requests are re-queued
+     * into the next round after a backoff honouring the largest Retry-After, everything else is dropped
+     * and logged. A failure of the batch call itself re-queues whatever is still unresolved.
+     * Graph counts every sub-request against the mailbox limit, so the batch is charged per message.
+     */
+    private void executeBatch(EmailAccount account, String token, List<GraphMessage> chunk, Map<String, GraphMessage> results) {
+        List<GraphMessage> pending = chunk;
+
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt >= rateLimiter.maxAttempts()) {
+                throw new ProviderThrottledException(
+                        "Graph body fetch gave up on " + pending.size() + " messages after " + attempt + " attempts", null);
+            }
+
+            List<GraphBatch.Item> items = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                items.add(new GraphBatch.Item(String.valueOf(i), "GET", bodyUrl(pending.get(i))));
+            }
+
+            List<GraphMessage> retryable = new ArrayList<>();
+            Duration retryAfter = null;
+            ProviderRateLimiter.Permit permit = rateLimiter.acquire(account.getId(), pending.size());
+            try {
+                GraphBatch.Response response = graphWebClient.post()
+                        .uri("/$batch")
+                        .headers(h -> h.setBearerAuth(token))
+                        .bodyValue(new GraphBatch.Request(items))
+                        .retrieve()
+                        .onStatus(this::isRetryable, this::throttled)
+                        .bodyToMono(GraphBatch.Response.class)
+                        .block();
+
+                Set<Integer> answered = new HashSet<>();
+                for (GraphBatch.Result result : response == null || response.responses() == null ? List.<GraphBatch.Result>of() : response.responses()) {
+                    int index = Integer.parseInt(result.id());
+                    GraphMessage message = pending.get(index);
+                    answered.add(index);
+
+                    if (result.status() == 200 && result.body() != null) {
+                        results.put(message.id(), result.body());
+                    } else if (isRetryable(HttpStatusCode.valueOf(result.status()))) {
+                        retryable.add(message);
+                        retryAfter = longer(retryAfter, Backoff.parseRetryAfter(header(result, "Retry-After")));
+                    } else {
+                        log.warn("Graph body fetch failed for id {}: {}", message.id(), result.status());
+                    }
+                }
+                for (int i = 0; i < pending.size(); i++) {
+                    if (!answered.contains(i)) retryable.add(pending.get(i));
+                }
+            } catch (ProviderThrottledException e) {
+                retryable = unresolved(pending, results);
+                retryAfter = e.getRetryAfter();
+            } catch (WebClientException e) {
+                log.warn("Graph batch of {} failed on attempt {}: {}", pending.size(), attempt + 1, e.getMessage());
+                retryable = unresolved(pending, results);
+            } finally {
+                permit.release(!retryable.isEmpty());
+            }
+
+            pending = List.copyOf(retryable);
+            if (!pending.isEmpty()) {
+                rateLimiter.pause(attempt, retryAfter);
+            }
+        }
+    }
+
+    private String bodyUrl(GraphMessage message) {
+        String url = "/me/messages/" + message.id() + "?$select=" + BODY_SELECT;
+        return Boolean.TRUE.equals(message.hasAttachments())
+                ? url + "&$expand=attachments($select=name)"
+                : url;
+    }
+
+    private List<GraphMessage> unresolved(List<GraphMessage> pending, Map<String, GraphMessage> results) {
+        return new ArrayList<>(pending.stream().filter(m -> !results.containsKey(m.id())).toList());
+    }
+
+    private String header(GraphBatch.Result result, String name) {
+        if (result.headers() == null) return null;
+        return result.headers().entrySet().stream()
+                .filter(e -> name.equalsIgnoreCase(e.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private Duration longer(Duration a, Duration b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return b.compareTo(a) > 0 ? b : a;
     }
 
 
-    //  Helper methods
+    // ================== REQUESTS ==================
 
-    private GraphServiceClient createGraphClient(EmailAccount account) {
-        String accessToken = refreshAccessTokenIfNeeded(account);
+    /**
+     * Executes a single GET through the rate limiter.
+     * Throttling responses are turned into ProviderThrottledException so the limiter backs off and retries.
+     */
+    private <T> T get(EmailAccount account, String token, Function<UriBuilder, URI> uri, Class<T> type) {
+        return rateLimiter.execute(account.getId(), 1, () -> graphWebClient.get()
+                .uri(uri)
+                .headers(h -> h.setBearerAuth(token))
+                .header("Prefer", "odata.maxpagesize=" + PAGE_SIZE)
+                .retrieve()
+                .onStatus(this::isRetryable, this::throttled)
+                .bodyToMono(type)
+                .block());
+    }
+
+    private boolean isRetryable(HttpStatusCode status) {
+        int code = status.value();
+        return code == 429 || code == 503 || code == 504;
+    }
+
+    private Mono<ProviderThrottledException> throttled(ClientResponse response) {
+        Duration retryAfter = Backoff.parseRetryAfter(response.headers().asHttpHeaders().getFirst("Retry-After"));
+        return response.releaseBody()
+                .thenReturn(new ProviderThrottledException("Graph throttled: " + response.statusCode().value(), retryAfter));
+    }
+
+
+    // ================== MAPPING ==================
 
-        return null;
+    private EmailMessageDto buildMetaDataDTO(GraphMessage message, EmailAccount account) {
+        return EmailMessageDto.builder()
+                .id(message.id())
+                .emailAccount(account)
+                .provider(account.getProvider())
+                .providerMessageId(message.id())
+                .threadId(message.conversationId())
+                .subject(Objects.requireNonNullElse(message.subject(), ""))
+                .to(recipients(message))
+                .sender(address(message.from()))
+                .receivedDate(Instant.parse(message.receivedDateTime()))
+                .snippet(message.bodyPreview())
+                .build();
     }
 
-    private String refreshAccessTokenIfNeeded(EmailAccount account) {
-        return "";
+    /**
+     * @param listed metadata from the listing
+     * @param full   body and attachments from the batch
+     */
+    private RawEmailMessage convertToRawEmail(EmailAccount account, GraphMessage listed, GraphMessage full) {
+        RawEmailMessage rawEmail = new RawEmailMessage();
+
+        rawEmail.setEmailAccount(account);
+        rawEmail.setProviderMessageId(listed.id());
+        rawEmail.setSubject(Objects.requireNonNullElse(listed.subject(), ""));
+        rawEmail.setSender(address(listed.from()));
+        rawEmail.setProvider(account.getProvider());
+        rawEmail.setTo("me");
+        rawEmail.setSnippet(listed.bodyPreview());
+        rawEmail.setBody(emailBodyExtractor.extractPlainText(full));
+        rawEmail.setBodyHtml(emailBodyExtractor.extractHtmlBody(full));
+        rawEmail.setThreadId(listed.conversationId());
+        rawEmail.setAttachments(full.attachments() == null
+                ? new ArrayList<>()
+                : full.attachments().stream()
+                .map(GraphMessage.Attachment::name)
+                .filter(name -> name != null && !name.isEmpty())
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll));
+        rawEmail.setReceivedDate(Instant.parse(listed.receivedDateTime()));
+
+        return rawEmail;
+    }
+
+    /**
+     * Same shape as the Gmail From header - "Name <address>".
+     */
+    private String address(GraphMessage.Recipient recipient) {
+        if (recipient == null || recipient.emailAddress() == null) return "";
+        GraphMessage.EmailAddress email = recipient.emailAddress();
+        if (email.name() == null || email.name().isEmpty()) return Objects.requireNonNullElse(email.address(), "");
+        return email.name() + " <" + email.address() + ">";
+    }
+
+    private String recipients(GraphMessage message) {
+        if (message.toRecipients() == null) return "";
+        return String.join(", ", message.toRecipients().stream().map(this::address).toList());
+    }
+
+
+    // ================== PARTITION ==================
+
+    private <T> List<List<T>> partition(List<T> list, int size) {
+        List<List<T>> parts = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += size) {
+            parts.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return parts;
     }
 }
@@ -0,0 +1,51 @@
+package com.infrastructure.email.ratelimit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: delay = random(0, min(cap, base * 2^attempt)).
+ * A Retry-After from the provider is a floor - we never come back earlier than asked.
+ */
+public class Backoff {
+
+    private final long baseMillis;
+    private final long capMillis;
+
+    public Backoff(Duration base, Duration cap) {
+        this.baseMillis = base.toMillis();
+        this.capMillis = cap.toMillis();
+    }
+
+    public Duration delay(int attempt, Duration retryAfter) {
+        long ceiling = Math.min(capMillis, baseMillis << Math.min(attempt, 20));
+        long jittered = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        long millis = retryAfter != null ? Math.max(retryAfter.toMillis(), jittered) : jittered;
+        return Duration.ofMillis(millis);
+    }
+
+    /**
+     * Parses a Retry-After header, either delta-seconds or an HTTP date.
+     * @return the wait, or null when absent/unparseable
+     */
+    public static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) return null;
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException ignored) {
+            // not seconds, try the date form
+        }
+        try {
+            Instant at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            Duration wait = Duration.between(Instant.now(), at);
+            return wait.isNegative() ? Duration.ZERO : wait;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.infrastructure.email.ratelimit;
+
+@FunctionalInterface
+public interface ProviderCall<T, E extends Exception> {
+    T call() throws E;
+}
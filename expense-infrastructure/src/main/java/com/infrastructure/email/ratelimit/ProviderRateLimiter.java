@@ -0,0 +1,163 @@
+package com.infrastructure.email.ratelimit;
+
+import com.domain.exceptions.EmailGatewayException;
+import com.infrastructure.cache.LruCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiting for one provider's API.
+ *
+ * Every call goes through three gates:
+ *  - the account's token bucket (per-user quota),
+ *  - the shared project bucket (per-project quota),
+ *  - an AIMD concurrency limit shared by all accounts that shrinks when the provider throttles.
+ * Throttled calls are retried with jittered exponential backoff honouring Retry-After.
+ *
+ * Time spent waiting on quota and on backoff is recorded as snapbill.provider.throttle.wait.
+ */
+@Slf4j
+public class ProviderRateLimiter {
+
+    private final String provider;
+    private final RateLimitProperties properties;
+    private final TokenBucket projectBucket;
+    private final LruCache<UUID, TokenBucket> accountBuckets;
+    private final AimdConcurrencyLimit concurrency;
+    private final Backoff backoff;
+
+    private final Timer quotaWait;
+    private final Timer backoffWait;
+    private final Counter throttledCalls;
+
+    public ProviderRateLimiter(String provider, RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.properties = properties;
+        this.projectBucket = new TokenBucket(properties.projectUnitsPerSecond(), properties.projectUnitsPerSecond());
+        this.accountBuckets = new LruCache<>(properties.trackedAccounts());
+        this.concurrency = new AimdConcurrencyLimit(
+                properties.initialConcurrency(),
+                properties.minConcurrency(),
+                properties.maxConcurrency(),
+                0.5,
+                1_000);
+        this.backoff = new Backoff(properties.backoffBase(), properties.backoffCap());
+
+        this.quotaWait = Timer.builder("snapbill.provider.throttle.wait")
+                .tag("provider", provider).tag("reason", "quota")
+                .register(meterRegistry);
+        this.backoffWait = Timer.builder("snapbill.provider.throttle.wait")
+                .tag("provider", provider).tag("reason", "backoff")
+                .register(meterRegistry);
+        this.throttledCalls = Counter.builder("snapbill.provider.throttled")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        Gauge.builder("snapbill.provider.concurrency.limit", concurrency, AimdConcurrencyLimit::limit)
+                .tag("provider", provider)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a single call within the account's quota, retrying while the provider throttles.
+     *
+     * @param accountId account whose per-user quota is charged
+     * @param units quota units the call costs
+     * @throws ProviderThrottledException once the retries are spent
+     */
+    public <T, E extends Exception> T execute(UUID accountId, int units, ProviderCall<T, E> call) throws E {
+        for (int attempt = 0; ; attempt++) {
+            Permit permit = acquire(accountId, units);
+            Duration retryAfter;
+            try {
+                T result = call.call();
+                permit.release(false);
+                return result;
+            } catch (ProviderThrottledException e) {
+                permit.release(true);
+                if (attempt + 1 >= properties.maxAttempts()) {
+                    log.error("{} still throttled after {} attempts for account {}", provider, attempt + 1, accountId);
+                    throw e;
+                }
+                retryAfter = e.getRetryAfter();
+            } catch (Exception e) {
+                permit.release(false);
+                throw e;
+            }
+            pause(attempt, retryAfter);
+        }
+    }
+
+    /**
+     * Waits for quota and a concurrency slot. The caller must release the permit,
+     * reporting whether the provider throttled the call.
+     * Used directly for batch calls where throttling is reported per sub-request.
+     */
+    public Permit acquire(UUID accountId, int units) {
+        try {
+            long waited = bucketFor(accountId).acquire(units);
+            waited += projectBucket.acquire(units);
+            long start = System.nanoTime();
+            concurrency.acquire();
+            waited += System.nanoTime() - start;
+            if (waited > 0) {
+                quotaWait.record(waited, TimeUnit.NANOSECONDS);
+            }
+            return new Permit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmailGatewayException("Interrupted while waiting for " + provider + " quota");
+        }
+    }
+
+    /**
+     * Sleeps for the backoff of the given attempt (0-based).
+     */
+    public void pause(int attempt, Duration retryAfter) {
+        throttledCalls.increment();
+        Duration delay = backoff.delay(attempt, retryAfter);
+        log.debug("{} throttled, backing off {} ms (attempt {})", provider, delay.toMillis(), attempt + 1);
+        try {
+            Thread.sleep(delay);
+            backoffWait.record(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmailGatewayException("Interrupted while backing off from " + provider);
+        }
+    }
+
+    public int maxAttempts() {
+        return properties.maxAttempts();
+    }
+
+    public int concurrencyLimit() {
+        return concurrency.limit();
+    }
+
+    private TokenBucket bucketFor(UUID accountId) {
+        return accountBuckets.computeIfAbsent(accountId,
+                id -> new TokenBucket(properties.userUnitsPerSecond(), properties.userUnitsPerSecond()));
+    }
+
+    /**
+     * A held concurrency slot. Release exactly once.
+     */
+    public final class Permit {
+
+        private boolean released;
+
+        private Permit() { }
+
+        public void release(boolean throttled) {
+            if (released) return;
+            released = true;
+            concurrency.release(throttled);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.infrastructure.email.ratelimit;
+
+import com.domain.exceptions.EmailGatewayException;
+
+import java.time.Duration;
+
+/**
+ * Provider pushed back (429 / rate limit 403 / 5xx).
+ * Thrown by gateway calls so the rate limiter can back off and retry,
+ * and out of the limiter once the retries are spent.
+ */
+public class ProviderThrottledException extends EmailGatewayException {
+
+    private final Duration retryAfter;
+
+    public ProviderThrottledException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return the provider's Retry-After, or null when it sent none
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,31 @@
+package com.infrastructure.email.ratelimit;
+
+/**
+ * Gmail API quota units per method (https://developers.google.com/gmail/api/reference/quota).
+ * A batch is charged per sub-request, so a batch of n gets costs n * MESSAGES_GET.
+ * Gmail charges messages.get the same for metadata and full format - the difference
+ * between the two is bandwidth, not quota.
+ */
+public enum QuotaCost {
+
+    MESSAGES_LIST(5),
+    MESSAGES_GET(5),
+    ATTACHMENTS_GET(5),
+    HISTORY_LIST(2),
+    GET_PROFILE(1),
+    LABELS_LIST(1);
+
+    private final int units;
+
+    QuotaCost(int units) {
+        this.units = units;
+    }
+
+    public int units() {
+        return units;
+    }
+
+    public int units(int requests) {
+        return units * requests;
+    }
+}
@@ -0,0 +1,63 @@
+package com.infrastructure.email.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class RateLimitConfig {
+
+    /**
+     * Gmail: 250 units/s per user, 1,200,000 units/min (20,000/s) per project.
+     */
+    @Bean
+    public ProviderRateLimiter gmailRateLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${snapbill.ratelimit.gmail.user-units-per-second:250}") double userUnits,
+            @Value("${snapbill.ratelimit.gmail.project-units-per-second:20000}") double projectUnits,
+            @Value("${snapbill.ratelimit.gmail.initial-concurrency:12}") int initialConcurrency,
+            @Value("${snapbill.ratelimit.gmail.max-concurrency:64}") int maxConcurrency,
+            @Value("${snapbill.ratelimit.gmail.max-attempts:5}") int maxAttempts) {
+
+        return new ProviderRateLimiter("gmail", new RateLimitProperties(
+                userUnits,
+                projectUnits,
+                initialConcurrency,
+                1,
+                maxConcurrency,
+                maxAttempts,
+                Duration.ofMillis(500),
+                Duration.ofSeconds(32),
+                10_000
+        ), meterRegistry);
+    }
+
+    /**
+     * Graph: 10,000 requests per 10 minutes (~16/s) per app per mailbox, every $batch sub-request counted.
+     * There is no documented per-app ceiling, so the project bucket only guards against runaway fan-out.
+     */
+    @Bean
+    public ProviderRateLimiter graphRateLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${snapbill.ratelimit.graph.user-requests-per-second:16}") double userRequests,
+            @Value("${snapbill.ratelimit.graph.project-requests-per-second:2000}") double projectRequests,
+            @Value("${snapbill.ratelimit.graph.initial-concurrency:4}") int initialConcurrency,
+            @Value("${snapbill.ratelimit.graph.max-concurrency:32}") int maxConcurrency,
+            @Value("${snapbill.ratelimit.graph.max-attempts:5}") int maxAttempts) {
+
+        return new ProviderRateLimiter("graph", new RateLimitProperties(
+                userRequests,
+                projectRequests,
+                initialConcurrency,
+                1,
+                maxConcurrency,
+                maxAttempts,
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(60),
+                10_000
+        ), meterRegistry);
+    }
+}
@@ -0,0 +1,18 @@
+package com.infrastructure.email.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Limits for one provider. Units are the provider's quota units per second.
+ */
+public record RateLimitProperties(
+        double userUnitsPerSecond,
+        double projectUnitsPerSecond,
+        int initialConcurrency,
+        int minConcurrency,
+        int maxConcurrency,
+        int maxAttempts,
+        Duration backoffBase,
+        Duration backoffCap,
+        int trackedAccounts
+) { }
@@ -0,0 +1,80 @@
+package com.infrastructure.email.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket priced in quota units.
+ *
+ * Callers reserve units up front and the bucket may go into debt - the reservation
+ * returns how long the caller has to wait before spending them. The lock is only held
+ * for the arithmetic, never while waiting, so callers queue fairly in arrival order.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private double available;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this(capacity, refillPerSecond, System::nanoTime);
+    }
+
+    public TokenBucket(double capacity, double refillPerSecond, LongSupplier nanoClock) {
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("capacity and refill rate must be positive");
+        }
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.nanoClock = nanoClock;
+        this.available = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Reserves units and returns the wait in nanos before they may be used (0 = go now).
+     */
+    public long reserve(int units) {
+        lock.lock();
+        try {
+            refill();
+            available -= units;
+            return available >= 0 ? 0 : (long) Math.ceil(-available / refillPerNano);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves units and sleeps until they are available.
+     * @return nanos spent waiting
+     */
+    public long acquire(int units) throws InterruptedException {
+        long waitNanos = reserve(units);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    public double available() {
+        lock.lock();
+        try {
+            refill();
+            return available;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,111 @@
+package com.infrastructure.email.service;
+
+import com.domain.entities.EmailAccount;
+import com.domain.enums.SyncStatus;
+import com.domain.gateways.EmailGateway;
+import com.domain.repositories.EmailAccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Walks an account's history before connectedAt in time slices, newest slice first.
+ *
+ * Each slice is persisted page by page and then checkpointed on the account (backfillCursor),
+ * so a crash or redeploy resumes from the last finished slice instead of starting over.
+ * The live sync never waits on this - a run stops as soon as the account starts syncing.
+ */
+@Service
+@Slf4j
+public class BackfillService {
+
+    private final Map<String, EmailGateway> emailGateways;
+    private final EmailAccountRepository emailAccountRepository;
+    private final SyncPersistentService syncPersistentService;
+
+    private final Duration depth;
+    private final Duration slice;
+    private final int slicesPerRun;
+
+    public BackfillService(Map<String, EmailGateway> emailGateways,
+                           EmailAccountRepository emailAccountRepository,
+                           SyncPersistentService syncPersistentService,
+                           @Value("${snapbill.backfill.depth-days:30}") long depthDays,
+                           @Value("${snapbill.backfill.slice-days:7}") long sliceDays,
+                           @Value("${snapbill.backfill.slices-per-run:4}") int slicesPerRun) {
+        this.emailGateways = emailGateways;
+        this.emailAccountRepository = emailAccountRepository;
+        this.syncPersistentService = syncPersistentService;
+        this.depth = Duration.ofDays(depthDays);
+        this.slice = Duration.ofDays(sliceDays);
+        this.slicesPerRun = slicesPerRun;
+    }
+
+    /**
+     * Sets the backfill window on an account's first sync: [connectedAt - depth, connectedAt).
+     *
+     * @return where the live sync should start from
+     */
+    public Instant initialize(EmailAccount account) {
+        Instant start = account.getConnectedAt();
+        if (account.getBackfillTarget() == null) {
+            Instant target = start.minus(depth);
+            if (syncPersistentService.initBackfill(account, start, target)) {
+                account.setBackfillCursor(start);
+                account.setBackfillTarget(target);
+                log.info("Backfill for {} scheduled down to {}", account.getProviderEmail(), target);
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Runs up to slicesPerRun slices for the account.
+     *
+     * @return true once the backfill has reached its target
+     */
+    public boolean backfill(EmailAccount account) {
+        EmailGateway gateway = emailGateways.get(account.getProvider().toString().toLowerCase() + "EmailGateway");
+        if (gateway == null) {
+            log.error("No EmailGateway found for provider: {}", account.getProvider());
+            return false;
+        }
+
+        for (int i = 0; i < slicesPerRun && !isComplete(account); i++) {
+            if (isSyncing(account)) {
+                log.info("Account {} is syncing, backfill yields", account.getProviderEmail());
+                return false;
+            }
+
+            Instant to = account.getBackfillCursor();
+            Instant from = to.minus(slice).isBefore(account.getBackfillTarget())
+                    ? account.getBackfillTarget()
+                    : to.minus(slice);
+
+            log.info("Backfilling {} from {} to {}", account.getProviderEmail(), from, to);
+            gateway.fetchMessagesBetween(account, from, to, syncPersistentService::persistPage);
+            syncPersistentService.saveBackfillCheckpoint(account, from);
+        }
+
+        boolean complete = isComplete(account);
+        if (complete) {
+            log.info("Backfill complete for {}", account.getProviderEmail());
+        }
+        return complete;
+    }
+
+    private boolean isComplete(EmailAccount account) {
+        return account.getBackfillTarget() == null
+                || !account.getBackfillCursor().isAfter(account.getBackfillTarget());
+    }
+
+    private boolean isSyncing(EmailAccount account) {
+        return emailAccountRepository.findById(account.getId())
+                .map(current -> current.getSyncStatus() == SyncStatus.SYNCING)
+                .orElse(false);
+    }
+}
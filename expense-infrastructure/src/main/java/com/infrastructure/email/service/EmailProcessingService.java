@@ -1,90 +1,103 @@
 package com.infrastructure.email.service;
 
 import com.domain.entities.RawEmailMessage;
+import com.domain.model.ExtractionResult;
 import com.domain.repositories.RawEmailRepository;
 import com.infrastructure.email.service.sub.EmailProcessor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.*;
 
 @Service
 @Slf4j
-public class EmailProcessingService {
+public class EmailProcessingService implements ExtractionWork {
 
     private final RawEmailRepository rawEmailRepository;
     private final EmailProcessor emailprocessor;
+    private final ExpenseExtractionService expenseExtractionService;
 
     private final ExecutorService pipelineExecutor;
 
-    private static final int MAX_CONCURRENT_PER_ACCOUNT = 8;// configurable later
-    private static final int BATCH_SIZE = 25;
+    private static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(10);
+    private static final int MAX_RETRY = 3;
 
     public EmailProcessingService(RawEmailRepository rawEmailRepository,
                                   EmailProcessor emailprocessor,
+                                  ExpenseExtractionService expenseExtractionService,
                                   @Qualifier("pipelineExecutor") ExecutorService pipelineExecutor) {
         this.rawEmailRepository = rawEmailRepository;
         this.emailprocessor = emailprocessor;
+        this.expenseExtractionService = expenseExtractionService;
         this.pipelineExecutor = pipelineExecutor;
     }
 
     /**
-     * Method called by Email Completed Event publisher
-     * Process Pending || Processing  Emails Only
+     * Claims Pending emails, and Processing ones whose worker timed out, oldest first.
      */
-    public void processPendingEmailsForAccounts(UUID accountId) {
+    @Override
+    public List<RawEmailMessage> claim(UUID accountId, int limit) {
         Instant now = Instant.now();
-        Instant timeout = now.minusSeconds(600); // 10 minutes
-        int maxRetry = 3;
-
         UUID token = UUID.randomUUID();
 
-        //Get Ids to claim in batches
-        List<UUID> ids = rawEmailRepository.findIdsForClaim(accountId,timeout,now,maxRetry,BATCH_SIZE);
-
-
-        if (ids.isEmpty()) {
-            log.info("No pending emails to process for account {}", accountId);
-            return;
+        List<RawEmailMessage> emails = rawEmailRepository.claim(accountId, now.minus(CLAIM_TIMEOUT), now, MAX_RETRY, limit, token);
+        if (emails.isEmpty()) {
+            return List.of();
         }
-
-        // Claim emails in batch with batch token
-        int claimed = rawEmailRepository.claimByIds(ids,now ,token);
-        if(claimed == 0) {
-            log.info("Failed to claim emails to process for account {}", accountId);
-            return;
-        }
-
-        // Fetch exact row claimed
-        List<RawEmailMessage> emails = rawEmailRepository.findByClaimToken(token);
         log.info("Processing  pending emails of size {} for account {}", emails.size(), accountId);
-        processBatch(emails);
+        return emails;
     }
 
-    private void processBatch(List<RawEmailMessage> emails) {
-        Semaphore semaphore = new Semaphore(MAX_CONCURRENT_PER_ACCOUNT);
+    @Override
+    public long pending(UUID accountId) {
+        Instant now = Instant.now();
+        return rawEmailRepository.countClaimable(accountId, now.minus(CLAIM_TIMEOUT), now, MAX_RETRY);
+    }
 
+    @Override
+    public Optional<Instant> nextClaimableAt(UUID accountId) {
+        return rawEmailRepository.nextClaimableAt(accountId, CLAIM_TIMEOUT, Instant.now(), MAX_RETRY);
+    }
 
-            List<CompletableFuture<Void>> futures = emails.stream()
-                    .map(email -> CompletableFuture.runAsync(() -> {
-                        try {
-                            semaphore.acquire();
-                            emailprocessor.processSingleEmail(email);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        } finally {
-                            semaphore.release();
-                        }
-                    }, pipelineExecutor))
-                    .toList();
+    @Override
+    public List<UUID> accountsWithWork() {
+        return rawEmailRepository.findAccountIdsWithUnfinishedEmails(MAX_RETRY);
+    }
 
-            // Wait for all tasks
+    @Override
+    public void process(List<RawEmailMessage> emails) {
+        // one round of batched LLM calls for the whole claim, then validation and persistence per email
+        Map<UUID, ExtractionResult> extracted;
+        try {
+            extracted = expenseExtractionService.extractAll(emails);
+        } catch (Exception e) {
+            log.warn("Batched extraction failed, processing {} emails one by one: {}", emails.size(), e.getMessage());
+            extracted = Map.of();
+        }
+        Map<UUID, ExtractionResult> results = extracted;
+
+        // no cap per batch: emails in flight are bounded by the scheduler, LLM calls by the gateway, and
+        // a connection is only taken for the short write at the end
+        List<CompletableFuture<Void>> futures = emails.stream()
+                .map(email -> CompletableFuture.runAsync(() -> {
+                    ExtractionResult result = results.get(email.getId());
+                    if (result != null) {
+                        emailprocessor.processExtracted(email, result);
+                    } else {
+                        emailprocessor.processSingleEmail(email);
+                    }
+                }, pipelineExecutor))
+                .toList();
+
+        // Wait for all tasks
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
 
     }
@@ -14,7 +14,10 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @RequiredArgsConstructor
@@ -30,6 +33,7 @@ public class EmailSyncService {
     private final EmailAccountRepository emailAccountRepository;
     private final SyncLockService syncLockService;
     private final SyncPersistentService syncPersistentService;
+    private final BackfillService backfillService;
 
 
 
@@ -39,6 +43,7 @@ public class EmailSyncService {
      * Method spans a slow Api external call - must never hold a DB transaction open that long time
      * @param account The connected email account to sync
      * @return Number of new expenses successfully processed and saved
+     * @throws RuntimeException when fetching or storing failed - cursors are left where they were
      */
 
     public int syncAccount(EmailAccount account) {
@@ -59,24 +64,39 @@ public class EmailSyncService {
                 return 0;
             }
 
-            // Determine starting point for fetch
+            // Determine starting point for fetch - a first sync only covers what arrived since connecting,
+            // everything older is left to the backfill
             Instant since = account.getLastEmailReceivedAt();
+            if (since == null && account.getHistoryId() == null) {
+                since = backfillService.initialize(account);
+            }
 
             log.info("First sync for {} - fetching from {}", account.getProviderEmail(), since);
-            // Fetch new messages since last sync
-            List<RawEmailMessage> messages = gateway.fetchNewMessages(account, since);
-            if(messages.isEmpty()){
+            // Stream new messages since last sync - each page is persisted in its own
+            // transaction, which also queues it for processing
+            AtomicInteger fetched = new AtomicInteger();
+            AtomicReference<Instant> newest = new AtomicReference<>();
+            gateway.fetchNewMessages(account, since, page -> {
+                fetched.addAndGet(syncPersistentService.persistPage(page));
+                page.stream()
+                        .map(RawEmailMessage::getReceivedDate)
+                        .filter(Objects::nonNull)
+                        .max(Instant::compareTo)
+                        .ifPresent(received -> newest.accumulateAndGet(received,
+                                (current, candidate) -> current == null || candidate.isAfter(current) ? candidate : current));
+            });
+
+            // advance the sync cursor only after every page is stored
+            syncPersistentService.completeSync(account, newest.get());
+            if(fetched.get() == 0){
                 log.info("No new messages for {}", account.getProviderEmail());
-                return 0;
             }
-
-            //persist result its own transaction
-            syncPersistentService.persistSyncResults(account,messages);
-            return messages.size();
+            return fetched.get();
 
         }catch (Exception e) {
             log.error("Sync failed for {}: {}", account.getProviderEmail(), e.getMessage(), e);
-            return 0;
+            // rethrown once the lock is released, so the sync job is retried with backoff
+            throw e;
         }finally {
             //release lock
             emailAccountRepository.releaseSyncLock(account.getId());
@@ -5,15 +5,26 @@ import com.domain.domain.Transaction;
 import com.domain.gateways.AiGateway;
 import com.domain.model.ExtractionResult;
 import com.domain.model.ValidationResult;
+import com.infrastructure.Ai.BatchExtractor;
 import com.infrastructure.Ai.ExpensePromptBuilder;
+import com.infrastructure.Ai.template.SenderTemplateRegistry;
+import com.infrastructure.cache.ExtractionCache;
 import com.infrastructure.email.Components.ExtractionValidator;
 import com.infrastructure.email.Components.TransactionFactory;
+import com.infrastructure.email.classifier.TransactionClassifier;
+import com.infrastructure.email.text.PromptTextReducer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +36,11 @@ public class ExpenseExtractionService {
     private final ExtractionValidator validator;
     private final TransactionFactory transactionFactory;
     private final TextCleaner textCleaner;
+    private final PromptTextReducer textReducer;
+    private final SenderTemplateRegistry templateRegistry;
+    private final ExtractionCache extractionCache;
+    private final BatchExtractor batchExtractor;
+    private final TransactionClassifier classifier;
 
     public Optional<Transaction> extract(RawEmailMessage email) {
 
@@ -32,11 +48,80 @@ public class ExpenseExtractionService {
         String cleanedEmail = textCleaner.clean(email);
 
 
-        // build prompt
-        String prompt = promptBuilder.build(cleanedEmail);
+        // known senders are parsed by their template, everything else goes to the LLM unless the classifier
+        // is sure there is no transaction in it
+        ExtractionResult result = templateRegistry.extract(email, cleanedEmail)
+                .orElseGet(() -> classifier.rejects(email, cleanedEmail)
+                        ? skipped(email)
+                        : extractWithLlm(email, cleanedEmail));
 
-        // Ai extraction
-        ExtractionResult result = aiGateway.extractExpenses(prompt);
+        return toTransaction(email, result);
+    }
+
+    /**
+     * Extraction for a whole claim batch. Templates, the classifier and the cache are tried per email; the rest
+     * goes to the LLM in multi-email calls, with copies of the same text sent once.
+     *
+     * @return results by email id; an email is absent when its extraction failed and it should be run alone
+     */
+    public Map<UUID, ExtractionResult> extractAll(List<RawEmailMessage> emails) {
+        Map<UUID, ExtractionResult> results = new HashMap<>();
+        Map<String, ExtractionCache.Key> cacheKeys = new HashMap<>();
+        Map<String, List<RawEmailMessage>> copies = new HashMap<>();
+        List<BatchExtractor.Item<String>> pending = new ArrayList<>();
+
+        for (RawEmailMessage email : emails) {
+            String cleanedEmail = textCleaner.clean(email);
+
+            Optional<ExtractionResult> known = templateRegistry.extract(email, cleanedEmail);
+            if (known.isPresent()) {
+                results.put(email.getId(), known.get());
+                continue;
+            }
+
+            if (classifier.rejects(email, cleanedEmail)) {
+                results.put(email.getId(), skipped(email));
+                continue;
+            }
+
+            ExtractionCache.Key cacheKey = extractionCache.keyFor(cleanedEmail, promptVersion(), aiGateway.modelId());
+            Optional<ExtractionResult> cached = extractionCache.get(cacheKey);
+            if (cached.isPresent()) {
+                results.put(email.getId(), cached.get());
+                continue;
+            }
+
+            List<RawEmailMessage> sameText = copies.computeIfAbsent(cacheKey.hash(), hash -> new ArrayList<>());
+            sameText.add(email);
+            if (sameText.size() == 1) {
+                PromptTextReducer.Reduction reduction = reduce(email, cleanedEmail);
+                cacheKeys.put(cacheKey.hash(), cacheKey);
+                pending.add(new BatchExtractor.Item<>(cacheKey.hash(), reduction.text(), reduction.reducedTokens()));
+            } else {
+                // same text, same reduction - the token savings count for every copy
+                RawEmailMessage first = sameText.getFirst();
+                email.setPromptTokensOriginal(first.getPromptTokensOriginal());
+                email.setPromptTokensReduced(first.getPromptTokensReduced());
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            batchExtractor.extract(pending).forEach((hash, result) -> {
+                if (validator.validate(result).valid()) {
+                    extractionCache.put(cacheKeys.get(hash), result);
+                }
+                for (RawEmailMessage email : copies.get(hash)) {
+                    results.put(email.getId(), result);
+                }
+            });
+        }
+        return results;
+    }
+
+    /**
+     * Validates an extraction and turns it into a transaction; empty when it is not a usable transaction.
+     */
+    public Optional<Transaction> toTransaction(RawEmailMessage email, ExtractionResult result) {
         //Validate result
         ValidationResult validation = validator.validate(result);
         if (!validation.valid()) {
@@ -54,4 +139,54 @@ public class ExpenseExtractionService {
         return Optional.of(tx);
 
     }
-}
+
+    private ExtractionResult extractWithLlm(RawEmailMessage email, String cleanedEmail) {
+        // copies of an email already extracted with this prompt and model
+        ExtractionCache.Key cacheKey = extractionCache.keyFor(cleanedEmail, promptVersion(), aiGateway.modelId());
+        Optional<ExtractionResult> cached = extractionCache.get(cacheKey);
+        if (cached.isPresent()) {
+            log.debug("Reusing cached extraction for email {}", email.getId());
+            return cached.get();
+        }
+
+        // build prompt
+        String prompt = promptBuilder.build(reduce(email, cleanedEmail).text());
+
+        // Ai extraction
+        ExtractionResult result = aiGateway.extractExpenses(prompt);
+        if (validator.validate(result).valid()) {
+            extractionCache.put(cacheKey, result);
+        }
+        return result;
+    }
+
+    private ExtractionResult skipped(RawEmailMessage email) {
+        email.setFailureReason(TransactionClassifier.SKIPPED_REASON);
+        return ExtractionResult.none();
+    }
+
+    // keep only the spans around amounts, dates and merchants
+    private PromptTextReducer.Reduction reduce(RawEmailMessage email, String cleanedEmail) {
+        PromptTextReducer.Reduction reduction = textReducer.reduce(cleanedEmail);
+        email.setPromptTokensOriginal(reduction.originalTokens());
+        email.setPromptTokensReduced(reduction.reducedTokens());
+        if (reduction.reduced()) {
+            log.debug("Prompt text for email {} reduced from {} to {} tokens",
+                    email.getId(), reduction.originalTokens(), reduction.reducedTokens());
+        }
+        return reduction;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void evictStaleExtractions() {
+        try {
+            extractionCache.evictStale(promptVersion(), aiGateway.modelId());
+        } catch (Exception e) {
+            log.warn("Could not evict stale cached extractions: {}", e.getMessage());
+        }
+    }
+
+    private String promptVersion() {
+        return promptBuilder.version() + "-" + textReducer.version();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,344 @@
+package com.infrastructure.email.service;
+
+import com.domain.entities.PipelineFailure;
+import com.domain.entities.RawEmailMessage;
+import com.domain.repositories.PipelineFailureRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Long-lived driver of the extraction stage across all accounts.
+ *
+ * Accounts with work are served by deficit round-robin: every visit adds a quantum of emails to the account's
+ * deficit and claims batches until the deficit is spent or the account is drained, then the account goes to
+ * the back of the ring. A large backfill therefore gets the same share per round as an account with a
+ * handful of new emails. Once a claim comes back empty the account waits in the ring, paused until its next
+ * email waiting on a retry or a claim timeout becomes claimable; it leaves the ring when it has none, unless
+ * it was requested again meanwhile. Every processed batch asks again, since processing may have rescheduled
+ * emails to a time before the one the account waits for, or after the account already left.
+ *
+ * The ring lives in memory only. On start it is seeded with every account that has unfinished emails, so
+ * work handed over by an EMAIL_PROCESSING job survives a restart.
+ *
+ * Emails in flight across all accounts are capped by one global semaphore; permits are taken before a claim,
+ * so emails are never claimed without capacity to process them.
+ */
+@Component
+@Slf4j
+public class ExtractionScheduler {
+
+    private static final Duration FAILURE_PAUSE = Duration.ofSeconds(30);
+    // an email skipped by the claim but due already is locked by another claimer - give it a moment
+    private static final Duration MIN_WAIT = Duration.ofSeconds(1);
+
+    private final ExtractionWork work;
+    private final ExecutorService pipelineExecutor;
+    private final PipelineFailureRepository pipelineFailureRepository;
+    private final int batchSize;
+    private final int quantum;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    // guarded by this
+    private final ArrayDeque<Account> ring = new ArrayDeque<>();
+    private final Map<UUID, Account> accounts = new HashMap<>();
+
+    private final Map<UUID, Long> depths = new ConcurrentHashMap<>();
+    private final MultiGauge depthGauge;
+
+    private volatile boolean running;
+    private Thread loop;
+
+    // fields guarded by the scheduler
+    private static final class Account {
+        final UUID id;
+        int deficit;
+        boolean requested;
+        // drained, paused until deferred emails come due
+        boolean waiting;
+        Instant pausedUntil = Instant.MIN;
+        // reported by a batch that finished while the account was active or out of the ring for a visit
+        Instant wakeAt;
+
+        Account(UUID id) {
+            this.id = id;
+        }
+    }
+
+    @Autowired
+    public ExtractionScheduler(ExtractionWork work,
+                               @Qualifier("pipelineExecutor") ExecutorService pipelineExecutor,
+                               PipelineFailureRepository pipelineFailureRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${snapbill.extraction.batch-size:25}") int batchSize,
+                               @Value("${snapbill.extraction.quantum:25}") int quantum,
+                               @Value("${snapbill.extraction.max-in-flight:64}") int maxInFlight) {
+        this.work = work;
+        this.pipelineExecutor = pipelineExecutor;
+        this.pipelineFailureRepository = pipelineFailureRepository;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.batchSize = Math.clamp(batchSize, 1, this.maxInFlight);
+        this.quantum = Math.max(1, quantum);
+        this.inFlight = new Semaphore(this.maxInFlight, true);
+
+        this.depthGauge = MultiGauge.builder("snapbill.extraction.queue.depth").register(meterRegistry);
+        Gauge.builder("snapbill.extraction.in.flight", this, ExtractionScheduler::emailsInFlight).register(meterRegistry);
+        Gauge.builder("snapbill.extraction.active.accounts", this, ExtractionScheduler::activeAccounts).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        loop = Thread.ofVirtual().name("extraction-scheduler").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = loop;
+            notifyAll();
+        }
+        if (thread != null) thread.interrupt();
+    }
+
+    /**
+     * Puts the account in the ring if it is not there yet. Cheap and idempotent - call it whenever the account
+     * may have new work.
+     */
+    public synchronized void request(UUID accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            account = new Account(accountId);
+            accounts.put(accountId, account);
+            ring.addLast(account);
+        } else if (account.waiting) {
+            account.waiting = false;
+            account.pausedUntil = Instant.MIN;
+        }
+        account.requested = true;
+        notifyAll();
+    }
+
+    /**
+     * Claimable emails per active account, as of each account's last visit.
+     */
+    public Map<UUID, Long> queueDepths() {
+        return Map.copyOf(depths);
+    }
+
+    public int emailsInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public synchronized int activeAccounts() {
+        return accounts.size();
+    }
+
+    private void run() {
+        seed();
+        while (running) {
+            try {
+                visit(next());
+            } catch (InterruptedException e) {
+                if (!running) return;
+            } catch (Exception e) {
+                log.error("Extraction scheduler loop failed", e);
+            }
+        }
+    }
+
+    private void seed() {
+        while (running) {
+            try {
+                List<UUID> unfinished = work.accountsWithWork();
+                unfinished.forEach(this::request);
+                log.info("Extraction scheduler resumed {} accounts with unfinished emails", unfinished.size());
+                return;
+            } catch (Exception e) {
+                log.error("Could not look up accounts with unfinished emails, retrying", e);
+                try {
+                    Thread.sleep(FAILURE_PAUSE);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private synchronized Account next() throws InterruptedException {
+        while (running) {
+            Account head = ring.peekFirst();
+            if (head != null) {
+                Duration wait = Duration.between(Instant.now(), head.pausedUntil);
+                if (!wait.isPositive()) {
+                    ring.pollFirst();
+                    head.requested = false;
+                    head.wakeAt = null;
+                    return head;
+                }
+                // only paused accounts are left ahead - rotate so a paused one does not block the rest
+                if (ring.stream().anyMatch(account -> !Instant.now().isBefore(account.pausedUntil))) {
+                    ring.addLast(ring.pollFirst());
+                    continue;
+                }
+                wait(Math.max(1, wait.toMillis()));
+            } else {
+                wait();
+            }
+        }
+        throw new InterruptedException("stopped");
+    }
+
+    private void visit(Account account) throws InterruptedException {
+        account.deficit += quantum;
+        boolean drained = false;
+        Optional<Instant> claimableAt = Optional.empty();
+
+        try {
+            while (account.deficit > 0 && running) {
+                int wanted = Math.min(account.deficit, batchSize);
+                inFlight.acquire(wanted);
+                List<RawEmailMessage> batch;
+                try {
+                    batch = work.claim(account.id, wanted);
+                } catch (RuntimeException e) {
+                    inFlight.release(wanted);
+                    throw e;
+                }
+                // hand back what the claim did not use straight away
+                inFlight.release(wanted - batch.size());
+                if (batch.isEmpty()) {
+                    drained = true;
+                    break;
+                }
+                account.deficit -= batch.size();
+                dispatch(account.id, batch);
+                if (batch.size() < wanted) {
+                    drained = true;
+                    break;
+                }
+            }
+            depths.put(account.id, drained ? 0L : work.pending(account.id));
+            if (drained) claimableAt = work.nextClaimableAt(account.id);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Claiming emails failed for account {}, pausing it", account.id, e);
+            recordFailure(account.id, e);
+            account.pausedUntil = Instant.now().plus(FAILURE_PAUSE);
+        } finally {
+            requeue(account, drained, claimableAt);
+        }
+    }
+
+    private void dispatch(UUID accountId, List<RawEmailMessage> batch) {
+        pipelineExecutor.execute(() -> {
+            try {
+                work.process(batch);
+            } catch (Exception e) {
+                log.error("LLM processing failed for account {}", accountId, e);
+                recordFailure(accountId, e);
+            } finally {
+                inFlight.release(batch.size());
+            }
+            wakeForDeferred(accountId);
+        });
+    }
+
+    // emails the batch rescheduled come due without anyone asking for the account again
+    private void wakeForDeferred(UUID accountId) {
+        try {
+            work.nextClaimableAt(accountId).ifPresent(wakeAt -> wake(accountId, wakeAt));
+        } catch (Exception e) {
+            log.warn("Could not check deferred emails of account {}: {}", accountId, e.getMessage());
+        }
+    }
+
+    private synchronized void wake(UUID accountId, Instant wakeAt) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            account = new Account(accountId);
+            accounts.put(accountId, account);
+            account.waiting = true;
+            account.pausedUntil = later(wakeAt, Instant.now().plus(MIN_WAIT));
+            ring.addLast(account);
+        } else if (account.waiting) {
+            Instant at = later(wakeAt, Instant.now().plus(MIN_WAIT));
+            if (at.isBefore(account.pausedUntil)) account.pausedUntil = at;
+        } else {
+            // active or being visited - its requeue takes this into account
+            account.wakeAt = account.wakeAt == null || wakeAt.isBefore(account.wakeAt) ? wakeAt : account.wakeAt;
+        }
+        notifyAll();
+    }
+
+    private static Instant later(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private synchronized void requeue(Account account, boolean drained, Optional<Instant> claimableAt) {
+        // DRR: an account without work keeps no credit
+        if (drained) account.deficit = 0;
+        account.waiting = false;
+        Optional<Instant> wakeAt = Optional.ofNullable(account.wakeAt)
+                .filter(at -> claimableAt.isEmpty() || at.isBefore(claimableAt.get()))
+                .or(() -> claimableAt);
+        account.wakeAt = null;
+        if (drained && !account.requested) {
+            if (wakeAt.isEmpty()) {
+                accounts.remove(account.id);
+                depths.remove(account.id);
+            } else {
+                // nothing asks for the account again when its retries come due, so it waits for them here
+                account.waiting = true;
+                account.pausedUntil = later(wakeAt.get(), Instant.now().plus(MIN_WAIT));
+                ring.addLast(account);
+            }
+        } else {
+            ring.addLast(account);
+        }
+        depthGauge.register(depths.entrySet().stream()
+                .map(depth -> MultiGauge.Row.of(Tags.of("account", depth.getKey().toString()), depth.getValue()))
+                .toList(), true);
+        notifyAll();
+    }
+
+    private void recordFailure(UUID accountId, Exception e) {
+        try {
+            pipelineFailureRepository.save(
+                    PipelineFailure.builder()
+                            .accountId(accountId)
+                            .pipelineStage("PROCESSING")
+                            .message(e.getMessage())
+                            .time(Instant.now())
+                            .build());
+        } catch (Exception saveFailure) {
+            log.warn("Could not record pipeline failure for account {}: {}", accountId, saveFailure.getMessage());
+        }
+    }
+}
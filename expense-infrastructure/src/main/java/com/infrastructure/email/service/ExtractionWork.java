@@ -0,0 +1,43 @@
+package com.infrastructure.email.service;
+
+import com.domain.entities.RawEmailMessage;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The extraction stage as the ExtractionScheduler drives it: claim an account's emails, process them.
+ */
+public interface ExtractionWork {
+
+    /**
+     * Claims up to limit of the account's pending emails for this worker.
+     *
+     * @return the claimed emails, empty when the account has nothing left
+     */
+    List<RawEmailMessage> claim(UUID accountId, int limit);
+
+    /**
+     * Extracts and persists claimed emails; every email ends up processed, failed or rescheduled.
+     */
+    void process(List<RawEmailMessage> emails);
+
+    /**
+     * Emails the account still has waiting to be claimed.
+     */
+    long pending(UUID accountId);
+
+    /**
+     * When claim will next find one of the account's emails that are waiting on a retry or a claim timeout.
+     *
+     * @return that time, empty when the account has no unfinished emails
+     */
+    Optional<Instant> nextClaimableAt(UUID accountId);
+
+    /**
+     * Accounts with emails that are not processed yet, for picking work back up after a restart.
+     */
+    List<UUID> accountsWithWork();
+}
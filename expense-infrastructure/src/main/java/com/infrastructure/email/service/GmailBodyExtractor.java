@@ -1,6 +1,5 @@
 package com.infrastructure.email.service;
 
-import com.domain.model.ProviderMessage;
 import com.google.api.services.gmail.model.Message;
 import com.google.api.services.gmail.model.MessagePart;
 import com.infrastructure.interfaces.EmailBodyExtractor;
@@ -11,7 +10,7 @@ import java.util.Base64;
 
 @Service("gmailBodyExtractor")
 @Primary
-public class GmailBodyExtractor implements EmailBodyExtractor {
+public class GmailBodyExtractor implements EmailBodyExtractor<Message> {
     /**
      * @param message
      * @return
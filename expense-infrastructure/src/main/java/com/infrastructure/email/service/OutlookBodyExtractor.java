@@ -1,29 +1,27 @@
 package com.infrastructure.email.service;
 
-import com.domain.model.ProviderMessage;
-import com.google.api.services.gmail.model.Message;
+import com.infrastructure.email.outlook.GraphMessage;
 import com.infrastructure.interfaces.EmailBodyExtractor;
 import org.springframework.stereotype.Service;
 
+/**
+ * Graph returns a single body, as HTML unless asked otherwise - it lands in whichever slot matches.
+ */
 @Service("outlookBodyExtractor")
-public class OutlookBodyExtractor implements EmailBodyExtractor {
+public class OutlookBodyExtractor implements EmailBodyExtractor<GraphMessage> {
 
-
-    /**
-     * @param message
-     * @return
-     */
     @Override
-    public String extractPlainText(Message message) {
-        return "";
+    public String extractPlainText(GraphMessage message) {
+        return content(message, "text");
     }
 
-    /**
-     * @param message
-     * @return
-     */
     @Override
-    public String extractHtmlBody(Message message) {
-        return "";
+    public String extractHtmlBody(GraphMessage message) {
+        return content(message, "html");
+    }
+
+    private String content(GraphMessage message, String contentType) {
+        if (message.body() == null || message.body().content() == null) return "";
+        return contentType.equalsIgnoreCase(message.body().contentType()) ? message.body().content() : "";
     }
 }
@@ -2,7 +2,9 @@ package com.infrastructure.email.service;
 
 import com.domain.entities.EmailAccount;
 import com.domain.entities.RawEmailMessage;
+import com.domain.enums.PipelineJobType;
 import com.domain.repositories.EmailAccountRepository;
+import com.domain.repositories.PipelineJobRepository;
 import com.domain.repositories.RawEmailRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,18 +24,60 @@ public class SyncPersistentService {
 
     private final RawEmailRepository rawEmailRepository;
     private final EmailAccountRepository emailAccountRepository;
+    private final PipelineJobRepository pipelineJobRepository;
 
+    /**
+     * Saves one streamed page of fetched messages in its own transaction,
+     * so they become visible to processing while the sync is still running.
+     * Messages stored by an earlier, overlapping run are skipped rather than failing the page.
+     * New messages enqueue a processing job in the same transaction, so stored emails are never left
+     * without one.
+     *
+     * @return number of messages actually inserted
+     */
     @Transactional
-    public void persistSyncResults(EmailAccount account, List<RawEmailMessage> messages) {
-        rawEmailRepository.saveAllMessages(messages);
-        Instant newestEmail = messages.stream()
-                .map(RawEmailMessage::getReceivedDate)
-                .max(Instant::compareTo)
-                .orElse(Instant.now());
+    public int persistPage(List<RawEmailMessage> messages) {
+        if (messages.isEmpty()) return 0;
+        int inserted = rawEmailRepository.insertIgnoringDuplicates(messages).size();
+        if (inserted < messages.size()) {
+            log.info("Skipped {} already stored messages", messages.size() - inserted);
+        }
+        if (inserted > 0) {
+            pipelineJobRepository.enqueue(PipelineJobType.EMAIL_PROCESSING,
+                    messages.getFirst().getEmailAccount().getId());
+        }
+        return inserted;
+    }
 
-        account.setLastEmailReceivedAt(newestEmail);
+    /**
+     * Saves the account's sync cursors once every page has been persisted,
+     * so the cursor never moves past messages that were not stored.
+     * An empty fetch still persists the cursor (e.g. an advanced Gmail history id).
+     *
+     * @param newestReceived newest received date across the synced pages, null when nothing was fetched
+     */
+    @Transactional
+    public void completeSync(EmailAccount account, Instant newestReceived) {
+        if (newestReceived != null && (account.getLastEmailReceivedAt() == null
+                || newestReceived.isAfter(account.getLastEmailReceivedAt()))) {
+            account.setLastEmailReceivedAt(newestReceived);
+        }
 
         emailAccountRepository.save(account);
         log.info("Updated lastSyncAt for {} to {}", account.getProviderEmail(), account.getLastSyncAt());
     }
+
+    @Transactional
+    public boolean initBackfill(EmailAccount account, Instant cursor, Instant target) {
+        return emailAccountRepository.initBackfill(account.getId(), cursor, target) == 1;
+    }
+
+    /**
+     * Checkpoints a finished backfill slice - a restart resumes from here.
+     */
+    @Transactional
+    public void saveBackfillCheckpoint(EmailAccount account, Instant cursor) {
+        emailAccountRepository.updateBackfillCursor(account.getId(), cursor);
+        account.setBackfillCursor(cursor);
+    }
 }
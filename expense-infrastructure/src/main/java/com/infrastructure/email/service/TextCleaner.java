@@ -1,40 +1,48 @@
 package com.infrastructure.email.service;
 
 import com.domain.entities.RawEmailMessage;
+import com.infrastructure.email.text.HtmlTextExtractor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Turns an email body into prompt text through HtmlTextExtractor.
+ *
+ * Extraction runs on virtual threads, so output buffers are pooled here rather than kept per thread.
+ * Buffers that grew past MAX_RETAINED_CAPACITY are dropped instead of returned.
+ */
 @Service
 public class TextCleaner {
-    public String clean(RawEmailMessage email) {
-
-        String text = "";
-
-        if (email.getBody() != null && !email.getBody().isBlank()) {
-            text = email.getBody();
-        } else if (email.getBodyHtml() != null) {
-            text = stripHtml(email.getBodyHtml());
-        }
-
-        text = removeUrls(text);
-        text = removeEmailFooters(text);
-        text = normalizeWhitespace(text);
 
-        return text;
-    }
-
-    private String stripHtml(String html) {
-        return html.replaceAll("<[^>]*>", " ");
-    }
+    private static final int POOL_SIZE = 32;
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 512 * 1024;
 
-    private String removeUrls(String text) {
-        return text.replaceAll("https?://\\S+", "");
-    }
+    private final HtmlTextExtractor extractor;
+    private final BlockingQueue<StringBuilder> buffers = new ArrayBlockingQueue<>(POOL_SIZE);
 
-    private String removeEmailFooters(String text) {
-        return text.replaceAll("(?i)unsubscribe.*", "");
+    public TextCleaner(@Value("${snapbill.cleaner.layout:TABLES}") HtmlTextExtractor.Layout layout) {
+        this.extractor = new HtmlTextExtractor(layout);
     }
 
-    private String normalizeWhitespace(String text) {
-        return text.replaceAll("\\s+", " ").trim();
+    public String clean(RawEmailMessage email) {
+        StringBuilder buffer = buffers.poll();
+        if (buffer == null) buffer = new StringBuilder(INITIAL_CAPACITY);
+        try {
+            if (email.getBody() != null && !email.getBody().isBlank()) {
+                extractor.extractPlain(email.getBody(), buffer);
+            } else {
+                extractor.extractHtml(email.getBodyHtml(), buffer);
+            }
+            return buffer.toString();
+        } finally {
+            if (buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+                buffer.setLength(0);
+                buffers.offer(buffer);
+            }
+        }
     }
 }
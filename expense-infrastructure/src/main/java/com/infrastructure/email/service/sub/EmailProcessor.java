@@ -1,23 +1,33 @@
 package com.infrastructure.email.service.sub;
 
+import com.domain.domain.Transaction;
 import com.domain.entities.RawEmailMessage;
+import com.domain.entities.TransactionEntity;
 import com.domain.enums.ProcessingStatus;
+import com.domain.exceptions.AiProviderUnavailableException;
 import com.domain.exceptions.DomainValidationException;
-import com.domain.repositories.RawEmailRepository;
-import com.domain.repositories.TransactionRepository;
+import com.domain.model.ExtractionResult;
+import com.infrastructure.email.classifier.TransactionClassifier;
 import com.infrastructure.email.service.ExpenseExtractionService;
 import com.infrastructure.mapper.EntityMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 /**
  * LLM cannot process single email twice
  * Messages already flagged with PROCESSED cannot be processed twice
+ *
+ * Processing runs in two phases. extract cleans, prompts and maps with no transaction open, so no DB
+ * connection is held while the LLM answers; it only decides what to store. write then hands the outcome
+ * to the OutcomeWriter, which stores it batched with others. Concurrent extractions are therefore bounded
+ * by the LLM limits, not by the connection pool.
  */
 @Service
 @RequiredArgsConstructor
@@ -25,17 +35,59 @@ import java.time.Instant;
 public class EmailProcessor {
 
     private final ExpenseExtractionService expenseExtractionService;
-    private final TransactionRepository transactionRepository;
     private final EntityMapper entityMapper;
-    private final RawEmailRepository rawEmailRepository;
+    private final OutcomeWriter outcomeWriter;
+
+    private static final Duration MIN_RESCHEDULE = Duration.ofSeconds(60);
+
+    /**
+     * What extraction decided for an email: its new status is set on the email, and transaction is the row
+     * to store with it, or null when there is none.
+     */
+    public record Outcome(RawEmailMessage email, TransactionEntity transaction) {}
 
 
-    @Transactional
     public void processSingleEmail(RawEmailMessage email) {
+        write(extract(email));
+    }
+
+    /**
+     * Same as processSingleEmail, for an email whose extraction already ran as part of a batch.
+     */
+    public void processExtracted(RawEmailMessage email, ExtractionResult result) {
+        write(extract(email, result));
+    }
+
+    /**
+     * First phase for a single email - may block on the LLM, never inside a transaction.
+     */
+    public Outcome extract(RawEmailMessage email) {
+        return decide(email, () -> expenseExtractionService.extract(email));
+    }
+
+    /**
+     * First phase for an email extracted as part of a batch.
+     */
+    public Outcome extract(RawEmailMessage email, ExtractionResult result) {
+        return decide(email, () -> expenseExtractionService.toTransaction(email, result));
+    }
 
+    /**
+     * Second phase - hands the outcome to the write-behind, which stores the transaction, if any, and the
+     * email status in one transaction together with other outcomes. Returns once they are stored.
+     */
+    public void write(Outcome outcome) {
         try {
+            outcomeWriter.submit(outcome).join();
+        } catch (CompletionException e) {
+            log.error("Could not store outcome for {}, leaving it to the claim timeout", outcome.email().getId(), e.getCause());
+        }
+    }
 
-            var txOpt = expenseExtractionService.extract(email);
+    private Outcome decide(RawEmailMessage email, Supplier<Optional<Transaction>> extraction) {
+        try {
+
+            var txOpt = extraction.get();
 
             if (txOpt.isPresent()) {
                 var entity = entityMapper.toEntity(
@@ -44,42 +96,54 @@ public class EmailProcessor {
                         email.getProviderMessageId(),
                         txOpt.get()
                 );
-                transactionRepository.save(entity);
 
                 email.setProcessed(ProcessingStatus.PROCESSED);
                 email.setFailureReason(null);
-            } else {
-                markFailed(email,"VALIDATION_FAILED");
+                return new Outcome(email, entity);
             }
-        } catch (DomainValidationException e) {
 
-            markFailed(email, "DOMAIN: " + e.getMessage(), false);
+            // the classifier leaves its own reason on emails it kept from the LLM
+            markFailed(email, TransactionClassifier.SKIPPED_REASON.equals(email.getFailureReason())
+                    ? TransactionClassifier.SKIPPED_REASON
+                    : "VALIDATION_FAILED");
 
-        } catch (DataIntegrityViolationException e) {
+        } catch (AiProviderUnavailableException e) {
 
-            //  DB-level idempotency fallback
-            log.warn("Duplicate prevented for {}", email.getId());
+            reschedule(email, e.getRetryAfter());
 
-            email.setProcessed(ProcessingStatus.PROCESSED);
+        } catch (DomainValidationException e) {
+
+            markFailed(email, "DOMAIN: " + e.getMessage(), false);
 
         } catch (Exception e) {
 
             log.error("System error for {}", email.getId(), e);
 
             markFailed(email, "SYSTEM_ERROR", true);
-
-        } finally {
-            rawEmailRepository.saveMessage(email);
         }
+        return new Outcome(email, null);
     }
 
 
 
-    private void markFailed(RawEmailMessage email, String reason) {
+    /**
+     * The LLM provider could not answer - nothing wrong with the email, so its retries are left alone.
+     * The ExtractionScheduler picks the account up again once next_retry_at comes due.
+     */
+    private void reschedule(RawEmailMessage email, Duration retryAfter) {
+        Duration wait = retryAfter != null && retryAfter.compareTo(MIN_RESCHEDULE) > 0 ? retryAfter : MIN_RESCHEDULE;
+        log.info("AI provider unavailable, rescheduling {} in {}s", email.getId(), wait.toSeconds());
+
+        email.setFailureReason("AI_UNAVAILABLE");
+        email.setProcessed(ProcessingStatus.PENDING);
+        email.setNextRetryAt(Instant.now().plus(wait));
+    }
+
+    private static void markFailed(RawEmailMessage email, String reason) {
         markFailed(email, reason, false);
     }
 
-    private void markFailed(RawEmailMessage email, String reason, boolean retryable) {
+    static void markFailed(RawEmailMessage email, String reason, boolean retryable) {
 
         email.setFailureReason(reason);
 
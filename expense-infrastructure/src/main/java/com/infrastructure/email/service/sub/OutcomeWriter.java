@@ -0,0 +1,222 @@
+package com.infrastructure.email.service.sub;
+
+import com.domain.entities.RawEmailMessage;
+import com.domain.entities.TransactionEntity;
+import com.domain.repositories.RawEmailRepository;
+import com.domain.repositories.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind for extraction outcomes.
+ *
+ * Outcomes from many processing threads are queued and flushed together once batch-size of them are
+ * waiting or the oldest has waited max-delay: one multi-row insert of the transactions and one batch
+ * update of the email states, in a single transaction. A transaction already stored for the same message
+ * is skipped, and its email stays PROCESSED. If the batch fails, every outcome in it is written on its own,
+ * so one bad row only affects its own email.
+ *
+ * The queue is bounded - submitters block while it is full, so a slow database slows extraction down
+ * instead of piling up finished work in memory.
+ */
+@Component
+@Slf4j
+public class OutcomeWriter {
+
+    private final TransactionRepository transactionRepository;
+    private final RawEmailRepository rawEmailRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration maxDelay;
+    private final BlockingQueue<Pending> queue;
+
+    private final Timer batchFlushes;
+    private final Timer fallbackFlushes;
+    private final Timer lag;
+    private final DistributionSummary batchSizes;
+    private final Counter fallbacks;
+
+    private volatile boolean running;
+    private Thread loop;
+
+    private record Pending(EmailProcessor.Outcome outcome, CompletableFuture<Void> written, long queuedAt) {}
+
+    @Autowired
+    public OutcomeWriter(TransactionRepository transactionRepository,
+                         RawEmailRepository rawEmailRepository,
+                         TransactionTemplate transactionTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${snapbill.write-behind.batch-size:100}") int batchSize,
+                         @Value("${snapbill.write-behind.max-delay-ms:200}") long maxDelayMillis,
+                         @Value("${snapbill.write-behind.capacity:2000}") int capacity) {
+        this.transactionRepository = transactionRepository;
+        this.rawEmailRepository = rawEmailRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelay = Duration.ofMillis(Math.max(0, maxDelayMillis));
+        this.queue = new LinkedBlockingQueue<>(Math.max(this.batchSize, capacity));
+
+        this.batchFlushes = Timer.builder("snapbill.writebehind.flush")
+                .tag("mode", "batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.fallbackFlushes = Timer.builder("snapbill.writebehind.flush")
+                .tag("mode", "per_item")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.lag = Timer.builder("snapbill.writebehind.lag")
+                .description("time from submit until the outcome is stored")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("snapbill.writebehind.batch.size").register(meterRegistry);
+        this.fallbacks = Counter.builder("snapbill.writebehind.fallback").register(meterRegistry);
+        Gauge.builder("snapbill.writebehind.queued", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        loop = Thread.ofVirtual().name("outcome-writer").start(this::run);
+    }
+
+    /**
+     * Stops taking new batches, then writes whatever is still queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = loop;
+        }
+        if (thread == null) return;
+        thread.join();
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) flush(rest);
+    }
+
+    /**
+     * Queues the outcome, blocking while the queue is full.
+     * @return completes once the outcome is stored, exceptionally if it could not be
+     */
+    public CompletableFuture<Void> submit(EmailProcessor.Outcome outcome) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        try {
+            queue.put(new Pending(outcome, written, System.nanoTime()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            written.completeExceptionally(e);
+        }
+        return written;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = first.queuedAt() + maxDelay.toNanos();
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) continue;
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Outcome writer loop failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<TransactionEntity> transactions = batch.stream()
+                        .map(pending -> pending.outcome().transaction())
+                        .filter(Objects::nonNull)
+                        .toList();
+                transactionRepository.insertIgnoringDuplicates(transactions);
+                rawEmailRepository.updateProcessingStates(batch.stream()
+                        .map(pending -> pending.outcome().email())
+                        .toList());
+            });
+            batchFlushes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batch.forEach(this::complete);
+        } catch (Exception e) {
+            log.warn("Writing {} outcomes in one batch failed, writing them one by one: {}", batch.size(), e.getMessage());
+            fallbacks.increment();
+            start = System.nanoTime();
+            batch.forEach(this::writeAlone);
+            fallbackFlushes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Per-item fallback - the transaction and email status in their own transaction.
+     * The transaction goes in through the same insert as the batch: its id was already assigned there,
+     * and a JPA save of an entity with a generated id set would be taken for a merge of a missing row.
+     */
+    private void writeAlone(Pending pending) {
+        RawEmailMessage email = pending.outcome().email();
+        TransactionEntity transaction = pending.outcome().transaction();
+        try {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (transaction != null
+                            && transactionRepository.insertIgnoringDuplicates(List.of(transaction)).isEmpty()) {
+                        //  DB-level idempotency - already stored for this message, the email stays PROCESSED
+                        log.warn("Duplicate prevented for {}", email.getId());
+                    }
+                    rawEmailRepository.saveMessage(email);
+                });
+            } catch (Exception e) {
+
+                log.error("System error writing {}", email.getId(), e);
+
+                EmailProcessor.markFailed(email, "SYSTEM_ERROR", true);
+                rawEmailRepository.saveMessage(email);
+            }
+            complete(pending);
+        } catch (Exception e) {
+            // not even the status could be stored; the claim times out and the email is picked up again
+            pending.written().completeExceptionally(e);
+        }
+    }
+
+    private void complete(Pending pending) {
+        lag.record(System.nanoTime() - pending.queuedAt(), TimeUnit.NANOSECONDS);
+        pending.written().complete(null);
+    }
+}
@@ -0,0 +1,431 @@
+package com.infrastructure.email.text;
+
+/**
+ * Single pass HTML / plain text to prompt text.
+ *
+ * Walks the input once and writes straight into the caller's buffer:
+ *  - tags are dropped, block tags end a line, table cells are separated by " | " (TABLES layout),
+ *  - script / style / head blocks and hidden elements (display:none, visibility:hidden) are skipped whole,
+ *  - entities are decoded, URLs removed, whitespace collapsed,
+ *  - a line mentioning "unsubscribe" is dropped - only that line, not everything after it.
+ *
+ * Stateless and thread safe; per call state lives in a small Writer.
+ */
+public final class HtmlTextExtractor {
+
+    public enum Layout {
+        FLAT,       // one line, everything separated by single spaces
+        TABLES      // one line per block / table row, cells separated by " | "
+    }
+
+    private static final String[] SKIPPED = {"script", "style", "head", "noscript", "template", "title"};
+    private static final String[] VOID = {"img", "br", "hr", "input", "meta", "link", "area", "base", "col", "wbr", "source"};
+    private static final String[] ROWS = {"tr"};
+    private static final String[] CELLS = {"td", "th"};
+    private static final String[] BLOCKS = {
+            "p", "div", "br", "hr", "li", "ul", "ol", "table", "tbody", "thead", "tfoot", "caption",
+            "h1", "h2", "h3", "h4", "h5", "h6", "blockquote", "section", "article", "header", "footer",
+            "center", "pre", "dl", "dt", "dd", "form", "body", "html"
+    };
+
+    // name;char pairs - the ones that show up in bank alerts
+    private static final String[] ENTITY_NAMES = {
+            "nbsp", "amp", "lt", "gt", "quot", "apos", "ndash", "mdash", "hellip", "copy", "reg", "trade",
+            "pound", "euro", "yen", "cent", "rsquo", "lsquo", "rdquo", "ldquo", "bull", "middot", "zwnj", "zwj", "shy"
+    };
+    private static final char[] ENTITY_CHARS = {
+            '\u00A0', '&', '<', '>', '"', '\'', '\u2013', '\u2014', '\u2026', '\u00A9', '\u00AE', '\u2122',
+            '\u00A3', '\u20AC', '\u00A5', '\u00A2', '\u2019', '\u2018', '\u201D', '\u201C', '\u2022', '\u00B7', '\u200C', '\u200D', '\u00AD'
+    };
+
+    private static final String UNSUBSCRIBE = "unsubscribe";
+
+    private final Layout layout;
+
+    public HtmlTextExtractor(Layout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Replaces the buffer's content with the text of the HTML document.
+     */
+    public void extractHtml(CharSequence html, StringBuilder out) {
+        Writer w = new Writer(out);
+        int n = html == null ? 0 : html.length();
+        int i = 0;
+        while (i < n) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                i = tag(html, i, w);
+            } else if (c == '&') {
+                i = entity(html, i, w);
+            } else if (isUrlStart(html, i)) {
+                i = skipUrl(html, i);
+            } else {
+                w.text(c);
+                i++;
+            }
+        }
+        w.finish();
+    }
+
+    /**
+     * Replaces the buffer's content with the cleaned plain text - same URL, whitespace and footer handling.
+     */
+    public void extractPlain(CharSequence text, StringBuilder out) {
+        Writer w = new Writer(out);
+        int n = text == null ? 0 : text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                w.endLine();
+                i++;
+            } else if (isUrlStart(text, i)) {
+                i = skipUrl(text, i);
+            } else {
+                w.text(c);
+                i++;
+            }
+        }
+        w.finish();
+    }
+
+
+    // ================== TAGS ==================
+
+    /**
+     * @return index after the tag, or after the whole element when its content is skipped
+     */
+    private int tag(CharSequence html, int i, Writer w) {
+        int n = html.length();
+        if (regionMatches(html, i, "<!--")) {
+            int end = indexOf(html, "-->", i + 4);
+            return end < 0 ? n : end + 3;
+        }
+
+        int j = i + 1;
+        if (j < n && (html.charAt(j) == '!' || html.charAt(j) == '?')) {
+            int end = tagEnd(html, j);
+            return end < n ? end + 1 : n;
+        }
+
+        boolean closing = j < n && html.charAt(j) == '/';
+        if (closing) j++;
+        int nameStart = j;
+        while (j < n && isNameChar(html.charAt(j))) j++;
+        int nameEnd = j;
+        if (nameEnd == nameStart) {
+            w.text('<'); // stray '<' in text
+            return i + 1;
+        }
+
+        int end = tagEnd(html, nameEnd);
+        int next = end < n ? end + 1 : n;
+        if (closing) {
+            if (is(html, nameStart, nameEnd, ROWS) || is(html, nameStart, nameEnd, BLOCKS)) w.endLine();
+            else if (is(html, nameStart, nameEnd, CELLS)) w.space();
+            return next;
+        }
+
+        boolean selfClosing = end < n && end > nameEnd && html.charAt(end - 1) == '/';
+        if (is(html, nameStart, nameEnd, SKIPPED)) {
+            return selfClosing ? next : skipElement(html, next, nameStart, nameEnd, false);
+        }
+        if (!selfClosing && !is(html, nameStart, nameEnd, VOID) && isHidden(html, nameEnd, end)) {
+            return skipElement(html, next, nameStart, nameEnd, true);
+        }
+
+        if (is(html, nameStart, nameEnd, ROWS) || is(html, nameStart, nameEnd, BLOCKS)) w.endLine();
+        else if (is(html, nameStart, nameEnd, CELLS)) w.cell();
+        return next; // inline tags do not separate words, as in a browser
+    }
+
+    /**
+     * Index of the '>' closing the tag, quotes respected.
+     */
+    private int tagEnd(CharSequence html, int from) {
+        char quote = 0;
+        for (int k = from; k < html.length(); k++) {
+            char c = html.charAt(k);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return k;
+            }
+        }
+        return html.length();
+    }
+
+    /**
+     * Skips to after the element's closing tag. Raw text elements (script, style) do not nest;
+     * hidden elements count nested tags of the same name.
+     */
+    private int skipElement(CharSequence html, int from, int nameStart, int nameEnd, boolean nested) {
+        int n = html.length();
+        int length = nameEnd - nameStart;
+        int depth = 1;
+        int k = from;
+        while (k < n) {
+            int lt = indexOf(html, '<', k);
+            if (lt < 0) return n;
+            boolean closing = lt + 1 < n && html.charAt(lt + 1) == '/';
+            int s = closing ? lt + 2 : lt + 1;
+            if (s + length <= n
+                    && regionMatchesIgnoreCase(html, s, html, nameStart, length)
+                    && (s + length == n || !isNameChar(html.charAt(s + length)))) {
+                int end = tagEnd(html, s + length);
+                if (closing) {
+                    if (--depth == 0) return end < n ? end + 1 : n;
+                } else if (nested && !(end < n && html.charAt(end - 1) == '/')) {
+                    depth++;
+                }
+                k = end;
+            } else {
+                k = lt + 1;
+            }
+        }
+        return n;
+    }
+
+    private boolean isHidden(CharSequence html, int from, int to) {
+        return containsStyle(html, from, to, "display", "none")
+                || containsStyle(html, from, to, "visibility", "hidden");
+    }
+
+    /**
+     * property:value inside [from, to), any case, spaces around the colon allowed.
+     */
+    private boolean containsStyle(CharSequence html, int from, int to, String property, String value) {
+        for (int k = from; k + property.length() <= to; k++) {
+            if (lower(html.charAt(k)) != property.charAt(0)
+                    || !regionMatchesIgnoreCase(html, k, property, 0, property.length())) continue;
+            int v = k + property.length();
+            while (v < to && html.charAt(v) == ' ') v++;
+            if (v >= to || html.charAt(v) != ':') continue;
+            v++;
+            while (v < to && html.charAt(v) == ' ') v++;
+            if (v + value.length() <= to && regionMatchesIgnoreCase(html, v, value, 0, value.length())) return true;
+        }
+        return false;
+    }
+
+
+    // ================== ENTITIES / URLS ==================
+
+    /**
+     * Decodes the entity at i, or writes a literal '&' when it is not one.
+     *
+     * @return index after the entity
+     */
+    private int entity(CharSequence html, int i, Writer w) {
+        int n = html.length();
+        int j = i + 1;
+        if (j < n && html.charAt(j) == '#') {
+            j++;
+            boolean hex = j < n && (html.charAt(j) == 'x' || html.charAt(j) == 'X');
+            if (hex) j++;
+            int start = j;
+            int codePoint = 0;
+            while (j < n && j - start < 7) {
+                int digit = Character.digit(html.charAt(j), hex ? 16 : 10);
+                if (digit < 0) break;
+                codePoint = codePoint * (hex ? 16 : 10) + digit;
+                j++;
+            }
+            if (j > start && Character.isValidCodePoint(codePoint)) {
+                w.codePoint(codePoint);
+                return j < n && html.charAt(j) == ';' ? j + 1 : j;
+            }
+        } else {
+            int start = j;
+            while (j < n && j - start < 8 && Character.isLetterOrDigit(html.charAt(j))) j++;
+            if (j < n && html.charAt(j) == ';') {
+                for (int e = 0; e < ENTITY_NAMES.length; e++) {
+                    String name = ENTITY_NAMES[e];
+                    if (name.length() == j - start && regionMatches(html, start, name)) {
+                        w.codePoint(ENTITY_CHARS[e]);
+                        return j + 1;
+                    }
+                }
+            }
+        }
+        w.text('&');
+        return i + 1;
+    }
+
+    private boolean isUrlStart(CharSequence text, int i) {
+        char c = text.charAt(i);
+        if (c != 'h' && c != 'H') return false;
+        if (i > 0 && Character.isLetterOrDigit(text.charAt(i - 1))) return false;
+        return regionMatchesIgnoreCase(text, i, "http://", 0, 7) || regionMatchesIgnoreCase(text, i, "https://", 0, 8);
+    }
+
+    private int skipUrl(CharSequence text, int i) {
+        int n = text.length();
+        while (i < n && !Character.isWhitespace(text.charAt(i)) && text.charAt(i) != '<') i++;
+        return i;
+    }
+
+
+    // ================== OUTPUT ==================
+
+    /**
+     * Separators are only written once the next visible character shows up, so the output never
+     * starts or ends with one and runs of them collapse to the strongest.
+     */
+    private final class Writer {
+
+        private static final int NONE = 0, SPACE = 1, CELL = 2, LINE = 3;
+
+        private final StringBuilder out;
+        private int pending = NONE;
+        private int lineStart;      // first char of the current line / block
+        private int separatorStart; // where the separator before it starts
+        private int footerMatch;    // chars of UNSUBSCRIBE matched so far
+        private boolean footerLine; // current line mentions UNSUBSCRIBE
+
+        Writer(StringBuilder out) {
+            this.out = out;
+            out.setLength(0);
+        }
+
+        void text(char c) {
+            if (c > ' ' && c < 0x7F) { // printable ascii - the bulk of any alert
+                if (pending != NONE) separate();
+                out.append(c);
+                track(c);
+                return;
+            }
+            if (Character.isWhitespace(c) || c == '\u00A0') {
+                space();
+                return;
+            }
+            if (Character.getType(c) == Character.FORMAT) return; // zero width joiners, soft hyphens
+            separate();
+            out.append(c);
+            track(c);
+        }
+
+        /**
+         * Follows UNSUBSCRIBE through the written text. The marker has no prefix that is also a
+         * suffix, so on a mismatch the match can only restart at its first letter.
+         */
+        private void track(char c) {
+            char l = lower(c);
+            if (l == UNSUBSCRIBE.charAt(footerMatch)) {
+                if (++footerMatch == UNSUBSCRIBE.length()) {
+                    footerLine = true;
+                    footerMatch = 0;
+                }
+            } else {
+                footerMatch = l == UNSUBSCRIBE.charAt(0) ? 1 : 0;
+            }
+        }
+
+        void codePoint(int codePoint) {
+            if (codePoint <= Character.MAX_VALUE) {
+                text((char) codePoint);
+            } else {
+                separate();
+                out.appendCodePoint(codePoint);
+                footerMatch = 0;
+            }
+        }
+
+        void space() {
+            pending = Math.max(pending, SPACE);
+        }
+
+        void cell() {
+            pending = Math.max(pending, out.length() > lineStart ? CELL : SPACE);
+        }
+
+        void endLine() {
+            if (footerLine) {
+                out.setLength(separatorStart);
+                lineStart = separatorStart;
+                footerLine = false;
+            }
+            footerMatch = 0;
+            pending = LINE;
+        }
+
+        void finish() {
+            endLine();
+        }
+
+        private void separate() {
+            if (pending == NONE) return;
+            if (out.isEmpty()) {
+                pending = NONE;
+                return;
+            }
+            int at = out.length();
+            switch (pending) {
+                case LINE -> out.append(layout == Layout.TABLES ? '\n' : ' ');
+                case CELL -> out.append(layout == Layout.TABLES ? " | " : " ");
+                default -> out.append(' ');
+            }
+            if (pending == LINE) {
+                separatorStart = at;
+                lineStart = out.length();
+            }
+            footerMatch = 0;
+            pending = NONE;
+        }
+    }
+
+
+    // ================== CHAR SEQUENCE HELPERS ==================
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean is(CharSequence html, int start, int end, String[] names) {
+        for (String name : names) {
+            if (name.length() == end - start && regionMatchesIgnoreCase(html, start, name, 0, name.length())) return true;
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence s, int offset, String other) {
+        if (offset + other.length() > s.length()) return false;
+        for (int k = 0; k < other.length(); k++) {
+            if (s.charAt(offset + k) != other.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private static boolean regionMatchesIgnoreCase(CharSequence s, int offset, CharSequence other, int otherOffset, int length) {
+        if (offset + length > s.length() || otherOffset + length > other.length()) return false;
+        for (int k = 0; k < length; k++) {
+            char a = s.charAt(offset + k);
+            char b = other.charAt(otherOffset + k);
+            if (a != b && lower(a) != lower(b)) return false;
+        }
+        return true;
+    }
+
+    private static char lower(char c) {
+        if (c < 128) return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        return Character.toLowerCase(c);
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int k = from; k < s.length(); k++) {
+            if (s.charAt(k) == c) return k;
+        }
+        return -1;
+    }
+
+    private static int indexOf(CharSequence s, String target, int from) {
+        for (int k = from; k + target.length() <= s.length(); k++) {
+            if (regionMatches(s, k, target)) return k;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,219 @@
+package com.infrastructure.email.text;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Cuts cleaned email text down to the parts the extraction prompt needs.
+ *
+ * Text within the token budget is passed through untouched. Longer text is split into lines (long lines
+ * into sentence sized chunks) and each line is scored for amounts, currency codes, dates and merchant cues.
+ * The best lines are kept together with a small window of neighbours, in their original order, until the
+ * budget is spent; dropped runs are marked with "...". The opening lines are kept when they are short, since
+ * that is usually where the merchant names itself. Text without any cue keeps its head.
+ */
+@Component
+public class PromptTextReducer {
+
+    public record Reduction(String text, int originalTokens, int reducedTokens) {
+
+        public boolean reduced() {
+            return reducedTokens < originalTokens;
+        }
+    }
+
+    private static final String GAP = "...";
+    private static final int MAX_CHUNK_CHARS = 240;
+    private static final int HEAD_LINES = 2;
+
+    private static final Pattern AMOUNT = Pattern.compile(
+            "(?:[₦$€£¥]|\\b(?:NGN|USD|EUR|GBP|KES|GHS|ZAR|CAD|AUD|INR|JPY|CNY)\\b)\\s?\\d"
+                    + "|\\d[\\d,]*\\.\\d{2}\\b");
+    private static final Pattern CURRENCY = Pattern.compile(
+            "\\b(?:NGN|USD|EUR|GBP|KES|GHS|ZAR|CAD|AUD|INR|JPY|CNY|naira|dollars?|euros?|pounds?)\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern DATE = Pattern.compile(
+            "\\b\\d{4}-\\d{2}-\\d{2}\\b|\\b\\d{1,2}[/-]\\d{1,2}[/-]\\d{2,4}\\b"
+                    + "|\\b\\d{1,2}[ -](?:jan|feb|mar|apr|may|jun|jul|aug|sep|oct|nov|dec)[a-z]*[ -,]*\\d{2,4}\\b"
+                    + "|\\b(?:jan|feb|mar|apr|may|jun|jul|aug|sep|oct|nov|dec)[a-z]* \\d{1,2},? \\d{4}\\b"
+                    + "|\\b\\d{1,2}:\\d{2}(?::\\d{2})?\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern MERCHANT = Pattern.compile(
+            "\\b(?:merchant|description|narration|remarks?|paid to|payee|beneficiary|sold by|shopping with|thanks? (?:you )?for"
+                    + "|purchase|order|receipt|invoice|membership|renew(?:ed|al)?"
+                    + "|total|subtotal|amount|debit(?:ed)?|credit(?:ed)?|transaction|payment|charged|billed|subscription"
+                    + "|location|balance|transfer)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final int tokenBudget;
+    private final int windowLines;
+
+    public PromptTextReducer(@Value("${snapbill.prompt.token-budget:600}") int tokenBudget,
+                             @Value("${snapbill.prompt.window-lines:1}") int windowLines) {
+        this.tokenBudget = tokenBudget;
+        this.windowLines = windowLines;
+    }
+
+    /**
+     * Settings that change what the model sees - part of the extraction cache key.
+     */
+    public String version() {
+        return "b" + tokenBudget + "w" + windowLines;
+    }
+
+    public Reduction reduce(String text) {
+        if (text == null || text.isEmpty()) return new Reduction("", 0, 0);
+
+        int originalTokens = estimateTokens(text);
+        if (originalTokens <= tokenBudget) {
+            return new Reduction(text, originalTokens, originalTokens);
+        }
+
+        List<String> lines = split(text);
+        int[] tokens = new int[lines.size()];
+        int[] scores = new int[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            tokens[i] = estimateTokens(lines.get(i));
+            scores[i] = score(lines.get(i));
+        }
+
+        boolean[] keep = select(scores, tokens);
+        String reduced = join(lines, keep);
+        return new Reduction(reduced, originalTokens, estimateTokens(reduced));
+    }
+
+    /**
+     * The opening lines first, for up to a quarter of the budget. Then anchors best first, each with its window; a window that no longer fits is shrunk to the anchor
+     * alone. Lines are only ever added, so the budget is checked once per candidate.
+     */
+    private boolean[] select(int[] scores, int[] tokens) {
+        int n = scores.length;
+        boolean[] keep = new boolean[n];
+        int budget = tokenBudget - 1; // room for a gap marker
+
+        int used = 0;
+        for (int i = 0; i < Math.min(n, HEAD_LINES) && used + tokens[i] + 1 <= budget / 4; i++) {
+            keep[i] = true;
+            used += tokens[i] + 1;
+        }
+
+        List<Integer> anchors = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (scores[i] > 0) anchors.add(i);
+        }
+        // stable - equal scores keep document order, so earlier lines win ties
+        anchors.sort((a, b) -> Integer.compare(scores[b], scores[a]));
+
+        for (int anchor : anchors) {
+            int windowCost = 0;
+            int from = Math.max(0, anchor - windowLines);
+            int to = Math.min(n - 1, anchor + windowLines);
+            for (int i = from; i <= to; i++) {
+                if (!keep[i]) windowCost += tokens[i] + 1;
+            }
+            if (used + windowCost <= budget) {
+                for (int i = from; i <= to; i++) keep[i] = true;
+                used += windowCost;
+            } else if (!keep[anchor] && used + tokens[anchor] + 1 <= budget) {
+                keep[anchor] = true;
+                used += tokens[anchor] + 1;
+            }
+        }
+
+        // nothing looked like a transaction - the head of the text is the best guess
+        if (anchors.isEmpty()) {
+            for (int i = 0; i < n && used + tokens[i] + 1 <= budget; i++) {
+                if (keep[i]) continue;
+                keep[i] = true;
+                used += tokens[i] + 1;
+            }
+        }
+        return keep;
+    }
+
+    private int score(String line) {
+        int score = 0;
+        if (AMOUNT.matcher(line).find()) score += 4;
+        if (CURRENCY.matcher(line).find()) score += 2;
+        if (DATE.matcher(line).find()) score += 2;
+        if (MERCHANT.matcher(line).find()) score += 1;
+        return score;
+    }
+
+    private String join(List<String> lines, boolean[] keep) {
+        StringBuilder sb = new StringBuilder();
+        boolean gap = false;
+        for (int i = 0; i < lines.size(); i++) {
+            if (!keep[i]) {
+                gap = true;
+                continue;
+            }
+            if (gap) sb.append(GAP).append('\n');
+            sb.append(lines.get(i)).append('\n');
+            gap = false;
+        }
+        if (gap) sb.append(GAP);
+        else if (!sb.isEmpty()) sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+
+    /**
+     * Lines, with lines longer than MAX_CHUNK_CHARS (FLAT layout, plain bodies) cut after a sentence end
+     * or, failing that, a space.
+     */
+    static List<String> split(String text) {
+        List<String> lines = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            String rest = line.strip();
+            while (rest.length() > MAX_CHUNK_CHARS) {
+                int cut = lastBreak(rest);
+                lines.add(rest.substring(0, cut).strip());
+                rest = rest.substring(cut).strip();
+            }
+            if (!rest.isEmpty()) lines.add(rest);
+        }
+        return lines;
+    }
+
+    private static int lastBreak(String text) {
+        int space = -1;
+        for (int i = MAX_CHUNK_CHARS; i > MAX_CHUNK_CHARS / 3; i--) {
+            char c = text.charAt(i - 1);
+            if ((c == '.' || c == '!' || c == '?') && text.charAt(i) == ' ') return i;
+            if (space < 0 && c == ' ') space = i;
+        }
+        return space > 0 ? space : MAX_CHUNK_CHARS;
+    }
+
+    /**
+     * Rough BPE token count - about four characters per token for words, shorter pieces for digit runs,
+     * one per punctuation mark. Close enough to budget prompts without shipping a tokenizer.
+     */
+    public static int estimateTokens(CharSequence text) {
+        int tokens = 0;
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isLetter(c)) {
+                int start = i;
+                while (i < n && Character.isLetter(text.charAt(i))) i++;
+                tokens += (i - start + 3) / 4;
+            } else if (Character.isDigit(c)) {
+                int start = i;
+                while (i < n && Character.isDigit(text.charAt(i))) i++;
+                tokens += (i - start + 2) / 3;
+            } else {
+                tokens++;
+                i++;
+            }
+        }
+        return tokens;
+    }
+}
@@ -1,15 +1,12 @@
 package com.infrastructure.interfaces;
 
-import com.domain.model.ProviderMessage;
-import com.google.api.services.gmail.model.Message;
-
 /**
- * Implemented with google only for now.....
- * TODO: // TO make for generic email Message provide type model.
+ * Pulls the text and HTML bodies out of a provider's message model.
+ *
+ * @param <M> provider message type (Gmail Message, Graph message, ...)
  */
+public interface EmailBodyExtractor<M> {
 
-public interface EmailBodyExtractor {
-
-   String extractPlainText(Message message);
-   String extractHtmlBody(Message message);
+   String extractPlainText(M message);
+   String extractHtmlBody(M message);
 }
@@ -1,6 +0,0 @@
-package com.infrastructure.interfaces;
-
-@FunctionalInterface
-public interface RetrySupplier<T>{
-    T get() throws Exception;
-}
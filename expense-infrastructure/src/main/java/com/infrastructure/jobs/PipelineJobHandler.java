@@ -0,0 +1,16 @@
+package com.infrastructure.jobs;
+
+import com.domain.enums.PipelineJobType;
+
+import java.util.UUID;
+
+/**
+ * Runs one kind of pipeline job. A job may run more than once (a lease can time out while it is still
+ * running), so handlers must be safe to repeat. Throwing schedules a retry.
+ */
+public interface PipelineJobHandler {
+
+    PipelineJobType type();
+
+    void handle(UUID accountId) throws Exception;
+}
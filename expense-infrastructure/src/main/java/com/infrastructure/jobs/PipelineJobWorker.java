@@ -0,0 +1,329 @@
+package com.infrastructure.jobs;
+
+import com.domain.entities.PipelineFailure;
+import com.domain.entities.PipelineJob;
+import com.domain.enums.PipelineJobType;
+import com.domain.repositories.PipelineFailureRepository;
+import com.domain.repositories.PipelineJobRepository;
+import com.infrastructure.persistence.repositories.PipelineJobRepositoryImpl;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer of the pipeline job table, one per node.
+ *
+ * Jobs are leased in batches for the visibility timeout and run on the pipeline executor; a finished job is
+ * deleted, a failed one goes back to READY after an exponential backoff, and after max-attempts it is
+ * marked DEAD. While a job runs, a heartbeat renews its lease every third of the visibility timeout, so a
+ * long sync is not handed to a second worker. A node that dies mid-job stops renewing, the lease runs
+ * out, and the job is handed out again.
+ *
+ * Once the table is drained the worker waits on LISTEN for the next enqueue, with the poll interval as a
+ * fallback - it also picks up jobs coming out of backoff or an expired lease, and covers a lost listener
+ * connection.
+ */
+@Component
+@Slf4j
+public class PipelineJobWorker {
+
+    private final PipelineJobRepository jobs;
+    private final Map<PipelineJobType, PipelineJobHandler> handlers = new EnumMap<>(PipelineJobType.class);
+    private final DataSource dataSource;
+    private final ExecutorService pipelineExecutor;
+    private final PipelineFailureRepository pipelineFailureRepository;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxConcurrent;
+    private final Duration visibility;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Duration pollInterval;
+    private final Semaphore slots;
+    private final Set<PipelineJob> runningJobs = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private Thread loop;
+    private Thread heartbeat;
+    private Connection listener;  // only touched by the loop thread, and by stop() to unblock it
+
+    @Autowired
+    public PipelineJobWorker(PipelineJobRepository jobs,
+                             List<PipelineJobHandler> handlers,
+                             DataSource dataSource,
+                             @Qualifier("pipelineExecutor") ExecutorService pipelineExecutor,
+                             PipelineFailureRepository pipelineFailureRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${snapbill.jobs.batch-size:10}") int batchSize,
+                             @Value("${snapbill.jobs.max-concurrent:5}") int maxConcurrent,
+                             @Value("${snapbill.jobs.visibility-timeout-ms:600000}") long visibilityMillis,
+                             @Value("${snapbill.jobs.max-attempts:5}") int maxAttempts,
+                             @Value("${snapbill.jobs.backoff-ms:30000}") long backoffMillis,
+                             @Value("${snapbill.jobs.max-backoff-ms:3600000}") long maxBackoffMillis,
+                             @Value("${snapbill.jobs.poll-interval-ms:5000}") long pollIntervalMillis) {
+        this.jobs = jobs;
+        handlers.forEach(handler -> {
+            if (this.handlers.putIfAbsent(handler.type(), handler) != null) {
+                throw new IllegalStateException("More than one handler for " + handler.type());
+            }
+        });
+        this.dataSource = dataSource;
+        this.pipelineExecutor = pipelineExecutor;
+        this.pipelineFailureRepository = pipelineFailureRepository;
+        this.meterRegistry = meterRegistry;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.batchSize = Math.clamp(batchSize, 1, this.maxConcurrent);
+        this.visibility = Duration.ofMillis(Math.max(1, visibilityMillis));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = Duration.ofMillis(Math.max(0, backoffMillis));
+        this.maxBackoff = Duration.ofMillis(Math.max(backoffMillis, maxBackoffMillis));
+        this.pollInterval = Duration.ofMillis(Math.max(1, pollIntervalMillis));
+        this.slots = new Semaphore(this.maxConcurrent);
+
+        Gauge.builder("snapbill.jobs.in.flight", slots, free -> this.maxConcurrent - free.availablePermits())
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        // a platform thread: it spends its life blocked in the driver waiting for notifications
+        loop = Thread.ofPlatform().daemon().name("pipeline-jobs").start(this::run);
+        heartbeat = Thread.ofVirtual().name("pipeline-jobs-heartbeat").start(this::renewLeases);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread;
+        Thread renewing;
+        synchronized (this) {
+            running = false;
+            thread = loop;
+            renewing = heartbeat;
+        }
+        if (thread == null) return;
+        thread.interrupt();
+        renewing.interrupt();
+        closeListener();
+    }
+
+    /**
+     * Delay before the given failed attempt is retried: backoff, doubled per attempt, capped at max-backoff.
+     */
+    public Duration backoff(int attempts) {
+        int doublings = Math.clamp(attempts - 1, 0, 30);
+        Duration delay = backoff.multipliedBy(1L << doublings);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                slots.acquire();
+                int wanted = 1;
+                while (wanted < batchSize && slots.tryAcquire()) wanted++;
+
+                List<PipelineJob> leased;
+                try {
+                    leased = jobs.dequeue(wanted, Instant.now(), visibility);
+                } catch (RuntimeException e) {
+                    slots.release(wanted);
+                    throw e;
+                }
+                slots.release(wanted - leased.size());
+                leased.forEach(this::dispatch);
+
+                if (leased.size() < wanted) awaitWork();
+            } catch (InterruptedException e) {
+                if (!running) return;
+            } catch (Exception e) {
+                log.error("Pipeline job loop failed", e);
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException interrupted) {
+                    if (!running) return;
+                }
+            }
+        }
+        closeListener();
+    }
+
+    private void dispatch(PipelineJob job) {
+        pipelineExecutor.execute(() -> {
+            long start = System.nanoTime();
+            runningJobs.add(job);
+            try {
+                if (job.getAttempts() > maxAttempts) {
+                    // its leases kept running out - whatever runs it does not come back
+                    deadLetter(job, "Lease expired on attempt " + (job.getAttempts() - 1));
+                    return;
+                }
+                PipelineJobHandler handler = handlers.get(job.getType());
+                if (handler == null) throw new IllegalStateException("No handler for " + job.getType());
+
+                handler.handle(job.getAccountId());
+                jobs.complete(job);
+                outcome(job, "completed");
+            } catch (Exception e) {
+                fail(job, e);
+            } finally {
+                runningJobs.remove(job);
+                Timer.builder("snapbill.jobs.run")
+                        .tag("type", job.getType().name())
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                slots.release();
+            }
+        });
+    }
+
+    private void renewLeases() {
+        Duration interval = visibility.dividedBy(3);
+        while (running) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                if (!running) return;
+                continue;
+            }
+            for (PipelineJob job : runningJobs) {
+                try {
+                    if (!jobs.extend(job, Instant.now().plus(visibility))) {
+                        log.warn("{} job {} lost its lease while running", job.getType(), job.getId());
+                    }
+                } catch (Exception e) {
+                    log.warn("Could not renew the lease of {} job {}: {}", job.getType(), job.getId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void fail(PipelineJob job, Exception e) {
+        recordFailure(job, e);
+        try {
+            if (job.getAttempts() >= maxAttempts) {
+                log.error("{} job for account {} failed on attempt {}, giving up",
+                        job.getType(), job.getAccountId(), job.getAttempts(), e);
+                deadLetter(job, e.getMessage());
+            } else {
+                Duration delay = backoff(job.getAttempts());
+                log.warn("{} job for account {} failed on attempt {}, retrying in {}: {}",
+                        job.getType(), job.getAccountId(), job.getAttempts(), delay, e.getMessage());
+                jobs.retry(job, e.getMessage(), Instant.now().plus(delay));
+                outcome(job, "retried");
+            }
+        } catch (Exception saveFailure) {
+            // the lease runs out and the job is handed out again
+            log.warn("Could not reschedule {} job {}: {}", job.getType(), job.getId(), saveFailure.getMessage());
+        }
+    }
+
+    private void deadLetter(PipelineJob job, String error) {
+        jobs.deadLetter(job, error);
+        outcome(job, "dead");
+    }
+
+    private void outcome(PipelineJob job, String outcome) {
+        meterRegistry.counter("snapbill.jobs.outcome", "type", job.getType().name(), "outcome", outcome).increment();
+    }
+
+    /**
+     * Blocks until an enqueue is notified or the poll interval has passed.
+     */
+    private void awaitWork() throws InterruptedException {
+        Connection connection = listen();
+        if (connection == null) {
+            Thread.sleep(pollInterval);
+            return;
+        }
+        try {
+            connection.unwrap(PGConnection.class).getNotifications((int) pollInterval.toMillis());
+        } catch (SQLException e) {
+            if (!running) return;
+            log.warn("Listening for pipeline jobs failed, falling back to polling: {}", e.getMessage());
+            closeListener();
+            Thread.sleep(pollInterval);
+        }
+    }
+
+    private Connection listen() {
+        synchronized (this) {
+            if (listener != null || !running) return listener;
+        }
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + PipelineJobRepositoryImpl.CHANNEL);
+            }
+            connection.unwrap(PGConnection.class);
+            synchronized (this) {
+                listener = connection;
+            }
+            return connection;
+        } catch (SQLException e) {
+            log.warn("Could not listen for pipeline jobs, polling every {}: {}", pollInterval, e.getMessage());
+            close(connection);
+            return null;
+        }
+    }
+
+    private void closeListener() {
+        Connection connection;
+        synchronized (this) {
+            connection = listener;
+            listener = null;
+        }
+        close(connection);
+    }
+
+    private void close(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Closing the pipeline job listener failed", e);
+        }
+    }
+
+    private void recordFailure(PipelineJob job, Exception e) {
+        try {
+            pipelineFailureRepository.save(
+                    PipelineFailure.builder()
+                            .accountId(job.getAccountId())
+                            .pipelineStage(job.getType().pipelineStage())
+                            .message(e.getMessage())
+                            .time(Instant.now())
+                            .build());
+        } catch (Exception saveFailure) {
+            log.warn("Could not record pipeline failure for account {}: {}", job.getAccountId(), saveFailure.getMessage());
+        }
+    }
+}
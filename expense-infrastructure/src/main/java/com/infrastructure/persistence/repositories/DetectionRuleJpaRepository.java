@@ -0,0 +1,13 @@
+package com.infrastructure.persistence.repositories;
+
+import com.domain.entities.DetectionRule;
+import com.domain.repositories.DetectionRuleRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+interface DetectionRuleJpaRepository extends JpaRepository<DetectionRule, UUID>, DetectionRuleRepository {
+    // The domain interface methods are automatically implemented by Spring Data JPA
+}
@@ -46,4 +46,31 @@ interface EmailAccountJpaRepository extends JpaRepository<EmailAccount, UUID>, E
     """)
     void releaseSyncLock(@Param("accountId") UUID accountId);
 
+    @Modifying
+    @Query("""
+        UPDATE EmailAccount a
+        SET a.backfillCursor = :cursor, a.backfillTarget = :target
+        WHERE a.id = :accountId
+          AND a.backfillTarget IS NULL
+    """)
+    int initBackfill(@Param("accountId") UUID accountId, @Param("cursor") Instant cursor, @Param("target") Instant target);
+
+    @Modifying
+    @Query("""
+        UPDATE EmailAccount a
+        SET a.backfillCursor = :cursor
+        WHERE a.id = :accountId
+    """)
+    void updateBackfillCursor(@Param("accountId") UUID accountId, @Param("cursor") Instant cursor);
+
+    @Query("""
+    SELECT e
+    FROM EmailAccount e
+    WHERE e.status = :status
+    AND e.backfillTarget IS NOT NULL
+    AND e.backfillCursor > e.backfillTarget
+    ORDER BY e.connectedAt ASC
+    """)
+    List<EmailAccount> findBackfillPending(@Param("status") ConnectionStatus status);
+
 }
@@ -0,0 +1,23 @@
+package com.infrastructure.persistence.repositories;
+
+import com.domain.entities.ExtractionCacheEntry;
+import com.domain.repositories.ExtractionCacheRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+interface ExtractionCacheJpaRepository extends JpaRepository<ExtractionCacheEntry, String>, ExtractionCacheRepository {
+
+    @Override
+    @Modifying
+    @Transactional
+    @Query("""
+            DELETE FROM ExtractionCacheEntry e
+            WHERE e.promptVersion <> :promptVersion
+            OR e.modelId <> :modelId
+            """)
+    int deleteStale(String promptVersion, String modelId);
+}
@@ -0,0 +1,135 @@
+package com.infrastructure.persistence.repositories;
+
+import com.domain.entities.PipelineJob;
+import com.domain.enums.PipelineJobStatus;
+import com.domain.enums.PipelineJobType;
+import com.domain.repositories.PipelineJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Postgres job queue over plain JDBC, joining whatever transaction the caller has open.
+ *
+ * Enqueuing issues a NOTIFY on the "pipeline_jobs" channel; Postgres only delivers it when the transaction
+ * commits, so listeners are never woken for work that was rolled back.
+ * Columns follow the Hibernate mapping of PipelineJob - keep both in step.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PipelineJobRepositoryImpl implements PipelineJobRepository {
+
+    public static final String CHANNEL = "pipeline_jobs";
+
+    // two racing enqueues may both insert - handlers are idempotent, so that only costs a spare run
+    private static final String ENQUEUE = """
+            INSERT INTO pipeline_jobs (id, type, account_id, status, attempts, available_at, created_at)
+            SELECT ?, ?, ?, 'READY', 0, ?, ?
+            WHERE NOT EXISTS (
+                SELECT 1 FROM pipeline_jobs
+                WHERE type = ? AND account_id = ? AND status = 'READY'
+            )
+            """;
+
+    private static final String DEQUEUE = """
+            UPDATE pipeline_jobs
+            SET status = 'RUNNING', attempts = attempts + 1, locked_until = ?
+            WHERE id IN (
+                SELECT id FROM pipeline_jobs
+                WHERE (status = 'READY' AND available_at <= ?)
+                   OR (status = 'RUNNING' AND locked_until <= ?)
+                ORDER BY available_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING id, type, account_id, status, attempts, available_at, locked_until, last_error, created_at
+            """;
+
+    private static final String EXTEND = """
+            UPDATE pipeline_jobs
+            SET locked_until = ?
+            WHERE id = ? AND status = 'RUNNING' AND attempts = ?
+            """;
+
+    private static final String RETRY = """
+            UPDATE pipeline_jobs
+            SET status = 'READY', available_at = ?, locked_until = NULL, last_error = ?
+            WHERE id = ? AND status = 'RUNNING' AND attempts = ?
+            """;
+
+    private static final String DEAD_LETTER = """
+            UPDATE pipeline_jobs
+            SET status = 'DEAD', locked_until = NULL, last_error = ?
+            WHERE id = ? AND status = 'RUNNING' AND attempts = ?
+            """;
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private static final RowMapper<PipelineJob> ROW_MAPPER = (rs, rowNum) -> PipelineJob.builder()
+            .id(rs.getObject("id", UUID.class))
+            .type(PipelineJobType.valueOf(rs.getString("type")))
+            .accountId(rs.getObject("account_id", UUID.class))
+            .status(PipelineJobStatus.valueOf(rs.getString("status")))
+            .attempts(rs.getInt("attempts"))
+            .availableAt(instant(rs.getTimestamp("available_at")))
+            .lockedUntil(instant(rs.getTimestamp("locked_until")))
+            .lastError(rs.getString("last_error"))
+            .createdAt(instant(rs.getTimestamp("created_at")))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean enqueue(PipelineJobType type, UUID accountId) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int inserted = jdbcTemplate.update(ENQUEUE,
+                UUID.randomUUID(), type.name(), accountId, now, now,
+                type.name(), accountId);
+        if (inserted == 0) return false;
+        jdbcTemplate.execute("NOTIFY " + CHANNEL);
+        return true;
+    }
+
+    @Override
+    public List<PipelineJob> dequeue(int limit, Instant now, Duration visibility) {
+        if (limit <= 0) return List.of();
+        return jdbcTemplate.query(DEQUEUE, ROW_MAPPER,
+                Timestamp.from(now.plus(visibility)), Timestamp.from(now), Timestamp.from(now), limit);
+    }
+
+    @Override
+    public void complete(PipelineJob job) {
+        jdbcTemplate.update("DELETE FROM pipeline_jobs WHERE id = ? AND status = 'RUNNING' AND attempts = ?",
+                job.getId(), job.getAttempts());
+    }
+
+    @Override
+    public boolean extend(PipelineJob job, Instant lockedUntil) {
+        return jdbcTemplate.update(EXTEND, Timestamp.from(lockedUntil), job.getId(), job.getAttempts()) == 1;
+    }
+
+    @Override
+    public void retry(PipelineJob job, String error, Instant availableAt) {
+        jdbcTemplate.update(RETRY, Timestamp.from(availableAt), truncate(error), job.getId(), job.getAttempts());
+    }
+
+    @Override
+    public void deadLetter(PipelineJob job, String error) {
+        jdbcTemplate.update(DEAD_LETTER, truncate(error), job.getId(), job.getAttempts());
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static Instant instant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+}
@@ -0,0 +1,141 @@
+package com.infrastructure.persistence.repositories;
+
+import com.domain.entities.RawEmailMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Set-based raw email writes that bypass the persistence context.
+ *
+ * Processing results are written back the same way - one batch of updates of the processing columns.
+ *
+ * Rows go in through one JDBC batch with ON CONFLICT DO NOTHING, so a message that is already
+ * stored (same provider message id) is skipped instead of failing the whole page's transaction.
+ * Columns follow the Hibernate mapping of RawEmailMessage - keep both in step.
+ */
+@Component
+@RequiredArgsConstructor
+public class RawEmailBulkWriter {
+
+    private static final String INSERT_EMAIL = """
+            INSERT INTO raw_emails (
+                id, email_account_id, provider, thread_id, provider_message_id,
+                processing_started_at, retry_count, next_retry_at, claim_token,
+                subject, sender, recipient, received_date, snippet, body, body_html,
+                processing_status, fetched_at, failure_reason
+            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String INSERT_ATTACHMENT = """
+            INSERT INTO raw_email_attachments (raw_email_message_id, attachment_name) VALUES (?, ?)
+            """;
+
+    private static final String UPDATE_PROCESSING_STATE = """
+            UPDATE raw_emails SET
+                processing_status = ?, failure_reason = ?, retry_count = ?, next_retry_at = ?,
+                prompt_tokens_original = ?, prompt_tokens_reduced = ?, classifier_score = ?
+            WHERE id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the messages, skipping any already stored. Ids are assigned here when missing.
+     *
+     * @return the messages that were actually inserted
+     */
+    public List<RawEmailMessage> insertIgnoringDuplicates(List<RawEmailMessage> messages) {
+        if (messages.isEmpty()) return List.of();
+
+        messages.forEach(message -> {
+            if (message.getId() == null) message.setId(UUID.randomUUID());
+        });
+
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_EMAIL, messages, messages.size(), this::bindEmail);
+        List<RawEmailMessage> inserted = resolveInserted(messages, counts[0]);
+
+        List<Object[]> attachments = new ArrayList<>();
+        for (RawEmailMessage message : inserted) {
+            if (message.getAttachments() == null) continue;
+            message.getAttachments().forEach(name -> attachments.add(new Object[]{message.getId(), name}));
+        }
+        if (!attachments.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ATTACHMENT, attachments);
+        }
+        return inserted;
+    }
+
+    /**
+     * Writes the processing state of already stored messages in one JDBC batch.
+     */
+    public void updateProcessingStates(List<RawEmailMessage> messages) {
+        if (messages.isEmpty()) return;
+        jdbcTemplate.batchUpdate(UPDATE_PROCESSING_STATE, messages, messages.size(), (ps, message) -> {
+            ps.setString(1, message.getProcessed().name());
+            ps.setString(2, message.getFailureReason());
+            ps.setInt(3, message.getRetryCount());
+            ps.setTimestamp(4, timestamp(message.getNextRetryAt()));
+            ps.setObject(5, message.getPromptTokensOriginal(), Types.INTEGER);
+            ps.setObject(6, message.getPromptTokensReduced(), Types.INTEGER);
+            ps.setObject(7, message.getClassifierScore(), Types.DOUBLE);
+            ps.setObject(8, message.getId());
+        });
+    }
+
+    /**
+     * Row counts tell which rows went in - except when the driver rewrites the batch and
+     * only reports SUCCESS_NO_INFO, then the ids are checked against the table.
+     */
+    private List<RawEmailMessage> resolveInserted(List<RawEmailMessage> messages, int[] counts) {
+        if (Arrays.stream(counts).noneMatch(count -> count == Statement.SUCCESS_NO_INFO)) {
+            List<RawEmailMessage> inserted = new ArrayList<>();
+            for (int i = 0; i < messages.size(); i++) {
+                if (counts[i] > 0) inserted.add(messages.get(i));
+            }
+            return inserted;
+        }
+
+        UUID[] ids = messages.stream().map(RawEmailMessage::getId).toArray(UUID[]::new);
+        Set<UUID> stored = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM raw_emails WHERE id = ANY(?)",
+                UUID.class,
+                (Object) ids));
+        return messages.stream().filter(message -> stored.contains(message.getId())).toList();
+    }
+
+    private void bindEmail(PreparedStatement ps, RawEmailMessage message) throws SQLException {
+        ps.setObject(1, message.getId());
+        ps.setObject(2, message.getEmailAccount().getId());
+        ps.setString(3, message.getProvider().name());
+        ps.setString(4, message.getThreadId());
+        ps.setString(5, message.getProviderMessageId());
+        ps.setTimestamp(6, timestamp(message.getProcessingStartedAt()));
+        ps.setInt(7, message.getRetryCount());
+        ps.setTimestamp(8, timestamp(message.getNextRetryAt()));
+        ps.setObject(9, message.getClaimToken(), Types.OTHER);
+        ps.setString(10, message.getSubject());
+        ps.setString(11, message.getSender());
+        ps.setString(12, message.getTo());
+        ps.setTimestamp(13, timestamp(message.getReceivedDate()));
+        ps.setString(14, message.getSnippet());
+        ps.setString(15, message.getBody());
+        ps.setString(16, message.getBodyHtml());
+        ps.setString(17, message.getProcessed().name());
+        ps.setTimestamp(18, timestamp(message.getFetchedAt()));
+        ps.setString(19, message.getFailureReason());
+    }
+
+    private static Timestamp timestamp(Instant instant) {
+        return instant == null ? null : Timestamp.from(instant);
+    }
+}
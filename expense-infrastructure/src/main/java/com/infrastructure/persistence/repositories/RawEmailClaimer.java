@@ -0,0 +1,132 @@
+package com.infrastructure.persistence.repositories;
+
+import com.domain.entities.EmailAccount;
+import com.domain.entities.RawEmailMessage;
+import com.domain.entities.User;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Claims raw emails for processing in one statement.
+ *
+ * The candidate rows are locked with FOR UPDATE SKIP LOCKED, so concurrent claimers - other events, other
+ * nodes - each get a disjoint set instead of racing for the same ids, and never wait on each other. The
+ * UPDATE returns the claimed rows, which are joined to their account and user and hydrated as entities,
+ * so the worker has everything it needs after one round trip.
+ * Column and table names follow the Hibernate mapping - keep both in step.
+ */
+@Component
+@RequiredArgsConstructor
+public class RawEmailClaimer {
+
+    private static final String CLAIM = """
+            WITH claimed AS (
+                UPDATE raw_emails
+                SET processing_status = 'PROCESSING',
+                    processing_started_at = :now,
+                    claim_token = :token
+                WHERE id IN (
+                    SELECT id FROM raw_emails
+                    WHERE email_account_id = :accountId
+                    AND (
+                        processing_status = 'PENDING'
+                        OR (processing_status = 'PROCESSING' AND processing_started_at < :timeout)
+                    )
+                    AND (next_retry_at IS NULL OR next_retry_at <= :now)
+                    AND retry_count < :maxRetry
+                    ORDER BY received_date
+                    LIMIT :limit
+                    FOR UPDATE SKIP LOCKED
+                )
+                RETURNING *
+            )
+            SELECT {e.*}, {a.*}, {u.*}
+            FROM claimed e
+            JOIN email_account a ON a.id = e.email_account_id
+            JOIN users u ON u.id = a.user_id
+            ORDER BY e.received_date
+            """;
+
+    // when the emails claim skips over now become claimable: at their retry time, or once their worker times out
+    private static final String NEXT_CLAIMABLE = """
+            SELECT min(CASE
+                    WHEN processing_status = 'PENDING' THEN coalesce(next_retry_at, :now)
+                    ELSE processing_started_at + make_interval(secs => :timeoutSeconds)
+                END) AS next
+            FROM raw_emails
+            WHERE email_account_id = :accountId
+            AND processing_status IN ('PENDING', 'PROCESSING')
+            AND retry_count < :maxRetry
+            """;
+
+    private static final String UNFINISHED_ACCOUNTS = """
+            SELECT DISTINCT email_account_id AS account_id
+            FROM raw_emails
+            WHERE processing_status IN ('PENDING', 'PROCESSING')
+            AND retry_count < :maxRetry
+            """;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Claims up to limit emails of the account - Pending ones, and Processing ones whose worker timed out -
+     * oldest first, and returns them with account and user loaded.
+     */
+    public List<RawEmailMessage> claim(UUID accountId, Instant timeout, Instant now, int maxRetry, int limit, UUID token) {
+        List<?> rows = transactionTemplate.execute(status -> {
+            return entityManager.createNativeQuery(CLAIM).unwrap(NativeQuery.class)
+                    .addEntity("e", RawEmailMessage.class)
+                    .addEntity("a", EmailAccount.class)
+                    .addEntity("u", User.class)
+                    .setParameter("accountId", accountId)
+                    .setParameter("timeout", timeout)
+                    .setParameter("now", now)
+                    .setParameter("maxRetry", maxRetry)
+                    .setParameter("limit", limit)
+                    .setParameter("token", token)
+                    .getResultList();
+        });
+
+        // account and user come back alongside the email in each row, already wired into it
+        return rows.stream()
+                .map(row -> (RawEmailMessage) ((Object[]) row)[0])
+                .toList();
+    }
+
+    /**
+     * Earliest time claim will hand out one of the account's unfinished emails - now or earlier if one is
+     * claimable already, empty when the account has none left.
+     */
+    public Optional<Instant> nextClaimableAt(UUID accountId, Duration claimTimeout, Instant now, int maxRetry) {
+        Object next = entityManager.createNativeQuery(NEXT_CLAIMABLE).unwrap(NativeQuery.class)
+                .addScalar("next", StandardBasicTypes.INSTANT)
+                .setParameter("accountId", accountId)
+                .setParameter("timeoutSeconds", (double) claimTimeout.toSeconds())
+                .setParameter("now", now)
+                .setParameter("maxRetry", maxRetry)
+                .getSingleResult();
+        return Optional.ofNullable((Instant) next);
+    }
+
+    /**
+     * Accounts with emails claim may still hand out, now or later.
+     */
+    @SuppressWarnings("unchecked")
+    public List<UUID> accountsWithUnfinished(int maxRetry) {
+        return entityManager.createNativeQuery(UNFINISHED_ACCOUNTS).unwrap(NativeQuery.class)
+                .addScalar("account_id", StandardBasicTypes.UUID)
+                .setParameter("maxRetry", maxRetry)
+                .getResultList();
+    }
+}
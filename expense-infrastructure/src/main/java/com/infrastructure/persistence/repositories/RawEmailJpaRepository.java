@@ -5,12 +5,13 @@ import com.domain.entities.RawEmailMessage;
 import com.domain.enums.ProcessingStatus;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -22,31 +23,11 @@ interface RawEmailJpaRepository extends JpaRepository<RawEmailMessage, UUID> {
     }
 
 
-    @Modifying
-    @Query("""
-            UPDATE RawEmailMessage e
-            SET e.processed = 'PROCESSING',
-                e.processingStartedAt = :now,
-                e.claimToken = :token
-            WHERE e.id IN :ids
-            """)
-    int claimByIds(List<UUID> id, Instant now, UUID token);
-
-    @Query("""
-            SELECT e FROM RawEmailMessage e
-            JOIN FETCH e.emailAccount acc
-            JOIN FETCH acc.user
-            WHERE e.claimToken = :token
-            """)
-    List<RawEmailMessage> findByClaimToken(UUID token);
-
-
     /**
-     *
-     * Query to fetch ids in batch specified per account
+     * Same predicate as RawEmailClaimer's claim.
      */
     @Query("""
-            SELECT e.id FROM RawEmailMessage e
+            SELECT COUNT(e) FROM RawEmailMessage e
             WHERE e.emailAccount.id = :accountId
             AND (
                 e.processed = 'PENDING'
@@ -54,15 +35,16 @@ interface RawEmailJpaRepository extends JpaRepository<RawEmailMessage, UUID> {
             )
             AND (e.nextRetryAt IS NULL OR e.nextRetryAt <= :now)
             AND e.retryCount < :maxRetry
-            ORDER BY e.receivedDate ASC
             """)
-    List<UUID> findIdsForClaimInternal(
-            UUID accountId,
-            Instant timeout,
-            Instant now,
-            int maxRetry,
-            Pageable pageable
-    );
+    long countClaimable(UUID accountId, Instant timeout, Instant now, int maxRetry);
+
+
+    @Query("""
+            SELECT e.providerMessageId FROM RawEmailMessage e
+            WHERE e.emailAccount.id = :accountId
+            AND e.providerMessageId IN :providerMessageIds
+            """)
+    Set<String> findExistingProviderMessageIds(UUID accountId, Collection<String> providerMessageIds);
 
 
     List<RawEmailMessage> findByEmailAccount(EmailAccount emailAccount);
@@ -70,4 +52,15 @@ interface RawEmailJpaRepository extends JpaRepository<RawEmailMessage, UUID> {
     void deleteByEmailAccount(EmailAccount emailAccount);
 
     boolean existsByEmailAccountAndProcessed(EmailAccount account, ProcessingStatus status);
+
+    @Query("""
+            SELECT e FROM RawEmailMessage e
+            WHERE (
+                e.processed = 'PROCESSED'
+                OR (e.processed = 'FAILED' AND e.failureReason = 'VALIDATION_FAILED')
+            )
+            AND e.id > :afterId
+            ORDER BY e.id
+            """)
+    List<RawEmailMessage> findLabelledForTraining(UUID afterId, Pageable pageable);
 }
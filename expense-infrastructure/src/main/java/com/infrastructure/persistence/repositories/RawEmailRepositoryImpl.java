@@ -8,15 +8,20 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
 @RequiredArgsConstructor
 public class RawEmailRepositoryImpl implements RawEmailRepository {
     private final RawEmailJpaRepository jpaRep;
+    private final RawEmailBulkWriter bulkWriter;
+    private final RawEmailClaimer claimer;
 
     @Override
     public RawEmailMessage saveMessage(RawEmailMessage message) {
@@ -28,6 +33,22 @@ public class RawEmailRepositoryImpl implements RawEmailRepository {
         return jpaRep.saveAllMessages(messages);
     }
 
+    @Override
+    public List<RawEmailMessage> insertIgnoringDuplicates(List<RawEmailMessage> messages) {
+        return bulkWriter.insertIgnoringDuplicates(messages);
+    }
+
+    @Override
+    public Set<String> findExistingProviderMessageIds(UUID accountId, Collection<String> providerMessageIds) {
+        if (providerMessageIds.isEmpty()) return Set.of();
+        return jpaRep.findExistingProviderMessageIds(accountId, providerMessageIds);
+    }
+
+    @Override
+    public void updateProcessingStates(List<RawEmailMessage> messages) {
+        bulkWriter.updateProcessingStates(messages);
+    }
+
     @Override
     public Optional<RawEmailMessage> findByUid(UUID id) {
         return jpaRep.findById(id);
@@ -46,34 +67,33 @@ public class RawEmailRepositoryImpl implements RawEmailRepository {
 
 
     @Override
-    public int claimByIds(List<UUID> id, Instant now, UUID token) {
-        return jpaRep.claimByIds(id, now, token);
+    public List<RawEmailMessage> claim(UUID accountId, Instant timeout, Instant now, int maxRetry, int limit, UUID token) {
+        return claimer.claim(accountId, timeout, now, maxRetry, limit, token);
     }
 
 
     @Override
-    public List<RawEmailMessage> findByClaimToken(UUID token) {
-        return jpaRep.findByClaimToken(token);
+    public long countClaimable(UUID accountId, Instant timeout, Instant now, int maxRetry) {
+        return jpaRep.countClaimable(accountId, timeout, now, maxRetry);
     }
 
-    /**
-     * Query picks up Email with status Pending and ones stuck in Processing state
-     * per account , limit and max retry
-     */
     @Override
-    public List<UUID> findIdsForClaim(UUID accountId, Instant timeout, Instant now, int maxRetry, int limit) {
-        return jpaRep.findIdsForClaimInternal(
-                accountId,
-                timeout,
-                now,
-                maxRetry,
-                PageRequest.of(0, limit)
-        );
+    public Optional<Instant> nextClaimableAt(UUID accountId, Duration claimTimeout, Instant now, int maxRetry) {
+        return claimer.nextClaimableAt(accountId, claimTimeout, now, maxRetry);
     }
 
+    @Override
+    public List<UUID> findAccountIdsWithUnfinishedEmails(int maxRetry) {
+        return claimer.accountsWithUnfinished(maxRetry);
+    }
 
     @Override
     public boolean existsByAccountIdAndStatus(EmailAccount account, ProcessingStatus processingStatus) {
         return jpaRep.existsByEmailAccountAndProcessed(account, processingStatus);
     }
+
+    @Override
+    public List<RawEmailMessage> findLabelledForTraining(UUID afterId, int limit) {
+        return jpaRep.findLabelledForTraining(afterId, PageRequest.of(0, limit));
+    }
 }
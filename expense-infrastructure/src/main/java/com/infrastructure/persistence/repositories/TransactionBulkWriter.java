@@ -0,0 +1,114 @@
+package com.infrastructure.persistence.repositories;
+
+import com.domain.entities.TransactionEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Set-based transaction inserts that bypass the persistence context.
+ *
+ * Rows go in through one JDBC batch with ON CONFLICT DO NOTHING, so a transaction already stored for the
+ * same provider message is skipped instead of failing the whole batch.
+ * Columns follow the Hibernate mapping of TransactionEntity - keep both in step.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionBulkWriter {
+
+    private static final String INSERT_TRANSACTION = """
+            INSERT INTO transactions (
+                id, user_id, email_account_id, type, transaction_date, transaction_date_time, original_zone,
+                merchant, category, amount, currency, bank_account_id, bank_label, bank_last4, bank_currency,
+                description, source, ai_confidence, created_at, updated_at, provider_message_id
+            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String INSERT_TAG = """
+            INSERT INTO transaction_tags (transaction_id, tag) VALUES (?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the transactions, skipping any already stored. Ids are assigned here when missing.
+     *
+     * @return the transactions that were actually inserted
+     */
+    public List<TransactionEntity> insertIgnoringDuplicates(List<TransactionEntity> transactions) {
+        if (transactions.isEmpty()) return List.of();
+
+        transactions.forEach(transaction -> {
+            if (transaction.getId() == null) transaction.setId(UUID.randomUUID());
+        });
+
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_TRANSACTION, transactions, transactions.size(), this::bind);
+        List<TransactionEntity> inserted = resolveInserted(transactions, counts[0]);
+
+        List<Object[]> tags = new ArrayList<>();
+        for (TransactionEntity transaction : inserted) {
+            if (transaction.getTags() == null) continue;
+            transaction.getTags().forEach(tag -> tags.add(new Object[]{transaction.getId(), tag}));
+        }
+        if (!tags.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TAG, tags);
+        }
+        return inserted;
+    }
+
+    /**
+     * Same as RawEmailBulkWriter - row counts, or the table when the driver only reports SUCCESS_NO_INFO.
+     */
+    private List<TransactionEntity> resolveInserted(List<TransactionEntity> transactions, int[] counts) {
+        if (Arrays.stream(counts).noneMatch(count -> count == Statement.SUCCESS_NO_INFO)) {
+            List<TransactionEntity> inserted = new ArrayList<>();
+            for (int i = 0; i < transactions.size(); i++) {
+                if (counts[i] > 0) inserted.add(transactions.get(i));
+            }
+            return inserted;
+        }
+
+        UUID[] ids = transactions.stream().map(TransactionEntity::getId).toArray(UUID[]::new);
+        Set<UUID> stored = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM transactions WHERE id = ANY(?)",
+                UUID.class,
+                (Object) ids));
+        return transactions.stream().filter(transaction -> stored.contains(transaction.getId())).toList();
+    }
+
+    private void bind(PreparedStatement ps, TransactionEntity transaction) throws SQLException {
+        ps.setObject(1, transaction.getId());
+        ps.setObject(2, transaction.getUser().getId());
+        ps.setObject(3, transaction.getEmailAccount().getId());
+        ps.setString(4, transaction.getType().name());
+        ps.setObject(5, transaction.getTransactionDate());
+        ps.setTimestamp(6, timestamp(transaction.getTransactionDateTime()));
+        ps.setString(7, transaction.getOriginalZone());
+        ps.setString(8, transaction.getMerchant());
+        ps.setString(9, transaction.getCategory());
+        ps.setBigDecimal(10, transaction.getAmount());
+        ps.setString(11, transaction.getCurrency().name());
+        ps.setString(12, transaction.getBankAccountId());
+        ps.setString(13, transaction.getBankLabel());
+        ps.setString(14, transaction.getBankLast4());
+        ps.setString(15, transaction.getBankCurrency() == null ? null : transaction.getBankCurrency().name());
+        ps.setString(16, transaction.getDescription());
+        ps.setString(17, transaction.getSource().name());
+        ps.setBigDecimal(18, transaction.getAiConfidence());
+        ps.setTimestamp(19, timestamp(transaction.getCreatedAt()));
+        ps.setTimestamp(20, timestamp(transaction.getUpdatedAt()));
+        ps.setString(21, transaction.getProviderMessageId());
+    }
+
+    private static Timestamp timestamp(Instant instant) {
+        return instant == null ? null : Timestamp.from(instant);
+    }
+}
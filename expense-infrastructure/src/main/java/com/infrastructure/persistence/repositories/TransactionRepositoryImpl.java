@@ -29,12 +29,18 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class TransactionRepositoryImpl implements TransactionRepository {
     private final TransactionJpaRepository jpASpr;
+    private final TransactionBulkWriter bulkWriter;
 
     @Override
     public TransactionEntity save(TransactionEntity expense) {
         return jpASpr.save(expense);
     }
 
+    @Override
+    public List<TransactionEntity> insertIgnoringDuplicates(List<TransactionEntity> transactions) {
+        return bulkWriter.insertIgnoringDuplicates(transactions);
+    }
+
 
     @Override
     public Optional<TransactionEntity> findById(UUID id) {
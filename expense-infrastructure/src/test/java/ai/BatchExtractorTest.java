@@ -0,0 +1,154 @@
+package ai;
+
+import com.domain.exceptions.AiGatewayException;
+import com.domain.gateways.AiGateway;
+import com.domain.model.ExtractionResult;
+import com.infrastructure.Ai.BatchExtractor;
+import com.infrastructure.Ai.ExpensePromptBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class BatchExtractorTest {
+
+    private static final Pattern BATCH_EMAIL = Pattern.compile("=== EMAIL (\\d+) ===\\n(.*?)(?=\\n\\n=== EMAIL|\\n\\s*$|\\z)", Pattern.DOTALL);
+    private static final Pattern SINGLE_EMAIL = Pattern.compile("---\\n(.*?)\\n\\s*---", Pattern.DOTALL);
+
+    /**
+     * Echoes each email's text back as the merchant. Batches holding "poison" come back malformed,
+     * texts holding "skip" are left out of batch responses.
+     */
+    private static class EchoGateway implements AiGateway {
+
+        final ExecutorService responses = Executors.newVirtualThreadPerTaskExecutor();
+
+        final AtomicInteger batchCalls = new AtomicInteger();
+        final AtomicInteger singleCalls = new AtomicInteger();
+        final List<Integer> batchSizes = new ArrayList<>();
+
+        @Override
+        public ExtractionResult extractExpenses(String prompt) {
+            singleCalls.incrementAndGet();
+            Matcher matcher = SINGLE_EMAIL.matcher(prompt);
+            assertThat(matcher.find()).isTrue();
+            return result(matcher.group(1).strip());
+        }
+
+        @Override
+        public Map<String, ExtractionResult> extractExpensesBatch(String prompt) {
+            batchCalls.incrementAndGet();
+            Map<String, ExtractionResult> results = new HashMap<>();
+            Matcher matcher = BATCH_EMAIL.matcher(prompt);
+            int size = 0;
+            while (matcher.find()) {
+                size++;
+                String text = matcher.group(2).strip();
+                if (text.contains("poison")) throw new AiGatewayException("Malformed batch response");
+                if (!text.contains("skip")) results.put(matcher.group(1), result(text));
+            }
+            synchronized (batchSizes) {
+                batchSizes.add(size);
+            }
+            return results;
+        }
+
+        // completes on another thread, like a response arriving on the HTTP client's event loop
+        @Override
+        public CompletableFuture<ExtractionResult> extractExpensesAsync(String prompt) {
+            return CompletableFuture.supplyAsync(() -> extractExpenses(prompt), responses);
+        }
+
+        @Override
+        public CompletableFuture<Map<String, ExtractionResult>> extractExpensesBatchAsync(String prompt) {
+            return CompletableFuture.supplyAsync(() -> extractExpensesBatch(prompt), responses);
+        }
+
+        @Override
+        public String modelId() {
+            return "echo";
+        }
+
+        private static ExtractionResult result(String text) {
+            return new ExtractionResult(text, null, null, null, null, true, null);
+        }
+    }
+
+    private final EchoGateway gateway = new EchoGateway();
+    private static List<BatchExtractor.Item<Integer>> items(int count, int tokens) {
+        List<BatchExtractor.Item<Integer>> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) items.add(new BatchExtractor.Item<>(i, "email " + i, tokens));
+        return items;
+    }
+
+    private static void assertEchoed(Map<Integer, ExtractionResult> results, List<BatchExtractor.Item<Integer>> items) {
+        assertThat(results).hasSize(items.size());
+        items.forEach(item -> assertThat(results.get(item.key()).merchant()).isEqualTo(item.text()));
+    }
+
+    @Test
+    @DisplayName("should extract a 25 email claim batch in a few calls")
+    void shouldBatchClaim() {
+        BatchExtractor extractor = new BatchExtractor(gateway, new ExpensePromptBuilder(), 6000, 10);
+        List<BatchExtractor.Item<Integer>> items = items(25, 150);
+
+        Map<Integer, ExtractionResult> results = extractor.extract(items);
+
+        assertEchoed(results, items);
+        assertThat(gateway.batchCalls.get()).isEqualTo(3);
+        assertThat(gateway.singleCalls.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("should size batches by the token budget")
+    void shouldRespectTokenBudget() {
+        int budget = ExpensePromptBuilder.BATCH_OVERHEAD_TOKENS + 3 * (1000 + ExpensePromptBuilder.BATCH_ITEM_OVERHEAD_TOKENS);
+        BatchExtractor extractor = new BatchExtractor(gateway, new ExpensePromptBuilder(), budget, 10);
+        List<BatchExtractor.Item<Integer>> items = items(7, 1000);
+
+        assertEchoed(extractor.extract(items), items);
+        assertThat(gateway.batchSizes).containsExactlyInAnyOrder(3, 3);
+        assertThat(gateway.singleCalls.get()).isEqualTo(1); // the seventh is alone
+    }
+
+    @Test
+    @DisplayName("should split a malformed batch until the bad email is alone and shrink the batch limit")
+    void shouldSplitMalformedBatch() {
+        BatchExtractor extractor = new BatchExtractor(gateway, new ExpensePromptBuilder(), 6000, 8);
+        List<BatchExtractor.Item<Integer>> items = new ArrayList<>(items(8, 100));
+        items.set(5, new BatchExtractor.Item<>(5, "poison pill", 100));
+
+        Map<Integer, ExtractionResult> results = extractor.extract(items);
+
+        assertEchoed(results, items);
+        // 8 fails, 4 ok, 4 fails, 2 ok, 2 fails, then 5 and the poison alone
+        assertThat(gateway.batchCalls.get()).isEqualTo(5);
+        assertThat(gateway.singleCalls.get()).isEqualTo(2);
+        assertThat(extractor.batchLimit()).isLessThan(8);
+    }
+
+    @Test
+    @DisplayName("should retry emails the model left out of a batch response")
+    void shouldRetrySkippedEmails() {
+        BatchExtractor extractor = new BatchExtractor(gateway, new ExpensePromptBuilder(), 6000, 10);
+        List<BatchExtractor.Item<Integer>> items = new ArrayList<>(items(6, 100));
+        items.set(2, new BatchExtractor.Item<>(2, "skip me", 100));
+
+        Map<Integer, ExtractionResult> results = extractor.extract(items);
+
+        assertEchoed(results, items);
+        assertThat(gateway.batchCalls.get()).isEqualTo(1);
+        assertThat(gateway.singleCalls.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,69 @@
+package ai;
+
+import com.infrastructure.Ai.CircuitBreaker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(30), clock::get);
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    @DisplayName("should open after consecutive failures only")
+    void shouldOpenAfterThreshold() {
+        breaker.onFailure(null);
+        breaker.onFailure(null);
+        breaker.onSuccess();
+        breaker.onFailure(null);
+        breaker.onFailure(null);
+        assertThat(breaker.allow()).isTrue();
+
+        breaker.onFailure(null);
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.allow()).isFalse();
+        assertThat(breaker.retryAfter()).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    @DisplayName("should let one probe through once the open time is over and close on its success")
+    void shouldProbeAndClose() {
+        for (int i = 0; i < 3; i++) breaker.onFailure(null);
+        advance(Duration.ofSeconds(30));
+
+        assertThat(breaker.allow()).isTrue();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.allow()).isFalse();
+
+        breaker.onSuccess();
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.allow()).isTrue();
+    }
+
+    @Test
+    @DisplayName("should reopen on a failed probe, honouring a longer Retry-After")
+    void shouldReopenOnFailedProbe() {
+        for (int i = 0; i < 3; i++) breaker.onFailure(null);
+        advance(Duration.ofSeconds(30));
+        assertThat(breaker.allow()).isTrue();
+
+        breaker.onFailure(Duration.ofSeconds(90));
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        advance(Duration.ofSeconds(60));
+        assertThat(breaker.allow()).isFalse();
+        advance(Duration.ofSeconds(30));
+        assertThat(breaker.allow()).isTrue();
+    }
+}
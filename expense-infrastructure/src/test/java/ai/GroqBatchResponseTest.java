@@ -0,0 +1,38 @@
+package ai;
+
+import com.domain.model.ExtractionResult;
+import com.domain.valueObjects.CurrencyCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infrastructure.Ai.groq.GroqBatchResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class GroqBatchResponseTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("should drop only the item with an unknown currency and keep the rest of the batch")
+    void shouldIsolateUnknownCurrency() throws Exception {
+        GroqBatchResponse batch = objectMapper.readValue("""
+                {"results": [
+                    {"id": "1", "merchant": "SHOPRITE", "amount": 2500.00, "currency": "ngn", "transaction": true},
+                    {"id": "2", "merchant": "KIOSK", "amount": 10.00, "currency": "XYZ", "transaction": true},
+                    {"id": "3", "transaction": false}
+                ]}
+                """, GroqBatchResponse.class);
+
+        List<ExtractionResult> results = batch.results().stream().map(GroqBatchResponse.Item::toResult).toList();
+
+        assertThat(results.get(0).currency()).isEqualTo(CurrencyCode.NGN);
+        assertThat(results.get(0).amount()).isEqualByComparingTo(new BigDecimal("2500"));
+        assertThat(results.get(1)).isEqualTo(ExtractionResult.none());
+        assertThat(results.get(2).transaction()).isFalse();
+        assertThat(results.get(2).currency()).isNull();
+    }
+}
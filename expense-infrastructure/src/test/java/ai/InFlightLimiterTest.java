@@ -0,0 +1,102 @@
+package ai;
+
+import com.domain.exceptions.AiProviderUnavailableException;
+import com.infrastructure.Ai.InFlightLimiter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class InFlightLimiterTest {
+
+    private final List<CompletableFuture<String>> calls = new ArrayList<>();
+
+    /** A call that stays in flight until the test completes it. */
+    private CompletableFuture<String> pending() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        calls.add(call);
+        return call;
+    }
+
+    @Test
+    @DisplayName("should start no more calls than the limit and queue the rest")
+    void shouldRespectLimit() {
+        InFlightLimiter limiter = new InFlightLimiter("test", 2, 10);
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) results.add(limiter.submit(this::pending));
+
+        assertThat(calls).hasSize(2);
+        assertThat(limiter.inFlight()).isEqualTo(2);
+        assertThat(limiter.queued()).isEqualTo(3);
+        assertThat(results).noneMatch(CompletableFuture::isDone);
+    }
+
+    @Test
+    @DisplayName("should start a queued call when an in-flight one completes, even exceptionally")
+    void shouldHandOverPermit() {
+        InFlightLimiter limiter = new InFlightLimiter("test", 1, 10);
+        CompletableFuture<String> first = limiter.submit(this::pending);
+        CompletableFuture<String> second = limiter.submit(this::pending);
+        CompletableFuture<String> third = limiter.submit(this::pending);
+
+        calls.get(0).completeExceptionally(new IllegalStateException("timeout"));
+        assertThat(first).isCompletedExceptionally();
+        assertThat(calls).hasSize(2);
+
+        calls.get(1).complete("two");
+        assertThat(second).isCompletedWithValue("two");
+        assertThat(calls).hasSize(3);
+
+        calls.get(2).complete("three");
+        assertThat(third).isCompletedWithValue("three");
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.queued()).isZero();
+    }
+
+    @Test
+    @DisplayName("should fail fast once the queue is full")
+    void shouldRejectWhenQueueFull() {
+        InFlightLimiter limiter = new InFlightLimiter("test", 1, 1);
+        limiter.submit(this::pending);
+        limiter.submit(this::pending);
+
+        CompletableFuture<String> rejected = limiter.submit(this::pending);
+
+        assertThat(calls).hasSize(1);
+        assertThatThrownBy(rejected::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(AiProviderUnavailableException.class);
+    }
+
+    @Test
+    @DisplayName("should halve the limit on provider failures and slow calls, and grow it back on fast ones")
+    void shouldAdaptLimit() {
+        AtomicLong clock = new AtomicLong();
+        InFlightLimiter limiter = new InFlightLimiter("test", 8, 1, 8, 10,
+                Duration.ofSeconds(5), Duration.ofSeconds(1), clock::get);
+
+        limiter.submit(() -> CompletableFuture.failedFuture(new AiProviderUnavailableException("429", (Duration) null)));
+        assertThat(limiter.limit()).isEqualTo(4);
+
+        // same burst, inside the cooldown
+        limiter.submit(() -> CompletableFuture.failedFuture(new AiProviderUnavailableException("429", (Duration) null)));
+        assertThat(limiter.limit()).isEqualTo(4);
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        limiter.submit(this::pending);
+        clock.addAndGet(Duration.ofSeconds(6).toNanos());
+        calls.getFirst().complete("slow");
+        assertThat(limiter.limit()).isEqualTo(2);
+
+        for (int i = 0; i < 10; i++) limiter.submit(() -> CompletableFuture.completedFuture("fast"));
+        assertThat(limiter.limit()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,160 @@
+package ai;
+
+import com.domain.exceptions.AiGatewayException;
+import com.domain.model.ExtractionResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infrastructure.Ai.ExpensePromptBuilder;
+import com.infrastructure.Ai.RoutingAiGateway;
+import com.infrastructure.Ai.groq.GroqAiGateway;
+import com.infrastructure.Ai.groq.GrogConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Runs the router against two local OpenAI-compatible stand-ins, each answering with its own name as merchant.
+ */
+public class RoutingAiGatewayTest {
+
+    private final ExpensePromptBuilder promptBuilder = new ExpensePromptBuilder();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private StubModel fast;
+    private StubModel accurate;
+    private RoutingAiGateway router;
+
+    private static class StubModel {
+
+        final String name;
+        final HttpServer server;
+        final AtomicInteger calls = new AtomicInteger();
+        volatile Duration delay = Duration.ZERO;
+        volatile int status = 200;
+
+        StubModel(String name) throws IOException {
+            this.name = name;
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/v1/chat/completions", this::handle);
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            calls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String content = "{\\\"transaction\\\":true,\\\"merchant\\\":\\\"" + name + "\\\"}";
+            byte[] body = (status == 200
+                    ? "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"}}]}"
+                    : "{\"error\":\"overloaded\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fast = new StubModel("fast");
+        accurate = new StubModel("accurate");
+        ObjectMapper objectMapper = new ObjectMapper();
+        GroqAiGateway small = new GroqAiGateway(GrogConfig.groqWebClient(fast.baseUrl(), "key"), objectMapper, "small");
+        GroqAiGateway large = new GroqAiGateway(GrogConfig.groqWebClient(accurate.baseUrl(), "key"), objectMapper, "large");
+
+        // the first request pays for client start-up, which would otherwise trigger a hedge
+        small.extractExpenses(shortPrompt());
+        large.extractExpenses(shortPrompt());
+        fast.calls.set(0);
+        accurate.calls.set(0);
+
+        router = new RoutingAiGateway(List.of(
+                new RoutingAiGateway.Backend("fast", small),
+                new RoutingAiGateway.Backend("accurate", large)),
+                ExpensePromptBuilder.BATCH_OVERHEAD_TOKENS + 100,
+                Duration.ofMillis(300),
+                Duration.ofMillis(50),
+                0.5,
+                meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fast.server.stop(0);
+        accurate.server.stop(0);
+    }
+
+    private String shortPrompt() {
+        return promptBuilder.build("Debit alert: NGN 2,500.00 at SHOPRITE");
+    }
+
+    private String longPrompt() {
+        return promptBuilder.build("Your order has shipped. ".repeat(200));
+    }
+
+    @Test
+    @DisplayName("should send short emails to the fast model and long ones to the accurate model")
+    void shouldRouteByLength() {
+        assertThat(router.extractExpenses(shortPrompt()).merchant()).isEqualTo("fast");
+        assertThat(router.extractExpenses(longPrompt()).merchant()).isEqualTo("accurate");
+
+        assertThat(fast.calls.get()).isEqualTo(1);
+        assertThat(accurate.calls.get()).isEqualTo(1);
+        assertThat(router.modelId()).isEqualTo("small+large");
+    }
+
+    @Test
+    @DisplayName("should hedge to the second model when the first is late and take the first answer")
+    void shouldHedgeSlowBackend() {
+        accurate.delay = Duration.ofSeconds(2);
+
+        long start = System.nanoTime();
+        ExtractionResult result = router.extractExpenses(longPrompt());
+        Duration took = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(result.merchant()).isEqualTo("fast");
+        assertThat(took).isLessThan(Duration.ofSeconds(2));
+        assertThat(meterRegistry.counter("snapbill.llm.hedged").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should fall over to the next model when the first fails")
+    void shouldFailOver() {
+        fast.status = 503;
+
+        assertThat(router.extractExpenses(shortPrompt()).merchant()).isEqualTo("accurate");
+        assertThat(meterRegistry.counter("snapbill.llm.errors", "backend", "fast", "kind", "single").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("snapbill.llm.hedged").count()).isZero();
+    }
+
+    @Test
+    @DisplayName("should throw on a rejected single call instead of reading it as no transaction")
+    void shouldThrowOnRejectedCall() {
+        fast.status = 400;
+        GroqAiGateway small = new GroqAiGateway(GrogConfig.groqWebClient(fast.baseUrl(), "key"), new ObjectMapper(), "small");
+
+        assertThatThrownBy(() -> small.extractExpenses(shortPrompt())).isInstanceOf(AiGatewayException.class);
+    }
+}
@@ -0,0 +1,216 @@
+package benchmark;
+
+import com.domain.entities.EmailAccount;
+import com.domain.entities.RawEmailMessage;
+import com.domain.entities.User;
+import com.domain.enums.AuthProvider;
+import com.domain.enums.EmailProvider;
+import com.infrastructure.persistence.repositories.RawEmailBulkWriter;
+import com.infrastructure.persistence.repositories.RawEmailClaimer;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManager;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Draining an account's pending emails with concurrent claimers - the single UPDATE ... FOR UPDATE SKIP LOCKED
+ * RETURNING claim vs the old select ids / update by ids / select by token sequence, on an embedded Postgres.
+ *
+ * Run with:
+ *   mvn -pl expense-infrastructure test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=benchmark.ClaimBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ClaimBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(10);
+    private static final int MAX_RETRY = 3;
+    private static final int BATCH = 10;
+
+    @Param({"16"})
+    private int claimers;
+
+    @Param({"500"})
+    private int emails;
+
+    private EmbeddedPostgres postgres;
+    private HikariDataSource dataSource;
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private RawEmailClaimer claimer;
+    private EmailAccount account;
+
+    @Setup(Level.Trial)
+    public void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        HikariConfig pool = new HikariConfig();
+        pool.setDataSource(postgres.getPostgresDatabase());
+        pool.setMaximumPoolSize(claimers + 2);
+        dataSource = new HikariDataSource(pool);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("com.domain.entities");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "create",
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName()));
+        factoryBean.afterPropertiesSet();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(factoryBean.getObject());
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(factoryBean.getObject()));
+        claimer = new RawEmailClaimer(entityManager, transactionTemplate);
+
+        User user = new User();
+        user.setEmail("ada@example.com");
+        user.setAuthProvider(AuthProvider.GOOGLE);
+        user.setProviderUserId("google-ada");
+        account = new EmailAccount();
+        account.setUser(user);
+        account.setProvider(EmailProvider.GOOGLE);
+        account.setProviderEmail("ada@gmail.com");
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.persist(user);
+            entityManager.persist(account);
+        });
+    }
+
+    @Setup(Level.Iteration)
+    public void fillQueue() {
+        jdbcTemplate.execute("TRUNCATE raw_email_attachments, raw_emails");
+        Instant now = Instant.now();
+        List<RawEmailMessage> messages = IntStream.range(0, emails)
+                .mapToObj(i -> pending("m-" + i, now.minusSeconds(emails - i), now))
+                .toList();
+        new RawEmailBulkWriter(jdbcTemplate).insertIgnoringDuplicates(messages);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() throws IOException {
+        factoryBean.destroy();
+        dataSource.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public int singleStatement() throws Exception {
+        return drain(() -> {
+            Instant now = Instant.now();
+            return claimer.claim(account.getId(), now.minus(TIMEOUT), now, MAX_RETRY, BATCH, UUID.randomUUID());
+        });
+    }
+
+    @Benchmark
+    public int threeSteps() throws Exception {
+        return drain(() -> claimInSteps(Instant.now()));
+    }
+
+    private int drain(Supplier<List<RawEmailMessage>> claim) throws Exception {
+        AtomicInteger claimed = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(claimers)) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < claimers; i++) {
+                workers.add(executor.submit(() -> {
+                    List<RawEmailMessage> batch;
+                    while (!(batch = claim.get()).isEmpty()) claimed.addAndGet(batch.size());
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) worker.get();
+        }
+        return claimed.get();
+    }
+
+    /** The claim as it was before: three round trips with a race between the first two. */
+    private List<RawEmailMessage> claimInSteps(Instant now) {
+        UUID token = UUID.randomUUID();
+        List<UUID> ids = entityManager.createQuery("""
+                        SELECT e.id FROM RawEmailMessage e
+                        WHERE e.emailAccount.id = :accountId
+                        AND (
+                            e.processed = 'PENDING'
+                            OR (e.processed = 'PROCESSING' AND e.processingStartedAt < :timeout)
+                        )
+                        AND (e.nextRetryAt IS NULL OR e.nextRetryAt <= :now)
+                        AND e.retryCount < :maxRetry
+                        ORDER BY e.receivedDate ASC
+                        """, UUID.class)
+                .setParameter("accountId", account.getId())
+                .setParameter("timeout", now.minus(TIMEOUT))
+                .setParameter("now", now)
+                .setParameter("maxRetry", MAX_RETRY)
+                .setMaxResults(BATCH)
+                .getResultList();
+        if (ids.isEmpty()) return List.of();
+
+        transactionTemplate.executeWithoutResult(status -> entityManager.createQuery("""
+                        UPDATE RawEmailMessage e
+                        SET e.processed = 'PROCESSING', e.processingStartedAt = :now, e.claimToken = :token
+                        WHERE e.id IN :ids
+                        """)
+                .setParameter("now", now)
+                .setParameter("token", token)
+                .setParameter("ids", ids)
+                .executeUpdate());
+
+        List<RawEmailMessage> claimed = entityManager.createQuery("""
+                        SELECT e FROM RawEmailMessage e
+                        JOIN FETCH e.emailAccount acc
+                        JOIN FETCH acc.user
+                        WHERE e.claimToken = :token
+                        """, RawEmailMessage.class)
+                .setParameter("token", token)
+                .getResultList();
+        // a lost race leaves this claimer empty-handed, which is not the end of the work
+        return claimed.isEmpty() ? claimInSteps(Instant.now()) : claimed;
+    }
+
+    private RawEmailMessage pending(String providerMessageId, Instant receivedDate, Instant fetchedAt) {
+        RawEmailMessage message = new RawEmailMessage();
+        message.setEmailAccount(account);
+        message.setProvider(EmailProvider.GOOGLE);
+        message.setProviderMessageId(providerMessageId);
+        message.setSubject("Debit alert");
+        message.setReceivedDate(receivedDate);
+        message.setFetchedAt(fetchedAt);
+        return message;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ClaimBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
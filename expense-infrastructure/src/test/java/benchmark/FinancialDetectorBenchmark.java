@@ -0,0 +1,101 @@
+package benchmark;
+
+import com.infrastructure.email.detection.FinancialRuleSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header classification throughput - compiled rule set vs the old lower-case + String.contains loop.
+ *
+ * Run with:
+ *   mvn -pl expense-infrastructure test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=benchmark.FinancialDetectorBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FinancialDetectorBenchmark {
+
+    private static final List<String> LEGACY_KEYWORDS = List.of(
+            "debited", "credited", "transaction", "payment", "transfer", "withdrawal",
+            "deposit", "spent", "received", "purchase", "POS", "ATM", "alert");
+    private static final List<String> LEGACY_SENDERS = List.of(
+            "alert", "bank", "transaction", "payment", "noreply", "no-reply", "no_reply", "receipt");
+
+    private static final String[] WORDS = {
+            "your", "weekly", "digest", "meeting", "invite", "update", "team", "project", "schedule",
+            "order", "shipped", "newsletter", "offer", "account", "statement", "reminder", "hello",
+            "photos", "review", "invoice", "event", "ticket", "NGN", "5,000.00", "on", "at", "from"
+    };
+    private static final String[] SIGNALS = {"debited", "credited", "POS", "transfer", "ATM", "payment received"};
+    private static final String[] SENDERS = {
+            "Friend <friend@example.com>", "News <news@medium.com>", "GTBank <alerts@gtbank.com>",
+            "Shop <noreply@shop.com>", "Team <team@slack.com>", "Receipts <receipt@uber.com>"
+    };
+
+    @Param({"100000"})
+    private int corpusSize;
+
+    private String[] subjects;
+    private String[] snippets;
+    private String[] senders;
+    private FinancialRuleSet ruleSet;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        subjects = new String[corpusSize];
+        snippets = new String[corpusSize];
+        senders = new String[corpusSize];
+        for (int i = 0; i < corpusSize; i++) {
+            subjects[i] = sentence(random, 4 + random.nextInt(6));
+            snippets[i] = sentence(random, 20 + random.nextInt(20));
+            senders[i] = SENDERS[random.nextInt(SENDERS.length)];
+        }
+        ruleSet = FinancialRuleSet.defaults();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public void compiledRuleSet(Blackhole blackhole) {
+        for (int i = 0; i < corpusSize; i++) {
+            blackhole.consume(ruleSet.matches(subjects[i], snippets[i], senders[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public void legacyContains(Blackhole blackhole) {
+        for (int i = 0; i < corpusSize; i++) {
+            String combined = (subjects[i] + " " + snippets[i]).toLowerCase();
+            boolean keywordMatch = LEGACY_KEYWORDS.stream().anyMatch(combined::contains);
+            boolean senderMatch = LEGACY_SENDERS.stream().anyMatch(senders[i].toLowerCase()::contains);
+            blackhole.consume(keywordMatch || senderMatch);
+        }
+    }
+
+    // roughly one header in five carries a financial signal
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) sb.append(' ');
+            sb.append(random.nextInt(100) < 4 ? SIGNALS[random.nextInt(SIGNALS.length)] : WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FinancialDetectorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
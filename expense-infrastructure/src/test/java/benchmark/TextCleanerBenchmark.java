@@ -0,0 +1,118 @@
+package benchmark;
+
+import com.infrastructure.email.text.HtmlTextExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bank alert HTML to prompt text - single pass extractor vs the old replaceAll chain.
+ *
+ * The alert is shaped like the ones banks send: a large inline stylesheet, a hidden preheader, nested
+ * layout tables around a transaction table, a tracking pixel and a long legal footer.
+ *
+ * Run with:
+ *   mvn -pl expense-infrastructure test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=benchmark.TextCleanerBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class TextCleanerBenchmark {
+
+    @Param({"1", "40"})
+    private int footerRepeats; // 1 ~ 10 KB, 40 ~ 37 KB
+
+    private String html;
+    private HtmlTextExtractor tables;
+    private HtmlTextExtractor flat;
+    private StringBuilder buffer;
+
+    @Setup
+    public void setUp() {
+        html = bankAlert(footerRepeats);
+        tables = new HtmlTextExtractor(HtmlTextExtractor.Layout.TABLES);
+        flat = new HtmlTextExtractor(HtmlTextExtractor.Layout.FLAT);
+        buffer = new StringBuilder(16 * 1024);
+    }
+
+    @Benchmark
+    public String extractorTables() {
+        tables.extractHtml(html, buffer);
+        return buffer.toString();
+    }
+
+    @Benchmark
+    public String extractorFlat() {
+        flat.extractHtml(html, buffer);
+        return buffer.toString();
+    }
+
+    @Benchmark
+    public String legacyRegexChain() {
+        String text = html.replaceAll("<[^>]*>", " ");
+        text = text.replaceAll("https?://\\S+", "");
+        text = text.replaceAll("(?i)unsubscribe.*", "");
+        return text.replaceAll("\\s+", " ").trim();
+    }
+
+    static String bankAlert(int footerRepeats) {
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        sb.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Transaction Alert</title><style type=\"text/css\">");
+        for (int i = 0; i < 60; i++) {
+            sb.append(".c").append(i).append(" td, .c").append(i)
+                    .append(" p { font-family: Arial, Helvetica, sans-serif; font-size: 13px; color: #333333; line-height: 18px; }\n");
+        }
+        sb.append("@media only screen and (max-width: 600px) { table[class=wrap] { width: 100% !important; } }</style></head>");
+        sb.append("<body style=\"margin:0;padding:0;background:#f2f2f2\">");
+        sb.append("<div style=\"display:none;font-size:1px;max-height:0px;overflow:hidden\">Your account has been debited with NGN 5,000.00&zwnj;&nbsp;&zwnj;&nbsp;</div>");
+        sb.append("<table class=\"wrap\" width=\"600\" cellpadding=\"0\" cellspacing=\"0\" border=\"0\" align=\"center\"><tr><td>");
+        sb.append("<table width=\"100%\"><tr><td align=\"left\"><a href=\"https://www.examplebank.com/?utm_source=alert&amp;utm_medium=email\">")
+                .append("<img src=\"https://cdn.examplebank.com/img/logo.png\" alt=\"Example Bank\" width=\"120\"></a></td></tr></table>");
+        sb.append("<table width=\"100%\" cellpadding=\"6\"><tr><td><p>Dear CUSTOMER NAME,</p>")
+                .append("<p>We wish to inform you that a <strong>Debit</strong> transaction occurred on your account with us.</p>")
+                .append("<p>The details of this transaction are shown below:</p></td></tr></table>");
+        sb.append("<table width=\"100%\" border=\"1\" style=\"border-collapse:collapse\">");
+        String[][] rows = {
+                {"Account Number", "012****789"},
+                {"Transaction Location", "LAGOS NG"},
+                {"Description", "POS/WEB PURCHASE @ SHOPRITE LEKKI &amp; CO"},
+                {"Amount", "NGN&nbsp;5,000.00"},
+                {"Value Date", "18-Oct-2026"},
+                {"Time of Transaction", "10:42:11 AM"},
+                {"Document Number", "0000123456789"},
+                {"Available Balance", "NGN&nbsp;12,345.67"},
+                {"Cleared Balance", "NGN&nbsp;12,345.67"}
+        };
+        for (String[] row : rows) {
+            sb.append("<tr><td class=\"c1\" style=\"padding:4px 8px;font-weight:bold\">").append(row[0])
+                    .append("</td><td class=\"c2\" style=\"padding:4px 8px\">").append(row[1]).append("</td></tr>");
+        }
+        sb.append("</table>");
+        for (int r = 0; r < footerRepeats; r++) {
+            sb.append("<table width=\"100%\"><tr><td style=\"font-size:10px;color:#999999\">")
+                    .append("<p>The privacy and security of your Bank Account details is important to us. ")
+                    .append("We will never ask for your PIN, password or token code by phone or email. ")
+                    .append("Please do not reply to this email &mdash; this mailbox is not monitored. For enquiries visit ")
+                    .append("<a href=\"https://www.examplebank.com/contact?utm_campaign=alerts\">https://www.examplebank.com/contact</a>.</p>")
+                    .append("<p>&copy; 2026 Example Bank Plc. RC 123456. Licensed by the Central Bank. ")
+                    .append("Deposits are insured up to the limits set by the deposit insurance corporation.</p>")
+                    .append("<p>To stop receiving marketing messages <a href=\"https://www.examplebank.com/u\">unsubscribe</a>.</p>")
+                    .append("</td></tr></table>");
+        }
+        sb.append("<img src=\"https://t.examplebank.com/open/8f3a2b.gif\" width=\"1\" height=\"1\" style=\"display:none\">");
+        sb.append("</td></tr></table></body></html>");
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TextCleanerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,120 @@
+package cache;
+
+import com.domain.entities.ExtractionCacheEntry;
+import com.domain.model.ExtractionResult;
+import com.domain.repositories.ExtractionCacheRepository;
+import com.domain.valueObjects.CurrencyCode;
+import com.infrastructure.cache.ExtractionCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ExtractionCacheTest {
+
+    private static final String ALERT = """
+            Dear Customer,
+            Description | POS/WEB PURCHASE @ SHOPRITE LEKKI
+            Amount | NGN 5,000.00
+            Value Date | 18-Oct-2026""";
+
+    private static final ExtractionResult RESULT = new ExtractionResult(
+            "SHOPRITE LEKKI", new BigDecimal("5000.00"), CurrencyCode.NGN, "shopping", "2026-10-18T09:42:11Z", true, null);
+
+    private static class InMemoryRepository implements ExtractionCacheRepository {
+
+        final Map<String, ExtractionCacheEntry> rows = new HashMap<>();
+
+        @Override
+        public Optional<ExtractionCacheEntry> findById(String cacheKey) {
+            return Optional.ofNullable(rows.get(cacheKey));
+        }
+
+        @Override
+        public ExtractionCacheEntry save(ExtractionCacheEntry entry) {
+            rows.put(entry.getCacheKey(), entry);
+            return entry;
+        }
+
+        @Override
+        public int deleteStale(String promptVersion, String modelId) {
+            int before = rows.size();
+            rows.values().removeIf(e -> !e.getPromptVersion().equals(promptVersion) || !e.getModelId().equals(modelId));
+            return before - rows.size();
+        }
+    }
+
+    private final InMemoryRepository repository = new InMemoryRepository();
+    private final ExtractionCache cache = new ExtractionCache(repository, new SimpleMeterRegistry(), 100);
+
+    @Test
+    @DisplayName("should give resends, forwards and quoted copies the same key")
+    void shouldKeyCopiesTogether() {
+        String forwarded = """
+                ---------- Forwarded message ---------
+                From: GTBank <alerts@gtbank.com>
+                Date: Sat, 18 Oct 2026 at 10:43
+                Subject: GeNS Transaction Alert
+                To: <ada@example.com>
+
+                """ + ALERT;
+        String quoted = ALERT.lines().map(line -> ">  " + line + "   ").reduce((a, b) -> a + "\n" + b).orElseThrow();
+
+        ExtractionCache.Key key = cache.keyFor(ALERT, "p1", "m1");
+
+        assertThat(cache.keyFor(forwarded, "p1", "m1")).isEqualTo(key);
+        assertThat(cache.keyFor(quoted, "p1", "m1")).isEqualTo(key);
+        assertThat(cache.keyFor(ALERT.toUpperCase(), "p1", "m1")).isEqualTo(key);
+    }
+
+    @Test
+    @DisplayName("should separate different amounts, prompts and models")
+    void shouldSeparateKeys() {
+        ExtractionCache.Key key = cache.keyFor(ALERT, "p1", "m1");
+
+        assertThat(cache.keyFor(ALERT.replace("5,000.00", "5,000.01"), "p1", "m1")).isNotEqualTo(key);
+        assertThat(cache.keyFor(ALERT, "p2", "m1")).isNotEqualTo(key);
+        assertThat(cache.keyFor(ALERT, "p1", "m2")).isNotEqualTo(key);
+        // a header-looking line outside a forward block is content
+        assertThat(cache.keyFor(ALERT + "\nDate: 19-Oct-2026", "p1", "m1")).isNotEqualTo(key);
+    }
+
+    @Test
+    @DisplayName("should serve from memory, then from the table, and report the hit ratio")
+    void shouldServeFromBothTiers() {
+        ExtractionCache.Key key = cache.keyFor(ALERT, "p1", "m1");
+
+        assertThat(cache.get(key)).isEmpty();
+        cache.put(key, RESULT);
+        assertThat(cache.get(key)).contains(RESULT);
+
+        // a fresh instance has a cold memory tier but shares the table
+        ExtractionCache restarted = new ExtractionCache(repository, new SimpleMeterRegistry(), 100);
+        assertThat(restarted.get(key)).contains(RESULT);
+        assertThat(restarted.get(key)).contains(RESULT);
+
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+        assertThat(restarted.hitRatio()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("should evict entries from older prompts or models")
+    void shouldEvictStale() {
+        ExtractionCache.Key old = cache.keyFor(ALERT, "p1", "m1");
+        ExtractionCache.Key current = cache.keyFor(ALERT, "p2", "m1");
+        cache.put(old, RESULT);
+        cache.put(current, RESULT);
+
+        assertThat(cache.evictStale("p2", "m1")).isEqualTo(1);
+
+        assertThat(repository.rows).containsOnlyKeys(current.hash());
+        assertThat(cache.get(old)).isEmpty();
+        assertThat(cache.get(current)).contains(RESULT);
+    }
+}
@@ -0,0 +1,121 @@
+package classifier;
+
+import com.domain.entities.RawEmailMessage;
+import com.infrastructure.email.classifier.ClassifierTrainingService;
+import com.infrastructure.email.classifier.FeatureHasher;
+import com.infrastructure.email.classifier.NaiveBayesModel;
+import com.infrastructure.email.classifier.NaiveBayesTrainer;
+import com.infrastructure.email.classifier.TransactionClassifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TransactionClassifierTest {
+
+    private static final String[][] TRANSACTIONS = {
+            {"GeNS Transaction Alert [Debit: NGN 5,000.00]", "GTBank <alerts@gtbank.com>", "Amount NGN 5,000.00 debited. Description POS PURCHASE SHOPRITE LEKKI. Balance NGN 120,400.10"},
+            {"Debit Alert", "Access Bank <alerts@accessbankplc.com>", "Your account has been debited with NGN 12,500.00 for TRANSFER TO ADA. Available balance NGN 40,000.00"},
+            {"Your Tuesday evening trip with Uber", "Uber Receipts <noreply@uber.com>", "Thanks for riding. Total ₦3,450.00 paid with Mastercard 4242. Trip fare 3,100.00"},
+            {"Your receipt from StreamFlix", "StreamFlix <billing@streamflix.com>", "Payment received. Amount charged USD 9.99 for your monthly membership on 12 Oct 2026"},
+            {"Order confirmation #40213", "Jumia <order@jumia.com.ng>", "Thank you for your order. Order total NGN 27,300.00 paid by card. Sold by Jumia Mall"},
+            {"Credit Alert", "Kuda <notifications@kuda.com>", "NGN 50,000.00 has been credited to your account from EMEKA OBI. Balance NGN 90,000.00"},
+    };
+
+    private static final String[][] OTHERS = {
+            {"Your one-time password", "GTBank <alerts@gtbank.com>", "Your OTP is 482913. It expires in 5 minutes. Do not share this code with anyone"},
+            {"Weekend deals are here!", "Jumia <deals@jumia.com.ng>", "Up to 50% off phones and laptops this weekend only. Shop now and save big"},
+            {"Your weekly newsletter", "Money Digest <news@moneydigest.com>", "This week in markets: rates, inflation and what it means for your savings. Read more"},
+            {"Verify your email address", "StreamFlix <hello@streamflix.com>", "Click the link below to verify your email address and finish setting up your profile"},
+            {"Security code", "Kuda <notifications@kuda.com>", "Use code 5521 to log in. If this was not you, please contact support immediately"},
+            {"New login to your account", "Access Bank <alerts@accessbankplc.com>", "We noticed a new login from Chrome on Windows. If this was you, no action is needed"},
+    };
+
+    private static NaiveBayesModel model;
+
+    @BeforeAll
+    static void train() {
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(new FeatureHasher(1 << 16, 4000));
+        for (String[] email : TRANSACTIONS) trainer.add(email[0], email[1], email[2], true);
+        for (String[] email : OTHERS) trainer.add(email[0], email[1], email[2], false);
+        model = trainer.build();
+    }
+
+    private static RawEmailMessage email(String subject, String sender) {
+        RawEmailMessage email = new RawEmailMessage();
+        email.setSubject(subject);
+        email.setSender(sender);
+        return email;
+    }
+
+    @Test
+    @DisplayName("should score unseen alerts above unseen OTPs and promos")
+    void shouldSeparateClasses() {
+        double alert = model.probability("GeNS Transaction Alert [Debit: NGN 800.00]", "GTBank <alerts@gtbank.com>",
+                "Amount NGN 800.00 debited. Description POS PURCHASE CHICKEN REPUBLIC. Balance NGN 9,100.00");
+        double otp = model.probability("Your one-time password", "Zenith <alerts@zenithbank.com>",
+                "Your OTP is 119022. Do not share this code with anyone");
+        double promo = model.probability("Flash sale: 40% off", "Jumia <deals@jumia.com.ng>",
+                "Shop now and save big on laptops this weekend only");
+
+        assertThat(alert).isGreaterThan(0.9);
+        assertThat(otp).isLessThan(0.1);
+        assertThat(promo).isLessThan(0.1);
+    }
+
+    @Test
+    @DisplayName("should score the same after writing and reading the model file")
+    void shouldRoundTripModelFile(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("classifier.bin");
+        model.write(file);
+
+        NaiveBayesModel read = NaiveBayesModel.read(file);
+
+        for (String[] email : OTHERS) {
+            assertThat(read.probability(email[0], email[1], email[2]))
+                    .isCloseTo(model.probability(email[0], email[1], email[2]), within(1e-6));
+        }
+    }
+
+    @Test
+    @DisplayName("should reject only below the threshold, record the score and pass everything without a model")
+    void shouldGate() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TransactionClassifier classifier = new TransactionClassifier(model, 0.05, meterRegistry);
+        RawEmailMessage otp = email("Your one-time password", "GTBank <alerts@gtbank.com>");
+        RawEmailMessage alert = email("Debit Alert", "Access Bank <alerts@accessbankplc.com>");
+
+        assertThat(classifier.rejects(otp, "Your OTP is 482913. Do not share this code with anyone")).isTrue();
+        assertThat(classifier.rejects(alert, "Your account has been debited with NGN 7,000.00")).isFalse();
+
+        assertThat(otp.getClassifierScore()).isLessThan(0.05);
+        assertThat(alert.getClassifierScore()).isGreaterThan(0.05);
+        assertThat(meterRegistry.counter("snapbill.classifier", "outcome", "skip").count()).isEqualTo(1);
+
+        TransactionClassifier disabled = new TransactionClassifier(null, 0.05, meterRegistry);
+        RawEmailMessage unscored = email("Your one-time password", "GTBank <alerts@gtbank.com>");
+        assertThat(disabled.rejects(unscored, "Your OTP is 482913")).isFalse();
+        assertThat(unscored.getClassifierScore()).isNull();
+    }
+
+    @Test
+    @DisplayName("should report precision and recall of the skip decision")
+    void shouldReportPrecisionAndRecall() {
+        List<double[]> scored = List.of(
+                new double[]{0.01, 0}, new double[]{0.02, 0}, new double[]{0.03, 1},
+                new double[]{0.40, 0}, new double[]{0.90, 1}, new double[]{0.95, 1});
+
+        ClassifierTrainingService.GateEvaluation evaluation = ClassifierTrainingService.evaluate(scored, 0.05);
+
+        assertThat(evaluation.skipped()).isEqualTo(3);
+        assertThat(evaluation.missedTransactions()).isEqualTo(1);
+        assertThat(evaluation.precision()).isCloseTo(2 / 3.0, within(1e-9));
+        assertThat(evaluation.recall()).isCloseTo(2 / 3.0, within(1e-9));
+    }
+}
@@ -0,0 +1,56 @@
+package detection;
+
+import com.infrastructure.email.detection.AhoCorasick;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class AhoCorasickTest {
+
+    private List<String> matches(AhoCorasick matcher, List<String> patterns, String text) {
+        List<String> found = new ArrayList<>();
+        matcher.scan(text, (pattern, start, end) -> found.add(patterns.get(pattern) + "@" + start + "-" + end));
+        return found;
+    }
+
+    @Test
+    @DisplayName("should report overlapping and nested patterns in one pass")
+    void shouldFindOverlappingPatterns() {
+        List<String> patterns = List.of("he", "she", "his", "hers");
+        AhoCorasick matcher = AhoCorasick.compile(patterns);
+
+        assertThat(matches(matcher, patterns, "ushers"))
+                .containsExactly("she@1-4", "he@2-4", "hers@2-6");
+    }
+
+    @Test
+    @DisplayName("should match regardless of case")
+    void shouldIgnoreCase() {
+        List<String> patterns = List.of("POS", "debited");
+        AhoCorasick matcher = AhoCorasick.compile(patterns);
+
+        assertThat(matches(matcher, patterns, "Debited at pos terminal"))
+                .containsExactly("debited@0-7", "POS@11-14");
+    }
+
+    @Test
+    @DisplayName("should handle characters outside every pattern and non ascii patterns")
+    void shouldHandleNonAsciiText() {
+        List<String> patterns = List.of("₦", "naira");
+        AhoCorasick matcher = AhoCorasick.compile(patterns);
+
+        assertThat(matches(matcher, patterns, "Ürün ₦5,000 NAIRA"))
+                .containsExactly("₦@5-6", "naira@12-17");
+    }
+
+    @Test
+    @DisplayName("should reject empty patterns")
+    void shouldRejectEmptyPattern() {
+        assertThatThrownBy(() -> AhoCorasick.compile(List.of("ok", "")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,80 @@
+package detection;
+
+import com.domain.entities.DetectionRule;
+import com.domain.enums.DetectionTarget;
+import com.domain.model.EmailMessageDto;
+import com.infrastructure.email.Components.FinancialEmailDetector;
+import com.infrastructure.email.detection.FinancialRuleSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class FinancialEmailDetectorTest {
+
+    private final FinancialRuleSet defaults = FinancialRuleSet.defaults();
+
+    private EmailMessageDto message(String subject, String snippet, String sender) {
+        return EmailMessageDto.builder().id(subject).subject(subject).snippet(snippet).sender(sender).build();
+    }
+
+    @Test
+    @DisplayName("should match POS and ATM as whole words only")
+    void shouldMatchUppercaseKeywordsAsWords() {
+        assertThat(defaults.matches("Your POS purchase", "", "")).isTrue();
+        assertThat(defaults.matches("ATM", "", "")).isTrue();
+        assertThat(defaults.matches("New post from a possible purpose", "", "")).isFalse();
+    }
+
+    @Test
+    @DisplayName("should need two weak signals to reach the threshold")
+    void shouldWeighRules() {
+        assertThat(defaults.score("Package received", "", "")).isEqualTo(0.5);
+        assertThat(defaults.matches("Package received", "", "")).isFalse();
+        assertThat(defaults.matches("Package received", "", "noreply@shop.com")).isTrue();
+        assertThat(defaults.matches("Lunch?", "see you at noon", "Bank <alerts@bank.com>")).isTrue();
+    }
+
+    @Test
+    @DisplayName("should count each rule once however often it matches")
+    void shouldCountRuleOnce() {
+        assertThat(defaults.score("alert alert", "alert", "")).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("should swap in database rules on reload and fall back to the defaults when none are enabled")
+    void shouldReloadRules() {
+        List<DetectionRule> rows = new ArrayList<>();
+        FinancialEmailDetector detector = new FinancialEmailDetector(() -> rows, 1.0);
+        EmailMessageDto invoice = message("Invoice #12", "", "billing@saas.io");
+
+        assertThat(detector.filterFinancialCandidate(List.of(invoice))).isEmpty();
+        assertThat(detector.reload()).isFalse(); // empty table = defaults, nothing changed
+
+        DetectionRule invoiceRule = DetectionRule.builder().pattern("invoice").target(DetectionTarget.CONTENT).weight(1.0).build();
+        assertThat(invoiceRule.isEnabled()).isTrue(); // builder keeps the field default
+        rows.add(invoiceRule);
+        assertThat(detector.reload()).isTrue();
+        assertThat(detector.filterFinancialCandidate(List.of(invoice))).containsExactly(invoice);
+        assertThat(detector.keywords()).containsExactly("invoice");
+        assertThat(detector.reload()).isFalse();
+
+        rows.clear();
+        assertThat(detector.reload()).isTrue();
+        assertThat(detector.keywords()).contains("debited", "pos");
+    }
+
+    @Test
+    @DisplayName("should keep the current rules when the table cannot be read")
+    void shouldKeepRulesWhenLoadFails() {
+        FinancialEmailDetector detector = new FinancialEmailDetector(() -> {
+            throw new IllegalStateException("db down");
+        }, 1.0);
+
+        assertThat(detector.reload()).isFalse();
+        assertThat(detector.keywords()).contains("debited");
+    }
+}
@@ -0,0 +1,89 @@
+package gmail;
+
+import com.domain.entities.DetectionRule;
+import com.domain.enums.DetectionTarget;
+import com.infrastructure.email.Components.FinancialEmailDetector;
+import com.infrastructure.email.gmail.GmailQueryBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class GmailQueryBuilderTest {
+
+    private final List<DetectionRule> rows = new ArrayList<>();
+    private final FinancialEmailDetector detector = new FinancialEmailDetector(() -> rows, 1.0);
+
+    @Test
+    @DisplayName("should push whole-word sender and keyword rules into an OR group")
+    void shouldBuildFinancialFilter() {
+        rule("gtbank", DetectionTarget.SENDER, true);
+        rule("no-reply", DetectionTarget.SENDER, true);
+        rule("debited", DetectionTarget.CONTENT, true);
+        rule("POS", DetectionTarget.CONTENT, true);
+        detector.reload();
+
+        String query = new GmailQueryBuilder(detector, true).since(Instant.ofEpochSecond(1_700_000_000));
+
+        assertThat(query).isEqualTo("after:1700000000 category:primary {from:(gtbank OR \"no-reply\") debited pos}");
+    }
+
+    @Test
+    @DisplayName("should push substring rules down as the token they name")
+    void shouldPushDownSubstringRules() {
+        rule("bank", DetectionTarget.SENDER, false);
+        rule("Payment", DetectionTarget.CONTENT, false);
+        detector.reload();
+
+        String query = new GmailQueryBuilder(detector, true).since(Instant.ofEpochSecond(100));
+
+        assertThat(query).isEqualTo("after:100 category:primary {from:(bank) payment}");
+    }
+
+    @Test
+    @DisplayName("should build a filter from the built-in rules")
+    void shouldFilterWithDefaults() {
+        String query = new GmailQueryBuilder(detector, true).since(Instant.ofEpochSecond(100));
+
+        assertThat(query).isEqualTo("after:100 category:primary "
+                + "{from:(alert OR bank OR transaction OR payment OR noreply OR \"no-reply\" OR \"no_reply\" OR receipt) "
+                + "debited credited transaction payment transfer withdrawal deposit spent received purchase pos atm alert}");
+    }
+
+    @Test
+    @DisplayName("should bound backfill windows on both sides")
+    void shouldBuildWindowQuery() {
+        rule("debited", DetectionTarget.CONTENT, true);
+        detector.reload();
+
+        String query = new GmailQueryBuilder(detector, true)
+                .between(Instant.ofEpochSecond(100), Instant.ofEpochSecond(200));
+
+        assertThat(query).isEqualTo("after:100 before:200 category:primary {debited}");
+    }
+
+    @Test
+    @DisplayName("should leave the query unfiltered when pushdown is off")
+    void shouldSkipFilterWhenDisabled() {
+        rule("debited", DetectionTarget.CONTENT, true);
+        detector.reload();
+
+        String query = new GmailQueryBuilder(detector, false).since(Instant.ofEpochSecond(100));
+
+        assertThat(query).isEqualTo("after:100 category:primary");
+    }
+
+    private void rule(String pattern, DetectionTarget target, boolean wholeWord) {
+        DetectionRule rule = new DetectionRule();
+        rule.setPattern(pattern);
+        rule.setTarget(target);
+        rule.setWeight(1.0);
+        rule.setWholeWord(wholeWord);
+        rule.setEnabled(true);
+        rows.add(rule);
+    }
+}
@@ -0,0 +1,63 @@
+package gmail;
+
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.infrastructure.email.gmail.GmailTextParts;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class GmailTextPartsTest {
+
+    @Test
+    @DisplayName("should find nested text bodies and leave attachments and empty parts out")
+    void shouldFindTextParts() {
+        Message message = structure();
+
+        assertThat(GmailTextParts.textParts(message))
+                .extracting(MessagePart::getPartId)
+                .containsExactly("0.0", "0.1", "2");
+    }
+
+    @Test
+    @DisplayName("should fetch separately only the text bodies Gmail stored as attachments")
+    void shouldFindTextAttachments() {
+        Message message = new Message().setId("m-1").setPayload(
+                part("", "multipart/mixed", null, 0, null,
+                        part("0", "text/plain", null, 120, null),
+                        part("1", "text/html", null, 90_000, "att-html"),
+                        part("2", "application/pdf", "invoice.pdf", 50_000, "att-pdf")));
+
+        assertThat(GmailTextParts.textAttachments(message))
+                .extracting(part -> part.getBody().getAttachmentId())
+                .containsExactly("att-html");
+        assertThat(GmailTextParts.textAttachments(structure())).isEmpty();
+    }
+
+    // multipart/mixed: alternative(plain, html), a pdf attachment, a text footer and an empty text part
+    private static Message structure() {
+        return new Message().setId("m-1").setPayload(
+                part("", "multipart/mixed", null, 0, null,
+                        part("0", "multipart/alternative", null, 0, null,
+                                part("0.0", "text/plain", null, 120, null),
+                                part("0.1", "text/html", null, 800, null)),
+                        part("1", "application/pdf", "invoice.pdf", 50_000, "att-1"),
+                        part("2", "text/plain", null, 40, null),
+                        part("3", "text/plain", null, 0, null)));
+    }
+
+    private static MessagePart part(String id, String mimeType, String filename, int size, String attachmentId,
+                                    MessagePart... children) {
+        MessagePart part = new MessagePart()
+                .setPartId(id)
+                .setMimeType(mimeType)
+                .setFilename(filename)
+                .setBody(new MessagePartBody().setSize(size).setAttachmentId(attachmentId));
+        if (children.length > 0) part.setParts(List.of(children));
+        return part;
+    }
+}
@@ -0,0 +1,219 @@
+package jobs;
+
+import com.domain.entities.PipelineFailure;
+import com.domain.enums.PipelineJobType;
+import com.domain.repositories.PipelineFailureRepository;
+import com.infrastructure.jobs.PipelineJobHandler;
+import com.infrastructure.jobs.PipelineJobWorker;
+import com.infrastructure.persistence.repositories.PipelineJobRepositoryImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PipelineJobWorkerTest {
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+
+    private final PipelineJobRepositoryImpl jobs = new PipelineJobRepositoryImpl(jdbcTemplate);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<PipelineFailure> failures = Collections.synchronizedList(new ArrayList<>());
+    private final PipelineFailureRepository failureRepository = failure -> {
+        failures.add(failure);
+        return failure;
+    };
+
+    private final LinkedBlockingQueue<UUID> synced = new LinkedBlockingQueue<>();
+    private final AtomicInteger syncRuns = new AtomicInteger();
+    private volatile int failingRuns;
+    private volatile Duration runTime = Duration.ZERO;
+
+    private final PipelineJobHandler syncHandler = new PipelineJobHandler() {
+        @Override
+        public PipelineJobType type() {
+            return PipelineJobType.EMAIL_SYNC;
+        }
+
+        @Override
+        public void handle(UUID accountId) {
+            if (syncRuns.incrementAndGet() <= failingRuns) throw new IllegalStateException("Gmail unavailable");
+            try {
+                Thread.sleep(runTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synced.add(accountId);
+        }
+    };
+
+    private PipelineJobWorker worker;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        // mirrors the Hibernate mapping of PipelineJob
+        jdbcTemplate.execute("""
+                CREATE TABLE pipeline_jobs (
+                    id uuid PRIMARY KEY,
+                    type varchar(32) NOT NULL,
+                    account_id uuid NOT NULL,
+                    status varchar(16) NOT NULL,
+                    attempts integer NOT NULL,
+                    available_at timestamp(6) with time zone NOT NULL,
+                    locked_until timestamp(6) with time zone,
+                    last_error varchar(1000),
+                    created_at timestamp(6) with time zone NOT NULL
+                )
+                """);
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE pipeline_jobs");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (worker != null) worker.stop();
+        executor.close();
+    }
+
+    private PipelineJobWorker worker(Duration pollInterval, int maxAttempts) {
+        return worker(pollInterval, maxAttempts, Duration.ofMinutes(1));
+    }
+
+    private PipelineJobWorker worker(Duration pollInterval, int maxAttempts, Duration visibility) {
+        worker = new PipelineJobWorker(jobs, List.of(syncHandler), postgres.getPostgresDatabase(), executor,
+                failureRepository, meterRegistry, 10, 5, visibility.toMillis(), maxAttempts, 50, 200,
+                pollInterval.toMillis());
+        return worker;
+    }
+
+    @Test
+    @DisplayName("should run a job as soon as it is enqueued instead of waiting for the next poll")
+    void shouldWakeOnNotify() throws InterruptedException {
+        worker(Duration.ofMinutes(1), 5).start();
+        awaitListening();
+
+        UUID account = UUID.randomUUID();
+        long start = System.nanoTime();
+        jobs.enqueue(PipelineJobType.EMAIL_SYNC, account);
+
+        assertThat(synced.poll(5, TimeUnit.SECONDS)).isEqualTo(account);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        awaitCount(0);
+        assertThat(meterRegistry.counter("snapbill.jobs.outcome", "type", "EMAIL_SYNC", "outcome", "completed").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should retry a failing job with backoff and run it to completion")
+    void shouldRetryWithBackoff() throws InterruptedException {
+        failingRuns = 2;
+        worker(Duration.ofMillis(20), 5).start();
+
+        UUID account = UUID.randomUUID();
+        jobs.enqueue(PipelineJobType.EMAIL_SYNC, account);
+
+        assertThat(synced.poll(5, TimeUnit.SECONDS)).isEqualTo(account);
+        assertThat(syncRuns.get()).isEqualTo(3);
+        assertThat(failures).hasSize(2);
+        awaitCount(0);
+    }
+
+    @Test
+    @DisplayName("should mark a job dead once it has used up its attempts")
+    void shouldDeadLetter() throws InterruptedException {
+        failingRuns = Integer.MAX_VALUE;
+        worker(Duration.ofMillis(20), 3).start();
+
+        jobs.enqueue(PipelineJobType.EMAIL_SYNC, UUID.randomUUID());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!"DEAD".equals(status()) && System.nanoTime() < deadline) Thread.sleep(20);
+
+        assertThat(status()).isEqualTo("DEAD");
+        assertThat(syncRuns.get()).isEqualTo(3);
+        assertThat(failures).hasSize(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT last_error FROM pipeline_jobs", String.class))
+                .isEqualTo("Gmail unavailable");
+    }
+
+    @Test
+    @DisplayName("should renew the lease of a job that runs longer than the visibility timeout")
+    void shouldRenewLease() throws InterruptedException {
+        runTime = Duration.ofMillis(1_500);
+        worker(Duration.ofMillis(20), 5, Duration.ofMillis(300)).start();
+
+        UUID account = UUID.randomUUID();
+        jobs.enqueue(PipelineJobType.EMAIL_SYNC, account);
+
+        assertThat(synced.poll(5, TimeUnit.SECONDS)).isEqualTo(account);
+        awaitCount(0);
+        assertThat(syncRuns.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should double the backoff per attempt up to the cap")
+    void shouldBackOffExponentially() {
+        PipelineJobWorker worker = worker(Duration.ofSeconds(1), 5);
+
+        assertThat(worker.backoff(1)).isEqualTo(Duration.ofMillis(50));
+        assertThat(worker.backoff(2)).isEqualTo(Duration.ofMillis(100));
+        assertThat(worker.backoff(3)).isEqualTo(Duration.ofMillis(200));
+        assertThat(worker.backoff(10)).isEqualTo(Duration.ofMillis(200));
+    }
+
+    private void awaitListening() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            Integer listening = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_stat_activity WHERE query = 'LISTEN " + PipelineJobRepositoryImpl.CHANNEL + "'",
+                    Integer.class);
+            if (listening != null && listening > 0) return;
+            Thread.sleep(20);
+        }
+        fail("worker never started listening");
+    }
+
+    private void awaitCount(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count() != expected && System.nanoTime() < deadline) Thread.sleep(20);
+        assertThat(count()).isEqualTo(expected);
+    }
+
+    private static int count() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM pipeline_jobs", Integer.class);
+    }
+
+    private static String status() {
+        return jdbcTemplate.query("SELECT status FROM pipeline_jobs", rs -> rs.next() ? rs.getString(1) : null);
+    }
+}
@@ -0,0 +1,230 @@
+package outlook;
+
+import com.domain.entities.EmailAccount;
+import com.domain.entities.RawEmailMessage;
+import com.domain.enums.EmailProvider;
+import com.domain.repositories.RawEmailRepository;
+import com.infrastructure.email.Components.FinancialEmailDetector;
+import com.infrastructure.email.outlook.GraphConfig;
+import com.infrastructure.email.outlook.OutlookEmailGatewayImpl;
+import com.infrastructure.email.ratelimit.ProviderRateLimiter;
+import com.infrastructure.email.ratelimit.RateLimitProperties;
+import com.infrastructure.email.service.OutlookBodyExtractor;
+import com.infrastructure.security.TokenService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Runs the gateway against a local stand-in for Graph.
+ */
+public class OutlookEmailGatewayImplTest {
+
+    private static final Pattern BATCH_ITEM = Pattern.compile("\"id\":\"(\\d+)\",\"method\":\"GET\",\"url\":\"/me/messages/([^?]+)\\?([^\"]*)\"");
+
+    private HttpServer server;
+    private String base;
+    private ExecutorService executor;
+    private OutlookEmailGatewayImpl gateway;
+    private EmailAccount account;
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> batchBodies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger throttledOnce = new AtomicInteger();
+    private final Set<String> stored = new HashSet<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        base = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1.0";
+        server.createContext("/", this::handle);
+        server.start();
+
+        executor = Executors.newFixedThreadPool(4);
+        TokenService tokenService = new TokenService(null, null, null) {
+            @Override
+            public String getValidAccessToken(EmailAccount account) {
+                return "token";
+            }
+        };
+        RawEmailRepository repository = (RawEmailRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{RawEmailRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findExistingProviderMessageIds")) {
+                        Set<String> found = new HashSet<>((Collection<String>) args[1]);
+                        found.retainAll(stored);
+                        return found;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        ProviderRateLimiter limiter = new ProviderRateLimiter("graph", new RateLimitProperties(
+                1_000, 10_000, 4, 1, 8, 3,
+                Duration.ofMillis(1), Duration.ofMillis(5), 100), new SimpleMeterRegistry());
+
+        gateway = new OutlookEmailGatewayImpl(GraphConfig.graphWebClient(base), tokenService,
+                new FinancialEmailDetector(), new OutlookBodyExtractor(), repository, executor, limiter);
+
+        account = new EmailAccount();
+        account.setId(UUID.randomUUID());
+        account.setProvider(EmailProvider.MICROSOFT);
+        account.setProviderEmail("user@outlook.com");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("should walk the delta pages, batch candidate bodies and keep the delta link")
+    void shouldStreamDeltaAndKeepDeltaLink() {
+        List<List<RawEmailMessage>> pages = new ArrayList<>();
+
+        gateway.fetchNewMessages(account, Instant.parse("2026-01-01T00:00:00Z"), pages::add);
+
+        assertThat(pages).hasSize(2);
+        RawEmailMessage debit = pages.get(0).get(0);
+        assertThat(pages.get(0)).hasSize(1); // newsletter filtered, removal skipped
+        assertThat(debit.getProviderMessageId()).isEqualTo("m1");
+        assertThat(debit.getSender()).isEqualTo("Bank <alerts@bank.com>");
+        assertThat(debit.getBodyHtml()).isEqualTo("<p>NGN 5,000 debited</p>");
+        assertThat(debit.getAttachments()).containsExactly("statement.pdf");
+        assertThat(debit.getThreadId()).isEqualTo("c1");
+        assertThat(pages.get(1)).extracting(RawEmailMessage::getProviderMessageId).containsExactly("m3");
+
+        assertThat(account.getDeltaLink()).isEqualTo(base + "/delta-next");
+        assertThat(requests.get(0))
+                .startsWith("GET /v1.0/me/mailFolders/inbox/messages/delta?")
+                .contains("$select=id,conversationId,subject")
+                .contains("receivedDateTime%20ge%202026-01-01T00:00:00Z");
+        // Only the financial candidates reach the batch, attachments expanded where there are any
+        assertThat(batchBodies.get(0)).contains("/me/messages/m1?$select=id,body&$expand=attachments($select=name)")
+                .doesNotContain("m2");
+    }
+
+    @Test
+    @DisplayName("should re-queue a throttled batch sub-request instead of dropping it")
+    void shouldRetryThrottledSubRequest() {
+        throttledOnce.set(1);
+        List<RawEmailMessage> messages = new ArrayList<>();
+
+        gateway.fetchNewMessages(account, Instant.parse("2026-01-01T00:00:00Z"), messages::addAll);
+
+        assertThat(messages).extracting(RawEmailMessage::getProviderMessageId).containsExactly("m1", "m3");
+        assertThat(batchBodies).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("should skip messages that are already stored without fetching their bodies")
+    void shouldSkipStoredMessages() {
+        stored.add("m1");
+        List<RawEmailMessage> messages = new ArrayList<>();
+
+        gateway.fetchNewMessages(account, Instant.parse("2026-01-01T00:00:00Z"), messages::addAll);
+
+        assertThat(messages).extracting(RawEmailMessage::getProviderMessageId).containsExactly("m3");
+        assertThat(batchBodies).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("should resume from the stored delta link and start over when Graph expired it")
+    void shouldRestartWhenDeltaLinkExpired() {
+        account.setDeltaLink(base + "/delta-gone");
+        List<RawEmailMessage> messages = new ArrayList<>();
+
+        gateway.fetchNewMessages(account, Instant.parse("2026-01-01T00:00:00Z"), messages::addAll);
+
+        assertThat(requests.get(0)).isEqualTo("GET /v1.0/delta-gone");
+        assertThat(requests.get(1)).startsWith("GET /v1.0/me/mailFolders/inbox/messages/delta?");
+        assertThat(messages).hasSize(2);
+        assertThat(account.getDeltaLink()).isEqualTo(base + "/delta-next");
+    }
+
+
+    // ================== STAND-IN ==================
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        requests.add(exchange.getRequestMethod() + " " + path + (query != null ? "?" + query : ""));
+
+        if (!"Bearer token".equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            respond(exchange, 401, "{}");
+            return;
+        }
+
+        switch (path) {
+            case "/v1.0/me/mailFolders/inbox/messages/delta" -> respond(exchange, 200, """
+                    {"value":[
+                      %s,
+                      %s,
+                      {"id":"gone-1","@removed":{"reason":"deleted"}}
+                    ],"@odata.nextLink":"%s/delta-page-2"}
+                    """.formatted(
+                    message("m1", "Debit alert", "Bank", "alerts@bank.com", true),
+                    message("m2", "Weekly digest", "Friend", "friend@example.com", false),
+                    base));
+            case "/v1.0/delta-page-2" -> respond(exchange, 200, """
+                    {"value":[%s],"@odata.deltaLink":"%s/delta-next"}
+                    """.formatted(message("m3", "Payment received", "Shop", "receipt@shop.com", false), base));
+            case "/v1.0/delta-gone" -> respond(exchange, 410, "{\"error\":{\"code\":\"SyncStateNotFound\"}}");
+            case "/v1.0/$batch" -> respond(exchange, 200, batch(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+            default -> respond(exchange, 404, "{}");
+        }
+    }
+
+    private String batch(String body) {
+        batchBodies.add(body);
+        StringJoiner responses = new StringJoiner(",", "{\"responses\":[", "]}");
+        Matcher matcher = BATCH_ITEM.matcher(body);
+        while (matcher.find()) {
+            String id = matcher.group(1);
+            String messageId = matcher.group(2);
+            if (throttledOnce.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                responses.add("{\"id\":\"" + id + "\",\"status\":429,\"headers\":{\"Retry-After\":\"0\"},\"body\":{\"error\":{\"code\":\"TooManyRequests\"}}}");
+                continue;
+            }
+            String attachments = matcher.group(3).contains("$expand") ? ",\"attachments\":[{\"name\":\"statement.pdf\"}]" : "";
+            responses.add("{\"id\":\"" + id + "\",\"status\":200,\"body\":{\"id\":\"" + messageId
+                    + "\",\"body\":{\"contentType\":\"html\",\"content\":\"<p>NGN 5,000 debited</p>\"}" + attachments + "}}");
+        }
+        return responses.toString();
+    }
+
+    private String message(String id, String subject, String name, String address, boolean attachments) {
+        return """
+                {"id":"%s","conversationId":"c%s","subject":"%s","from":{"emailAddress":{"name":"%s","address":"%s"}},
+                 "toRecipients":[{"emailAddress":{"address":"user@outlook.com"}}],
+                 "receivedDateTime":"2026-02-01T10:00:00Z","bodyPreview":"%s","hasAttachments":%s}
+                """.formatted(id, id.substring(1), subject, name, address, subject, attachments);
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
@@ -0,0 +1,207 @@
+package persistence;
+
+import com.domain.entities.EmailAccount;
+import com.domain.entities.RawEmailMessage;
+import com.domain.entities.TransactionEntity;
+import com.domain.entities.User;
+import com.domain.enums.ProcessingStatus;
+import com.domain.enums.TransactionSource;
+import com.domain.enums.TransactionType;
+import com.domain.model.ExpenseRequestQuery;
+import com.domain.model.PagedResponse;
+import com.domain.repositories.RawEmailRepository;
+import com.domain.repositories.TransactionRepository;
+import com.domain.valueObjects.CurrencyCode;
+import com.infrastructure.email.service.sub.EmailProcessor;
+import com.infrastructure.email.service.sub.OutcomeWriter;
+import com.infrastructure.persistence.repositories.TransactionBulkWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * The write-behind fallback against a real database: the failed batch rolls back after ids were assigned,
+ * and the outcomes are then written again one by one.
+ */
+public class OutcomeWriterPostgresTest {
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+
+    private final List<RawEmailMessage> savedEmails = Collections.synchronizedList(new ArrayList<>());
+    private User user;
+    private EmailAccount account;
+    private OutcomeWriter writer;
+
+    private final TransactionRepository transactions = new TransactionRepository() {
+        private final TransactionBulkWriter bulkWriter = new TransactionBulkWriter(jdbcTemplate);
+
+        @Override
+        public TransactionEntity save(TransactionEntity expense) {
+            throw new UnsupportedOperationException("outcomes are only written through insertIgnoringDuplicates");
+        }
+
+        @Override
+        public List<TransactionEntity> insertIgnoringDuplicates(List<TransactionEntity> batch) {
+            return bulkWriter.insertIgnoringDuplicates(batch);
+        }
+
+        @Override
+        public Optional<TransactionEntity> findById(UUID id) {
+            return Optional.empty();
+        }
+
+        @Override
+        public PagedResponse<TransactionEntity> findAll(ExpenseRequestQuery query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteById(UUID id) {
+        }
+    };
+
+    private final RawEmailRepository rawEmails = (RawEmailRepository) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[]{RawEmailRepository.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "saveMessage" -> {
+                    savedEmails.add((RawEmailMessage) args[0]);
+                    yield args[0];
+                }
+                case "updateProcessingStates" -> null;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        // mirrors the Hibernate mapping of TransactionEntity
+        jdbcTemplate.execute("""
+                CREATE TABLE transactions (
+                    id uuid PRIMARY KEY,
+                    user_id uuid NOT NULL,
+                    email_account_id uuid NOT NULL,
+                    type varchar(255) NOT NULL,
+                    transaction_date date NOT NULL,
+                    transaction_date_time timestamp(6) with time zone,
+                    original_zone varchar(255),
+                    merchant varchar(255),
+                    category varchar(255) NOT NULL,
+                    amount numeric(19, 4) NOT NULL,
+                    currency varchar(3) NOT NULL,
+                    bank_account_id varchar(255),
+                    bank_label varchar(255),
+                    bank_last4 varchar(4),
+                    bank_currency varchar(3),
+                    description text,
+                    source varchar(255) NOT NULL,
+                    ai_confidence numeric(5, 4),
+                    created_at timestamp(6) with time zone NOT NULL,
+                    updated_at timestamp(6) with time zone NOT NULL,
+                    provider_message_id varchar(255) NOT NULL UNIQUE
+                );
+                CREATE TABLE transaction_tags (
+                    transaction_id uuid NOT NULL REFERENCES transactions (id),
+                    tag varchar(255)
+                );
+                """);
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE transaction_tags, transactions");
+        user = new User();
+        user.setId(UUID.randomUUID());
+        account = new EmailAccount();
+        account.setId(UUID.randomUUID());
+        writer = new OutcomeWriter(transactions, rawEmails, transactionTemplate, new SimpleMeterRegistry(),
+                10, 1_000, 100);
+        writer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    @DisplayName("should store the good outcomes of a failed batch and fail only the row the database refuses")
+    void shouldStoreGoodOutcomesAfterBatchFailure() {
+        transactions.insertIgnoringDuplicates(List.of(transaction("m-seen")));
+
+        EmailProcessor.Outcome good = outcome(transaction("m-1"));
+        EmailProcessor.Outcome seenBefore = outcome(transaction("m-seen"));
+        TransactionEntity tooLong = transaction("m-2");
+        tooLong.setMerchant("x".repeat(300));
+        EmailProcessor.Outcome poison = outcome(tooLong);
+
+        CompletableFuture.allOf(writer.submit(good), writer.submit(seenBefore), writer.submit(poison)).join();
+
+        assertThat(jdbcTemplate.queryForList("SELECT provider_message_id FROM transactions ORDER BY 1", String.class))
+                .containsExactly("m-1", "m-seen");
+        // the id handed out by the rolled-back batch is the one stored
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT id FROM transactions WHERE provider_message_id = 'm-1'", UUID.class))
+                .isEqualTo(good.transaction().getId());
+
+        assertThat(good.email().getProcessed()).isEqualTo(ProcessingStatus.PROCESSED);
+        assertThat(seenBefore.email().getProcessed()).isEqualTo(ProcessingStatus.PROCESSED);
+        assertThat(poison.email().getProcessed()).isEqualTo(ProcessingStatus.PENDING);
+        assertThat(poison.email().getFailureReason()).isEqualTo("SYSTEM_ERROR");
+        assertThat(savedEmails).contains(good.email(), seenBefore.email(), poison.email());
+    }
+
+    private EmailProcessor.Outcome outcome(TransactionEntity transaction) {
+        RawEmailMessage email = new RawEmailMessage();
+        email.setId(UUID.randomUUID());
+        email.setProcessed(ProcessingStatus.PROCESSED);
+        return new EmailProcessor.Outcome(email, transaction);
+    }
+
+    private TransactionEntity transaction(String providerMessageId) {
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setUser(user);
+        transaction.setEmailAccount(account);
+        transaction.setType(TransactionType.DEBIT);
+        transaction.setTransactionDate(LocalDate.now());
+        transaction.setMerchant("Shoprite");
+        transaction.setCategory("Groceries");
+        transaction.setAmount(new BigDecimal("2500.50"));
+        transaction.setCurrency(CurrencyCode.NGN);
+        transaction.setSource(TransactionSource.EMAIL_GMAIL);
+        transaction.setProviderMessageId(providerMessageId);
+        return transaction;
+    }
+}
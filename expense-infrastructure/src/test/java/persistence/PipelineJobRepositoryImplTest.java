@@ -0,0 +1,207 @@
+package persistence;
+
+import com.domain.entities.PipelineJob;
+import com.domain.enums.PipelineJobStatus;
+import com.domain.enums.PipelineJobType;
+import com.infrastructure.persistence.repositories.PipelineJobRepositoryImpl;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PipelineJobRepositoryImplTest {
+
+    private static final Duration VISIBILITY = Duration.ofMinutes(5);
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+
+    private final PipelineJobRepositoryImpl jobs = new PipelineJobRepositoryImpl(jdbcTemplate);
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        // mirrors the Hibernate mapping of PipelineJob
+        jdbcTemplate.execute("""
+                CREATE TABLE pipeline_jobs (
+                    id uuid PRIMARY KEY,
+                    type varchar(32) NOT NULL,
+                    account_id uuid NOT NULL,
+                    status varchar(16) NOT NULL,
+                    attempts integer NOT NULL,
+                    available_at timestamp(6) with time zone NOT NULL,
+                    locked_until timestamp(6) with time zone,
+                    last_error varchar(1000),
+                    created_at timestamp(6) with time zone NOT NULL
+                )
+                """);
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE pipeline_jobs");
+    }
+
+    @Test
+    @DisplayName("should keep one waiting job per type and account, counting jobs in backoff")
+    void shouldCoalesceWaitingJobs() {
+        UUID account = UUID.randomUUID();
+
+        assertThat(jobs.enqueue(PipelineJobType.EMAIL_PROCESSING, account)).isTrue();
+        assertThat(jobs.enqueue(PipelineJobType.EMAIL_PROCESSING, account)).isFalse();
+        assertThat(jobs.enqueue(PipelineJobType.EMAIL_SYNC, account)).isTrue();
+
+        List<PipelineJob> leased = jobs.dequeue(10, Instant.now(), VISIBILITY);
+        // work arriving while a job runs needs a run of its own
+        assertThat(jobs.enqueue(PipelineJobType.EMAIL_PROCESSING, account)).isTrue();
+        assertThat(count()).isEqualTo(3);
+
+        PipelineJob sync = leased.stream().filter(job -> job.getType() == PipelineJobType.EMAIL_SYNC).findFirst().orElseThrow();
+        jobs.retry(sync, "Gmail unavailable", Instant.now().plusSeconds(60));
+        assertThat(jobs.enqueue(PipelineJobType.EMAIL_SYNC, account)).isFalse();
+        assertThat(count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("should only store the job and notify listeners when the enqueuing transaction commits")
+    void shouldEnqueueWithTransaction() throws SQLException {
+        try (Connection listener = postgres.getPostgresDatabase().getConnection()) {
+            try (Statement statement = listener.createStatement()) {
+                statement.execute("LISTEN " + PipelineJobRepositoryImpl.CHANNEL);
+            }
+            PGConnection notifications = listener.unwrap(PGConnection.class);
+
+            transactionTemplate.executeWithoutResult(status -> {
+                jobs.enqueue(PipelineJobType.EMAIL_SYNC, UUID.randomUUID());
+                status.setRollbackOnly();
+            });
+            assertThat(count()).isZero();
+            assertThat(notifications.getNotifications(200)).isNullOrEmpty();
+
+            transactionTemplate.executeWithoutResult(status -> jobs.enqueue(PipelineJobType.EMAIL_SYNC, UUID.randomUUID()));
+            assertThat(count()).isEqualTo(1);
+            PGNotification[] received = notifications.getNotifications(2_000);
+            assertThat(received).hasSize(1);
+            assertThat(received[0].getName()).isEqualTo(PipelineJobRepositoryImpl.CHANNEL);
+        }
+    }
+
+    @Test
+    @DisplayName("should hand out each due job to one consumer, skipping jobs another consumer holds")
+    void shouldDequeueInBatchesSkippingLocked() {
+        for (int i = 0; i < 10; i++) jobs.enqueue(PipelineJobType.EMAIL_SYNC, UUID.randomUUID());
+
+        CountDownLatch leased = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<PipelineJob>> first = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    List<PipelineJob> batch = jobs.dequeue(4, Instant.now(), VISIBILITY);
+                    leased.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return batch;
+                }));
+        try {
+            leased.await();
+            // the first consumer's rows are still locked - this one gets the rest without waiting
+            List<PipelineJob> second = jobs.dequeue(10, Instant.now(), VISIBILITY);
+            release.countDown();
+
+            assertThat(second).hasSize(6);
+            assertThat(first.join()).hasSize(4)
+                    .allMatch(job -> job.getStatus() == PipelineJobStatus.RUNNING && job.getAttempts() == 1)
+                    .extracting(PipelineJob::getId)
+                    .doesNotContainAnyElementsOf(second.stream().map(PipelineJob::getId).toList());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertThat(jobs.dequeue(10, Instant.now(), VISIBILITY)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should hand out a job again once its lease runs out, ignoring the stale lease")
+    void shouldRedeliverAfterVisibilityTimeout() {
+        jobs.enqueue(PipelineJobType.EMAIL_SYNC, UUID.randomUUID());
+        Instant now = Instant.now();
+
+        PipelineJob stale = jobs.dequeue(1, now, Duration.ofSeconds(30)).getFirst();
+        assertThat(jobs.dequeue(1, now.plusSeconds(29), Duration.ofSeconds(30))).isEmpty();
+
+        PipelineJob current = jobs.dequeue(1, now.plusSeconds(31), Duration.ofSeconds(30)).getFirst();
+        assertThat(current.getId()).isEqualTo(stale.getId());
+        assertThat(current.getAttempts()).isEqualTo(2);
+
+        jobs.complete(stale);
+        jobs.deadLetter(stale, "too late");
+        assertThat(jobs.extend(stale, now.plusSeconds(120))).isFalse();
+        assertThat(status(current)).isEqualTo("RUNNING");
+
+        // a renewed lease keeps the job from being handed out again
+        assertThat(jobs.extend(current, now.plusSeconds(120))).isTrue();
+        assertThat(jobs.dequeue(1, now.plusSeconds(90), Duration.ofSeconds(30))).isEmpty();
+
+        jobs.complete(current);
+        assertThat(count()).isZero();
+    }
+
+    @Test
+    @DisplayName("should hold a retried job back until its backoff has passed, and keep dead jobs out of the queue")
+    void shouldRetryAndDeadLetter() {
+        jobs.enqueue(PipelineJobType.EMAIL_SYNC, UUID.randomUUID());
+        Instant now = Instant.now();
+
+        PipelineJob job = jobs.dequeue(1, now, VISIBILITY).getFirst();
+        jobs.retry(job, "Gmail unavailable", now.plusSeconds(60));
+
+        assertThat(status(job)).isEqualTo("READY");
+        assertThat(jobs.dequeue(1, now.plusSeconds(59), VISIBILITY)).isEmpty();
+        job = jobs.dequeue(1, now.plusSeconds(61), VISIBILITY).getFirst();
+        assertThat(job.getLastError()).isEqualTo("Gmail unavailable");
+
+        jobs.deadLetter(job, "x".repeat(2_000));
+
+        assertThat(status(job)).isEqualTo("DEAD");
+        assertThat(jobs.dequeue(1, now.plus(Duration.ofDays(1)), VISIBILITY)).isEmpty();
+    }
+
+    private static int count() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM pipeline_jobs", Integer.class);
+    }
+
+    private static String status(PipelineJob job) {
+        return jdbcTemplate.queryForObject("SELECT status FROM pipeline_jobs WHERE id = ?", String.class, job.getId());
+    }
+}
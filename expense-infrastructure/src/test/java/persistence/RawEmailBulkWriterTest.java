@@ -0,0 +1,151 @@
+package persistence;
+
+import com.domain.entities.EmailAccount;
+import com.domain.entities.RawEmailMessage;
+import com.domain.enums.EmailProvider;
+import com.domain.enums.ProcessingStatus;
+import com.infrastructure.persistence.repositories.RawEmailBulkWriter;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class RawEmailBulkWriterTest {
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+
+    private final RawEmailBulkWriter writer = new RawEmailBulkWriter(jdbcTemplate);
+    private EmailAccount account;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        // mirrors the Hibernate mapping of RawEmailMessage
+        jdbcTemplate.execute("""
+                CREATE TABLE raw_emails (
+                    id uuid PRIMARY KEY,
+                    email_account_id uuid NOT NULL,
+                    provider varchar(255) NOT NULL,
+                    thread_id varchar(255),
+                    provider_message_id varchar(255) NOT NULL UNIQUE,
+                    processing_started_at timestamp(6) with time zone,
+                    retry_count integer,
+                    next_retry_at timestamp(6) with time zone,
+                    claim_token uuid,
+                    subject varchar(255),
+                    sender varchar(255),
+                    recipient varchar(255),
+                    received_date timestamp(6) with time zone,
+                    snippet varchar(1000),
+                    body text,
+                    body_html text,
+                    processing_status varchar(255) NOT NULL,
+                    fetched_at timestamp(6) with time zone NOT NULL,
+                    failure_reason varchar(255),
+                    prompt_tokens_original integer,
+                    prompt_tokens_reduced integer,
+                    classifier_score float(53),
+                    CONSTRAINT uk_provider_message UNIQUE (provider_message_id, email_account_id)
+                );
+                CREATE TABLE raw_email_attachments (
+                    raw_email_message_id uuid NOT NULL REFERENCES raw_emails (id),
+                    attachment_name varchar(255)
+                );
+                """);
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE raw_email_attachments, raw_emails");
+        account = new EmailAccount();
+        account.setId(UUID.randomUUID());
+        account.setProvider(EmailProvider.GOOGLE);
+    }
+
+    @Test
+    @DisplayName("should insert new messages with their attachments")
+    void shouldInsertMessages() {
+        RawEmailMessage first = message("m-1", "receipt.pdf");
+        RawEmailMessage second = message("m-2");
+
+        List<RawEmailMessage> inserted = writer.insertIgnoringDuplicates(List.of(first, second));
+
+        assertThat(inserted).containsExactly(first, second);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM raw_emails", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("SELECT attachment_name FROM raw_email_attachments", String.class))
+                .containsExactly("receipt.pdf");
+    }
+
+    @Test
+    @DisplayName("should skip messages already stored instead of failing the page")
+    void shouldSkipDuplicates() {
+        writer.insertIgnoringDuplicates(List.of(message("m-1", "old.pdf")));
+
+        RawEmailMessage duplicate = message("m-1", "new.pdf");
+        RawEmailMessage fresh = message("m-2");
+        List<RawEmailMessage> inserted = writer.insertIgnoringDuplicates(List.of(duplicate, fresh));
+
+        assertThat(inserted).containsExactly(fresh);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM raw_emails", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("SELECT attachment_name FROM raw_email_attachments", String.class))
+                .containsExactly("old.pdf");
+    }
+
+    @Test
+    @DisplayName("should write back the processing state of stored messages in one batch")
+    void shouldUpdateProcessingStates() {
+        RawEmailMessage processed = message("m-1");
+        RawEmailMessage retried = message("m-2");
+        writer.insertIgnoringDuplicates(List.of(processed, retried));
+
+        processed.setProcessed(ProcessingStatus.PROCESSED);
+        processed.setPromptTokensOriginal(1200);
+        processed.setPromptTokensReduced(300);
+        processed.setClassifierScore(0.97);
+        retried.setProcessed(ProcessingStatus.PENDING);
+        retried.setFailureReason("SYSTEM_ERROR");
+        retried.setRetryCount(1);
+        retried.setNextRetryAt(Instant.now().plusSeconds(120));
+        writer.updateProcessingStates(List.of(processed, retried));
+
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT processing_status, failure_reason, retry_count, prompt_tokens_reduced, classifier_score
+                FROM raw_emails ORDER BY provider_message_id
+                """))
+                .extracting(row -> List.of(
+                        String.valueOf(row.get("processing_status")), String.valueOf(row.get("failure_reason")),
+                        String.valueOf(row.get("retry_count")), String.valueOf(row.get("prompt_tokens_reduced")),
+                        String.valueOf(row.get("classifier_score"))))
+                .containsExactly(
+                        List.of("PROCESSED", "null", "0", "300", "0.97"),
+                        List.of("PENDING", "SYSTEM_ERROR", "1", "null", "null"));
+    }
+
+    private RawEmailMessage message(String providerMessageId, String... attachments) {
+        RawEmailMessage message = new RawEmailMessage();
+        message.setEmailAccount(account);
+        message.setProvider(EmailProvider.GOOGLE);
+        message.setProviderMessageId(providerMessageId);
+        message.setSubject("Your receipt");
+        message.setReceivedDate(Instant.now());
+        message.setAttachments(List.of(attachments));
+        return message;
+    }
+}
@@ -0,0 +1,244 @@
+package persistence;
+
+import com.domain.entities.EmailAccount;
+import com.domain.entities.RawEmailMessage;
+import com.domain.entities.User;
+import com.domain.enums.AuthProvider;
+import com.domain.enums.EmailProvider;
+import com.domain.enums.ProcessingStatus;
+import com.infrastructure.persistence.repositories.RawEmailBulkWriter;
+import com.infrastructure.persistence.repositories.RawEmailClaimer;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Runs the claim against a real Postgres - SKIP LOCKED and UPDATE ... RETURNING are not something a fake can
+ * vouch for.
+ */
+public class RawEmailClaimerTest {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(10);
+    private static final int MAX_RETRY = 3;
+
+    private static final int CLAIMERS = 16;
+
+    private static EmbeddedPostgres postgres;
+    private static HikariDataSource dataSource;
+    private static LocalContainerEntityManagerFactoryBean factoryBean;
+    private static EntityManagerFactory entityManagerFactory;
+    private static EntityManager entityManager;
+    private static TransactionTemplate transactionTemplate;
+    private static JdbcTemplate jdbcTemplate;
+
+    private final RawEmailClaimer claimer = new RawEmailClaimer(entityManager, transactionTemplate);
+    private EmailAccount account;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        // pooled like the application, or every claim would pay for a new backend process
+        HikariConfig pool = new HikariConfig();
+        pool.setDataSource(postgres.getPostgresDatabase());
+        pool.setMaximumPoolSize(CLAIMERS + 2);
+        dataSource = new HikariDataSource(pool);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("com.domain.entities");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        // same schema and names as the application gets from Boot
+        factoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "create",
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName()));
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        factoryBean.destroy();
+        dataSource.close();
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE raw_email_attachments, raw_emails, email_account, users CASCADE");
+
+        User user = new User();
+        user.setEmail("ada@example.com");
+        user.setAuthProvider(AuthProvider.GOOGLE);
+        user.setProviderUserId("google-ada");
+        account = new EmailAccount();
+        account.setUser(user);
+        account.setProvider(EmailProvider.GOOGLE);
+        account.setProviderEmail("ada@gmail.com");
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.persist(user);
+            entityManager.persist(account);
+        });
+    }
+
+    @Test
+    @DisplayName("should claim the oldest claimable emails and return them with account and user loaded")
+    void shouldClaimOldestFirst() {
+        Instant now = Instant.now();
+        insert(now, List.of(
+                pending("newest", now.minusSeconds(10)),
+                pending("oldest", now.minusSeconds(30)),
+                pending("middle", now.minusSeconds(20))));
+        UUID token = UUID.randomUUID();
+
+        List<RawEmailMessage> claimed = claim(now, 2, token);
+
+        assertThat(claimed).extracting(RawEmailMessage::getProviderMessageId).containsExactly("oldest", "middle");
+        assertThat(claimed).allSatisfy(email -> {
+            assertThat(email.getProcessed()).isEqualTo(ProcessingStatus.PROCESSING);
+            assertThat(email.getClaimToken()).isEqualTo(token);
+            // detached by now, so these only work if the claim loaded them
+            assertThat(email.getEmailAccount().getProviderEmail()).isEqualTo("ada@gmail.com");
+            assertThat(email.getEmailAccount().getUser().getEmail()).isEqualTo("ada@example.com");
+        });
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM raw_emails WHERE processing_status = 'PENDING'", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should take back timed out work and leave emails that are not due or out of retries")
+    void shouldRespectClaimRules() {
+        Instant now = Instant.now();
+        RawEmailMessage stale = pending("stale", now.minusSeconds(50));
+        stale.setProcessed(ProcessingStatus.PROCESSING);
+        stale.setProcessingStartedAt(now.minus(TIMEOUT).minusSeconds(1));
+        RawEmailMessage running = pending("running", now.minusSeconds(40));
+        running.setProcessed(ProcessingStatus.PROCESSING);
+        running.setProcessingStartedAt(now.minusSeconds(5));
+        RawEmailMessage notDue = pending("not-due", now.minusSeconds(30));
+        notDue.setNextRetryAt(now.plusSeconds(60));
+        RawEmailMessage exhausted = pending("exhausted", now.minusSeconds(20));
+        exhausted.setRetryCount(MAX_RETRY);
+        insert(now, List.of(stale, running, notDue, exhausted, pending("fresh", now.minusSeconds(10))));
+
+        List<RawEmailMessage> claimed = claim(now, 10, UUID.randomUUID());
+
+        assertThat(claimed).extracting(RawEmailMessage::getProviderMessageId).containsExactly("stale", "fresh");
+    }
+
+    @Test
+    @DisplayName("should tell when the first email the claim skips over becomes claimable")
+    void shouldFindNextClaimable() {
+        Instant now = Instant.now();
+        RawEmailMessage running = pending("running", now.minusSeconds(40));
+        running.setProcessed(ProcessingStatus.PROCESSING);
+        running.setProcessingStartedAt(now.minusSeconds(5));
+        RawEmailMessage notDue = pending("not-due", now.minusSeconds(30));
+        notDue.setNextRetryAt(now.plusSeconds(3600));
+        RawEmailMessage exhausted = pending("exhausted", now.minusSeconds(20));
+        exhausted.setRetryCount(MAX_RETRY);
+        exhausted.setNextRetryAt(now.plusSeconds(60));
+        insert(now, List.of(running, notDue, exhausted));
+
+        assertThat(claimer.nextClaimableAt(account.getId(), TIMEOUT, now, MAX_RETRY))
+                .hasValueSatisfying(next -> assertThat(next)
+                        .isCloseTo(now.minusSeconds(5).plus(TIMEOUT), within(1, ChronoUnit.MILLIS)));
+
+        jdbcTemplate.update("UPDATE raw_emails SET processing_status = 'PROCESSED'");
+        assertThat(claimer.nextClaimableAt(account.getId(), TIMEOUT, now, MAX_RETRY)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should list accounts with unfinished emails once each, and not those that are done")
+    void shouldFindAccountsWithUnfinished() {
+        Instant now = Instant.now();
+        RawEmailMessage running = pending("running", now.minusSeconds(20));
+        running.setProcessed(ProcessingStatus.PROCESSING);
+        running.setProcessingStartedAt(now.minusSeconds(5));
+        insert(now, List.of(running, pending("fresh", now.minusSeconds(10))));
+
+        assertThat(claimer.accountsWithUnfinished(MAX_RETRY)).containsExactly(account.getId());
+
+        jdbcTemplate.update("UPDATE raw_emails SET processing_status = 'PROCESSED'");
+        assertThat(claimer.accountsWithUnfinished(MAX_RETRY)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should hand every email to exactly one of many concurrent claimers")
+    void shouldNeverDoubleClaim() throws Exception {
+        int emails = 500;
+        Instant now = Instant.now();
+        insert(now, IntStream.range(0, emails)
+                .mapToObj(i -> pending("m-" + i, now.minusSeconds(emails - i)))
+                .toList());
+
+        List<UUID> claimed = Collections.synchronizedList(new ArrayList<>());
+        try (ExecutorService executor = Executors.newFixedThreadPool(CLAIMERS)) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < CLAIMERS; i++) {
+                workers.add(executor.submit(() -> {
+                    List<RawEmailMessage> batch;
+                    while (!(batch = claim(Instant.now(), 10, UUID.randomUUID())).isEmpty()) {
+                        batch.forEach(email -> claimed.add(email.getId()));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) worker.get();
+        }
+
+        // how it compares with the old three-step claim is measured in benchmark.ClaimBenchmark
+        assertThat(claimed).hasSize(emails).doesNotHaveDuplicates();
+    }
+
+    private List<RawEmailMessage> claim(Instant now, int limit, UUID token) {
+        return claimer.claim(account.getId(), now.minus(TIMEOUT), now, MAX_RETRY, limit, token);
+    }
+
+    private void insert(Instant now, List<RawEmailMessage> messages) {
+        messages.forEach(message -> message.setFetchedAt(now));
+        new RawEmailBulkWriter(jdbcTemplate).insertIgnoringDuplicates(messages);
+    }
+
+    private RawEmailMessage pending(String providerMessageId, Instant receivedDate) {
+        RawEmailMessage message = new RawEmailMessage();
+        message.setEmailAccount(account);
+        message.setProvider(EmailProvider.GOOGLE);
+        message.setProviderMessageId(providerMessageId);
+        message.setSubject("Debit alert");
+        message.setReceivedDate(receivedDate);
+        return message;
+    }
+}
@@ -0,0 +1,120 @@
+package persistence;
+
+import com.domain.entities.EmailAccount;
+import com.domain.entities.TransactionEntity;
+import com.domain.entities.User;
+import com.domain.enums.TransactionSource;
+import com.domain.enums.TransactionType;
+import com.domain.valueObjects.CurrencyCode;
+import com.infrastructure.persistence.repositories.TransactionBulkWriter;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TransactionBulkWriterTest {
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+
+    private final TransactionBulkWriter writer = new TransactionBulkWriter(jdbcTemplate);
+    private User user;
+    private EmailAccount account;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        // mirrors the Hibernate mapping of TransactionEntity
+        jdbcTemplate.execute("""
+                CREATE TABLE transactions (
+                    id uuid PRIMARY KEY,
+                    user_id uuid NOT NULL,
+                    email_account_id uuid NOT NULL,
+                    type varchar(255) NOT NULL,
+                    transaction_date date NOT NULL,
+                    transaction_date_time timestamp(6) with time zone,
+                    original_zone varchar(255),
+                    merchant varchar(255),
+                    category varchar(255) NOT NULL,
+                    amount numeric(19, 4) NOT NULL,
+                    currency varchar(3) NOT NULL,
+                    bank_account_id varchar(255),
+                    bank_label varchar(255),
+                    bank_last4 varchar(4),
+                    bank_currency varchar(3),
+                    description text,
+                    source varchar(255) NOT NULL,
+                    ai_confidence numeric(5, 4),
+                    created_at timestamp(6) with time zone NOT NULL,
+                    updated_at timestamp(6) with time zone NOT NULL,
+                    provider_message_id varchar(255) NOT NULL UNIQUE
+                );
+                CREATE TABLE transaction_tags (
+                    transaction_id uuid NOT NULL REFERENCES transactions (id),
+                    tag varchar(255)
+                );
+                """);
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE transaction_tags, transactions");
+        user = new User();
+        user.setId(UUID.randomUUID());
+        account = new EmailAccount();
+        account.setId(UUID.randomUUID());
+    }
+
+    @Test
+    @DisplayName("should insert transactions with their tags and skip ones already stored for the message")
+    void shouldInsertSkippingDuplicates() {
+        writer.insertIgnoringDuplicates(List.of(transaction("m-1")));
+
+        TransactionEntity duplicate = transaction("m-1");
+        TransactionEntity fresh = transaction("m-2");
+        fresh.setTags(Set.of("groceries"));
+        List<TransactionEntity> inserted = writer.insertIgnoringDuplicates(List.of(duplicate, fresh));
+
+        assertThat(inserted).containsExactly(fresh);
+        assertThat(jdbcTemplate.queryForList("SELECT provider_message_id FROM transactions ORDER BY 1", String.class))
+                .containsExactly("m-1", "m-2");
+        assertThat(jdbcTemplate.queryForList("SELECT tag FROM transaction_tags", String.class))
+                .containsExactly("groceries");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT amount FROM transactions WHERE provider_message_id = 'm-2'", BigDecimal.class))
+                .isEqualByComparingTo("2500.50");
+    }
+
+    private TransactionEntity transaction(String providerMessageId) {
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setUser(user);
+        transaction.setEmailAccount(account);
+        transaction.setType(TransactionType.DEBIT);
+        transaction.setTransactionDate(LocalDate.now());
+        transaction.setMerchant("Shoprite");
+        transaction.setCategory("Groceries");
+        transaction.setAmount(new BigDecimal("2500.50"));
+        transaction.setCurrency(CurrencyCode.NGN);
+        transaction.setSource(TransactionSource.EMAIL_GMAIL);
+        transaction.setProviderMessageId(providerMessageId);
+        return transaction;
+    }
+}
@@ -0,0 +1,250 @@
+package processing;
+
+import com.domain.domain.Transaction;
+import com.domain.entities.EmailAccount;
+import com.domain.entities.RawEmailMessage;
+import com.domain.entities.TransactionEntity;
+import com.domain.entities.User;
+import com.domain.enums.ProcessingStatus;
+import com.domain.enums.TransactionSource;
+import com.domain.enums.TransactionType;
+import com.domain.model.ExpenseRequestQuery;
+import com.domain.model.PagedResponse;
+import com.domain.repositories.RawEmailRepository;
+import com.domain.repositories.TransactionRepository;
+import com.domain.valueObjects.Category;
+import com.domain.valueObjects.CurrencyCode;
+import com.domain.valueObjects.Merchant;
+import com.domain.valueObjects.Money;
+import com.domain.valueObjects.TransactionDate;
+import com.infrastructure.email.service.ExpenseExtractionService;
+import com.infrastructure.email.service.sub.EmailProcessor;
+import com.infrastructure.email.service.sub.OutcomeWriter;
+import com.infrastructure.mapper.EntityMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class EmailProcessorTest {
+
+    private static final int CONNECTIONS = 2;
+
+    private final ConnectionPool pool = new ConnectionPool();
+    private final List<TransactionEntity> savedTransactions = Collections.synchronizedList(new ArrayList<>());
+    private final List<RawEmailMessage> savedEmails = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger extracting = new AtomicInteger();
+    private final AtomicInteger maxExtracting = new AtomicInteger();
+
+    private volatile Duration llmLatency = Duration.ZERO;
+    private volatile Optional<Transaction> extracted = Optional.of(transaction());
+    private volatile boolean duplicate;
+
+    /** A transaction manager that hands out a connection per transaction from a small pool. */
+    private static class ConnectionPool extends AbstractPlatformTransactionManager {
+
+        final Semaphore connections = new Semaphore(CONNECTIONS);
+        final AtomicInteger transactions = new AtomicInteger();
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            connections.acquireUninterruptibly();
+            transactions.incrementAndGet();
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doCleanupAfterCompletion(Object transaction) {
+            connections.release();
+        }
+    }
+
+    private final TransactionRepository transactions = new TransactionRepository() {
+        @Override
+        public TransactionEntity save(TransactionEntity expense) {
+            if (duplicate) throw new DataIntegrityViolationException("uk_transaction_provider_message");
+            savedTransactions.add(expense);
+            return expense;
+        }
+
+        @Override
+        public List<TransactionEntity> insertIgnoringDuplicates(List<TransactionEntity> batch) {
+            if (duplicate) return List.of();
+            savedTransactions.addAll(batch);
+            return batch;
+        }
+
+        @Override
+        public Optional<TransactionEntity> findById(UUID id) {
+            return Optional.empty();
+        }
+
+        @Override
+        public PagedResponse<TransactionEntity> findAll(ExpenseRequestQuery query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteById(UUID id) {
+        }
+    };
+
+    private final OutcomeWriter writer = new OutcomeWriter(transactions, rawEmails(), new TransactionTemplate(pool),
+            new SimpleMeterRegistry(), 10, 20, 100);
+
+    private final EmailProcessor processor = new EmailProcessor(
+            new ExpenseExtractionService(null, null, null, null, null, null, null, null, null, null) {
+                @Override
+                public Optional<Transaction> extract(RawEmailMessage email) {
+                    maxExtracting.accumulateAndGet(extracting.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(llmLatency);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        extracting.decrementAndGet();
+                    }
+                    return extracted;
+                }
+            },
+            new EntityMapper(),
+            writer);
+
+    @SuppressWarnings("unchecked")
+    private RawEmailRepository rawEmails() {
+        return (RawEmailRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RawEmailRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "saveMessage" -> {
+                        savedEmails.add((RawEmailMessage) args[0]);
+                        yield args[0];
+                    }
+                    case "updateProcessingStates" -> {
+                        savedEmails.addAll((List<RawEmailMessage>) args[0]);
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @BeforeEach
+    void setUp() {
+        writer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    @DisplayName("should run many more extractions at once than there are connections")
+    void shouldNotHoldConnectionWhileExtracting() {
+        llmLatency = Duration.ofMillis(200);
+        List<RawEmailMessage> emails = new ArrayList<>();
+        for (int i = 0; i < 20; i++) emails.add(email());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            emails.forEach(email -> executor.execute(() -> processor.processSingleEmail(email)));
+        }
+
+        assertThat(maxExtracting.get()).isGreaterThan(CONNECTIONS * 5);
+        assertThat(savedTransactions).hasSize(20);
+        assertThat(emails).allMatch(email -> email.getProcessed() == ProcessingStatus.PROCESSED);
+    }
+
+    @Test
+    @DisplayName("should store the transaction and the email status in one transaction")
+    void shouldWriteTogether() {
+        RawEmailMessage email = email();
+
+        processor.processSingleEmail(email);
+
+        assertThat(pool.transactions.get()).isEqualTo(1);
+        assertThat(savedTransactions).singleElement()
+                .extracting(TransactionEntity::getProviderMessageId).isEqualTo(email.getProviderMessageId());
+        assertThat(savedEmails).containsExactly(email);
+    }
+
+    @Test
+    @DisplayName("should store only the status when nothing was extracted or the transaction already exists")
+    void shouldWriteStatusOnly() {
+        extracted = Optional.empty();
+        RawEmailMessage notTransaction = email();
+        processor.processSingleEmail(notTransaction);
+
+        assertThat(notTransaction.getProcessed()).isEqualTo(ProcessingStatus.FAILED);
+        assertThat(notTransaction.getFailureReason()).isEqualTo("VALIDATION_FAILED");
+        assertThat(savedTransactions).isEmpty();
+
+        extracted = Optional.of(transaction());
+        duplicate = true;
+        RawEmailMessage seenBefore = email();
+        processor.processSingleEmail(seenBefore);
+
+        assertThat(seenBefore.getProcessed()).isEqualTo(ProcessingStatus.PROCESSED);
+        assertThat(savedEmails).containsExactly(notTransaction, seenBefore);
+    }
+
+    private static Transaction transaction() {
+        return Transaction.create(
+                TransactionType.DEBIT,
+                Money.of(new BigDecimal("2500.00"), CurrencyCode.NGN),
+                TransactionDate.now(),
+                Merchant.of("Shoprite"),
+                Category.of("Groceries"),
+                Set.of(),
+                null,
+                null,
+                TransactionSource.EMAIL_GMAIL,
+                null);
+    }
+
+    private static RawEmailMessage email() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        EmailAccount account = new EmailAccount();
+        account.setId(UUID.randomUUID());
+        account.setUser(user);
+        RawEmailMessage email = new RawEmailMessage();
+        email.setId(UUID.randomUUID());
+        email.setEmailAccount(account);
+        email.setProviderMessageId("m-" + UUID.randomUUID());
+        email.setProcessed(ProcessingStatus.PROCESSING);
+        return email;
+    }
+}
@@ -0,0 +1,195 @@
+package processing;
+
+import com.domain.entities.RawEmailMessage;
+import com.domain.entities.TransactionEntity;
+import com.domain.enums.ProcessingStatus;
+import com.domain.model.ExpenseRequestQuery;
+import com.domain.model.PagedResponse;
+import com.domain.repositories.RawEmailRepository;
+import com.domain.repositories.TransactionRepository;
+import com.infrastructure.email.service.sub.EmailProcessor;
+import com.infrastructure.email.service.sub.OutcomeWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class OutcomeWriterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<TransactionEntity> inserted = Collections.synchronizedList(new ArrayList<>());
+    private final List<RawEmailMessage> updated = Collections.synchronizedList(new ArrayList<>());
+    private final List<RawEmailMessage> savedEmails = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private OutcomeWriter writer;
+
+    private static class NoDatabase extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    /** Refuses any batch holding a "poison" transaction, including a batch of that transaction alone. */
+    private final TransactionRepository transactions = new TransactionRepository() {
+        @Override
+        public TransactionEntity save(TransactionEntity expense) {
+            throw new UnsupportedOperationException("outcomes are only written through insertIgnoringDuplicates");
+        }
+
+        @Override
+        public List<TransactionEntity> insertIgnoringDuplicates(List<TransactionEntity> batch) {
+            batches.incrementAndGet();
+            if (batch.stream().anyMatch(OutcomeWriterTest::isPoison)) {
+                throw new IllegalStateException("value too long for type character varying(255)");
+            }
+            inserted.addAll(batch);
+            return batch;
+        }
+
+        @Override
+        public Optional<TransactionEntity> findById(UUID id) {
+            return Optional.empty();
+        }
+
+        @Override
+        public PagedResponse<TransactionEntity> findAll(ExpenseRequestQuery query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteById(UUID id) {
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private final RawEmailRepository rawEmails = (RawEmailRepository) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[]{RawEmailRepository.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "saveMessage" -> {
+                    savedEmails.add((RawEmailMessage) args[0]);
+                    yield args[0];
+                }
+                case "updateProcessingStates" -> {
+                    updated.addAll((List<RawEmailMessage>) args[0]);
+                    yield null;
+                }
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+    private OutcomeWriter writer(int batchSize, Duration maxDelay) {
+        writer = new OutcomeWriter(transactions, rawEmails, new TransactionTemplate(new NoDatabase()),
+                meterRegistry, batchSize, maxDelay.toMillis(), 1_000);
+        writer.start();
+        return writer;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writer != null) writer.stop();
+    }
+
+    @Test
+    @DisplayName("should store outcomes from many threads in a few batches")
+    void shouldBatchOutcomes() {
+        OutcomeWriter writer = writer(50, Duration.ofSeconds(1));
+
+        List<CompletableFuture<Void>> written = Collections.synchronizedList(new ArrayList<>());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 200; i++) {
+                executor.execute(() -> written.add(writer.submit(outcome("Shoprite"))));
+            }
+        }
+        CompletableFuture.allOf(written.toArray(CompletableFuture[]::new)).join();
+
+        assertThat(inserted).hasSize(200);
+        assertThat(updated).hasSize(200);
+        assertThat(batches.get()).isLessThanOrEqualTo(8);
+        assertThat(savedEmails).isEmpty();
+        assertThat(meterRegistry.get("snapbill.writebehind.flush").tag("mode", "batch").timer().count())
+                .isEqualTo(batches.get());
+        assertThat(meterRegistry.get("snapbill.writebehind.lag").timer().count()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("should store a lone outcome once it has waited the max delay")
+    void shouldFlushOnDelay() {
+        OutcomeWriter writer = writer(100, Duration.ofMillis(50));
+
+        long start = System.nanoTime();
+        writer.submit(outcome("Shoprite")).join();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(inserted).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("should write every outcome on its own when the batch fails, failing only the bad one")
+    void shouldFallBackPerItem() {
+        OutcomeWriter writer = writer(3, Duration.ofSeconds(1));
+        EmailProcessor.Outcome first = outcome("Shoprite");
+        EmailProcessor.Outcome poison = outcome("poison");
+        EmailProcessor.Outcome notTransaction = new EmailProcessor.Outcome(email(ProcessingStatus.FAILED), null);
+
+        CompletableFuture.allOf(
+                writer.submit(first), writer.submit(poison), writer.submit(notTransaction)).join();
+
+        assertThat(inserted).containsExactly(first.transaction());
+        assertThat(batches.get()).isEqualTo(3);
+        assertThat(savedEmails).containsExactly(first.email(), poison.email(), notTransaction.email());
+        assertThat(poison.email().getProcessed()).isEqualTo(ProcessingStatus.PENDING);
+        assertThat(poison.email().getFailureReason()).isEqualTo("SYSTEM_ERROR");
+        assertThat(poison.email().getRetryCount()).isEqualTo(1);
+        assertThat(meterRegistry.counter("snapbill.writebehind.fallback").count()).isEqualTo(1);
+    }
+
+    private static boolean isPoison(TransactionEntity transaction) {
+        return "poison".equals(transaction.getMerchant());
+    }
+
+    private static EmailProcessor.Outcome outcome(String merchant) {
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setMerchant(merchant);
+        return new EmailProcessor.Outcome(email(ProcessingStatus.PROCESSED), transaction);
+    }
+
+    private static RawEmailMessage email(ProcessingStatus status) {
+        RawEmailMessage email = new RawEmailMessage();
+        email.setId(UUID.randomUUID());
+        email.setProcessed(status);
+        return email;
+    }
+}
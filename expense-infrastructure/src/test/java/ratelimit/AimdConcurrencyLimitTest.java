@@ -0,0 +1,90 @@
+package ratelimit;
+
+import com.infrastructure.email.ratelimit.AimdConcurrencyLimit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class AimdConcurrencyLimitTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    @DisplayName("should halve the limit when throttled")
+    void shouldDecreaseOnThrottle() throws InterruptedException {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(16, 1, 64, 0.5, 1_000, now::get);
+
+        limit.acquire();
+        limit.release(true);
+
+        assertThat(limit.limit()).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("should count throttles from the same burst only once")
+    void shouldIgnoreThrottlesWithinCooldown() throws InterruptedException {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(16, 1, 64, 0.5, 1_000, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            limit.acquire();
+            limit.release(true);
+        }
+        assertThat(limit.limit()).isEqualTo(8);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        limit.acquire();
+        limit.release(true);
+        assertThat(limit.limit()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("should grow by about one after a full window of successes")
+    void shouldIncreaseAdditively() throws InterruptedException {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(4, 1, 64, 0.5, 1_000, now::get);
+
+        for (int i = 0; i < 5; i++) {
+            limit.acquire();
+            limit.release(false);
+        }
+
+        assertThat(limit.limit()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("should never drop below the minimum")
+    void shouldRespectMinimum() throws InterruptedException {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(2, 2, 8, 0.5, 0, now::get);
+
+        limit.acquire();
+        limit.release(true);
+
+        assertThat(limit.limit()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("should block callers above the limit until a slot frees")
+    void shouldBlockAboveLimit() throws InterruptedException {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(1, 1, 1, 0.5, 1_000, now::get);
+        limit.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            try {
+                limit.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertThat(acquired.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        limit.release(false);
+        assertThat(acquired.await(1, TimeUnit.SECONDS)).isTrue();
+        waiter.join();
+    }
+}
@@ -0,0 +1,44 @@
+package ratelimit;
+
+import com.infrastructure.email.ratelimit.Backoff;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class BackoffTest {
+
+    private final Backoff backoff = new Backoff(Duration.ofMillis(100), Duration.ofSeconds(2));
+
+    @Test
+    @DisplayName("should keep the jittered delay within the exponential ceiling")
+    void shouldStayWithinCeiling() {
+        for (int i = 0; i < 200; i++) {
+            assertThat(backoff.delay(0, null)).isLessThanOrEqualTo(Duration.ofMillis(100));
+            assertThat(backoff.delay(3, null)).isLessThanOrEqualTo(Duration.ofMillis(800));
+            assertThat(backoff.delay(30, null)).isLessThanOrEqualTo(Duration.ofSeconds(2));
+        }
+    }
+
+    @Test
+    @DisplayName("should never come back earlier than Retry-After")
+    void shouldHonourRetryAfter() {
+        assertThat(backoff.delay(0, Duration.ofSeconds(5))).isEqualTo(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("should parse Retry-After in seconds and date form")
+    void shouldParseRetryAfter() {
+        assertThat(Backoff.parseRetryAfter("7")).isEqualTo(Duration.ofSeconds(7));
+        assertThat(Backoff.parseRetryAfter(null)).isNull();
+        assertThat(Backoff.parseRetryAfter("soon")).isNull();
+
+        String inAMinute = ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60).format(DateTimeFormatter.RFC_1123_DATE_TIME);
+        assertThat(Backoff.parseRetryAfter(inAMinute)).isBetween(Duration.ofSeconds(55), Duration.ofSeconds(60));
+    }
+}
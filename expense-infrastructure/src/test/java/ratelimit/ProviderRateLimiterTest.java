@@ -0,0 +1,64 @@
+package ratelimit;
+
+import com.infrastructure.email.ratelimit.ProviderRateLimiter;
+import com.infrastructure.email.ratelimit.ProviderThrottledException;
+import com.infrastructure.email.ratelimit.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ProviderRateLimiterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProviderRateLimiter limiter = new ProviderRateLimiter("test", new RateLimitProperties(
+            1_000, 10_000, 8, 1, 16, 3,
+            Duration.ofMillis(1), Duration.ofMillis(5), 100), registry);
+
+    @Test
+    @DisplayName("should retry throttled calls and return the eventual result")
+    void shouldRetryThrottledCall() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = limiter.execute(UUID.randomUUID(), 5, () -> {
+            if (calls.incrementAndGet() < 3) throw new ProviderThrottledException("429", null);
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls).hasValue(3);
+        assertThat(registry.get("snapbill.provider.throttled").counter().count()).isEqualTo(2.0);
+        assertThat(limiter.concurrencyLimit()).isLessThan(8);
+    }
+
+    @Test
+    @DisplayName("should throw instead of returning nothing once retries are spent")
+    void shouldThrowWhenRetriesExhausted() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> limiter.execute(UUID.randomUUID(), 5, () -> {
+            calls.incrementAndGet();
+            throw new ProviderThrottledException("429", null);
+        })).isInstanceOf(ProviderThrottledException.class);
+
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("should not retry errors that are not throttling")
+    void shouldPropagateOtherErrors() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> limiter.execute(UUID.randomUUID(), 5, () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(calls).hasValue(1);
+    }
+}
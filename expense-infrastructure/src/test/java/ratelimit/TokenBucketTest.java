@@ -0,0 +1,61 @@
+package ratelimit;
+
+import com.infrastructure.email.ratelimit.TokenBucket;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    @DisplayName("should let a burst up to capacity through without waiting")
+    void shouldAllowBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(250, 250, now::get);
+
+        assertThat(bucket.reserve(100)).isZero();
+        assertThat(bucket.reserve(150)).isZero();
+        assertThat(bucket.available()).isEqualTo(0.0);
+    }
+
+    @Test
+    @DisplayName("should make the caller wait for units it borrowed")
+    void shouldReturnWaitForDebt() {
+        TokenBucket bucket = new TokenBucket(250, 250, now::get);
+        bucket.reserve(250);
+
+        long wait = bucket.reserve(125);
+
+        assertThat(wait).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    @DisplayName("should queue later callers behind earlier reservations")
+    void shouldQueueReservationsInOrder() {
+        TokenBucket bucket = new TokenBucket(10, 10, now::get);
+        bucket.reserve(10);
+
+        long first = bucket.reserve(10);
+        long second = bucket.reserve(10);
+
+        assertThat(second).isEqualTo(first * 2);
+    }
+
+    @Test
+    @DisplayName("should refill over time but never above capacity")
+    void shouldRefillUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(100, 50, now::get);
+        bucket.reserve(100);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(bucket.available()).isEqualTo(50.0);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThat(bucket.available()).isEqualTo(100.0);
+    }
+}
@@ -0,0 +1,275 @@
+package scheduler;
+
+import com.domain.entities.PipelineFailure;
+import com.domain.entities.RawEmailMessage;
+import com.infrastructure.email.service.ExtractionScheduler;
+import com.infrastructure.email.service.ExtractionWork;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ExtractionSchedulerTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<PipelineFailure> failures = Collections.synchronizedList(new ArrayList<>());
+
+    private ExtractionScheduler scheduler;
+
+    /**
+     * Hands out emails from a per-account backlog and processes each batch for a short while. Deferred emails
+     * join the backlog once they come due, like emails waiting on a retry.
+     */
+    private static class FakeWork implements ExtractionWork {
+
+        final Map<UUID, AtomicInteger> backlog = new ConcurrentHashMap<>();
+        final Map<UUID, Deferred> deferred = new ConcurrentHashMap<>();
+        final List<UUID> claims = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        volatile Duration processTime = Duration.ofMillis(5);
+
+        record Deferred(int emails, Instant due) { }
+
+        void add(UUID accountId, int emails) {
+            backlog.computeIfAbsent(accountId, id -> new AtomicInteger()).addAndGet(emails);
+        }
+
+        void defer(UUID accountId, int emails, Duration wait) {
+            deferred.put(accountId, new Deferred(emails, Instant.now().plus(wait)));
+        }
+
+        @Override
+        public List<RawEmailMessage> claim(UUID accountId, int limit) {
+            Deferred due = deferred.get(accountId);
+            if (due != null && !Instant.now().isBefore(due.due()) && deferred.remove(accountId, due)) {
+                add(accountId, due.emails());
+            }
+            AtomicInteger left = backlog.getOrDefault(accountId, new AtomicInteger());
+            int taken = Math.min(limit, Math.max(0, left.get()));
+            left.addAndGet(-taken);
+            if (taken > 0) claims.add(accountId);
+            return IntStream.range(0, taken).mapToObj(i -> new RawEmailMessage()).toList();
+        }
+
+        @Override
+        public void process(List<RawEmailMessage> batch) {
+            int now = inFlight.addAndGet(batch.size());
+            maxInFlight.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(processTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.addAndGet(-batch.size());
+                processed.addAndGet(batch.size());
+            }
+        }
+
+        @Override
+        public long pending(UUID accountId) {
+            return backlog.getOrDefault(accountId, new AtomicInteger()).get();
+        }
+
+        @Override
+        public Optional<Instant> nextClaimableAt(UUID accountId) {
+            return Optional.ofNullable(deferred.get(accountId)).map(Deferred::due);
+        }
+
+        @Override
+        public List<UUID> accountsWithWork() {
+            return backlog.entrySet().stream()
+                    .filter(left -> left.getValue().get() > 0 || deferred.containsKey(left.getKey()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+    }
+
+    private ExtractionScheduler scheduler(ExtractionWork work, int batchSize, int quantum, int maxInFlight) {
+        scheduler = new ExtractionScheduler(work, executor, failure -> {
+            failures.add(failure);
+            return failure;
+        }, meterRegistry, batchSize, quantum, maxInFlight);
+        return scheduler;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) scheduler.stop();
+        executor.shutdownNow();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    @DisplayName("should serve a small account between the batches of a large backfill")
+    void shouldInterleaveAccounts() throws InterruptedException {
+        FakeWork work = new FakeWork();
+        UUID backfill = UUID.randomUUID();
+        UUID small = UUID.randomUUID();
+        work.add(backfill, 500);
+        work.add(small, 10);
+        ExtractionScheduler scheduler = scheduler(work, 10, 10, 20);
+
+        scheduler.request(backfill);
+        scheduler.request(small);
+        scheduler.start();
+        await(() -> work.processed.get() == 510);
+
+        // one quantum of the backfill, then the small account's turn
+        assertThat(work.claims.indexOf(small)).isEqualTo(1);
+        await(() -> scheduler.activeAccounts() == 0);
+        assertThat(scheduler.queueDepths()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should come back for emails waiting on a retry without being requested again")
+    void shouldWaitForDeferredEmails() throws InterruptedException {
+        FakeWork work = new FakeWork();
+        UUID account = UUID.randomUUID();
+        work.add(account, 10);
+        work.defer(account, 3, Duration.ofMillis(1500));
+        ExtractionScheduler scheduler = scheduler(work, 10, 10, 10);
+
+        scheduler.request(account);
+        scheduler.start();
+        await(() -> work.processed.get() == 10);
+
+        // drained for now, but held in the ring until the retries come due
+        assertThat(scheduler.activeAccounts()).isEqualTo(1);
+        await(() -> work.processed.get() == 13);
+        await(() -> scheduler.activeAccounts() == 0);
+        assertThat(work.claims).containsOnly(account).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("should come back for emails a batch rescheduled after the account had drained")
+    void shouldWakeForRescheduledEmails() throws InterruptedException {
+        UUID account = UUID.randomUUID();
+        AtomicInteger rescheduled = new AtomicInteger();
+        FakeWork work = new FakeWork() {
+            @Override
+            public void process(List<RawEmailMessage> batch) {
+                super.process(batch);
+                // the provider was down for the first batch
+                if (rescheduled.compareAndSet(0, batch.size())) defer(account, batch.size(), Duration.ofMillis(200));
+            }
+        };
+        work.processTime = Duration.ofMillis(300);
+        work.add(account, 5);
+        ExtractionScheduler scheduler = scheduler(work, 10, 10, 10);
+
+        scheduler.request(account);
+        scheduler.start();
+
+        // claimed, drained and gone from the ring before the batch came back rescheduled
+        await(() -> work.processed.get() == 10);
+        assertThat(work.claims).containsOnly(account).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("should pick up where a stopped scheduler left off without a new request")
+    void shouldResumeAfterRestart() throws InterruptedException {
+        FakeWork work = new FakeWork();
+        work.processTime = Duration.ofMillis(20);
+        UUID account = UUID.randomUUID();
+        work.add(account, 100);
+        ExtractionScheduler before = scheduler(work, 10, 10, 10);
+        before.request(account);
+        before.start();
+        await(() -> work.processed.get() >= 10);
+        before.stop();
+        assertThat(work.pending(account)).isPositive();
+
+        // the request went to the old instance; the new one only has what is left in the store
+        ExtractionScheduler after = scheduler(work, 10, 10, 10);
+        after.start();
+        await(() -> work.processed.get() == 100);
+        assertThat(work.pending(account)).isZero();
+    }
+
+    @Test
+    @DisplayName("should never have more emails in flight than the global ceiling")
+    void shouldRespectCeiling() throws InterruptedException {
+        FakeWork work = new FakeWork();
+        work.processTime = Duration.ofMillis(20);
+        List<UUID> accounts = IntStream.range(0, 5).mapToObj(i -> UUID.randomUUID()).toList();
+        accounts.forEach(account -> work.add(account, 40));
+        ExtractionScheduler scheduler = scheduler(work, 5, 10, 12);
+
+        accounts.forEach(scheduler::request);
+        scheduler.start();
+        await(() -> work.processed.get() == 200);
+
+        assertThat(work.maxInFlight.get()).isLessThanOrEqualTo(12).isGreaterThan(5);
+        assertThat(failures).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should report the queue depth of accounts that still have work")
+    void shouldReportQueueDepth() throws InterruptedException {
+        FakeWork work = new FakeWork();
+        work.processTime = Duration.ofSeconds(10);
+        UUID account = UUID.randomUUID();
+        work.add(account, 100);
+        ExtractionScheduler scheduler = scheduler(work, 10, 10, 10);
+
+        scheduler.request(account);
+        scheduler.start();
+        await(() -> scheduler.queueDepths().containsKey(account));
+
+        assertThat(scheduler.queueDepths().get(account)).isEqualTo(90);
+        assertThat(scheduler.emailsInFlight()).isEqualTo(10);
+        assertThat(meterRegistry.get("snapbill.extraction.queue.depth").tag("account", account.toString())
+                .gauge().value()).isEqualTo(90);
+    }
+
+    @Test
+    @DisplayName("should record a failed claim and keep serving other accounts")
+    void shouldPauseFailingAccount() throws InterruptedException {
+        FakeWork work = new FakeWork() {
+            @Override
+            public List<RawEmailMessage> claim(UUID accountId, int limit) {
+                if (!backlog.containsKey(accountId)) throw new IllegalStateException("database down");
+                return super.claim(accountId, limit);
+            }
+        };
+        UUID broken = UUID.randomUUID();
+        UUID healthy = UUID.randomUUID();
+        work.add(healthy, 30);
+        ExtractionScheduler scheduler = scheduler(work, 10, 10, 10);
+
+        scheduler.request(broken);
+        scheduler.request(healthy);
+        scheduler.start();
+        await(() -> work.processed.get() == 30);
+
+        assertThat(failures).singleElement().extracting("accountId").isEqualTo(broken);
+        assertThat(scheduler.activeAccounts()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,117 @@
+package template;
+
+import com.domain.entities.RawEmailMessage;
+import com.domain.model.ExtractionResult;
+import com.domain.valueObjects.CurrencyCode;
+import com.infrastructure.Ai.template.SenderTemplateRegistry;
+import com.infrastructure.Ai.template.SenderTemplates;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class SenderTemplateRegistryTest {
+
+    private static final Instant RECEIVED = Instant.parse("2026-10-18T12:00:00Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SenderTemplateRegistry registry = new SenderTemplateRegistry(SenderTemplates.DEFAULTS, meterRegistry);
+
+    private static RawEmailMessage email(String sender) {
+        RawEmailMessage email = new RawEmailMessage();
+        email.setSender(sender);
+        email.setReceivedDate(RECEIVED);
+        return email;
+    }
+
+    private double count(String template, String outcome) {
+        return meterRegistry.counter("snapbill.extraction.template", "template", template, "outcome", outcome).count();
+    }
+
+    @Test
+    @DisplayName("should parse a table bank alert from a subdomain of a registered sender")
+    void shouldParseTableAlert() {
+        String text = """
+                Dear CUSTOMER NAME,
+                We wish to inform you that a Debit transaction occurred on your account with us.
+                Account Number | 012****789
+                Transaction Location | LAGOS NG
+                Description | POS/WEB PURCHASE @ SHOPRITE LEKKI & CO
+                Amount | NGN 5,000.00
+                Value Date | 18-Oct-2026
+                Time of Transaction | 10:42:11 AM
+                Available Balance | NGN 12,345.67""";
+
+        Optional<ExtractionResult> result = registry.extract(email("GTBank <alerts@ib.gtbank.com>"), text);
+
+        assertThat(result).hasValueSatisfying(r -> {
+            assertThat(r.merchant()).isEqualTo("SHOPRITE LEKKI & CO");
+            assertThat(r.amount()).isEqualByComparingTo("5000.00");
+            assertThat(r.currency()).isEqualTo(CurrencyCode.NGN);
+            assertThat(r.transactionDate()).isEqualTo("2026-10-18T09:42:11Z");
+            assertThat(r.category()).isNull();
+            assertThat(r.confidence()).isEqualByComparingTo("0.99");
+        });
+        assertThat(count("ng-bank-alert", "hit")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should parse a one-paragraph credit alert and mark it as a credit")
+    void shouldParseParagraphCredit() {
+        String text = "Dear Customer, your account 01******34 has been credited with NGN 150,000.00 on 09/10/2026"
+                + " at 14:05. Narration: TRF FROM JOHN DOE/RENT SHARE OCT. Available balance: NGN 212,480.10.";
+
+        ExtractionResult result = registry.extract(email("alerts@zenithbank.com"), text).orElseThrow();
+
+        assertThat(result.merchant()).isEqualTo("JOHN DOE");
+        assertThat(result.amount()).isEqualByComparingTo("150000.00");
+        assertThat(result.transactionDate()).isEqualTo("2026-10-09T13:05:00Z");
+        assertThat(result.category()).isEqualTo("credit");
+    }
+
+    @Test
+    @DisplayName("should parse an Uber receipt with a fixed merchant and category")
+    void shouldParseUberReceipt() {
+        String text = """
+                Thanks for riding, Ada
+                Total ₦4,350.00
+                October 12, 2026
+                Trip fare ₦3,900.00
+                Booking fee ₦300.00""";
+
+        ExtractionResult result = registry.extract(email("Uber Receipts <noreply@uber.com>"), text).orElseThrow();
+
+        assertThat(result.merchant()).isEqualTo("Uber");
+        assertThat(result.amount()).isEqualByComparingTo("4350.00");
+        assertThat(result.currency()).isEqualTo(CurrencyCode.NGN);
+        assertThat(result.category()).isEqualTo("transport");
+        assertThat(result.transactionDate()).isEqualTo("2026-10-11T23:00:00Z");
+    }
+
+    @Test
+    @DisplayName("should fall back to the received date with a lower confidence")
+    void shouldFallBackToReceivedDate() {
+        String text = "Description | AIRTIME PURCHASE\nAmount | N1,000.00";
+
+        ExtractionResult result = registry.extract(email("alerts@gtbank.com"), text).orElseThrow();
+
+        assertThat(result.transactionDate()).isEqualTo(RECEIVED.toString());
+        assertThat(result.confidence()).isEqualByComparingTo(new BigDecimal("0.89"));
+    }
+
+    @Test
+    @DisplayName("should leave unknown senders and unexpected shapes to the LLM")
+    void shouldFallThrough() {
+        assertThat(registry.extract(email("News <news@medium.com>"), "Amount | NGN 5,000.00")).isEmpty();
+        assertThat(registry.extract(email("alerts@gtbank.com"), "Your statement for September is ready")).isEmpty();
+        assertThat(registry.extract(email("not an address"), "Amount | NGN 5,000.00")).isEmpty();
+
+        assertThat(count("none", "none")).isEqualTo(2);
+        assertThat(count("ng-bank-alert", "miss")).isEqualTo(1);
+    }
+}
@@ -0,0 +1,84 @@
+package text;
+
+import com.infrastructure.email.text.HtmlTextExtractor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class HtmlTextExtractorTest {
+
+    private final HtmlTextExtractor tables = new HtmlTextExtractor(HtmlTextExtractor.Layout.TABLES);
+    private final HtmlTextExtractor flat = new HtmlTextExtractor(HtmlTextExtractor.Layout.FLAT);
+
+    private String html(HtmlTextExtractor extractor, String html) {
+        StringBuilder out = new StringBuilder("left over from the last call");
+        extractor.extractHtml(html, out);
+        return out.toString();
+    }
+
+    @Test
+    @DisplayName("should keep table rows on their own line with cells separated")
+    void shouldRenderTables() {
+        String alert = """
+                <table>
+                  <tr><th>Description</th><th>Amount</th></tr>
+                  <tr><td>POS purchase</td><td>NGN&nbsp;5,000.00</td></tr>
+                  <tr><td>Balance</td><td><b>NGN</b>&#160;12,345.67</td></tr>
+                </table>
+                """;
+
+        assertThat(html(tables, alert)).isEqualTo("""
+                Description | Amount
+                POS purchase | NGN 5,000.00
+                Balance | NGN 12,345.67""");
+        assertThat(html(flat, alert)).isEqualTo("Description Amount POS purchase NGN 5,000.00 Balance NGN 12,345.67");
+    }
+
+    @Test
+    @DisplayName("should drop script, style, head, comments and hidden preheaders")
+    void shouldDropInvisibleContent() {
+        String email = """
+                <html><head><title>Alert</title><style>td { color: red; }</style></head>
+                <body><!-- tracking --><script>var x = "<td>";</script>
+                <div style="display: none; max-height:0">Preview text <div>nested</div> still hidden</div>
+                <img src="https://t.bank.com/open.gif" style="display:none">
+                <p>Debit&nbsp;of &pound;20 &amp; fees</p></body></html>
+                """;
+
+        assertThat(html(tables, email)).isEqualTo("Debit of £20 & fees");
+    }
+
+    @Test
+    @DisplayName("should decode numeric and named entities and keep unknown ones literal")
+    void shouldDecodeEntities() {
+        assertThat(html(flat, "&#8358;500 &#x20A6;600 &rsquo;ok&lsquo; &bogus; R&D"))
+                .isEqualTo("₦500 ₦600 ’ok‘ &bogus; R&D");
+    }
+
+    @Test
+    @DisplayName("should remove URLs and only the line that mentions unsubscribe")
+    void shouldRemoveUrlsAndFooterLine() {
+        String email = "<p>Visit https://bank.com/x?y=1 now</p><p>Click to Unsubscribe here</p><p>Amount: 500</p>";
+
+        assertThat(html(tables, email)).isEqualTo("Visit now\nAmount: 500");
+        assertThat(html(flat, email)).isEqualTo("Visit now Amount: 500");
+    }
+
+    @Test
+    @DisplayName("should clean plain bodies with the same rules")
+    void shouldCleanPlainText() {
+        StringBuilder out = new StringBuilder();
+        tables.extractPlain("Amount:   500\r\n\r\n\r\nSee http://x.io\nunsubscribe: reply STOP\nThanks", out);
+
+        assertThat(out.toString()).isEqualTo("Amount: 500\nSee\nThanks");
+    }
+
+    @Test
+    @DisplayName("should survive malformed markup")
+    void shouldTolerateBrokenHtml() {
+        assertThat(html(flat, "a < b and <b>bold</b><div unclosed=\"x>y\"")).isEqualTo("a < b and bold");
+        assertThat(html(flat, "<script>never closed")).isEmpty();
+        assertThat(html(flat, null)).isEmpty();
+    }
+}
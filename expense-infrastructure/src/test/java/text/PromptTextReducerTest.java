@@ -0,0 +1,117 @@
+package text;
+
+import com.infrastructure.email.text.PromptTextReducer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PromptTextReducerTest {
+
+    // cleaned email text, headed by "# field: expected value" labels
+    private static final List<String> FIXTURES = List.of(
+            "bank-debit-alert", "ride-receipt", "online-order",
+            "subscription-renewal", "transfer-credit", "short-airtime");
+
+    private static final int BUDGET = 150;
+
+    private record Fixture(String name, Map<String, String> labels, String text) {}
+
+    private static Fixture load(String name) throws IOException {
+        try (InputStream in = PromptTextReducerTest.class.getResourceAsStream("/prompt-fixtures/" + name + ".txt")) {
+            assertThat(in).as(name).isNotNull();
+            Map<String, String> labels = new LinkedHashMap<>();
+            List<String> body = new ArrayList<>();
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (line.startsWith("# ")) {
+                    int colon = line.indexOf(':');
+                    labels.put(line.substring(2, colon), line.substring(colon + 1).strip());
+                } else {
+                    body.add(line);
+                }
+            }
+            return new Fixture(name, labels, String.join("\n", body));
+        }
+    }
+
+    @Test
+    @DisplayName("should keep every labeled field of the fixture set while cutting most of the tokens")
+    void shouldKeepLabeledFields() throws IOException {
+        PromptTextReducer reducer = new PromptTextReducer(BUDGET, 1);
+        int original = 0;
+        int reduced = 0;
+
+        for (String name : FIXTURES) {
+            Fixture fixture = load(name);
+            PromptTextReducer.Reduction reduction = reducer.reduce(fixture.text());
+
+            fixture.labels().forEach((field, value) ->
+                    assertThat(reduction.text()).as("%s %s", name, field).contains(value));
+            assertThat(reduction.reducedTokens()).as(name).isLessThanOrEqualTo(BUDGET);
+            assertThat(reduction.originalTokens()).isEqualTo(PromptTextReducer.estimateTokens(fixture.text()));
+
+            original += reduction.originalTokens();
+            reduced += reduction.reducedTokens();
+        }
+
+        assertThat(reduced).isLessThan(original / 2);
+    }
+
+    @Test
+    @DisplayName("should pass text within the budget through untouched")
+    void shouldPassShortTextThrough() throws IOException {
+        Fixture airtime = load("short-airtime");
+
+        PromptTextReducer.Reduction reduction = new PromptTextReducer(600, 1).reduce(airtime.text());
+
+        assertThat(reduction.text()).isSameAs(airtime.text());
+        assertThat(reduction.reduced()).isFalse();
+    }
+
+    @Test
+    @DisplayName("should keep the window in document order and mark dropped runs")
+    void shouldKeepWindowInOrder() {
+        String text = """
+                Welcome to our newsletter and thanks for being a loyal customer of ours
+                Here are this week's best offers picked for you by our editors
+                Your order was placed with Corner Store
+                Total charged NGN 2,500.00 on 2026-10-01
+                Thanks again for shopping with us
+                Follow us on social media for more exclusive deals every single week
+                Terms and conditions apply to all offers and promotions in this email
+                """.repeat(3);
+
+        String reduced = new PromptTextReducer(60, 1).reduce(text).text();
+
+        assertThat(reduced).startsWith("...\nYour order was placed with Corner Store\nTotal charged NGN 2,500.00 on 2026-10-01\n"
+                + "Thanks again for shopping with us\n...");
+    }
+
+    @Test
+    @DisplayName("should fall back to the head of the text when nothing looks like a transaction")
+    void shouldKeepHeadWithoutCues() {
+        String text = "just some words without anything useful in them\n".repeat(40);
+
+        PromptTextReducer.Reduction reduction = new PromptTextReducer(50, 1).reduce(text);
+
+        assertThat(reduction.text()).startsWith("just some words").endsWith("...");
+        assertThat(reduction.reducedTokens()).isLessThanOrEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("should estimate tokens for words, digit runs and punctuation")
+    void shouldEstimateTokens() {
+        assertThat(PromptTextReducer.estimateTokens("")).isZero();
+        assertThat(PromptTextReducer.estimateTokens("a bank alert")).isEqualTo(4);
+        assertThat(PromptTextReducer.estimateTokens("NGN 5,000.00")).isEqualTo(1 + 1 + 1 + 1 + 1 + 1);
+        assertThat(PromptTextReducer.estimateTokens("transaction")).isEqualTo(3);
+    }
+}